@@ -52,18 +52,25 @@ const int kNumberOfRoughnessLevels = NUMBER_OF_MIPMAP_LEVELS;
 uniform sampler2D u_AlbedoTexture;
 uniform sampler2D u_RoughnessMetallicAmbientOcclusionTexture;
 
-// The intensity of the main directional light.
-uniform vec3 u_LightIntensity;
-
-// The direction of the main directional light in view space.
-uniform vec4 u_ViewLightDirection;
-
-// The coefficients for the spherical harmonic function which models the diffuse
-// irradiance of a distant environmental light for a given surface normal in
-// world space. These coefficients must be premultiplied with their
-// corresponding spherical harmonics constants. See
-// HelloArActivity.updateSphericalHarmonicsCoefficients for more information.
-uniform vec3 u_SphericalHarmonicsCoefficients[9];
+// Lighting data of the frame, shared by all shaders. See SceneUniforms.
+layout(std140) uniform LightingBlock {
+  // The direction of the main directional light in view space.
+  highp vec4 u_ViewLightDirection;
+
+  // The intensity of the main directional light.
+  highp vec3 u_LightIntensity;
+
+  // If the current light estimate is valid. Used to short circuit the entire
+  // shader when the light estimate is not valid.
+  bool u_LightEstimateIsValid;
+
+  // The coefficients for the spherical harmonic function which models the
+  // diffuse irradiance of a distant environmental light for a given surface
+  // normal in world space. These coefficients must be premultiplied with their
+  // corresponding spherical harmonics constants. See
+  // HelloArActivity.updateSphericalHarmonicsCoefficients for more information.
+  highp vec3 u_SphericalHarmonicsCoefficients[9];
+};
 
 // The filtered cubemap texture which models the LD term (i.e. radiance (L)
 // times distribution function (D)) of the environmental specular calculation as
@@ -75,13 +82,15 @@ uniform samplerCube u_Cubemap;
 // perceptual roughness.
 uniform sampler2D u_DfgTexture;
 
-// Inverse view matrix. Used for converting normals back into world space for
-// environmental radiance calculations.
-uniform mat4 u_ViewInverse;
-
-// If the current light estimate is valid. Used to short circuit the entire
-// shader when the light estimate is not valid.
-uniform bool u_LightEstimateIsValid;
+// Camera data of the frame. The inverse view matrix is used for converting
+// normals back into world space for environmental radiance calculations.
+layout(std140) uniform CameraBlock {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+  highp vec3 u_CameraPos;
+};
 
 struct MaterialParameters {
   vec3 diffuse;
@@ -15,8 +15,16 @@
  * limitations under the License.
  */
 
-uniform mat4 u_ModelView;
-uniform mat4 u_ModelViewProjection;
+// Camera data of the frame, shared by all shaders. See SceneUniforms.
+layout(std140) uniform CameraBlock {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+  highp vec3 u_CameraPos;
+};
+
+uniform mat4 u_Model;
 
 layout(location = 0) in vec4 a_Position;
 layout(location = 1) in vec2 a_TexCoord;
@@ -27,8 +35,10 @@ out vec3 v_ViewNormal;
 out vec2 v_TexCoord;
 
 void main() {
-  v_ViewPosition = (u_ModelView * a_Position).xyz;
-  v_ViewNormal = normalize((u_ModelView * vec4(a_Normal, 0.0)).xyz);
+  mat4 modelView = u_View * u_Model;
+  vec4 viewPosition = modelView * a_Position;
+  v_ViewPosition = viewPosition.xyz;
+  v_ViewNormal = normalize((modelView * vec4(a_Normal, 0.0)).xyz);
   v_TexCoord = a_TexCoord;
-  gl_Position = u_ModelViewProjection * a_Position;
+  gl_Position = u_Projection * viewPosition;
 }
@@ -20,8 +20,15 @@ layout(location = 1) in vec2 aTexPos;
 
 out vec2 vTexPos;
 
-uniform mat4 u_ViewProjection;
-uniform vec3 u_CameraPos;
+// Camera data of the frame, shared by all shaders. See SceneUniforms.
+layout(std140) uniform CameraBlock {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+  highp vec3 u_CameraPos;
+};
+
 uniform vec3 u_LabelOrigin;
 
 void main() {
@@ -15,8 +15,16 @@
  * limitations under the License.
  */
 
+// Camera data of the frame, shared by all shaders. See SceneUniforms.
+layout(std140) uniform CameraBlock {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+  highp vec3 u_CameraPos;
+};
+
 uniform mat4 u_Model;
-uniform mat4 u_ModelViewProjection;
 uniform mat2 u_PlaneUvMatrix;
 uniform vec3 u_Normal;
 
@@ -38,5 +46,5 @@ void main() {
    // Project vertices in world frame onto vec_u and vec_v.
    vec2 uv = vec2(dot(world_pos.xyz, vec_u), dot(world_pos.xyz, vec_v));
    v_TexCoordAlpha = vec3(u_PlaneUvMatrix * uv, a_XZPositionAlpha.z);
-   gl_Position = u_ModelViewProjection * local_pos;
+   gl_Position = u_ViewProjection * world_pos;
 }
@@ -15,12 +15,21 @@
  * limitations under the License.
  */
 
-uniform mat4 u_ModelViewProjection;
+// Camera data of the frame, shared by all shaders. See SceneUniforms.
+layout(std140) uniform CameraBlock {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+  highp vec3 u_CameraPos;
+};
+
 uniform float u_PointSize;
 
 layout(location = 0) in vec4 a_Position;
 
 void main() {
-  gl_Position = u_ModelViewProjection * a_Position;
+  // Points are given in world space.
+  gl_Position = u_ViewProjection * a_Position;
   gl_PointSize = u_PointSize;
 }
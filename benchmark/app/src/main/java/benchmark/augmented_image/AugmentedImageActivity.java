@@ -74,18 +74,19 @@ import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.IntBuffer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import benchmark.benchmark.AssetStager;
 import benchmark.benchmark.BenchmarkActivity;
+import benchmark.benchmark.FrameLogWriter;
+import benchmark.benchmark.FrameProfiler;
+import benchmark.benchmark.FrameRecorder;
+import benchmark.benchmark.GoldenImageValidator;
 import benchmark.benchmark.R;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.DisplayRotationHelper;
@@ -93,6 +94,8 @@ import benchmark.common.helpers.FullScreenHelper;
 import benchmark.common.helpers.SnackbarHelper;
 import benchmark.common.helpers.TrackingStateHelper;
 import benchmark.common.rendering.BackgroundRenderer;
+import benchmark.common.samplerender.FrameCapture;
+import benchmark.common.samplerender.GpuTimerPool;
 import benchmark.common.samplerender.OffscreenRender;
 import benchmark.common.samplerender.SampleRender;
 
@@ -140,17 +143,15 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
     private int REQUEST_MP4_SELECTOR = 1;
     private boolean hasSetTextureNames = false;
 
-    private BufferedWriter fpsLog;
+    private FrameRecorder frameRecorder;
+    private final FrameProfiler frameProfiler = new FrameProfiler();
 
     String fileName;
     int currentPhase = 1;
 
-    private boolean hasTimerExtension;
-    private static final int TIME_ELAPSED_EXT = 0x88BF;
-    private static final int NUM_QUERIES = 10;
-    private int[] timeQueries;
-    private int[] queryBuffer;
-    private int queryIndex;
+    private GpuTimerPool gpuTimerPool;
+    private FrameCapture frameCapture;
+    private GoldenImageValidator goldenImageValidator;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -164,7 +165,8 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
             @Override
             public void surfaceCreated(SurfaceHolder holder) {
-                render = new OffscreenRender(surfaceView, AugmentedImageActivity.this, getAssets());
+                render = new OffscreenRender(surfaceView, AugmentedImageActivity.this, getAssets(),
+                        BenchmarkActivity.getSchedulingPolicy(getIntent()), BenchmarkActivity.getTargetFps(getIntent()));
             }
 
             @Override
@@ -190,50 +192,25 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         installRequested = false;
 
         Intent intent = getIntent();
-        int activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0);
-        fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getRecordingFileName();
-        File f = new File(getExternalFilesDir(null) + "/" + fileName);
-        if (!f.exists()) try {
-            InputStream is = getAssets().open("recordings/" + fileName);
-            int len;
-            byte[] buffer = new byte[1024];
-            FileOutputStream fos = new FileOutputStream(f);
-            while ((len = is.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
-            }
-            is.close();
-            fos.close();
-        } catch (Exception e) {
+        fileName = intent.getStringExtra(BenchmarkActivity.RECORDING_FILE_NAME);
+        try {
+            AssetStager.getInstance(this).stageRecording(fileName);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
         try {
-            String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
-            Log.d(TAG, "Logging FPS to " + logPath);
-            fpsLog = new BufferedWriter(new FileWriter(logPath, true));
-            fpsLog.write("test " + fileName + "\n");
+            File logFile = new File(getExternalFilesDir(null), FrameLogWriter.FILE_NAME);
+            Log.d(TAG, "Logging FPS to " + logFile.getAbsolutePath());
+            frameRecorder = new FrameRecorder(logFile, fileName);
         } catch (IOException e) {
             messageSnackbarHelper.showError(this, "Could not open file to log FPS");
         }
-
-        timeQueries = new int[NUM_QUERIES];
-        queryBuffer = new int[1];
-        queryBuffer[0] = 0;
-        queryIndex = 0;
-        for (int i=0; i < NUM_QUERIES; i++) {
-            timeQueries[i] = -1;
-        }
     }
 
     private void cleanupCollectionResources() {
         try {
-            if (fpsLog != null) {
-                fpsLog.flush();
-                fpsLog.close();
-            }
-            for (int i=0; i < NUM_QUERIES; i++) {
-                if (timeQueries[i] >= 0) {
-                    GLES30.glDeleteQueries(1, timeQueries, i);
-                }
+            if (frameRecorder != null) {
+                frameRecorder.close();
             }
         } catch (IOException e) {
             Log.e(TAG, "Exception closing frame log: ", e);
@@ -242,9 +219,13 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
 
     @Override
     protected void onDestroy() {
-        if (fpsLog != null) {
+        // Waits for the render thread to release its GL resources before the session is closed.
+        if (render != null) {
+            render.stop();
+        }
+        if (frameRecorder != null) {
             try {
-                fpsLog.close();
+                frameRecorder.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -381,8 +362,11 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         } catch (IOException e) {
             Log.e(TAG, "Failed to read an asset file", e);
         }
-        String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
-        hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ");
+        gpuTimerPool = new GpuTimerPool(render);
+        frameCapture = new FrameCapture(render);
+        frameCapture.setPeriodicCapture(BenchmarkActivity.getCaptureInterval(getIntent()),
+                BenchmarkActivity.getCaptureDirectory(this, BenchmarkActivity.getSectionKey(getIntent(), fileName)));
+        goldenImageValidator = new GoldenImageValidator(this, getIntent(), fileName, frameCapture);
     }
 
     @Override
@@ -391,21 +375,33 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         GLES30.glViewport(0, 0, width, height);
     }
 
+    @Override
+    public void onSurfaceDestroyed(SampleRender render) {
+        if (gpuTimerPool != null) {
+            gpuTimerPool.close();
+        }
+        if (frameCapture != null) {
+            frameCapture.close();
+        }
+    }
+
     @Override
     public void onDrawFrame(SampleRender render) {
         long frameTime = System.currentTimeMillis();
+        long frameTimeNanos = System.nanoTime();
+        frameProfiler.beginFrame();
         if (session == null) {
             return;
         }
         if (session.getPlaybackStatus() == PlaybackStatus.FINISHED) {
             session.close();
             session = null;
-            saveLastFrame(this.render.getViewportWidth(), this.render.getViewportHeight());
+            goldenImageValidator.finish();
+            frameCapture.capture(BenchmarkActivity.getPreviewFile(this, BenchmarkActivity.getSectionKey(getIntent(), fileName)));
             try {
-                if (fpsLog != null) {
-                    fpsLog.flush();
-                    fpsLog.close();
-                    fpsLog = null;
+                if (frameRecorder != null) {
+                    frameRecorder.close();
+                    frameRecorder = null;
                 }
             } catch (IOException e) {
             }
@@ -432,7 +428,14 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
             // UpdateMode.BLOCKING (it is by default), this will throttle the rendering to the
             // camera framerate.
             long processTime = System.currentTimeMillis();
+            frameProfiler.begin(FrameProfiler.STAGE_SESSION_UPDATE);
             frame = session.update();
+            frameProfiler.end(FrameProfiler.STAGE_SESSION_UPDATE);
+            // Frames without a new camera image are neither drawn nor recorded if the render loop asks so.
+            if (!render.beginCameraFrame(frame.getTimestamp())) {
+                return;
+            }
+            gpuTimerPool.beginFrame();
             Camera camera = frame.getCamera();
 
             // Get projection matrix.
@@ -455,38 +458,29 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
             trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
 
             // If frame is ready, render camera preview image to the GL surface.
+            frameProfiler.begin(FrameProfiler.STAGE_BACKGROUND);
+            gpuTimerPool.begin(GpuTimerPool.PASS_BACKGROUND);
             backgroundRenderer.draw(frame);
-
-            if (!hasTimerExtension) {
-                messageSnackbarHelper.showError(this, "OpenGL extension EXT_disjoint_timer_query is unavailable on this device");
-                return;
-            }
-            if (timeQueries[queryIndex] < 0) {
-                GLES30.glGenQueries(1, timeQueries, queryIndex);
-            }
-            if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-                IntBuffer queryResult = IntBuffer.allocate(1);
-                GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult);
-                if (queryResult.get() == GLES30.GL_TRUE) {
-                    GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT, queryBuffer, 0);
-                }
-            }
-            GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex]);
+            gpuTimerPool.end(GpuTimerPool.PASS_BACKGROUND);
+            frameProfiler.end(FrameProfiler.STAGE_BACKGROUND);
 
             // Visualize augmented images.
+            frameProfiler.begin(FrameProfiler.STAGE_VIRTUAL_OBJECTS);
+            gpuTimerPool.begin(GpuTimerPool.PASS_VIRTUAL_SCENE);
             drawAugmentedImages(frame, projectionMatrix, viewMatrix, colorCorrectionRgba);
+            gpuTimerPool.end(GpuTimerPool.PASS_VIRTUAL_SCENE);
+            frameProfiler.end(FrameProfiler.STAGE_VIRTUAL_OBJECTS);
 
-            GLES30.glEndQuery(TIME_ELAPSED_EXT);
-            queryIndex = (queryIndex + 1) % NUM_QUERIES;
+            gpuTimerPool.endFrame();
 
-            try {
-                if (fpsLog != null) {
-                    fpsLog.write(currentPhase + "," + frameTime + "," + processTime + ",0," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n");
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to log frame data", e);
-                messageSnackbarHelper.showError(this, "Failed to log frame data: " + e);
+            frameProfiler.endFrame();
+            frameProfiler.begin(FrameProfiler.STAGE_LOG);
+            goldenImageValidator.onFrame(frame.getTimestamp());
+            frameCapture.endFrame();
+            if (frameRecorder != null) {
+                frameRecorder.record(currentPhase, frameTime, frameTimeNanos, (int) processTime, 0, (int) (System.currentTimeMillis() - frameTime), frameProfiler, gpuTimerPool, render);
             }
+            frameProfiler.end(FrameProfiler.STAGE_LOG);
         } catch (Throwable t) {
             // Avoid crashing the application due to unhandled exceptions.
             Log.e(TAG, "Exception on the OpenGL thread", t);
@@ -605,28 +599,4 @@ public class AugmentedImageActivity extends AppCompatActivity implements SampleR
         }
         return null;
     }
-
-    private void saveLastFrame(int width, int height) {
-        int size = width * height;
-        int[] imageArray = new int[size];
-        IntBuffer intBuffer = IntBuffer.allocate(size);
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        GLES30.glReadPixels(0, 0, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, intBuffer);
-        int[] imageArray2 = intBuffer.array();
-        for (int i=0; i < height; i++) {
-            for (int j=0; j < width; j++) {
-                imageArray[(height - i - 1) * width + j] = imageArray2[i * width + j];
-            }
-        }
-        bitmap.copyPixelsFromBuffer(IntBuffer.wrap(imageArray));
-        File imageFile = new File(getExternalFilesDir(null) + "/" + this.fileName.replace(".mp4", ".jpg"));
-        try {
-            imageFile.delete();
-            FileOutputStream fileOutputStream = new FileOutputStream(imageFile);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 50, fileOutputStream);
-            fileOutputStream.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to save preview image: ", e);
-        }
-    }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.augmented_object_generation;
+
+import android.util.Log;
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Camera;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.Session;
+import com.google.ar.core.TrackingState;
+
+import java.util.List;
+
+/**
+ * Places growing numbers of pawns for the stress mode of Object Generation, so that the frame time
+ * can be measured against the number of objects.
+ *
+ * <p>Each step adds anchors until there are as many as its object count, lets {@link
+ * #SETTLE_FRAMES} frames pass so the cost of creating them is not measured, and then measures the
+ * configured number of frames. The anchors are laid out in a square spiral on the largest upward
+ * facing plane, or in front of the camera if no plane is found within {@link #PLANE_WAIT_FRAMES}
+ * tracking frames. Earlier anchors stay in place, so every step draws a superset of the previous
+ * scene.
+ */
+class AnchorStressGenerator {
+  private static final String TAG = AnchorStressGenerator.class.getSimpleName();
+
+  static final int SETTLE_FRAMES = 30;
+  static final int PLANE_WAIT_FRAMES = 60;
+  private static final float SPACING_METERS = 0.1f;
+  // Placement of the grid without a plane, relative to the camera.
+  private static final float CAMERA_DISTANCE_METERS = 1.5f;
+  private static final float CAMERA_HEIGHT_METERS = 0.5f;
+
+  private final int[] objectCounts;
+  private final int stepFrames;
+  private Pose origin;
+  private int trackingFrames = 0;
+  private int step = 0;
+  private int stepFrame = 0;
+  private boolean measuring = false;
+
+  // Square spiral walk: current cell, direction and progress along the current leg.
+  private int gridX = 0;
+  private int gridZ = 0;
+  private int direction = 0;
+  private int legLength = 1;
+  private int legProgress = 0;
+  private int legs = 0;
+
+  /**
+   * @param objectCounts Ascending number of objects of each step
+   * @param stepFrames Number of frames measured per step
+   */
+  AnchorStressGenerator(int[] objectCounts, int stepFrames) {
+    this.objectCounts = objectCounts.clone();
+    this.stepFrames = stepFrames;
+  }
+
+  /**
+   * Advances by one frame, adding the anchors of the next step to {@code anchors} when it starts.
+   * Call once per frame on the render thread, after {@code session.update()}.
+   */
+  void update(Session session, Camera camera, List<Anchor> anchors) {
+    measuring = false;
+    if (camera.getTrackingState() != TrackingState.TRACKING || isFinished()) {
+      return;
+    }
+    if (origin == null) {
+      Plane plane = findLargestPlane(session);
+      if (plane == null && ++trackingFrames < PLANE_WAIT_FRAMES) {
+        return;
+      }
+      origin = plane != null ? plane.getCenterPose() : getCameraOrigin(camera.getPose());
+    }
+    if (stepFrame == 0) {
+      while (anchors.size() < objectCounts[step]) {
+        anchors.add(session.createAnchor(origin.compose(
+            Pose.makeTranslation(gridX * SPACING_METERS, 0, gridZ * SPACING_METERS))));
+        advanceGridPosition();
+      }
+    }
+    stepFrame++;
+    measuring = stepFrame > SETTLE_FRAMES;
+    if (stepFrame == SETTLE_FRAMES + stepFrames) {
+      step++;
+      stepFrame = 0;
+    }
+  }
+
+  /** Returns whether the current frame should be measured. */
+  boolean isMeasuring() {
+    return measuring;
+  }
+
+  /** Returns the number of objects of the current step, which is logged as the phase. */
+  int getObjectCount() {
+    return objectCounts[Math.min(step, objectCounts.length - 1)];
+  }
+
+  /** Returns whether every step has been measured. */
+  boolean isFinished() {
+    return step >= objectCounts.length;
+  }
+
+  /** Logs the steps that were not measured completely, e.g. because the recording ended. */
+  void logIncompleteSteps() {
+    if (!isFinished()) {
+      Log.w(TAG, "Stress test ended in the step with " + objectCounts[step] + " objects after "
+          + Math.max(stepFrame - SETTLE_FRAMES, 0) + " of " + stepFrames + " frames");
+    }
+  }
+
+  private static Plane findLargestPlane(Session session) {
+    Plane largest = null;
+    for (Plane plane : session.getAllTrackables(Plane.class)) {
+      if (plane.getTrackingState() == TrackingState.TRACKING
+          && plane.getSubsumedBy() == null
+          && plane.getType() == Plane.Type.HORIZONTAL_UPWARD_FACING
+          && (largest == null || getArea(plane) > getArea(largest))) {
+        largest = plane;
+      }
+    }
+    return largest;
+  }
+
+  private static float getArea(Plane plane) {
+    return plane.getExtentX() * plane.getExtentZ();
+  }
+
+  /** Returns an upright pose below the point in front of the camera. */
+  private static Pose getCameraOrigin(Pose cameraPose) {
+    float[] position = cameraPose.transformPoint(new float[] {0, 0, -CAMERA_DISTANCE_METERS});
+    position[1] -= CAMERA_HEIGHT_METERS;
+    return Pose.makeTranslation(position);
+  }
+
+  /** Moves to the next cell of a square spiral around the origin. */
+  private void advanceGridPosition() {
+    gridX += direction == 0 ? 1 : direction == 2 ? -1 : 0;
+    gridZ += direction == 1 ? 1 : direction == 3 ? -1 : 0;
+    if (++legProgress == legLength) {
+      legProgress = 0;
+      direction = (direction + 1) % 4;
+      if (++legs % 2 == 0) {
+        legLength++;
+      }
+    }
+  }
+}
@@ -40,1047 +40,16 @@
 
 package benchmark.augmented_object_generation;
 
-import android.content.DialogInterface;
-import android.content.Intent;
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.media.Image;
-import android.opengl.GLES30;
-import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
-import android.os.Bundle;
-import android.os.SystemClock;
-import android.util.Log;
-import android.view.MenuItem;
-import android.view.MotionEvent;
-import android.view.SurfaceHolder;
-import android.view.SurfaceView;
-import android.view.View;
-import android.widget.ImageButton;
-import android.widget.PopupMenu;
-import android.widget.RelativeLayout;
-import android.widget.Toast;
-import androidx.appcompat.app.AlertDialog;
-import androidx.appcompat.app.AppCompatActivity;
-import com.google.ar.core.Anchor;
-import com.google.ar.core.ArCoreApk;
-import com.google.ar.core.Camera;
-import com.google.ar.core.CameraConfig;
-import com.google.ar.core.CameraConfigFilter;
-import com.google.ar.core.Config;
-import com.google.ar.core.Config.InstantPlacementMode;
-import com.google.ar.core.DepthPoint;
-import com.google.ar.core.Frame;
-import com.google.ar.core.HitResult;
-import com.google.ar.core.InstantPlacementPoint;
-import com.google.ar.core.LightEstimate;
-import com.google.ar.core.Plane;
-import com.google.ar.core.PlaybackStatus;
-import com.google.ar.core.Point;
-import com.google.ar.core.Point.OrientationMode;
-import com.google.ar.core.PointCloud;
-import com.google.ar.core.RecordingStatus;
-import com.google.ar.core.Session;
-import com.google.ar.core.TrackData;
-import com.google.ar.core.Trackable;
-import com.google.ar.core.TrackingFailureReason;
-import com.google.ar.core.TrackingState;
-
-import benchmark.benchmark.BenchmarkActivity;
-import benchmark.common.helpers.CameraPermissionHelper;
-import benchmark.common.helpers.DepthSettings;
-import benchmark.common.helpers.DisplayRotationHelper;
-import benchmark.common.helpers.FullScreenHelper;
-import benchmark.common.helpers.InstantPlacementSettings;
-import benchmark.common.helpers.SnackbarHelper;
-import benchmark.common.helpers.TapHelper;
-import benchmark.common.helpers.TrackingStateHelper;
-import benchmark.common.samplerender.Framebuffer;
-import benchmark.common.samplerender.GLError;
-import benchmark.common.samplerender.Mesh;
-import benchmark.common.samplerender.OffscreenRender;
-import benchmark.common.samplerender.SampleRender;
-import benchmark.common.samplerender.Shader;
-import benchmark.common.samplerender.Texture;
-import benchmark.common.samplerender.VertexBuffer;
-import benchmark.common.samplerender.arcore.BackgroundRenderer;
-import benchmark.common.samplerender.arcore.PlaneRenderer;
-import benchmark.common.samplerender.arcore.SpecularCubemapFilter;
-
-import com.google.ar.core.exceptions.CameraNotAvailableException;
-import com.google.ar.core.exceptions.NotYetAvailableException;
-import com.google.ar.core.exceptions.PlaybackFailedException;
-import com.google.ar.core.exceptions.UnavailableApkTooOldException;
-import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
-import com.google.ar.core.exceptions.UnavailableDeviceNotCompatibleException;
-import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
-import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
-
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.UUID;
-
-import benchmark.benchmark.R;
+import benchmark.benchmark.BenchmarkSection;
+import benchmark.benchmark.SectionHostActivity;
 
 /**
- * This is a simple example that shows how to create an augmented reality (AR) application using the
- * ARCore API. The application will display any detected planes and will allow the user to tap on a
- * plane to place a 3D model.
+ * Plays back the Object Generation recordings with an {@link ObjectGenerationSection}. All
+ * recordings passed in the intent share this activity, its GL context and ARCore session.
  */
-public class AugmentedObjectGenerationActivity extends AppCompatActivity implements SampleRender.Renderer {
-
-  private static final String TAG = AugmentedObjectGenerationActivity.class.getSimpleName();
-
-  private static final String SEARCHING_PLANE_MESSAGE = "Searching for surfaces...";
-  private static final String WAITING_FOR_TAP_MESSAGE = "Tap on a surface to place an object.";
-
-  // See the definition of updateSphericalHarmonicsCoefficients for an explanation of these
-  // constants.
-  private static final float[] sphericalHarmonicFactors = {
-    0.282095f,
-    -0.325735f,
-    0.325735f,
-    -0.325735f,
-    0.273137f,
-    -0.273137f,
-    0.078848f,
-    -0.273137f,
-    0.136569f,
-  };
-
-  private static final float Z_NEAR = 0.1f;
-  private static final float Z_FAR = 100f;
-
-  private static final int CUBEMAP_RESOLUTION = 16;
-  private static final int CUBEMAP_NUMBER_OF_IMPORTANCE_SAMPLES = 32;
-
-  // Rendering. The Renderers are created here, and initialized when the GL surface is created.
-  private SurfaceView surfaceView;
-  // private GLSurfaceView surfaceView;
-  // ^for onscreen rendering (SampleRender expects a GLSurfaceView)
-
-  private boolean installRequested;
-
-  private Session session;
-  private final SnackbarHelper messageSnackbarHelper = new SnackbarHelper();
-  private DisplayRotationHelper displayRotationHelper;
-  private final TrackingStateHelper trackingStateHelper = new TrackingStateHelper(this);
-  private TapHelper tapHelper;
-  private OffscreenRender render;
-  // private SampleRender render;
-  // ^for onscreen rendering
-
-  private PlaneRenderer planeRenderer;
-  private BackgroundRenderer backgroundRenderer;
-  private Framebuffer virtualSceneFramebuffer;
-  private boolean hasSetTextureNames = false;
-
-  private final DepthSettings depthSettings = new DepthSettings();
-  private boolean[] depthSettingsMenuDialogCheckboxes = new boolean[2];
-
-  private final InstantPlacementSettings instantPlacementSettings = new InstantPlacementSettings();
-  private boolean[] instantPlacementSettingsMenuDialogCheckboxes = new boolean[1];
-  // Assumed distance from the device camera to the surface on which user will try to place objects.
-  // This value affects the apparent scale of objects while the tracking method of the
-  // Instant Placement point is SCREENSPACE_WITH_APPROXIMATE_DISTANCE.
-  // Values in the [0.2, 2.0] meter range are a good choice for most AR experiences. Use lower
-  // values for AR experiences where users are expected to place objects on surfaces close to the
-  // camera. Use larger values for experiences where the user will likely be standing and trying to
-  // place an object on the ground or floor in front of them.
-  private static final float APPROXIMATE_DISTANCE_METERS = 2.0f;
-
-  // Data tracks to record screen taps, phase information
-  private static final UUID TAP_TRACK_ID = UUID.fromString("53069eb5-21ef-4946-b71c-6ac4979216a6");;
-  private static final String TAP_TRACK_MIME_TYPE = "application/recording-playback-tap";
-  private static final UUID PHASE_TRACK_ID = UUID.fromString("53069eb5-21ef-4946-b71c-6ac4979216a7");;
-  private static final String PHASE_TRACK_MIME_TYPE = "application/recording-playback-phase";
-
-  // Point Cloud
-  private VertexBuffer pointCloudVertexBuffer;
-  private Mesh pointCloudMesh;
-  private Shader pointCloudShader;
-  // Keep track of the last point cloud rendered to avoid updating the VBO if point cloud
-  // was not changed.  Do this using the timestamp since we can't compare PointCloud objects.
-  private long lastPointCloudTimestamp = 0;
-
-  // Virtual object (ARCore pawn)
-  private Mesh virtualObjectMesh;
-  private Shader virtualObjectShader;
-  private final ArrayList<Anchor> anchors = new ArrayList<>();
-
-  // Environmental HDR
-  private Texture dfgTexture;
-  private SpecularCubemapFilter cubemapFilter;
-
-  // Temporary matrix allocated here to reduce number of allocations for each frame.
-  private final float[] modelMatrix = new float[16];
-  private final float[] viewMatrix = new float[16];
-  private final float[] projectionMatrix = new float[16];
-  private final float[] modelViewMatrix = new float[16]; // view x model
-  private final float[] modelViewProjectionMatrix = new float[16]; // projection x view x model
-  private final float[] sphericalHarmonicsCoefficients = new float[9 * 3];
-  private final float[] viewInverseMatrix = new float[16];
-  private final float[] worldLightDirection = {0.0f, 0.0f, 0.0f, 0.0f};
-  private final float[] viewLightDirection = new float[4]; // view x world light direction
-
-  // Recording filename
-  String fileName;
-
-  // FPS and Runtime Log
-  private BufferedWriter fpsLog;
-  int currentPhase = 1;
-
-  // For GPU timing extension
-  private boolean hasTimerExtension;
-  private static final int TIME_ELAPSED_EXT = 0x88BF;
-  private static final int NUM_QUERIES = 10;
-  private int[] timeQueries;
-  private int[] queryBuffer;
-  private int queryIndex;
-
-  @Override
-  protected void onCreate(Bundle savedInstanceState) {
-    super.onCreate(savedInstanceState);
-    setContentView(R.layout.activity_augmented_object_generation);
-    surfaceView = new SurfaceView(this);
-    displayRotationHelper = new DisplayRotationHelper(/*context=*/ this);
-
-    // Set up touch listener.
-    tapHelper = new TapHelper(/*context=*/ this);
-    surfaceView.setOnTouchListener(tapHelper);
-
-    // Set up renderer.
-    // Offscreen
-    surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
-      @Override
-      public void surfaceCreated(SurfaceHolder holder) {
-        render = new OffscreenRender(surfaceView, AugmentedObjectGenerationActivity.this, getAssets());
-      }
-
-      @Override
-      public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-
-      }
-
-      @Override
-      public void surfaceDestroyed(SurfaceHolder holder) {
-        render.stop();
-      }
-    });
-    RelativeLayout mainLayout =  findViewById(R.id.layout_main);
-    mainLayout.addView(surfaceView);
-
-    // Onscreen
-    // render = new SampleRender(surfaceView, this, getAssets());
-
-    installRequested = false;
-
-    depthSettings.onCreate(this);
-    instantPlacementSettings.onCreate(this);
-    ImageButton settingsButton = findViewById(R.id.settings_button);
-    settingsButton.setOnClickListener(
-        new View.OnClickListener() {
-          @Override
-          public void onClick(View v) {
-            PopupMenu popup = new PopupMenu(AugmentedObjectGenerationActivity.this, v);
-            popup.setOnMenuItemClickListener(AugmentedObjectGenerationActivity.this::settingsMenuClick);
-            popup.inflate(R.menu.settings_menu);
-            popup.show();
-          }
-        });
-
-    Intent intent = getIntent();
-    int activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0);
-    fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getRecordingFileName();
-    File f = new File(getExternalFilesDir(null)+"/"+fileName);
-    // Extract recording from assets into external files directory
-    if (!f.exists()) try {
-
-      InputStream is = getAssets().open("recordings/"+fileName);
-      int len;
-      byte[] buffer = new byte[1024];
-      FileOutputStream fos = new FileOutputStream(f);
-      while ((len = is.read(buffer)) > 0) {
-        fos.write(buffer, 0 , len);
-      }
-      is.close();
-      fos.close();
-    } catch (Exception e) { throw new RuntimeException(e); }
-
-    // Setup performance log.
-    try {
-      String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
-      Log.d(TAG, "Logging FPS to " + logPath);
-      fpsLog = new BufferedWriter(new FileWriter(logPath, true));
-      fpsLog.write("test " + fileName + "\n");
-    } catch (IOException e) {
-      messageSnackbarHelper.showError(this, "Could not open file to log FPS");
-    }
-
-    // Queries are initialized in onDrawFrame
-    timeQueries = new int[NUM_QUERIES];
-    queryBuffer = new int[1];
-    queryBuffer[0] = 0;
-    queryIndex = 0;
-    for (int i=0; i < NUM_QUERIES; i++) {
-      timeQueries[i] = -1;
-    }
-  }
-
-  /** Menu button to launch feature specific settings. */
-  // leftover from HelloAR sample app
-  protected boolean settingsMenuClick(MenuItem item) {
-    if (item.getItemId() == R.id.depth_settings) {
-      launchDepthSettingsMenuDialog();
-      return true;
-    } else if (item.getItemId() == R.id.instant_placement_settings) {
-      launchInstantPlacementSettingsMenuDialog();
-      return true;
-    }
-    return false;
-  }
-
-  private void cleanupCollectionResources() {
-    try {
-      if (fpsLog != null) {
-        fpsLog.flush();
-        fpsLog.close();
-      }
-      for (int i=0; i < NUM_QUERIES; i++) {
-        if (timeQueries[i] >= 0) {
-          GLES30.glDeleteQueries(1, timeQueries, i);
-        }
-      }
-    } catch (IOException e) {
-      Log.e(TAG, "Exception closing frame log: ", e);
-    }
-  }
-
-  @Override
-  protected void onDestroy() {
-    render.stop();
-    if (session != null) {
-      // Explicitly close ARCore Session to release native resources.
-      // Review the API reference for important considerations before calling close() in apps with
-      // more complicated lifecycle requirements:
-      // https://developers.google.com/ar/reference/java/arcore/reference/com/google/ar/core/Session#close()
-      session.close();
-      session = null;
-    }
-    cleanupCollectionResources();
-    super.onDestroy();
-  }
-
-  @Override
-  protected void onResume() {
-    super.onResume();
-
-    if (session == null) {
-      Exception exception = null;
-      String message = null;
-      try {
-        switch (ArCoreApk.getInstance().requestInstall(this, !installRequested)) {
-          case INSTALL_REQUESTED:
-            installRequested = true;
-            return;
-          case INSTALLED:
-            break;
-        }
-
-        // ARCore requires camera permissions to operate. If we did not yet obtain runtime
-        // permission on Android M and above, now is a good time to ask the user for it.
-        if (!CameraPermissionHelper.hasCameraPermission(this)) {
-          CameraPermissionHelper.requestCameraPermission(this);
-          return;
-        }
-
-        // Create the session.
-        session = new Session(/* context= */ this);
-      } catch (UnavailableArcoreNotInstalledException
-          | UnavailableUserDeclinedInstallationException e) {
-        message = "Please install ARCore";
-        exception = e;
-      } catch (UnavailableApkTooOldException e) {
-        message = "Please update ARCore";
-        exception = e;
-      } catch (UnavailableSdkTooOldException e) {
-        message = "Please update this app";
-        exception = e;
-      } catch (UnavailableDeviceNotCompatibleException e) {
-        message = "This device does not support AR";
-        exception = e;
-      } catch (Exception e) {
-        message = "Failed to create AR session";
-        exception = e;
-      }
-
-      if (message != null) {
-        messageSnackbarHelper.showError(this, message);
-        Log.e(TAG, "Exception creating session", exception);
-        return;
-      }
-    }
-
-    // Note that order matters - see the note in onPause(), the reverse applies here.
-    try {
-      configureSession();
-      String destination = new File(getExternalFilesDir(null), fileName).getAbsolutePath();
-      session.setPlaybackDataset(destination);
-      session.resume();
-    } catch (CameraNotAvailableException e) {
-      messageSnackbarHelper.showError(this, "Camera not available. Try restarting the app.");
-      session = null;
-      return;
-    } catch (PlaybackFailedException e) {
-      setResult(RESULT_CANCELED);
-      cleanupCollectionResources();
-      finish();
-    }
-
-    // Commented out for offscreen
-    // surfaceView.onResume();
-    displayRotationHelper.onResume();
-  }
-
+public class AugmentedObjectGenerationActivity extends SectionHostActivity {
   @Override
-  public void onPause() {
-    super.onPause();
-    if (session != null) {
-      // Note that the order matters - GLSurfaceView is paused first so that it does not try
-      // to query the session. If Session is paused before GLSurfaceView, GLSurfaceView may
-      // still call session.update() and get a SessionPausedException.
-      displayRotationHelper.onPause();
-      // Commented out for offscreen
-      // surfaceView.onPause();
-      session.pause();
-    }
-  }
-
-  @Override
-  public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] results) {
-    super.onRequestPermissionsResult(requestCode, permissions, results);
-    if (!CameraPermissionHelper.hasCameraPermission(this)) {
-      // Use toast instead of snackbar here since the activity will exit.
-      Toast.makeText(this, "Camera permission is needed to run this application", Toast.LENGTH_LONG)
-          .show();
-      if (!CameraPermissionHelper.shouldShowRequestPermissionRationale(this)) {
-        // Permission denied with checking "Do not ask again".
-        CameraPermissionHelper.launchPermissionSettings(this);
-      }
-      finish();
-    }
-  }
-
-  @Override
-  public void onWindowFocusChanged(boolean hasFocus) {
-    super.onWindowFocusChanged(hasFocus);
-    FullScreenHelper.setFullScreenOnWindowFocusChanged(this, hasFocus);
-  }
-
-  @Override
-  public void onSurfaceCreated(SampleRender render) {
-    // Prepare the rendering objects. This involves reading shaders and 3D model files, so may throw
-    // an IOException.
-    try {
-      planeRenderer = new PlaneRenderer(render);
-      backgroundRenderer = new BackgroundRenderer(render);
-      virtualSceneFramebuffer = new Framebuffer(render, /*width=*/ 1, /*height=*/ 1);
-
-      cubemapFilter =
-          new SpecularCubemapFilter(
-              render, CUBEMAP_RESOLUTION, CUBEMAP_NUMBER_OF_IMPORTANCE_SAMPLES);
-      // Load DFG lookup table for environmental lighting
-      dfgTexture =
-          new Texture(
-              render,
-              Texture.Target.TEXTURE_2D,
-              Texture.WrapMode.CLAMP_TO_EDGE,
-              /*useMipmaps=*/ false);
-      // The dfg.raw file is a raw half-float texture with two channels.
-      final int dfgResolution = 64;
-      final int dfgChannels = 2;
-      final int halfFloatSize = 2;
-
-      ByteBuffer buffer =
-          ByteBuffer.allocateDirect(dfgResolution * dfgResolution * dfgChannels * halfFloatSize);
-      try (InputStream is = getAssets().open("models/dfg.raw")) {
-        is.read(buffer.array());
-      }
-      // SampleRender abstraction leaks here.
-      GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, dfgTexture.getTextureId());
-      GLError.maybeThrowGLException("Failed to bind DFG texture", "glBindTexture");
-      GLES30.glTexImage2D(
-          GLES30.GL_TEXTURE_2D,
-          /*level=*/ 0,
-          GLES30.GL_RG16F,
-          /*width=*/ dfgResolution,
-          /*height=*/ dfgResolution,
-          /*border=*/ 0,
-          GLES30.GL_RG,
-          GLES30.GL_HALF_FLOAT,
-          buffer);
-      GLError.maybeThrowGLException("Failed to populate DFG texture", "glTexImage2D");
-
-      // Point cloud
-      pointCloudShader =
-          Shader.createFromAssets(
-                  render, "shaders/point_cloud.vert", "shaders/point_cloud.frag", /*defines=*/ null)
-              .setVec4(
-                  "u_Color", new float[] {31.0f / 255.0f, 188.0f / 255.0f, 210.0f / 255.0f, 1.0f})
-              .setFloat("u_PointSize", 5.0f);
-      // four entries per vertex: X, Y, Z, confidence
-      pointCloudVertexBuffer =
-          new VertexBuffer(render, /*numberOfEntriesPerVertex=*/ 4, /*entries=*/ null);
-      final VertexBuffer[] pointCloudVertexBuffers = {pointCloudVertexBuffer};
-      pointCloudMesh =
-          new Mesh(
-              render, Mesh.PrimitiveMode.POINTS, /*indexBuffer=*/ null, pointCloudVertexBuffers);
-
-      // Virtual object to render (ARCore pawn)
-      Texture virtualObjectAlbedoTexture =
-          Texture.createFromAsset(
-              render,
-              "models/pawn_albedo.png",
-              Texture.WrapMode.CLAMP_TO_EDGE,
-              Texture.ColorFormat.SRGB);
-      Texture virtualObjectPbrTexture =
-          Texture.createFromAsset(
-              render,
-              "models/pawn_roughness_metallic_ao.png",
-              Texture.WrapMode.CLAMP_TO_EDGE,
-              Texture.ColorFormat.LINEAR);
-      virtualObjectMesh = Mesh.createFromAsset(render, "models/pawn.obj");
-      virtualObjectShader =
-          Shader.createFromAssets(
-                  render,
-                  "shaders/environmental_hdr.vert",
-                  "shaders/environmental_hdr.frag",
-                  /*defines=*/ new HashMap<String, String>() {
-                    {
-                      put(
-                          "NUMBER_OF_MIPMAP_LEVELS",
-                          Integer.toString(cubemapFilter.getNumberOfMipmapLevels()));
-                    }
-                  })
-              .setTexture("u_AlbedoTexture", virtualObjectAlbedoTexture)
-              .setTexture("u_RoughnessMetallicAmbientOcclusionTexture", virtualObjectPbrTexture)
-              .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
-              .setTexture("u_DfgTexture", dfgTexture);
-    } catch (IOException e) {
-      Log.e(TAG, "Failed to read a required asset file", e);
-      messageSnackbarHelper.showError(this, "Failed to read a required asset file: " + e);
-    }
-    String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
-    hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ");
-  }
-
-  @Override
-  public void onSurfaceChanged(SampleRender render, int width, int height) {
-    displayRotationHelper.onSurfaceChanged(width, height);
-    virtualSceneFramebuffer.resize(width, height);
-  }
-
-  @Override
-  public void onDrawFrame(SampleRender render) {
-    long frameTime = System.currentTimeMillis();
-    if (session == null) {
-      return;
-    }
-    if (session.getPlaybackStatus() == PlaybackStatus.FINISHED) {
-      session.close();
-      session = null;
-      saveLastFrame(this.render.getViewportWidth(), this.render.getViewportHeight());
-      try {
-        if (fpsLog != null) {
-          fpsLog.flush();
-          fpsLog.close();
-          fpsLog = null;
-        }
-      } catch (IOException e) {
-      }
-      setResult(RESULT_OK);
-      finish();
-      return;
-    }
-
-    render.clear(null, 0f, 0f, 0f, 1f);
-
-    // Texture names should only be set once on a GL thread unless they change. This is done during
-    // onDrawFrame rather than onSurfaceCreated since the session is not guaranteed to have been
-    // initialized during the execution of onSurfaceCreated.
-    if (!hasSetTextureNames) {
-      session.setCameraTextureNames(
-          new int[] {backgroundRenderer.getCameraColorTexture().getTextureId()});
-      hasSetTextureNames = true;
-    }
-
-    // -- Update per-frame state
-
-    // Notify ARCore session that the view size changed so that the perspective matrix and
-    // the video background can be properly adjusted.
-    displayRotationHelper.updateSessionIfNeeded(session);
-
-    // Obtain the current frame from ARSession. When the configuration is set to
-    // UpdateMode.BLOCKING (it is by default), this will throttle the rendering to the
-    // camera framerate.
-    Frame frame;
-    // ARCore Processing Time
-    long processTime = System.currentTimeMillis();
-    try {
-      frame = session.update();
-    } catch (CameraNotAvailableException e) {
-      Log.e(TAG, "Camera not available during onDrawFrame", e);
-      messageSnackbarHelper.showError(this, "Camera not available. Try restarting the app.");
-      return;
-    }
-    Camera camera = frame.getCamera();
-    // Get projection matrix.
-    camera.getProjectionMatrix(projectionMatrix, 0, Z_NEAR, Z_FAR);
-
-    // Get camera matrix and draw.
-    camera.getViewMatrix(viewMatrix, 0);
-    Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
-
-    // Input Handling Time
-    long handleInputTime = System.currentTimeMillis();
-    processTime = handleInputTime - processTime;
-
-    // Handle one tap per frame.
-    handleTap(frame, camera);
-    handleInputTime = System.currentTimeMillis() - handleInputTime;
-
-    // Keep the screen unlocked while tracking, but allow it to lock when tracking stops.
-    trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
-
-    // Read recording phase data
-    if (session.getPlaybackStatus() == PlaybackStatus.OK) {
-      for (TrackData trackData : frame.getUpdatedTrackData(PHASE_TRACK_ID)) {
-        ByteBuffer payload = trackData.getData();
-        IntBuffer intBuffer = payload.asIntBuffer();
-        int[] phase = new int[1];
-        intBuffer.get(phase);
-        currentPhase = phase[0];
-        break;
-      }
-    }
-
-    // Update BackgroundRenderer state to match the depth settings.
-    try {
-      backgroundRenderer.setUseDepthVisualization(
-          render, depthSettings.depthColorVisualizationEnabled());
-      backgroundRenderer.setUseOcclusion(render, depthSettings.useDepthForOcclusion());
-    } catch (IOException e) {
-      Log.e(TAG, "Failed to read a required asset file", e);
-      messageSnackbarHelper.showError(this, "Failed to read a required asset file: " + e);
-      return;
-    }
-    // BackgroundRenderer.updateDisplayGeometry must be called every frame to update the coordinates
-    // used to draw the background camera image.
-    backgroundRenderer.updateDisplayGeometry(frame);
-
-    if (camera.getTrackingState() == TrackingState.TRACKING
-        && (depthSettings.useDepthForOcclusion()
-            || depthSettings.depthColorVisualizationEnabled())) {
-      try (Image depthImage = frame.acquireDepthImage()) {
-        backgroundRenderer.updateCameraDepthTexture(depthImage);
-      } catch (NotYetAvailableException e) {
-        // This normally means that depth data is not available yet. This is normal so we will not
-        // spam the logcat with this.
-      }
-    }
-
-    // -- Draw background
-    if (frame.getTimestamp() != 0) {
-      // Suppress rendering if the camera did not produce the first frame yet. This is to avoid
-      // drawing possible leftover data from previous sessions if the texture is reused.
-      backgroundRenderer.drawBackground(render);
-    }
-
-    // If not tracking, don't draw 3D objects.
-    if (camera.getTrackingState() == TrackingState.PAUSED) {
-      return;
-    }
-
-    // -- Draw non-occluded virtual objects (planes, point cloud)
-
-    // Visualize tracked points.
-    // Use try-with-resources to automatically release the point cloud.
-    try (PointCloud pointCloud = frame.acquirePointCloud()) {
-      if (pointCloud.getTimestamp() > lastPointCloudTimestamp) {
-        pointCloudVertexBuffer.set(pointCloud.getPoints());
-        lastPointCloudTimestamp = pointCloud.getTimestamp();
-      }
-      pointCloudShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
-      render.draw(pointCloudMesh, pointCloudShader);
-    }
-
-    // Visualize planes.
-    planeRenderer.drawPlanes(
-        render,
-        session.getAllTrackables(Plane.class),
-        camera.getDisplayOrientedPose(),
-        projectionMatrix);
-
-    // -- Draw occluded virtual objects
-
-    // Update lighting parameters in the shader
-    updateLightEstimation(frame.getLightEstimate(), viewMatrix);
-
-    // Setup OpenGL time queries. Queries are organized in a queues that new queries can be made while the old result becomes
-    // available.
-    if (!hasTimerExtension) {
-      messageSnackbarHelper.showError(this, "OpenGL extension EXT_disjoint_timer_query is unavailable on this device");
-      return;
-    }
-    if (timeQueries[queryIndex] < 0) {
-      GLES30.glGenQueries(1, timeQueries, queryIndex);
-    }
-    // Pop query off queue and fetch its result.
-    if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-      IntBuffer queryResult = IntBuffer.allocate(1);
-      GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult);
-      if (queryResult.get() == GLES30.GL_TRUE) {
-        GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT, queryBuffer, 0);
-      }
-    }
-    // Begin query for current frame.
-    GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex]);
-
-    // Visualize anchors created by touch.
-    render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
-    for (Anchor anchor : anchors) {
-      if (anchor.getTrackingState() != TrackingState.TRACKING) {
-        continue;
-      }
-
-      // Get the current pose of an Anchor in world space. The Anchor pose is updated
-      // during calls to session.update() as ARCore refines its estimate of the world.
-      anchor.getPose().toMatrix(modelMatrix, 0);
-
-      // Calculate model/view/projection matrices
-      Matrix.multiplyMM(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
-      Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, modelViewMatrix, 0);
-
-      // Update shader properties and draw
-      virtualObjectShader.setMat4("u_ModelView", modelViewMatrix);
-      virtualObjectShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
-      render.draw(virtualObjectMesh, virtualObjectShader, virtualSceneFramebuffer);
-    }
-
-    // Compose the virtual scene with the background.
-    backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
-
-    GLES30.glEndQuery(TIME_ELAPSED_EXT);
-    queryIndex = (queryIndex + 1) % NUM_QUERIES;
-    try {
-      if (fpsLog != null) {
-        fpsLog.write(currentPhase + "," + frameTime + "," + processTime + "," + handleInputTime + "," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n");
-      }
-    } catch (IOException e) {
-      Log.e(TAG, "Failed to log frame data", e);
-    }
-  }
-
-  // Handle only one tap per frame, as taps are usually low frequency compared to frame rate.
-  private void handleTap(Frame frame, Camera camera) {
-    MotionEvent tap;
-    if (session.getPlaybackStatus() == PlaybackStatus.OK) {
-      tap = null;
-      for (TrackData trackData : frame.getUpdatedTrackData(TAP_TRACK_ID)) {
-        ByteBuffer payload = trackData.getData();
-        FloatBuffer floatBuffer = payload.asFloatBuffer();
-        float[] tapCoords = new float[2];
-        floatBuffer.get(tapCoords);
-        tap = MotionEvent.obtain(SystemClock.uptimeMillis(), SystemClock.uptimeMillis(), MotionEvent.ACTION_UP, tapCoords[0], tapCoords[1], 0);
-        break;
-      }
-    } else {
-      tap = tapHelper.poll();
-    }
-
-    if (tap == null) {
-      return;
-    }
-
-    // Read screen tap data from recording.
-    if (session.getRecordingStatus() == RecordingStatus.OK) {
-      float[] tapCoords = new float[2];
-      tapCoords[0] = tap.getX();
-      tapCoords[1] = tap.getY();
-      ByteBuffer payload = ByteBuffer.allocate(4 * 2);
-      FloatBuffer floatBuffer = payload.asFloatBuffer();
-      floatBuffer.put(tapCoords);
-      try {
-        frame.recordTrackData(TAP_TRACK_ID, payload);
-      } catch (IllegalStateException e) {
-        Log.e(TAG, "Error in recording tap input into external data track.", e);
-      }
-    }
-
-    if (camera.getTrackingState() == TrackingState.TRACKING) {
-      List<HitResult> hitResultList;
-      if (instantPlacementSettings.isInstantPlacementEnabled()) {
-        hitResultList = frame.hitTestInstantPlacement(tap.getX(), tap.getY(), APPROXIMATE_DISTANCE_METERS);
-      } else {
-        hitResultList = frame.hitTest(tap);
-      }
-      for (HitResult hit : hitResultList) {
-        // If any plane, Oriented Point, or Instant Placement Point was hit, create an anchor.
-        Trackable trackable = hit.getTrackable();
-        // If a plane was hit, check that it was hit inside the plane polygon.
-        // DepthPoints are only returned if Config.DepthMode is set to AUTOMATIC.
-        if ((trackable instanceof Plane
-                && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())
-                && (PlaneRenderer.calculateDistanceToPlane(hit.getHitPose(), camera.getPose()) > 0))
-            || (trackable instanceof Point
-                && ((Point) trackable).getOrientationMode()
-                    == OrientationMode.ESTIMATED_SURFACE_NORMAL)
-            || (trackable instanceof InstantPlacementPoint)
-            || (trackable instanceof DepthPoint)) {
-          // Cap the number of objects created. This avoids overloading both the
-          // rendering system and ARCore.
-
-          // Adding an Anchor tells ARCore that it should track this position in
-          // space. This anchor is created on the Plane to place the 3D model
-          // in the correct position relative both to the world and to the plane.
-          anchors.add(hit.createAnchor());
-          // For devices that support the Depth API, shows a dialog to suggest enabling
-          // depth-based occlusion. This dialog needs to be spawned on the UI thread.
-          this.runOnUiThread(this::showOcclusionDialogIfNeeded);
-
-          // Hits are sorted by depth. Consider only closest hit on a plane, Oriented Point, or
-          // Instant Placement Point.
-          break;
-        }
-      }
-    }
-  }
-
-  /**
-   * Shows a pop-up dialog on the first call, determining whether the user wants to enable
-   * depth-based occlusion. The result of this dialog can be retrieved with useDepthForOcclusion().
-   */
-  private void showOcclusionDialogIfNeeded() {
-    boolean isDepthSupported = session.isDepthModeSupported(Config.DepthMode.AUTOMATIC);
-    if (!depthSettings.shouldShowDepthEnableDialog() || !isDepthSupported) {
-      return; // Don't need to show dialog.
-    }
-
-    // Asks the user whether they want to use depth-based occlusion.
-    new AlertDialog.Builder(this)
-        .setTitle(R.string.options_title_with_depth)
-        .setMessage(R.string.depth_use_explanation)
-        .setPositiveButton(
-            R.string.button_text_enable_depth,
-            (DialogInterface dialog, int which) -> {
-              depthSettings.setUseDepthForOcclusion(true);
-            })
-        .setNegativeButton(
-            R.string.button_text_disable_depth,
-            (DialogInterface dialog, int which) -> {
-              depthSettings.setUseDepthForOcclusion(false);
-            })
-        .show();
-  }
-
-  private void launchInstantPlacementSettingsMenuDialog() {
-    resetSettingsMenuDialogCheckboxes();
-    Resources resources = getResources();
-    new AlertDialog.Builder(this)
-        .setTitle(R.string.options_title_instant_placement)
-        .setMultiChoiceItems(
-            resources.getStringArray(R.array.instant_placement_options_array),
-            instantPlacementSettingsMenuDialogCheckboxes,
-            (DialogInterface dialog, int which, boolean isChecked) ->
-                instantPlacementSettingsMenuDialogCheckboxes[which] = isChecked)
-        .setPositiveButton(
-            R.string.done,
-            (DialogInterface dialogInterface, int which) -> applySettingsMenuDialogCheckboxes())
-        .setNegativeButton(
-            android.R.string.cancel,
-            (DialogInterface dialog, int which) -> resetSettingsMenuDialogCheckboxes())
-        .show();
-  }
-
-  /** Shows checkboxes to the user to facilitate toggling of depth-based effects. */
-  private void launchDepthSettingsMenuDialog() {
-    // Retrieves the current settings to show in the checkboxes.
-    resetSettingsMenuDialogCheckboxes();
-
-    // Shows the dialog to the user.
-    Resources resources = getResources();
-    if (session.isDepthModeSupported(Config.DepthMode.AUTOMATIC)) {
-      // With depth support, the user can select visualization options.
-      new AlertDialog.Builder(this)
-          .setTitle(R.string.options_title_with_depth)
-          .setMultiChoiceItems(
-              resources.getStringArray(R.array.depth_options_array),
-              depthSettingsMenuDialogCheckboxes,
-              (DialogInterface dialog, int which, boolean isChecked) ->
-                  depthSettingsMenuDialogCheckboxes[which] = isChecked)
-          .setPositiveButton(
-              R.string.done,
-              (DialogInterface dialogInterface, int which) -> applySettingsMenuDialogCheckboxes())
-          .setNegativeButton(
-              android.R.string.cancel,
-              (DialogInterface dialog, int which) -> resetSettingsMenuDialogCheckboxes())
-          .show();
-    } else {
-      // Without depth support, no settings are available.
-      new AlertDialog.Builder(this)
-          .setTitle(R.string.options_title_without_depth)
-          .setPositiveButton(
-              R.string.done,
-              (DialogInterface dialogInterface, int which) -> applySettingsMenuDialogCheckboxes())
-          .show();
-    }
-  }
-
-  private void applySettingsMenuDialogCheckboxes() {
-    depthSettings.setUseDepthForOcclusion(depthSettingsMenuDialogCheckboxes[0]);
-    depthSettings.setDepthColorVisualizationEnabled(depthSettingsMenuDialogCheckboxes[1]);
-    instantPlacementSettings.setInstantPlacementEnabled(
-        instantPlacementSettingsMenuDialogCheckboxes[0]);
-    configureSession();
-  }
-
-  private void resetSettingsMenuDialogCheckboxes() {
-    depthSettingsMenuDialogCheckboxes[0] = depthSettings.useDepthForOcclusion();
-    depthSettingsMenuDialogCheckboxes[1] = depthSettings.depthColorVisualizationEnabled();
-    instantPlacementSettingsMenuDialogCheckboxes[0] =
-        instantPlacementSettings.isInstantPlacementEnabled();
-  }
-
-  /** Checks if we detected at least one plane. */
-  private boolean hasTrackingPlane() {
-    for (Plane plane : session.getAllTrackables(Plane.class)) {
-      if (plane.getTrackingState() == TrackingState.TRACKING) {
-        return true;
-      }
-    }
-    return false;
-  }
-
-  /** Update state based on the current frame's light estimation. */
-  private void updateLightEstimation(LightEstimate lightEstimate, float[] viewMatrix) {
-    if (lightEstimate.getState() != LightEstimate.State.VALID) {
-      virtualObjectShader.setBool("u_LightEstimateIsValid", false);
-      return;
-    }
-    virtualObjectShader.setBool("u_LightEstimateIsValid", true);
-
-    Matrix.invertM(viewInverseMatrix, 0, viewMatrix, 0);
-    virtualObjectShader.setMat4("u_ViewInverse", viewInverseMatrix);
-
-    updateMainLight(
-        lightEstimate.getEnvironmentalHdrMainLightDirection(),
-        lightEstimate.getEnvironmentalHdrMainLightIntensity(),
-        viewMatrix);
-    updateSphericalHarmonicsCoefficients(
-        lightEstimate.getEnvironmentalHdrAmbientSphericalHarmonics());
-    cubemapFilter.update(lightEstimate.acquireEnvironmentalHdrCubeMap());
-  }
-
-  private void updateMainLight(float[] direction, float[] intensity, float[] viewMatrix) {
-    // We need the direction in a vec4 with 0.0 as the final component to transform it to view space
-    worldLightDirection[0] = direction[0];
-    worldLightDirection[1] = direction[1];
-    worldLightDirection[2] = direction[2];
-    Matrix.multiplyMV(viewLightDirection, 0, viewMatrix, 0, worldLightDirection, 0);
-    virtualObjectShader.setVec4("u_ViewLightDirection", viewLightDirection);
-    virtualObjectShader.setVec3("u_LightIntensity", intensity);
-  }
-
-  private void updateSphericalHarmonicsCoefficients(float[] coefficients) {
-    // Pre-multiply the spherical harmonics coefficients before passing them to the shader. The
-    // constants in sphericalHarmonicFactors were derived from three terms:
-    //
-    // 1. The normalized spherical harmonics basis functions (y_lm)
-    //
-    // 2. The lambertian diffuse BRDF factor (1/pi)
-    //
-    // 3. A <cos> convolution. This is done to so that the resulting function outputs the irradiance
-    // of all incoming light over a hemisphere for a given surface normal, which is what the shader
-    // (environmental_hdr.frag) expects.
-    //
-    // You can read more details about the math here:
-    // https://google.github.io/filament/Filament.html#annex/sphericalharmonics
-
-    if (coefficients.length != 9 * 3) {
-      throw new IllegalArgumentException(
-          "The given coefficients array must be of length 27 (3 components per 9 coefficients");
-    }
-
-    // Apply each factor to every component of each coefficient
-    for (int i = 0; i < 9 * 3; ++i) {
-      sphericalHarmonicsCoefficients[i] = coefficients[i] * sphericalHarmonicFactors[i / 3];
-    }
-    virtualObjectShader.setVec3Array(
-        "u_SphericalHarmonicsCoefficients", sphericalHarmonicsCoefficients);
-  }
-
-  /** Configures the session with feature settings. */
-  private void configureSession() {
-    Config config = session.getConfig();
-    config.setLightEstimationMode(Config.LightEstimationMode.ENVIRONMENTAL_HDR);
-//    if (session.isDepthModeSupported(Config.DepthMode.AUTOMATIC)) {
-//      config.setDepthMode(Config.DepthMode.AUTOMATIC);
-//    } else {
-//      config.setDepthMode(Config.DepthMode.DISABLED);
-//    }
-    config.setDepthMode(Config.DepthMode.DISABLED);
-    if (instantPlacementSettings.isInstantPlacementEnabled()) {
-      config.setInstantPlacementMode(InstantPlacementMode.LOCAL_Y_UP);
-    } else {
-      config.setInstantPlacementMode(InstantPlacementMode.DISABLED);
-    }
-    // don't detect planes
-//    config.setPlaneFindingMode(Config.PlaneFindingMode.DISABLED);
-    // don't match framerate to camera
-    config.setUpdateMode(Config.UpdateMode.LATEST_CAMERA_IMAGE);
-    // use stereo camera
-    CameraConfigFilter cameraConfigFilter = new CameraConfigFilter(session);
-    cameraConfigFilter.setStereoCameraUsage(java.util.EnumSet.of(CameraConfig.StereoCameraUsage.REQUIRE_AND_USE));
-    List<CameraConfig> cameraConfigs = session.getSupportedCameraConfigs(cameraConfigFilter);
-    if (!cameraConfigs.isEmpty()) {
-      session.setCameraConfig(cameraConfigs.get(0));
-    } else {
-//      new AlertDialog.Builder(this).setMessage("no stereo").show();
-    }
-    session.configure(config);
-  }
-
-  private void saveLastFrame(int width, int height) {
-    int size = width * height;
-    int[] imageArray = new int[size];
-    IntBuffer intBuffer = IntBuffer.allocate(size);
-    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-    GLES30.glReadPixels(0, 0, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, intBuffer);
-    int[] imageArray2 = intBuffer.array();
-    for (int i=0; i < height; i++) {
-      for (int j=0; j < width; j++) {
-        imageArray[(height - i - 1) * width + j] = imageArray2[i * width + j];
-      }
-    }
-    bitmap.copyPixelsFromBuffer(IntBuffer.wrap(imageArray));
-    File imageFile = new File(getExternalFilesDir(null) + "/" + this.fileName.replace(".mp4", ".jpg"));
-    try {
-      imageFile.delete();
-      FileOutputStream fileOutputStream = new FileOutputStream(imageFile);
-      bitmap.compress(Bitmap.CompressFormat.JPEG, 50, fileOutputStream);
-      fileOutputStream.close();
-    } catch (IOException e) {
-      Log.e(TAG, "Failed to save preview image: ", e);
-    }
+  protected BenchmarkSection createSection() {
+    return new ObjectGenerationSection(this, getTapHelper());
   }
 }
@@ -0,0 +1,759 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+/*
+ * Copyright 2017 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmark.augmented_object_generation;
+
+import android.app.Activity;
+import android.content.DialogInterface;
+import android.media.Image;
+import android.opengl.GLES30;
+import android.opengl.Matrix;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.MotionEvent;
+import androidx.appcompat.app.AlertDialog;
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Camera;
+import com.google.ar.core.CameraConfig;
+import com.google.ar.core.CameraConfigFilter;
+import com.google.ar.core.Config;
+import com.google.ar.core.Config.InstantPlacementMode;
+import com.google.ar.core.DepthPoint;
+import com.google.ar.core.Frame;
+import com.google.ar.core.HitResult;
+import com.google.ar.core.InstantPlacementPoint;
+import com.google.ar.core.LightEstimate;
+import com.google.ar.core.Plane;
+import com.google.ar.core.PlaybackStatus;
+import com.google.ar.core.Point;
+import com.google.ar.core.Point.OrientationMode;
+import com.google.ar.core.PointCloud;
+import com.google.ar.core.RecordingStatus;
+import com.google.ar.core.Session;
+import com.google.ar.core.TrackData;
+import com.google.ar.core.Trackable;
+import com.google.ar.core.TrackingState;
+
+import benchmark.benchmark.BenchmarkActivity;
+import benchmark.benchmark.BenchmarkSection;
+import benchmark.benchmark.FrameProfiler;
+import benchmark.benchmark.FrameRecorder;
+import benchmark.benchmark.GoldenImageValidator;
+import benchmark.benchmark.RenderParameters;
+import benchmark.common.helpers.DepthSettings;
+import benchmark.common.helpers.InstantPlacementSettings;
+import benchmark.common.helpers.SnackbarHelper;
+import benchmark.common.helpers.TapHelper;
+import benchmark.common.helpers.TrackingStateHelper;
+import benchmark.common.samplerender.FrameCapture;
+import benchmark.common.samplerender.Framebuffer;
+import benchmark.common.samplerender.GLError;
+import benchmark.common.samplerender.GpuTimerPool;
+import benchmark.common.samplerender.Mesh;
+import benchmark.common.samplerender.SampleRender;
+import benchmark.common.samplerender.SceneUniforms;
+import benchmark.common.samplerender.Shader;
+import benchmark.common.samplerender.Texture;
+import benchmark.common.samplerender.VertexBuffer;
+import benchmark.common.samplerender.arcore.BackgroundRenderer;
+import benchmark.common.samplerender.arcore.PlaneRenderer;
+import benchmark.common.samplerender.arcore.SpecularCubemapFilter;
+
+import com.google.ar.core.exceptions.CameraNotAvailableException;
+import com.google.ar.core.exceptions.NotYetAvailableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import benchmark.benchmark.R;
+
+/**
+ * Places ARCore pawns on planes at the taps stored in the recording, lit with environmental HDR.
+ * The shaders, textures and meshes are loaded once and reused for every recording played back by
+ * the host activity. In stress mode the pawns are placed by an {@link AnchorStressGenerator}
+ * instead, in steps of increasing object counts.
+ */
+public class ObjectGenerationSection implements BenchmarkSection {
+
+  private static final String TAG = ObjectGenerationSection.class.getSimpleName();
+
+  // See the definition of updateSphericalHarmonicsCoefficients for an explanation of these
+  // constants.
+  private static final float[] sphericalHarmonicFactors = {
+    0.282095f,
+    -0.325735f,
+    0.325735f,
+    -0.325735f,
+    0.273137f,
+    -0.273137f,
+    0.078848f,
+    -0.273137f,
+    0.136569f,
+  };
+
+  private static final float Z_NEAR = 0.1f;
+  private static final float DEFAULT_Z_FAR = 100f;
+
+  // Assumed distance from the device camera to the surface on which user will try to place objects.
+  // This value affects the apparent scale of objects while the tracking method of the
+  // Instant Placement point is SCREENSPACE_WITH_APPROXIMATE_DISTANCE.
+  // Values in the [0.2, 2.0] meter range are a good choice for most AR experiences. Use lower
+  // values for AR experiences where users are expected to place objects on surfaces close to the
+  // camera. Use larger values for experiences where the user will likely be standing and trying to
+  // place an object on the ground or floor in front of them.
+  private static final float APPROXIMATE_DISTANCE_METERS = 2.0f;
+
+  // Data tracks to record screen taps, phase information
+  private static final UUID TAP_TRACK_ID = UUID.fromString("53069eb5-21ef-4946-b71c-6ac4979216a6");
+  private static final UUID PHASE_TRACK_ID = UUID.fromString("53069eb5-21ef-4946-b71c-6ac4979216a7");
+
+  private final Activity activity;
+  private final TapHelper tapHelper;
+  private final SnackbarHelper messageSnackbarHelper = new SnackbarHelper();
+  private final TrackingStateHelper trackingStateHelper;
+  private final DepthSettings depthSettings = new DepthSettings();
+  private final InstantPlacementSettings instantPlacementSettings = new InstantPlacementSettings();
+  // Cubemap size and samples, virtual scene resolution, point size and far plane.
+  private final RenderParameters renderParameters;
+
+  // Rendering. The Renderers are created here, and initialized when the GL surface is created.
+  private PlaneRenderer planeRenderer;
+  private BackgroundRenderer backgroundRenderer;
+  private Framebuffer virtualSceneFramebuffer;
+  private boolean hasSetTextureNames = false;
+  // Camera and lighting uniform blocks, uploaded once per frame for all shaders.
+  private SceneUniforms sceneUniforms;
+
+  // Point Cloud
+  private VertexBuffer pointCloudVertexBuffer;
+  private Mesh pointCloudMesh;
+  private Shader pointCloudShader;
+  // Keep track of the last point cloud rendered to avoid updating the VBO if point cloud
+  // was not changed.  Do this using the timestamp since we can't compare PointCloud objects.
+  private long lastPointCloudTimestamp = 0;
+
+  // Virtual object (ARCore pawn)
+  private Mesh virtualObjectMesh;
+  private Shader virtualObjectShader;
+  private final ArrayList<Anchor> anchors = new ArrayList<>();
+
+  // Environmental HDR
+  private Texture dfgTexture;
+  private SpecularCubemapFilter cubemapFilter;
+
+  // Temporary matrix allocated here to reduce number of allocations for each frame.
+  private final float[] modelMatrix = new float[16];
+  private final float[] viewMatrix = new float[16];
+  private final float[] projectionMatrix = new float[16];
+  private final float[] sphericalHarmonicsCoefficients = new float[9 * 3];
+  private final float[] worldLightDirection = {0.0f, 0.0f, 0.0f, 0.0f};
+  private final float[] viewLightDirection = new float[4]; // view x world light direction
+
+  // Current recording
+  private Session session;
+  private String recordingName;
+
+  // FPS and Runtime Log
+  private FrameRecorder frameRecorder;
+  private final FrameProfiler frameProfiler = new FrameProfiler();
+  private int currentPhase = 1;
+
+  private GpuTimerPool gpuTimerPool;
+  private FrameCapture frameCapture;
+  private GoldenImageValidator goldenImageValidator;
+  // Places the objects instead of the recorded taps in stress mode, null otherwise.
+  private AnchorStressGenerator stressGenerator;
+
+  /** @param tapHelper Source of taps while the session is not playing back a recording */
+  public ObjectGenerationSection(Activity activity, TapHelper tapHelper) {
+    this.activity = activity;
+    this.tapHelper = tapHelper;
+    renderParameters = new RenderParameters(activity.getIntent(), DEFAULT_Z_FAR);
+    trackingStateHelper = new TrackingStateHelper(activity);
+    depthSettings.onCreate(activity);
+    instantPlacementSettings.onCreate(activity);
+  }
+
+  @Override
+  public void onSurfaceCreated(SampleRender render) {
+    // Prepare the rendering objects. This involves reading shaders and 3D model files, so may throw
+    // an IOException.
+    try {
+      render.setRenderQueueEnabled(renderParameters.isRenderQueueEnabled());
+      sceneUniforms = new SceneUniforms(render);
+      planeRenderer = new PlaneRenderer(render);
+      backgroundRenderer = new BackgroundRenderer(render);
+      virtualSceneFramebuffer = new Framebuffer(render, /*width=*/ 1, /*height=*/ 1);
+
+      cubemapFilter =
+          new SpecularCubemapFilter(
+              render,
+              renderParameters.getCubemapResolution(),
+              renderParameters.getCubemapSamples());
+      // Load DFG lookup table for environmental lighting
+      dfgTexture =
+          new Texture(
+              render,
+              Texture.Target.TEXTURE_2D,
+              Texture.WrapMode.CLAMP_TO_EDGE,
+              /*useMipmaps=*/ false);
+      // The dfg.raw file is a raw half-float texture with two channels.
+      final int dfgResolution = 64;
+      final int dfgChannels = 2;
+      final int halfFloatSize = 2;
+
+      ByteBuffer buffer =
+          ByteBuffer.allocateDirect(dfgResolution * dfgResolution * dfgChannels * halfFloatSize);
+      try (InputStream is = activity.getAssets().open("models/dfg.raw")) {
+        is.read(buffer.array());
+      }
+      // SampleRender abstraction leaks here.
+      GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, dfgTexture.getTextureId());
+      GLError.maybeThrowGLException("Failed to bind DFG texture", "glBindTexture");
+      GLES30.glTexImage2D(
+          GLES30.GL_TEXTURE_2D,
+          /*level=*/ 0,
+          GLES30.GL_RG16F,
+          /*width=*/ dfgResolution,
+          /*height=*/ dfgResolution,
+          /*border=*/ 0,
+          GLES30.GL_RG,
+          GLES30.GL_HALF_FLOAT,
+          buffer);
+      GLError.maybeThrowGLException("Failed to populate DFG texture", "glTexImage2D");
+
+      // Point cloud
+      pointCloudShader =
+          Shader.createFromAssets(
+                  render, "shaders/point_cloud.vert", "shaders/point_cloud.frag", /*defines=*/ null)
+              .setVec4(
+                  "u_Color", new float[] {31.0f / 255.0f, 188.0f / 255.0f, 210.0f / 255.0f, 1.0f})
+              .setFloat("u_PointSize", renderParameters.getPointSize());
+      SceneUniforms.attachCameraBlock(pointCloudShader);
+      // four entries per vertex: X, Y, Z, confidence
+      pointCloudVertexBuffer =
+          new VertexBuffer(render, /*numberOfEntriesPerVertex=*/ 4, /*entries=*/ null);
+      final VertexBuffer[] pointCloudVertexBuffers = {pointCloudVertexBuffer};
+      pointCloudMesh =
+          new Mesh(
+              render, Mesh.PrimitiveMode.POINTS, /*indexBuffer=*/ null, pointCloudVertexBuffers);
+
+      // Virtual object to render (ARCore pawn)
+      Texture virtualObjectAlbedoTexture =
+          Texture.createFromAsset(
+              render,
+              "models/pawn_albedo.png",
+              Texture.WrapMode.CLAMP_TO_EDGE,
+              Texture.ColorFormat.SRGB);
+      Texture virtualObjectPbrTexture =
+          Texture.createFromAsset(
+              render,
+              "models/pawn_roughness_metallic_ao.png",
+              Texture.WrapMode.CLAMP_TO_EDGE,
+              Texture.ColorFormat.LINEAR);
+      virtualObjectMesh = Mesh.createFromAsset(render, "models/pawn.obj");
+      virtualObjectShader =
+          Shader.createFromAssets(
+                  render,
+                  "shaders/environmental_hdr.vert",
+                  "shaders/environmental_hdr.frag",
+                  /*defines=*/ new HashMap<String, String>() {
+                    {
+                      put(
+                          "NUMBER_OF_MIPMAP_LEVELS",
+                          Integer.toString(cubemapFilter.getNumberOfMipmapLevels()));
+                    }
+                  })
+              .setTexture("u_AlbedoTexture", virtualObjectAlbedoTexture)
+              .setTexture("u_RoughnessMetallicAmbientOcclusionTexture", virtualObjectPbrTexture)
+              .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
+              .setTexture("u_DfgTexture", dfgTexture);
+      SceneUniforms.attachCameraBlock(virtualObjectShader);
+      SceneUniforms.attachLightingBlock(virtualObjectShader);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to read a required asset file", e);
+      messageSnackbarHelper.showError(activity, "Failed to read a required asset file: " + e);
+    }
+    gpuTimerPool = new GpuTimerPool(render);
+    frameCapture = new FrameCapture(render);
+  }
+
+  @Override
+  public void onSurfaceChanged(SampleRender render, int width, int height) {
+    virtualSceneFramebuffer.resize(renderParameters.scale(width), renderParameters.scale(height));
+  }
+
+  @Override
+  public void onRecordingStarted(Session session, String recordingName, FrameRecorder frameRecorder) {
+    this.session = session;
+    this.recordingName = recordingName;
+    this.frameRecorder = frameRecorder;
+    // Anchors of the previous recording would otherwise be drawn in this one.
+    for (Anchor anchor : anchors) {
+      anchor.detach();
+    }
+    anchors.clear();
+    lastPointCloudTimestamp = 0;
+    currentPhase = 1;
+    frameCapture.setPeriodicCapture(
+        BenchmarkActivity.getCaptureInterval(activity.getIntent()),
+        BenchmarkActivity.getCaptureDirectory(
+            activity, BenchmarkActivity.getSectionKey(activity.getIntent(), recordingName)));
+    goldenImageValidator =
+        new GoldenImageValidator(activity, activity.getIntent(), recordingName, frameCapture);
+    int[] stressObjectCounts = BenchmarkActivity.getStressObjectCounts(activity.getIntent());
+    stressGenerator =
+        stressObjectCounts.length > 0
+            ? new AnchorStressGenerator(
+                stressObjectCounts, BenchmarkActivity.getStressStepFrames(activity.getIntent()))
+            : null;
+  }
+
+  @Override
+  public void onRecordingFinished(SampleRender render) {
+    goldenImageValidator.finish();
+    if (stressGenerator != null) {
+      stressGenerator.logIncompleteSteps();
+    }
+    frameCapture.capture(BenchmarkActivity.getPreviewFile(
+        activity, BenchmarkActivity.getSectionKey(activity.getIntent(), recordingName)));
+    frameRecorder = null;
+  }
+
+  @Override
+  public void onSurfaceDestroyed(SampleRender render) {
+    if (gpuTimerPool != null) {
+      gpuTimerPool.close();
+    }
+    if (frameCapture != null) {
+      frameCapture.close();
+    }
+  }
+
+  @Override
+  public Frame onDrawFrame(SampleRender render, Session session) {
+    long frameTime = System.currentTimeMillis();
+    long frameTimeNanos = System.nanoTime();
+    frameProfiler.beginFrame();
+
+    render.clear(null, 0f, 0f, 0f, 1f);
+
+    // Texture names should only be set once on a GL thread unless they change. This is done during
+    // onDrawFrame rather than onSurfaceCreated since the session is not guaranteed to have been
+    // initialized during the execution of onSurfaceCreated.
+    if (!hasSetTextureNames) {
+      session.setCameraTextureNames(
+          new int[] {backgroundRenderer.getCameraColorTexture().getTextureId()});
+      hasSetTextureNames = true;
+    }
+
+    // -- Update per-frame state
+
+    // Obtain the current frame from ARSession. When the configuration is set to
+    // UpdateMode.BLOCKING (it is by default), this will throttle the rendering to the
+    // camera framerate.
+    Frame frame;
+    // ARCore Processing Time
+    long processTime = System.currentTimeMillis();
+    try {
+      frameProfiler.begin(FrameProfiler.STAGE_SESSION_UPDATE);
+      frame = session.update();
+      frameProfiler.end(FrameProfiler.STAGE_SESSION_UPDATE);
+    } catch (CameraNotAvailableException e) {
+      Log.e(TAG, "Camera not available during onDrawFrame", e);
+      messageSnackbarHelper.showError(activity, "Camera not available. Try restarting the app.");
+      return null;
+    }
+    // Frames without a new camera image are neither drawn nor recorded if the render loop asks so.
+    if (!render.beginCameraFrame(frame.getTimestamp())) {
+      return frame;
+    }
+    gpuTimerPool.beginFrame();
+    Camera camera = frame.getCamera();
+    // Get projection matrix.
+    camera.getProjectionMatrix(projectionMatrix, 0, Z_NEAR, renderParameters.getZFar());
+
+    // Get camera matrix and draw.
+    camera.getViewMatrix(viewMatrix, 0);
+    sceneUniforms.setCamera(viewMatrix, projectionMatrix);
+
+    // Input Handling Time
+    long handleInputTime = System.currentTimeMillis();
+    processTime = handleInputTime - processTime;
+
+    // Handle one tap per frame, or place the objects of the stress test.
+    frameProfiler.begin(FrameProfiler.STAGE_INPUT);
+    if (stressGenerator != null) {
+      stressGenerator.update(session, camera, anchors);
+    } else {
+      handleTap(frame, camera);
+    }
+    frameProfiler.end(FrameProfiler.STAGE_INPUT);
+    handleInputTime = System.currentTimeMillis() - handleInputTime;
+
+    // Keep the screen unlocked while tracking, but allow it to lock when tracking stops.
+    trackingStateHelper.updateKeepScreenOnFlag(camera.getTrackingState());
+
+    // Read recording phase data. The phase of a stress test is its number of objects.
+    if (stressGenerator != null) {
+      currentPhase = stressGenerator.getObjectCount();
+    } else if (session.getPlaybackStatus() == PlaybackStatus.OK) {
+      for (TrackData trackData : frame.getUpdatedTrackData(PHASE_TRACK_ID)) {
+        ByteBuffer payload = trackData.getData();
+        IntBuffer intBuffer = payload.asIntBuffer();
+        int[] phase = new int[1];
+        intBuffer.get(phase);
+        currentPhase = phase[0];
+        break;
+      }
+    }
+
+    // Update BackgroundRenderer state to match the depth settings.
+    try {
+      backgroundRenderer.setUseDepthVisualization(
+          render, depthSettings.depthColorVisualizationEnabled());
+      backgroundRenderer.setUseOcclusion(render, depthSettings.useDepthForOcclusion());
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to read a required asset file", e);
+      messageSnackbarHelper.showError(activity, "Failed to read a required asset file: " + e);
+      return frame;
+    }
+    // BackgroundRenderer.updateDisplayGeometry must be called every frame to update the coordinates
+    // used to draw the background camera image.
+    backgroundRenderer.updateDisplayGeometry(frame);
+
+    if (camera.getTrackingState() == TrackingState.TRACKING
+        && (depthSettings.useDepthForOcclusion()
+            || depthSettings.depthColorVisualizationEnabled())) {
+      try (Image depthImage = frame.acquireDepthImage()) {
+        backgroundRenderer.updateCameraDepthTexture(depthImage);
+      } catch (NotYetAvailableException e) {
+        // This normally means that depth data is not available yet. This is normal so we will not
+        // spam the logcat with this.
+      }
+    }
+
+    // -- Draw background
+    if (frame.getTimestamp() != 0) {
+      // Suppress rendering if the camera did not produce the first frame yet. This is to avoid
+      // drawing possible leftover data from previous sessions if the texture is reused.
+      frameProfiler.begin(FrameProfiler.STAGE_BACKGROUND);
+      gpuTimerPool.begin(GpuTimerPool.PASS_BACKGROUND);
+      backgroundRenderer.drawBackground(render);
+      gpuTimerPool.end(GpuTimerPool.PASS_BACKGROUND);
+      frameProfiler.end(FrameProfiler.STAGE_BACKGROUND);
+    }
+
+    // If not tracking, don't draw 3D objects.
+    if (camera.getTrackingState() == TrackingState.PAUSED) {
+      return frame;
+    }
+
+    // Update lighting parameters, then upload the camera and lighting blocks for all shaders.
+    updateLightEstimation(frame.getLightEstimate(), viewMatrix);
+    sceneUniforms.update();
+
+    // -- Draw non-occluded virtual objects (planes, point cloud)
+
+    // Visualize tracked points.
+    // Use try-with-resources to automatically release the point cloud.
+    frameProfiler.begin(FrameProfiler.STAGE_POINT_CLOUD);
+    gpuTimerPool.begin(GpuTimerPool.PASS_POINT_CLOUD);
+    try (PointCloud pointCloud = frame.acquirePointCloud()) {
+      if (pointCloud.getTimestamp() > lastPointCloudTimestamp) {
+        pointCloudVertexBuffer.set(pointCloud.getPoints());
+        lastPointCloudTimestamp = pointCloud.getTimestamp();
+      }
+      render.draw(pointCloudMesh, pointCloudShader);
+    }
+    gpuTimerPool.end(GpuTimerPool.PASS_POINT_CLOUD);
+    frameProfiler.end(FrameProfiler.STAGE_POINT_CLOUD);
+
+    // Visualize planes.
+    frameProfiler.begin(FrameProfiler.STAGE_PLANES);
+    gpuTimerPool.begin(GpuTimerPool.PASS_PLANES);
+    planeRenderer.drawPlanes(
+        render, session.getAllTrackables(Plane.class), camera.getDisplayOrientedPose());
+    gpuTimerPool.end(GpuTimerPool.PASS_PLANES);
+    frameProfiler.end(FrameProfiler.STAGE_PLANES);
+
+    // -- Draw occluded virtual objects
+
+    // Visualize anchors created by touch.
+    frameProfiler.begin(FrameProfiler.STAGE_VIRTUAL_OBJECTS);
+    gpuTimerPool.begin(GpuTimerPool.PASS_VIRTUAL_SCENE);
+    render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
+    for (Anchor anchor : anchors) {
+      if (anchor.getTrackingState() != TrackingState.TRACKING) {
+        continue;
+      }
+
+      // Get the current pose of an Anchor in world space. The Anchor pose is updated
+      // during calls to session.update() as ARCore refines its estimate of the world.
+      anchor.getPose().toMatrix(modelMatrix, 0);
+
+      // Update shader properties and queue the draw, the queue draws the objects front to back.
+      // The view and projection are read from the camera block.
+      virtualObjectShader.setMat4("u_Model", modelMatrix);
+      render.queue(
+          virtualObjectMesh,
+          virtualObjectShader,
+          virtualSceneFramebuffer,
+          SampleRender.getViewDepth(viewMatrix, modelMatrix[12], modelMatrix[13], modelMatrix[14]));
+    }
+    render.flushQueue();
+    gpuTimerPool.end(GpuTimerPool.PASS_VIRTUAL_SCENE);
+    frameProfiler.end(FrameProfiler.STAGE_VIRTUAL_OBJECTS);
+
+    // Compose the virtual scene with the background.
+    frameProfiler.begin(FrameProfiler.STAGE_COMPOSITE);
+    gpuTimerPool.begin(GpuTimerPool.PASS_COMPOSITE);
+    backgroundRenderer.drawVirtualScene(
+        render, virtualSceneFramebuffer, Z_NEAR, renderParameters.getZFar());
+    gpuTimerPool.end(GpuTimerPool.PASS_COMPOSITE);
+    frameProfiler.end(FrameProfiler.STAGE_COMPOSITE);
+
+    gpuTimerPool.endFrame();
+
+    frameProfiler.endFrame();
+    frameProfiler.begin(FrameProfiler.STAGE_LOG);
+    goldenImageValidator.onFrame(frame.getTimestamp());
+    frameCapture.endFrame();
+    if (frameRecorder != null && (stressGenerator == null || stressGenerator.isMeasuring())) {
+      frameRecorder.record(currentPhase, frameTime, frameTimeNanos, (int) processTime, (int) handleInputTime, (int) (System.currentTimeMillis() - frameTime), frameProfiler, gpuTimerPool, render);
+    }
+    frameProfiler.end(FrameProfiler.STAGE_LOG);
+    return frame;
+  }
+
+  // Handle only one tap per frame, as taps are usually low frequency compared to frame rate.
+  private void handleTap(Frame frame, Camera camera) {
+    MotionEvent tap;
+    if (session.getPlaybackStatus() == PlaybackStatus.OK) {
+      tap = null;
+      for (TrackData trackData : frame.getUpdatedTrackData(TAP_TRACK_ID)) {
+        ByteBuffer payload = trackData.getData();
+        FloatBuffer floatBuffer = payload.asFloatBuffer();
+        float[] tapCoords = new float[2];
+        floatBuffer.get(tapCoords);
+        tap = MotionEvent.obtain(SystemClock.uptimeMillis(), SystemClock.uptimeMillis(), MotionEvent.ACTION_UP, tapCoords[0], tapCoords[1], 0);
+        break;
+      }
+    } else {
+      tap = tapHelper.poll();
+    }
+
+    if (tap == null) {
+      return;
+    }
+
+    // Read screen tap data from recording.
+    if (session.getRecordingStatus() == RecordingStatus.OK) {
+      float[] tapCoords = new float[2];
+      tapCoords[0] = tap.getX();
+      tapCoords[1] = tap.getY();
+      ByteBuffer payload = ByteBuffer.allocate(4 * 2);
+      FloatBuffer floatBuffer = payload.asFloatBuffer();
+      floatBuffer.put(tapCoords);
+      try {
+        frame.recordTrackData(TAP_TRACK_ID, payload);
+      } catch (IllegalStateException e) {
+        Log.e(TAG, "Error in recording tap input into external data track.", e);
+      }
+    }
+
+    if (camera.getTrackingState() == TrackingState.TRACKING) {
+      List<HitResult> hitResultList;
+      if (instantPlacementSettings.isInstantPlacementEnabled()) {
+        hitResultList = frame.hitTestInstantPlacement(tap.getX(), tap.getY(), APPROXIMATE_DISTANCE_METERS);
+      } else {
+        hitResultList = frame.hitTest(tap);
+      }
+      for (HitResult hit : hitResultList) {
+        // If any plane, Oriented Point, or Instant Placement Point was hit, create an anchor.
+        Trackable trackable = hit.getTrackable();
+        // If a plane was hit, check that it was hit inside the plane polygon.
+        // DepthPoints are only returned if Config.DepthMode is set to AUTOMATIC.
+        if ((trackable instanceof Plane
+                && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())
+                && (PlaneRenderer.calculateDistanceToPlane(hit.getHitPose(), camera.getPose()) > 0))
+            || (trackable instanceof Point
+                && ((Point) trackable).getOrientationMode()
+                    == OrientationMode.ESTIMATED_SURFACE_NORMAL)
+            || (trackable instanceof InstantPlacementPoint)
+            || (trackable instanceof DepthPoint)) {
+          // Cap the number of objects created. This avoids overloading both the
+          // rendering system and ARCore.
+
+          // Adding an Anchor tells ARCore that it should track this position in
+          // space. This anchor is created on the Plane to place the 3D model
+          // in the correct position relative both to the world and to the plane.
+          anchors.add(hit.createAnchor());
+          // For devices that support the Depth API, shows a dialog to suggest enabling
+          // depth-based occlusion. This dialog needs to be spawned on the UI thread.
+          activity.runOnUiThread(this::showOcclusionDialogIfNeeded);
+
+          // Hits are sorted by depth. Consider only closest hit on a plane, Oriented Point, or
+          // Instant Placement Point.
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Shows a pop-up dialog on the first call, determining whether the user wants to enable
+   * depth-based occlusion. The result of this dialog can be retrieved with useDepthForOcclusion().
+   */
+  private void showOcclusionDialogIfNeeded() {
+    boolean isDepthSupported = session.isDepthModeSupported(Config.DepthMode.AUTOMATIC);
+    if (!depthSettings.shouldShowDepthEnableDialog() || !isDepthSupported) {
+      return; // Don't need to show dialog.
+    }
+
+    // Asks the user whether they want to use depth-based occlusion.
+    new AlertDialog.Builder(activity)
+        .setTitle(R.string.options_title_with_depth)
+        .setMessage(R.string.depth_use_explanation)
+        .setPositiveButton(
+            R.string.button_text_enable_depth,
+            (DialogInterface dialog, int which) -> {
+              depthSettings.setUseDepthForOcclusion(true);
+            })
+        .setNegativeButton(
+            R.string.button_text_disable_depth,
+            (DialogInterface dialog, int which) -> {
+              depthSettings.setUseDepthForOcclusion(false);
+            })
+        .show();
+  }
+
+  /** Update state based on the current frame's light estimation. */
+  private void updateLightEstimation(LightEstimate lightEstimate, float[] viewMatrix) {
+    if (lightEstimate.getState() != LightEstimate.State.VALID) {
+      sceneUniforms.setLightEstimateIsValid(false);
+      return;
+    }
+    sceneUniforms.setLightEstimateIsValid(true);
+
+    updateMainLight(
+        lightEstimate.getEnvironmentalHdrMainLightDirection(),
+        lightEstimate.getEnvironmentalHdrMainLightIntensity(),
+        viewMatrix);
+    updateSphericalHarmonicsCoefficients(
+        lightEstimate.getEnvironmentalHdrAmbientSphericalHarmonics());
+    cubemapFilter.update(lightEstimate.acquireEnvironmentalHdrCubeMap());
+  }
+
+  private void updateMainLight(float[] direction, float[] intensity, float[] viewMatrix) {
+    // We need the direction in a vec4 with 0.0 as the final component to transform it to view space
+    worldLightDirection[0] = direction[0];
+    worldLightDirection[1] = direction[1];
+    worldLightDirection[2] = direction[2];
+    Matrix.multiplyMV(viewLightDirection, 0, viewMatrix, 0, worldLightDirection, 0);
+    sceneUniforms.setMainLight(viewLightDirection, intensity);
+  }
+
+  private void updateSphericalHarmonicsCoefficients(float[] coefficients) {
+    // Pre-multiply the spherical harmonics coefficients before passing them to the shader. The
+    // constants in sphericalHarmonicFactors were derived from three terms:
+    //
+    // 1. The normalized spherical harmonics basis functions (y_lm)
+    //
+    // 2. The lambertian diffuse BRDF factor (1/pi)
+    //
+    // 3. A <cos> convolution. This is done to so that the resulting function outputs the irradiance
+    // of all incoming light over a hemisphere for a given surface normal, which is what the shader
+    // (environmental_hdr.frag) expects.
+    //
+    // You can read more details about the math here:
+    // https://google.github.io/filament/Filament.html#annex/sphericalharmonics
+
+    if (coefficients.length != 9 * 3) {
+      throw new IllegalArgumentException(
+          "The given coefficients array must be of length 27 (3 components per 9 coefficients");
+    }
+
+    // Apply each factor to every component of each coefficient
+    for (int i = 0; i < 9 * 3; ++i) {
+      sphericalHarmonicsCoefficients[i] = coefficients[i] * sphericalHarmonicFactors[i / 3];
+    }
+    sceneUniforms.setSphericalHarmonicsCoefficients(sphericalHarmonicsCoefficients);
+  }
+
+  /** Configures the session with feature settings. */
+  @Override
+  public void configureSession(Session session) {
+    Config config = session.getConfig();
+    config.setLightEstimationMode(Config.LightEstimationMode.ENVIRONMENTAL_HDR);
+//    if (session.isDepthModeSupported(Config.DepthMode.AUTOMATIC)) {
+//      config.setDepthMode(Config.DepthMode.AUTOMATIC);
+//    } else {
+//      config.setDepthMode(Config.DepthMode.DISABLED);
+//    }
+    config.setDepthMode(Config.DepthMode.DISABLED);
+    if (instantPlacementSettings.isInstantPlacementEnabled()) {
+      config.setInstantPlacementMode(InstantPlacementMode.LOCAL_Y_UP);
+    } else {
+      config.setInstantPlacementMode(InstantPlacementMode.DISABLED);
+    }
+    // don't detect planes
+//    config.setPlaneFindingMode(Config.PlaneFindingMode.DISABLED);
+    // don't match framerate to camera
+    config.setUpdateMode(Config.UpdateMode.LATEST_CAMERA_IMAGE);
+    // use stereo camera
+    CameraConfigFilter cameraConfigFilter = new CameraConfigFilter(session);
+    cameraConfigFilter.setStereoCameraUsage(java.util.EnumSet.of(CameraConfig.StereoCameraUsage.REQUIRE_AND_USE));
+    List<CameraConfig> cameraConfigs = session.getSupportedCameraConfigs(cameraConfigFilter);
+    if (!cameraConfigs.isEmpty()) {
+      session.setCameraConfig(cameraConfigs.get(0));
+    } else {
+//      new AlertDialog.Builder(this).setMessage("no stereo").show();
+    }
+    session.configure(config);
+  }
+}
@@ -120,7 +120,7 @@ class ARCoreSessionLifecycleHelper(
     } catch (e: CameraNotAvailableException) {
       exceptionCallback?.invoke(e)
     } catch (e: PlaybackFailedException) {
-      viewRecognition.fpsLog?.close()
+      viewRecognition.frameRecorder?.close()
       exceptionCallback?.invoke(e)
     }
   }
@@ -130,8 +130,8 @@ class ARCoreSessionLifecycleHelper(
   }
 
   override fun onDestroy(owner: LifecycleOwner) {
-    if (viewRecognition.fpsLog != null) {
-      viewRecognition.fpsLog!!.close()
+    if (viewRecognition.frameRecorder != null) {
+      viewRecognition.frameRecorder!!.close()
     }
 
     // Explicitly close ARCore Session to release native resources.
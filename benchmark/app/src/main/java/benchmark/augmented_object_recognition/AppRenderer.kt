@@ -41,9 +41,6 @@
 package benchmark.augmented_object_recognition;
 
 import android.app.Activity
-import android.graphics.Bitmap
-import android.opengl.GLES30
-import android.opengl.Matrix
 import android.util.Log
 import androidx.lifecycle.DefaultLifecycleObserver
 import androidx.lifecycle.LifecycleOwner
@@ -55,9 +52,16 @@ import benchmark.augmented_object_recognition.classification.MLKitObjectDetector
 import benchmark.augmented_object_recognition.classification.ObjectDetector
 import benchmark.augmented_object_recognition.render.LabelRender
 import benchmark.augmented_object_recognition.render.PointCloudRender
+import benchmark.benchmark.BenchmarkActivity
+import benchmark.benchmark.FrameProfiler
+import benchmark.benchmark.GoldenImageValidator
+import benchmark.benchmark.RenderParameters
 import benchmark.common.helpers.DisplayRotationHelper
 import benchmark.common.helpers.TrackingStateHelper
+import benchmark.common.samplerender.FrameCapture
+import benchmark.common.samplerender.GpuTimerPool
 import benchmark.common.samplerender.SampleRender
+import benchmark.common.samplerender.SceneUniforms
 import benchmark.common.samplerender.arcore.BackgroundRenderer
 import com.google.ar.core.*
 import com.google.ar.core.exceptions.*
@@ -65,8 +69,6 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.MainScope
 import kotlinx.coroutines.launch
-import java.io.File
-import java.io.FileOutputStream
 import java.io.IOException
 import java.nio.IntBuffer
 import java.util.*
@@ -78,6 +80,7 @@ import java.util.*
 class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) : DefaultLifecycleObserver, SampleRender.Renderer, CoroutineScope by MainScope() {
   companion object {
     val TAG = "HelloArRenderer"
+    const val Z_FAR = 100.0f
   }
 
   lateinit var viewRecognition: AugmentedObjectRecognitionActivityView
@@ -93,7 +96,8 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
 
   val viewMatrix = FloatArray(16)
   val projectionMatrix = FloatArray(16)
-  val viewProjectionMatrix = FloatArray(16)
+  // Camera uniform block shared by the point cloud and label shaders.
+  lateinit var sceneUniforms: SceneUniforms
 
   val arLabeledAnchors = Collections.synchronizedList(mutableListOf<ARLabeledAnchor>())
   var scanButtonWasPressed = false
@@ -103,53 +107,20 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
 
   var currentAnalyzer: ObjectDetector = mlKitAnalyzer
   var currentPhase = 1
+  private val frameProfiler = FrameProfiler()
 
-  private var hasTimerExtension = false
-  private val TIME_ELAPSED_EXT = 0x88BF
-  private val NUM_QUERIES = 10
-  private var timeQueries: IntArray = IntArray(NUM_QUERIES)
-  private var queryBuffer: IntArray = IntArray(1)
-  private var queryIndex = 0
+  private lateinit var gpuTimerPool: GpuTimerPool
+  private lateinit var frameCapture: FrameCapture
+  private lateinit var goldenImageValidator: GoldenImageValidator
 
   private fun cleanupCollectionResources() {
     try {
-      viewRecognition.fpsLog?.flush()
-      viewRecognition.fpsLog?.close()
-      for (i in 0 until NUM_QUERIES) {
-        if (timeQueries[i] >= 0) {
-          GLES30.glDeleteQueries(1, timeQueries, i)
-        }
-      }
+      viewRecognition.frameRecorder?.close()
     } catch (e: IOException) {
       Log.e(TAG, "Exception closing frame log: ", e)
     }
   }
 
-  private fun saveLastFrame(width: Int, height: Int) {
-    val size = width * height
-    val imageArray = IntArray(size)
-    val intBuffer = IntBuffer.allocate(size)
-    val bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
-    GLES30.glReadPixels(0, 0, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, intBuffer)
-    val imageArray2 = intBuffer.array()
-    for (i in 0 until height) {
-      for (j in 0 until width) {
-        imageArray[(height - i - 1) * width + j] = imageArray2[i * width + j]
-      }
-    }
-    bitmap.copyPixelsFromBuffer(IntBuffer.wrap(imageArray))
-    val imageFile: File =
-      File(recognitionActivity.getExternalFilesDir(null).toString() + "/" + recognitionActivity.fileName?.replace(".mp4", ".jpg"))
-    try {
-      imageFile.delete()
-      val fileOutputStream = FileOutputStream(imageFile)
-      bitmap.compress(Bitmap.CompressFormat.JPEG, 50, fileOutputStream)
-      fileOutputStream.close()
-    } catch (e: IOException) {
-      Log.e(recognitionActivity.TAG, "Failed to save preview image: ", e)
-    }
-  }
-
   override fun onResume(owner: LifecycleOwner) {
     displayRotationHelper.onResume()
   }
@@ -173,36 +144,59 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     backgroundRenderer = BackgroundRenderer(render).apply {
       setUseDepthVisualization(render, false)
     }
+    sceneUniforms = SceneUniforms(render)
     pointCloudRender.onSurfaceCreated(render)
     labelRenderer.onSurfaceCreated(render)
-
-    queryBuffer[0] = 0
-    queryIndex = 0
-    for (i in 0 until NUM_QUERIES) {
-      timeQueries[i] = -1
-    }
-    val extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS)
-    hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ")
+    render.setRenderQueueEnabled(
+      RenderParameters(recognitionActivity.intent, Z_FAR).isRenderQueueEnabled)
+    gpuTimerPool = GpuTimerPool(render)
+    frameCapture = FrameCapture(render)
+    frameCapture.setPeriodicCapture(
+      BenchmarkActivity.getCaptureInterval(recognitionActivity.intent),
+      BenchmarkActivity.getCaptureDirectory(
+        recognitionActivity,
+        BenchmarkActivity.getSectionKey(recognitionActivity.intent, recognitionActivity.fileName!!)
+      )
+    )
+    goldenImageValidator = GoldenImageValidator(
+      recognitionActivity, recognitionActivity.intent, recognitionActivity.fileName!!, frameCapture
+    )
   }
 
   override fun onSurfaceChanged(render: SampleRender?, width: Int, height: Int) {
     displayRotationHelper.onSurfaceChanged(width, height)
   }
 
+  override fun onSurfaceDestroyed(render: SampleRender) {
+    if (::gpuTimerPool.isInitialized) {
+      gpuTimerPool.close()
+    }
+    if (::frameCapture.isInitialized) {
+      frameCapture.close()
+    }
+  }
+
   var objectResults: List<DetectedObjectResult>? = null
 
   override fun onDrawFrame(render: SampleRender) {
     val frameTime = System.currentTimeMillis()
+    val frameTimeNanos = System.nanoTime()
+    frameProfiler.beginFrame()
 
     var session = recognitionActivity.arCoreSessionHelper.sessionCache ?: return
     if (session.playbackStatus == PlaybackStatus.FINISHED) {
       recognitionActivity.arCoreSessionHelper.onDestroy(recognitionActivity) // close session
-      saveLastFrame(viewRecognition.render!!.viewportWidth, viewRecognition.render!!.viewportHeight)
+      goldenImageValidator.finish()
+      frameCapture.capture(
+        BenchmarkActivity.getPreviewFile(
+          recognitionActivity,
+          BenchmarkActivity.getSectionKey(recognitionActivity.intent, recognitionActivity.fileName!!)
+        )
+      )
       try {
-        if (viewRecognition.fpsLog != null) {
-          viewRecognition.fpsLog?.flush()
-          viewRecognition.fpsLog?.close()
-          viewRecognition.fpsLog = null
+        if (viewRecognition.frameRecorder != null) {
+          viewRecognition.frameRecorder?.close()
+          viewRecognition.frameRecorder = null
         }
       } catch (e: IOException) {
       }
@@ -219,18 +213,24 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
 
     var processTime = System.currentTimeMillis()
     val frame = try {
-      session.update()
+      frameProfiler.begin(FrameProfiler.STAGE_SESSION_UPDATE)
+      session.update().also { frameProfiler.end(FrameProfiler.STAGE_SESSION_UPDATE) }
     } catch (e: CameraNotAvailableException) {
       Log.e(TAG, "Camera not available during onDrawFrame", e)
       showSnackbar("Camera not available. Try restarting the app.")
       return
     }
+    // Frames without a new camera image are neither drawn nor recorded if the render loop asks so.
+    if (!render.beginCameraFrame(frame.timestamp)) {
+      return
+    }
+    gpuTimerPool.beginFrame()
 
     // Get camera and projection matrices.
     val camera = frame.camera
     camera.getViewMatrix(viewMatrix, 0)
-    camera.getProjectionMatrix(projectionMatrix, 0, 0.01f, 100.0f)
-    Matrix.multiplyMM(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0)
+    camera.getProjectionMatrix(projectionMatrix, 0, 0.01f, Z_FAR)
+    sceneUniforms.setCamera(viewMatrix, projectionMatrix)
 
     processTime = System.currentTimeMillis() - processTime
 
@@ -264,9 +264,14 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     }
 
     backgroundRenderer.updateDisplayGeometry(frame)
+    frameProfiler.begin(FrameProfiler.STAGE_BACKGROUND)
+    gpuTimerPool.begin(GpuTimerPool.PASS_BACKGROUND)
     backgroundRenderer.drawBackground(render)
+    gpuTimerPool.end(GpuTimerPool.PASS_BACKGROUND)
+    frameProfiler.end(FrameProfiler.STAGE_BACKGROUND)
 
     var handleInputTime = System.currentTimeMillis()
+    frameProfiler.begin(FrameProfiler.STAGE_INPUT)
     if (scanButtonWasPressed) {
       scanButtonWasPressed = false
       val cameraImage = frame.tryAcquireCameraImage()
@@ -296,62 +301,60 @@ class AppRenderer(val recognitionActivity: AugmentedObjectRecognitionActivity) :
     }
 
     handleInputTime = System.currentTimeMillis() - handleInputTime
+    frameProfiler.end(FrameProfiler.STAGE_INPUT)
 
     // Handle tracking failures.
     if (camera.trackingState != TrackingState.TRACKING) {
       return
     }
 
+    sceneUniforms.update()
+
     // Draw point cloud.
+    frameProfiler.begin(FrameProfiler.STAGE_POINT_CLOUD)
+    gpuTimerPool.begin(GpuTimerPool.PASS_POINT_CLOUD)
     frame.acquirePointCloud().use { pointCloud ->
-      pointCloudRender.drawPointCloud(render, pointCloud, viewProjectionMatrix)
+      pointCloudRender.drawPointCloud(render, pointCloud)
     }
-
-    if (!hasTimerExtension) {
-      showSnackbar("OpenGL extension EXT_disjoint_timer_query is unavailable on this device")
-      return
-    }
-    if (timeQueries[queryIndex] < 0) {
-      GLES30.glGenQueries(1, timeQueries, queryIndex)
-    }
-    if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-      val queryResult = IntBuffer.allocate(1)
-      GLES30.glGetQueryObjectuiv(
-        timeQueries[(queryIndex + 1) % NUM_QUERIES],
-        GLES30.GL_QUERY_RESULT_AVAILABLE,
-        queryResult
-      )
-      if (queryResult.get() == GLES30.GL_TRUE) {
-        GLES30.glGetQueryObjectuiv(
-          timeQueries[(queryIndex + 1) % NUM_QUERIES],
-          GLES30.GL_QUERY_RESULT,
-          queryBuffer,
-          0
-        )
-      }
-    }
-    GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex])
+    gpuTimerPool.end(GpuTimerPool.PASS_POINT_CLOUD)
+    frameProfiler.end(FrameProfiler.STAGE_POINT_CLOUD)
 
     // Draw labels at their anchor position.
+    frameProfiler.begin(FrameProfiler.STAGE_VIRTUAL_OBJECTS)
+    gpuTimerPool.begin(GpuTimerPool.PASS_VIRTUAL_SCENE)
     for (arDetectedObject in arLabeledAnchors) {
       val anchor = arDetectedObject.anchor
       if (anchor.trackingState != TrackingState.TRACKING) continue
       labelRenderer.draw(
         render,
-        viewProjectionMatrix,
         anchor.pose,
-        camera.pose,
-        arDetectedObject.label
+        arDetectedObject.label,
+        viewMatrix
       )
     }
-
-    GLES30.glEndQuery(TIME_ELAPSED_EXT)
-    queryIndex = (queryIndex + 1) % NUM_QUERIES
-    if (viewRecognition.fpsLog != null) {
-      val data =
-        currentPhase.toString() + "," + frameTime + "," + processTime + "," + handleInputTime + "," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n";
-      viewRecognition.fpsLog!!.write(data)
-    }
+    render.flushQueue()
+
+    gpuTimerPool.end(GpuTimerPool.PASS_VIRTUAL_SCENE)
+    frameProfiler.end(FrameProfiler.STAGE_VIRTUAL_OBJECTS)
+
+    gpuTimerPool.endFrame()
+
+    frameProfiler.endFrame()
+    frameProfiler.begin(FrameProfiler.STAGE_LOG)
+    goldenImageValidator.onFrame(frame.timestamp)
+    frameCapture.endFrame()
+    viewRecognition.frameRecorder?.record(
+      currentPhase,
+      frameTime,
+      frameTimeNanos,
+      processTime.toInt(),
+      handleInputTime.toInt(),
+      (System.currentTimeMillis() - frameTime).toInt(),
+      frameProfiler,
+      gpuTimerPool,
+      render
+    )
+    frameProfiler.end(FrameProfiler.STAGE_LOG)
   }
 
   /**
@@ -44,7 +44,10 @@ import android.os.Bundle
 import android.util.Log
 import android.widget.Toast
 import androidx.appcompat.app.AppCompatActivity
+import benchmark.benchmark.AssetStager
 import benchmark.benchmark.BenchmarkActivity
+import benchmark.benchmark.FrameLogWriter
+import benchmark.benchmark.FrameRecorder
 import benchmark.common.helpers.FullScreenHelper
 import com.google.ar.core.CameraConfig
 import com.google.ar.core.CameraConfigFilter
@@ -71,21 +74,11 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
     super.onCreate(savedInstanceState)
 
     val intent = getIntent()
-    val activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0)
     useCloud = intent.getBooleanExtra("useCloud", false);
-    fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].recordingFileName
-    val f = File(getExternalFilesDir(null).toString() + "/" + fileName)
-    if (!f.exists()) try {
-      val `is`: InputStream = assets.open("recordings/$fileName")
-      var len: Int
-      val buffer = ByteArray(1024)
-      val fos = FileOutputStream(f)
-      while (`is`.read(buffer).also { len = it } > 0) {
-        fos.write(buffer, 0, len)
-      }
-      `is`.close()
-      fos.close()
-    } catch (e: Exception) {
+    fileName = intent.getStringExtra(BenchmarkActivity.RECORDING_FILE_NAME)
+    try {
+      AssetStager.getInstance(this).stageRecording(fileName!!)
+    } catch (e: IOException) {
       throw RuntimeException(e)
     }
 
@@ -104,7 +97,7 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
       Log.e(TAG, message, exception)
       Toast.makeText(this, message, Toast.LENGTH_LONG).show()
       setResult(RESULT_CANCELED)
-      viewRecognition.fpsLog?.close()
+      viewRecognition.frameRecorder?.close()
       finish()
     }
 
@@ -139,10 +132,9 @@ class AugmentedObjectRecognitionActivity : AppCompatActivity() {
     arCoreSessionHelper.bindView(viewRecognition)
     lifecycle.addObserver(viewRecognition)
 
-    val logPath = getExternalFilesDir(null)!!.getAbsolutePath() + "/frame-log";
-    Log.d(TAG, "Logging FPS to " + logPath);
-    viewRecognition.fpsLog = BufferedWriter(FileWriter(logPath, true));
-    viewRecognition.fpsLog?.write("test " + fileName + "\n")
+    val logFile = File(getExternalFilesDir(null), FrameLogWriter.FILE_NAME)
+    Log.d(TAG, "Logging FPS to " + logFile.absolutePath)
+    viewRecognition.frameRecorder = FrameRecorder(logFile, fileName!!)
   }
 
   override fun onRequestPermissionsResult(
@@ -47,13 +47,14 @@ import android.view.View
 import androidx.coordinatorlayout.widget.CoordinatorLayout
 import androidx.lifecycle.DefaultLifecycleObserver
 import androidx.lifecycle.LifecycleOwner
+import benchmark.benchmark.BenchmarkActivity
+import benchmark.benchmark.FrameRecorder
 import benchmark.benchmark.R
 import benchmark.common.helpers.SnackbarHelper
 import benchmark.common.samplerender.OffscreenRender
 import benchmark.common.samplerender.SampleRender
 import com.google.ar.core.Session
 import com.google.ar.core.exceptions.*
-import java.io.BufferedWriter
 import java.util.*
 
 /**
@@ -72,7 +73,9 @@ class AugmentedObjectRecognitionActivityView(val recognitionActivity: AugmentedO
             render = OffscreenRender(
                 surfaceView,
                 renderer,
-                recognitionActivity.assets
+                recognitionActivity.assets,
+                BenchmarkActivity.getSchedulingPolicy(recognitionActivity.intent),
+                BenchmarkActivity.getTargetFps(recognitionActivity.intent)
             )
         }
         override fun surfaceChanged(holder: SurfaceHolder, format: Int, width: Int, height: Int) {}
@@ -103,7 +106,7 @@ class AugmentedObjectRecognitionActivityView(val recognitionActivity: AugmentedO
     public val PHASE_TRACK_ID = UUID.fromString("53069eb5-21ef-4946-b71c-6ac4979216a7")
     private val PHASE_TRACK_MIME_TYPE = "application/recording-playback-phase"
 
-    var fpsLog: BufferedWriter? = null
+    var frameRecorder: FrameRecorder? = null
 
     override fun onResume(owner: LifecycleOwner) {
       //surfaceView.onResume()
@@ -113,5 +116,12 @@ class AugmentedObjectRecognitionActivityView(val recognitionActivity: AugmentedO
       //surfaceView.onPause()
     }
 
+    override fun onDestroy(owner: LifecycleOwner) {
+      // Observers are destroyed in reverse order, so the render thread stops before the session is closed.
+      if (::render.isInitialized) {
+        render.stop()
+      }
+    }
+
     fun post(action: Runnable) = root.post(action)
   }
\ No newline at end of file
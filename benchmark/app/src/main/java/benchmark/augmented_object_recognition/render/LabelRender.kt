@@ -18,6 +18,7 @@ package benchmark.augmented_object_recognition.render
 
 import benchmark.common.samplerender.Mesh
 import benchmark.common.samplerender.SampleRender
+import benchmark.common.samplerender.SceneUniforms
 import benchmark.common.samplerender.VertexBuffer
 import com.google.ar.core.Pose
 import benchmark.common.samplerender.Shader
@@ -88,6 +89,7 @@ class LabelRender {
       )
       .setDepthTest(false)
       .setDepthWrite(false)
+    SceneUniforms.attachCameraBlock(shader)
 
     val vertexBuffers = arrayOf(
       VertexBuffer(render, 2, NDC_QUAD_COORDS_BUFFER),
@@ -99,23 +101,23 @@ class LabelRender {
   val labelOrigin = FloatArray(3)
 
   /**
-   * Draws a label quad with text [label] at [pose]. The label will rotate to face [cameraPose] around the Y-axis.
+   * Queues a label quad with text [label] at [pose]. The label will rotate to face the camera of the camera block in
+   * [SceneUniforms] around the Y-axis. Labels are blended, so the render queue draws them back to front of the camera
+   * with [viewMatrix]; flush it with [SampleRender.flushQueue].
    */
   fun draw(
     render: SampleRender,
-    viewProjectionMatrix: FloatArray,
     pose: Pose,
-    cameraPose: Pose,
-    label: String
+    label: String,
+    viewMatrix: FloatArray
   ) {
     labelOrigin[0] = pose.tx()
     labelOrigin[1] = pose.ty()
     labelOrigin[2] = pose.tz()
     shader
-      .setMat4("u_ViewProjection", viewProjectionMatrix)
       .setVec3("u_LabelOrigin", labelOrigin)
-      .setVec3("u_CameraPos", cameraPose.translation)
       .setTexture("uTexture", cache.get(render, label))
-    render.draw(mesh, shader)
+    render.queue(mesh, shader, null,
+      SampleRender.getViewDepth(viewMatrix, labelOrigin[0], labelOrigin[1], labelOrigin[2]))
   }
 }
\ No newline at end of file
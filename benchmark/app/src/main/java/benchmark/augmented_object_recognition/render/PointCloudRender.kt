@@ -18,6 +18,7 @@ package benchmark.augmented_object_recognition.render
 
 import benchmark.common.samplerender.Mesh
 import benchmark.common.samplerender.SampleRender
+import benchmark.common.samplerender.SceneUniforms
 import benchmark.common.samplerender.Shader
 import benchmark.common.samplerender.VertexBuffer
 import com.google.ar.core.PointCloud
@@ -40,6 +41,7 @@ class PointCloudRender {
         "u_Color", floatArrayOf(31.0f / 255.0f, 188.0f / 255.0f, 210.0f / 255.0f, 1.0f)
       )
       .setFloat("u_PointSize", 5.0f)
+    SceneUniforms.attachCameraBlock(pointCloudShader)
 
     // four entries per vertex: X, Y, Z, confidence
     pointCloudVertexBuffer = VertexBuffer(render, 4, null)
@@ -49,16 +51,12 @@ class PointCloudRender {
     )
   }
 
-  fun drawPointCloud(
-    render: SampleRender,
-    pointCloud: PointCloud,
-    modelViewProjectionMatrix: FloatArray
-  ) {
+  /** Draws [pointCloud] with the view projection matrix of the camera block in [SceneUniforms]. */
+  fun drawPointCloud(render: SampleRender, pointCloud: PointCloud) {
     if (pointCloud.timestamp > lastPointCloudTimestamp) {
       pointCloudVertexBuffer.set(pointCloud.points)
       lastPointCloudTimestamp = pointCloud.timestamp
     }
-    pointCloudShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix)
     render.draw(pointCloudMesh, pointCloudShader)
   }
 }
\ No newline at end of file
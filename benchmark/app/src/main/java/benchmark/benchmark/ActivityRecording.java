@@ -24,6 +24,9 @@
 
 package benchmark.benchmark;
 
+import java.util.Collections;
+import java.util.Map;
+
 public class ActivityRecording {
     private Class<?> activity;
     private String recordingFileName;
@@ -32,6 +35,12 @@ public class ActivityRecording {
     private final boolean useCloud;
     private boolean requiresCredentialsFile;
     private boolean requiresGCPKeys;
+    private int warmupIterations = 0;
+    private int repetitions = 1;
+    private Map<String, Object> parameters = Collections.emptyMap();
+    private long[] goldenFrameTimes = new long[0];
+    private String sweepName;
+    private Map<String, Object> sweepParameters = Collections.emptyMap();
 
     public ActivityRecording(Class<?> activity, String recordingFileName, String sectionName, Boolean useCloud, Boolean requiresGCPKeys, Boolean requiresCredentialsFile) {
         this.activity = activity;
@@ -51,6 +60,14 @@ public class ActivityRecording {
         this.useCloud = useCloud;
     }
 
+    public ActivityRecording(Class<?> activity, String recordingFileName, String sectionName, Boolean useCloud, Boolean requiresGCPKeys, Boolean requiresCredentialsFile, int warmupIterations, int repetitions, Map<String, Object> parameters, long[] goldenFrameTimes) {
+        this(activity, recordingFileName, sectionName, useCloud, requiresGCPKeys, requiresCredentialsFile);
+        this.warmupIterations = warmupIterations;
+        this.repetitions = repetitions;
+        this.parameters = Collections.unmodifiableMap(parameters);
+        this.goldenFrameTimes = goldenFrameTimes.clone();
+    }
+
     public Class<?> getActivity() {
         return activity;
     }
@@ -90,4 +107,38 @@ public class ActivityRecording {
     public boolean doesRequireGCPKeys() {
         return requiresGCPKeys;
     }
+
+    /** Returns the number of runs before the measured repetitions whose results are discarded. */
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    /** Returns the section specific parameters, passed to the activity as intent extras. */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /** Returns the name of the sweep this section is a point of, null if it is not part of a sweep. */
+    public String getSweepName() {
+        return sweepName;
+    }
+
+    /** Returns the parameters set by the sweep for this point, also contained in {@link #getParameters()}. */
+    public Map<String, Object> getSweepParameters() {
+        return sweepParameters;
+    }
+
+    void setSweep(String sweepName, Map<String, Object> sweepParameters) {
+        this.sweepName = sweepName;
+        this.sweepParameters = Collections.unmodifiableMap(sweepParameters);
+    }
+
+    /** Returns the recording timestamps, in ms from its first frame, of the frames checked against golden images. */
+    public long[] getGoldenFrameTimes() {
+        return goldenFrameTimes.clone();
+    }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Copies assets to files that can be opened by path, e.g. recordings for
+ * {@code Session.setPlaybackDataset}, which cannot play an asset in place.
+ *
+ * <p>Uncompressed assets are copied from their offset in the APK with {@link
+ * FileChannel#transferFrom}, so the data does not pass through a Java buffer. A manifest in the
+ * files directory records the asset size and APK update time of every staged file, so unchanged
+ * files are not copied again; hashing the content instead would read the whole file on every
+ * launch. Files are written under a temporary name and renamed when complete, so an interrupted copy
+ * is never taken for a staged file.
+ *
+ * <p>{@link #prefetch} stages a file on a low priority background thread, e.g. the recording of the
+ * next section while the current one runs. {@link #stage} waits for a prefetch of the same file.
+ */
+public class AssetStager {
+    private static final String TAG = AssetStager.class.getSimpleName();
+
+    public static final String MANIFEST_NAME = "staged-assets.properties";
+    private static final String RECORDINGS_DIRECTORY = "recordings/";
+
+    private static AssetStager instance;
+
+    private final AssetManager assets;
+    private final File recordingsDirectory;
+    private final File manifestFile;
+    private final Properties manifest = new Properties();
+    // Staged files are invalidated whenever the APK, and so possibly an asset, is updated.
+    private final long apkUpdateTime;
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Guarded by this. Files are locked individually so that a prefetch does not delay staging another file.
+    private final Map<String, Object> targetLocks = new HashMap<>();
+    private final Map<String, Future<File>> prefetches = new HashMap<>();
+
+    private AssetStager(Context context) {
+        assets = context.getAssets();
+        recordingsDirectory = context.getExternalFilesDir(null);
+        manifestFile = new File(context.getFilesDir(), MANIFEST_NAME);
+        long updateTime = 0;
+        try {
+            updateTime = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Missing package info, staged assets are always copied", e);
+        }
+        apkUpdateTime = updateTime;
+        if (manifestFile.exists()) {
+            try (InputStream in = new FileInputStream(manifestFile)) {
+                manifest.load(in);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read " + manifestFile.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    public static synchronized AssetStager getInstance(Context context) {
+        if (instance == null) {
+            instance = new AssetStager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Returns the file of a recording in the external files directory, staging it first if needed. */
+    public File stageRecording(String recordingName) throws IOException {
+        return stage(RECORDINGS_DIRECTORY + recordingName, getRecordingFile(recordingName));
+    }
+
+    /** Stages a recording in the background. */
+    public void prefetchRecording(String recordingName) {
+        prefetch(RECORDINGS_DIRECTORY + recordingName, getRecordingFile(recordingName));
+    }
+
+    private File getRecordingFile(String recordingName) {
+        return new File(recordingsDirectory, recordingName);
+    }
+
+    /** Copies an asset to {@code target} unless it is already staged, and returns the target. */
+    public File stage(String assetPath, File target) throws IOException {
+        Future<File> prefetch;
+        synchronized (this) {
+            prefetch = prefetches.remove(target.getAbsolutePath());
+        }
+        if (prefetch != null) {
+            try {
+                prefetch.get();
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Prefetch of " + assetPath + " failed, staging again", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + assetPath);
+            }
+        }
+        // Only checks the manifest if the prefetch succeeded.
+        return copyIfChanged(assetPath, target);
+    }
+
+    /** Stages an asset on the background thread. Does nothing if it is already being prefetched. */
+    public synchronized void prefetch(String assetPath, File target) {
+        String key = target.getAbsolutePath();
+        if (!prefetches.containsKey(key)) {
+            prefetches.put(key, prefetchExecutor.submit(() -> copyIfChanged(assetPath, target)));
+        }
+    }
+
+    private synchronized Object getTargetLock(File target) {
+        String key = target.getAbsolutePath();
+        Object lock = targetLocks.get(key);
+        if (lock == null) {
+            lock = new Object();
+            targetLocks.put(key, lock);
+        }
+        return lock;
+    }
+
+    private File copyIfChanged(String assetPath, File target) throws IOException {
+        synchronized (getTargetLock(target)) {
+            AssetFileDescriptor descriptor = openUncompressed(assetPath);
+            try {
+                // The size of compressed assets is unknown without inflating them.
+                long assetLength = descriptor != null ? descriptor.getLength() : AssetFileDescriptor.UNKNOWN_LENGTH;
+                String fingerprint = assetLength + " " + apkUpdateTime;
+                String key = target.getAbsolutePath();
+                synchronized (manifest) {
+                    if (target.exists() && (fingerprint + " " + target.length()).equals(manifest.getProperty(key))) {
+                        return target;
+                    }
+                }
+
+                long startTime = SystemClock.elapsedRealtime();
+                File temporaryFile = new File(target.getPath() + ".tmp");
+                File directory = target.getParentFile();
+                if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Failed to create " + directory.getAbsolutePath());
+                }
+                try (FileOutputStream out = new FileOutputStream(temporaryFile)) {
+                    if (descriptor != null) {
+                        // Not closed separately, the descriptor owns the file.
+                        FileChannel in = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+                        in.position(descriptor.getStartOffset());
+                        transfer(in, out.getChannel(), assetLength);
+                    } else {
+                        try (InputStream in = assets.open(assetPath)) {
+                            transfer(Channels.newChannel(in), out.getChannel(), Long.MAX_VALUE);
+                        }
+                    }
+                }
+                if (target.exists() && !target.delete() || !temporaryFile.renameTo(target)) {
+                    throw new IOException("Failed to move " + temporaryFile.getAbsolutePath() + " to " + target.getAbsolutePath());
+                }
+                Log.i(TAG, "Staged " + assetPath + " (" + target.length() + " bytes) in "
+                        + (SystemClock.elapsedRealtime() - startTime) + " ms");
+                synchronized (manifest) {
+                    manifest.setProperty(key, fingerprint + " " + target.length());
+                    saveManifest();
+                }
+                return target;
+            } finally {
+                if (descriptor != null) {
+                    descriptor.close();
+                }
+            }
+        }
+    }
+
+    /** Returns null for assets that are compressed in the APK and can only be read as a stream. */
+    private AssetFileDescriptor openUncompressed(String assetPath) throws IOException {
+        try {
+            return assets.openFd(assetPath);
+        } catch (FileNotFoundException e) {
+            // Also thrown for missing assets, which assets.open() reports in the stream fallback.
+            return null;
+        }
+    }
+
+    /** Copies {@code length} bytes, or up to the end of the input if the length is Long.MAX_VALUE. */
+    private static void transfer(ReadableByteChannel in, FileChannel out, long length) throws IOException {
+        long position = 0;
+        while (position < length) {
+            long transferred = out.transferFrom(in, position, length - position);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+        }
+        if (length != Long.MAX_VALUE && position != length) {
+            throw new IOException("Asset ended after " + position + " of " + length + " bytes");
+        }
+    }
+
+    private void saveManifest() {
+        try (OutputStream out = new FileOutputStream(manifestFile)) {
+            manifest.store(out, "Assets staged by " + TAG + ": asset size, APK update time and file size");
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + manifestFile.getAbsolutePath(), e);
+        }
+    }
+}
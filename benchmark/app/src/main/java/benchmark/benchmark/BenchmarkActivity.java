@@ -25,13 +25,18 @@
 package benchmark.benchmark;
 
 import android.annotation.SuppressLint;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.hardware.Camera;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.CheckBox;
@@ -43,39 +48,94 @@ import android.widget.TextView;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SwitchCompat;
+import androidx.core.content.pm.PackageInfoCompat;
 
 import com.google.auth.oauth2.GoogleCredentials;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
-import benchmark.augmented_faces.AugmentedFacesActivity;
-import benchmark.augmented_image.AugmentedImageActivity;
 import benchmark.augmented_object_generation.AugmentedObjectGenerationActivity;
-import benchmark.augmented_object_recognition.AugmentedObjectRecognitionActivity;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.LocationPermissionHelper;
-import benchmark.geospatial.GeospatialActivity;
+import benchmark.common.samplerender.FrameCapture;
+import benchmark.common.samplerender.GLError;
+import benchmark.common.samplerender.GpuTimerPool;
+import benchmark.common.samplerender.OffscreenRender;
 
 public class BenchmarkActivity extends AppCompatActivity {
     private static final String TAG = BenchmarkActivity.class.getSimpleName();
     public static final String ACTIVITY_NUMBER = "benchmark.ACTIVITY_NUMBER";
 
-    // This is the order of activities that the app will open.
-    public static final ActivityRecording[] ACTIVITY_RECORDINGS = {
-            new ActivityRecording(AugmentedObjectGenerationActivity.class, "aug-obj-gen-1.mp4", "Object Generation", false),
-            new ActivityRecording(AugmentedObjectGenerationActivity.class, "aug-obj-gen-2.mp4", "Multiple Objects Interaction", false),
-            new ActivityRecording(AugmentedObjectGenerationActivity.class, "aug-obj-gen-3.mp4", "Scene Overloading", false),
-            new ActivityRecording(AugmentedFacesActivity.class, "aug-faces-1.mp4", "Augmented Faces", false),
-            new ActivityRecording(AugmentedImageActivity.class, "aug-img-1.mp4", "Augmented Image", false),
-            new ActivityRecording(GeospatialActivity.class, "aug-geo-1.mp4", "Geospatial", true, true, false),
-            new ActivityRecording(AugmentedObjectRecognitionActivity.class, "aug-obj-rcg-1.mp4", "Object Recognition", false),
-            new ActivityRecording(AugmentedObjectRecognitionActivity.class, "aug-obj-rcg-1.mp4", "Object Recognition", true, false, true),
-    };
+    public static final String RECORDING_FILE_NAME = "benchmark.RECORDING_FILE_NAME";
+    // SystemClock.elapsedRealtimeNanos() when the section activity was launched, for startup traces.
+    public static final String LAUNCH_TIME = "benchmark.LAUNCH_TIME";
+    // Render loop of the section, see OffscreenRender.SchedulingPolicy, and the frame rate of FIXED_RATE.
+    // Set per section in the suite manifest parameters, or for every section as extras of this activity.
+    public static final String SCHEDULING_POLICY = "benchmark.SCHEDULING_POLICY";
+    public static final String TARGET_FPS = "benchmark.TARGET_FPS";
+    // Parameters of the sweep point a section activity runs, part of its section key. Absent outside of sweeps.
+    public static final String SWEEP_POINT = "benchmark.SWEEP_POINT";
+    // Captures every Nth frame of each recording to captures/<section key> in the external files
+    // directory, 0 for none. Set per section in the manifest parameters, or as an extra of this activity.
+    public static final String CAPTURE_INTERVAL = "benchmark.CAPTURE_INTERVAL";
+    // Checks the frames at the goldenFramesMs of each section against golden images, see
+    // GoldenImageValidator. Set per section in the manifest parameters, or as extras of this activity.
+    public static final String VALIDATE = "benchmark.VALIDATE";
+    public static final String MIN_SSIM = "benchmark.MIN_SSIM";
+    public static final String MIN_PSNR = "benchmark.MIN_PSNR";
+    // Comma separated, ascending object counts of the Object Generation stress mode, and the frames
+    // measured for each count. Set per section in the manifest parameters, or as extras of this activity.
+    public static final String STRESS_OBJECTS = "benchmark.STRESS_OBJECTS";
+    public static final String STRESS_STEP_FRAMES = "benchmark.STRESS_STEP_FRAMES";
+    public static final int DEFAULT_STRESS_STEP_FRAMES = 300;
+    // Long array extra of a section activity with the goldenFramesMs of its section in the manifest.
+    public static final String GOLDEN_FRAMES = "benchmark.GOLDEN_FRAMES";
+    // When GL errors are checked while frames are drawn, see GLError.Policy, for every section. Every
+    // call is checked in debuggable builds and every frame in release builds by default.
+    public static final String GL_ERROR_CHECKS = "benchmark.GL_ERROR_CHECKS";
+
+    // Extras starting the benchmark without user interaction, e.g.
+    // adb shell am start -n MARAbenchmark.benchmark/benchmark.benchmark.BenchmarkActivity \
+    //     --ez benchmark.AUTORUN true --es benchmark.SECTIONS 0,3,4 --ei benchmark.REPETITIONS 5
+    public static final String EXTRA_AUTORUN = "benchmark.AUTORUN";
+    // Comma separated indices into the suite manifest; all available sections run if absent.
+    public static final String EXTRA_SECTIONS = "benchmark.SECTIONS";
+    // Override the warmup iterations and repetitions of every section in the manifest.
+    public static final String EXTRA_WARMUP_ITERATIONS = "benchmark.WARMUP_ITERATIONS";
+    public static final String EXTRA_REPETITIONS = "benchmark.REPETITIONS";
+    // Name of the stored run to compare against; the previous run if absent.
+    public static final String EXTRA_BASELINE = "benchmark.BASELINE";
+    // Thresholds at which differences to the baseline are flagged, see RunComparator.
+    public static final String EXTRA_SIGNIFICANCE_LEVEL = "benchmark.SIGNIFICANCE_LEVEL";
+    public static final String EXTRA_THRESHOLD_PERCENT = "benchmark.THRESHOLD_PERCENT";
+    private static final String COMPARISON_FILE_NAME = "comparison.txt";
+
+    // Sections in the order the app will open them, as declared in the suite manifest.
+    private List<ActivityRecording> activityRecordings = Collections.emptyList();
+    private long deviceSamplingIntervalMs = BenchmarkSuite.DEFAULT_DEVICE_SAMPLING_INTERVAL_MS;
+    // Samples thermal and power state from the start of the first run until results are reported.
+    private DeviceStateSampler deviceStateSampler;
+    // Every run of the benchmark, warmups first, in the order they are launched.
+    private final List<BenchmarkRun> runs = new ArrayList<>();
+    // First run handled by the running section activity; its startup traces follow in run order.
+    private int launchRunIndex;
+    private StartupResults[] startupResults = new StartupResults[0];
+    private int warmupIterationsOverride = -1;
+    private int repetitionsOverride = -1;
 
     private LinearLayout resultsDisplay;
 
@@ -92,18 +152,28 @@ public class BenchmarkActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         resultsDisplay = (LinearLayout) findViewById(R.id.results_display);
+        // Section activities run in this process, so they draw with this policy.
+        GLError.setPolicy(getGlErrorPolicy());
 
         Log.i(TAG, "MARAbenchmark External Files Directory: " + getExternalFilesDir(null).getAbsolutePath());
         TextView textView = new TextView(this);
         textView.setText("Sections to include:");
         resultsDisplay.addView(textView);
-        sectionCheckBoxes = new CheckBox[ACTIVITY_RECORDINGS.length];
+        try {
+            BenchmarkSuite suite = BenchmarkSuite.load(this);
+            activityRecordings = suite.getSections();
+            deviceSamplingIntervalMs = suite.getDeviceSamplingIntervalMs();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load the benchmark suite", e);
+            new AlertDialog.Builder(this).setMessage("Could not load benchmark suite: " + e.getMessage()).show();
+        }
+        sectionCheckBoxes = new CheckBox[activityRecordings.size()];
 
-        for (int i = 0; i < ACTIVITY_RECORDINGS.length; i++) {
-            ActivityRecording activityRecording = ACTIVITY_RECORDINGS[i];
+        for (int i = 0; i < activityRecordings.size(); i++) {
+            ActivityRecording activityRecording = activityRecordings.get(i);
             CheckBox checkBox = new CheckBox(this);
             checkBox.setChecked(true);
-            checkBox.setText(activityRecording.getSectionName() + (activityRecording.doesUseCloud() ? " (Cloud)" : ""));
+            checkBox.setText(getSectionLabel(activityRecording));
 
             if (activityRecording.doesUseCloud()) {
                 if (activityRecording.doesRequireGCPKeys()) {
@@ -158,6 +228,30 @@ public class BenchmarkActivity extends AppCompatActivity {
                 }
             }
         });
+
+        if (savedInstanceState == null && getIntent().getBooleanExtra(EXTRA_AUTORUN, false)) {
+            startFromIntent(getIntent());
+        }
+    }
+
+    private void startFromIntent(Intent intent) {
+        String selection = intent.getStringExtra(EXTRA_SECTIONS);
+        if (selection != null) {
+            boolean[] selected = new boolean[activityRecordings.size()];
+            for (String index : selection.split(",")) {
+                try {
+                    selected[Integer.parseInt(index.trim())] = true;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    Log.w(TAG, "Ignoring unknown section " + index);
+                }
+            }
+            for (int i = 0; i < sectionCheckBoxes.length; i++) {
+                sectionCheckBoxes[i].setChecked(selected[i] && sectionCheckBoxes[i].isEnabled());
+            }
+        }
+        warmupIterationsOverride = intent.getIntExtra(EXTRA_WARMUP_ITERATIONS, -1);
+        repetitionsOverride = intent.getIntExtra(EXTRA_REPETITIONS, -1);
+        onStartBenchmark(null);
     }
 
     private boolean hasGCPKeys() {
@@ -190,27 +284,261 @@ public class BenchmarkActivity extends AppCompatActivity {
     }
 
     public void onStartBenchmark(View view) {
-        File previousLog = new File(getExternalFilesDir(null).getAbsolutePath() + "/frame-log");
+        File previousLog = new File(getExternalFilesDir(null), FrameLogWriter.FILE_NAME);
         if (previousLog.exists() && !previousLog.delete()) {
             new AlertDialog.Builder(this).setMessage("Failed to remove previous benchmark results").show();
         }
+        File previousResults = new File(getExternalFilesDir(null), BenchmarkResults.FILE_NAME);
+        if (previousResults.exists() && !previousResults.delete()) {
+            new AlertDialog.Builder(this).setMessage("Failed to remove previous benchmark results").show();
+        }
+
+        runs.clear();
+        GoldenImageValidator.clearResults();
+        startupResults = new StartupResults[activityRecordings.size()];
+        for (int i = 0; i < activityRecordings.size(); i++) {
+            ActivityRecording activityRecording = activityRecordings.get(i);
+            activityRecording.setEnabled(sectionCheckBoxes[i].isChecked());
+            if (!activityRecording.isEnabled()) {
+                continue;
+            }
+            int warmupIterations = warmupIterationsOverride >= 0 ? warmupIterationsOverride : activityRecording.getWarmupIterations();
+            int repetitions = repetitionsOverride > 0 ? repetitionsOverride : activityRecording.getRepetitions();
+            for (int iteration = 0; iteration < warmupIterations; iteration++) {
+                runs.add(new BenchmarkRun(i, true));
+            }
+            for (int repetition = 0; repetition < repetitions; repetition++) {
+                runs.add(new BenchmarkRun(i, false));
+            }
+        }
+
+        if (!runs.isEmpty()) {
+            if (deviceStateSampler != null) {
+                deviceStateSampler.close();
+            }
+            deviceStateSampler = new DeviceStateSampler(this, deviceSamplingIntervalMs);
+            startRun(0);
+        }
+    }
+
+    /**
+     * Launches the activity of a run. Section hosts also take the directly following runs that use
+     * the same activity and settings, so these share one GL context and ARCore session; the request
+     * code is the index of the last run handled by the launch.
+     */
+    private void startRun(int runIndex) {
+        int sectionIndex = runs.get(runIndex).section;
+        ActivityRecording activityRecording = activityRecordings.get(sectionIndex);
+        Intent intent = new Intent(this, activityRecording.getActivity());
+        intent.putExtra(ACTIVITY_NUMBER, sectionIndex);
+        intent.putExtra(RECORDING_FILE_NAME, activityRecording.getRecordingFileName());
+        int lastRunIndex = runIndex;
+        if (SectionHostActivity.class.isAssignableFrom(activityRecording.getActivity())) {
+            List<String> recordingNames = new ArrayList<>();
+            recordingNames.add(activityRecording.getRecordingFileName());
+            while (lastRunIndex + 1 < runs.size()) {
+                ActivityRecording next = activityRecordings.get(runs.get(lastRunIndex + 1).section);
+                if (next.getActivity() != activityRecording.getActivity()
+                        || next.isUsingCloud() != activityRecording.isUsingCloud()
+                        || !next.getParameters().equals(activityRecording.getParameters())
+                        || !Arrays.equals(next.getGoldenFrameTimes(), activityRecording.getGoldenFrameTimes())) {
+                    break;
+                }
+                recordingNames.add(next.getRecordingFileName());
+                lastRunIndex++;
+            }
+            intent.putExtra(SectionHostActivity.RECORDING_FILE_NAMES, recordingNames.toArray(new String[0]));
+        }
+        intent.putExtra("useCloud", activityRecording.isUsingCloud());
+        if (activityRecording.getSweepName() != null) {
+            intent.putExtra(SWEEP_POINT, formatSweepPoint(activityRecording.getSweepParameters()));
+        }
+        for (Map.Entry<String, Object> parameter : activityRecording.getParameters().entrySet()) {
+            Object value = parameter.getValue();
+            if (value instanceof Boolean) {
+                intent.putExtra(parameter.getKey(), ((Boolean) value).booleanValue());
+            } else if (value instanceof Integer) {
+                intent.putExtra(parameter.getKey(), ((Integer) value).intValue());
+            } else if (value instanceof Long) {
+                intent.putExtra(parameter.getKey(), ((Long) value).longValue());
+            } else if (value instanceof Number) {
+                intent.putExtra(parameter.getKey(), ((Number) value).floatValue());
+            } else {
+                intent.putExtra(parameter.getKey(), String.valueOf(value));
+            }
+        }
+        intent.putExtra(SCHEDULING_POLICY, getSchedulingPolicy(activityRecording).name());
+        intent.putExtra(TARGET_FPS, getTargetFps(activityRecording));
+        if (getIntent().hasExtra(CAPTURE_INTERVAL)) {
+            intent.putExtra(CAPTURE_INTERVAL, getIntent().getIntExtra(CAPTURE_INTERVAL, 0));
+        }
+        if (getIntent().hasExtra(VALIDATE)) {
+            intent.putExtra(VALIDATE, getIntent().getBooleanExtra(VALIDATE, false));
+        }
+        if (getIntent().hasExtra(MIN_SSIM)) {
+            intent.putExtra(MIN_SSIM, getIntent().getFloatExtra(MIN_SSIM, GoldenImageValidator.DEFAULT_MIN_SSIM));
+        }
+        if (getIntent().hasExtra(MIN_PSNR)) {
+            intent.putExtra(MIN_PSNR, getIntent().getFloatExtra(MIN_PSNR, GoldenImageValidator.DEFAULT_MIN_PSNR));
+        }
+        if (getIntent().hasExtra(STRESS_OBJECTS)) {
+            intent.putExtra(STRESS_OBJECTS, getIntent().getStringExtra(STRESS_OBJECTS));
+        }
+        if (getIntent().hasExtra(STRESS_STEP_FRAMES)) {
+            intent.putExtra(STRESS_STEP_FRAMES, getIntent().getIntExtra(STRESS_STEP_FRAMES, DEFAULT_STRESS_STEP_FRAMES));
+        }
+        intent.putExtra(GOLDEN_FRAMES, activityRecording.getGoldenFrameTimes());
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        launchRunIndex = runIndex;
+        intent.putExtra(LAUNCH_TIME, SystemClock.elapsedRealtimeNanos());
+        startActivityForResult(intent, lastRunIndex);
+        // Copy the recording of the next launch while this one runs.
+        if (lastRunIndex + 1 < runs.size()) {
+            ActivityRecording next = activityRecordings.get(runs.get(lastRunIndex + 1).section);
+            AssetStager.getInstance(this).prefetchRecording(next.getRecordingFileName());
+        }
+    }
+
+    /** Returns the render loop a section activity was launched with, unthrottled by default. */
+    public static OffscreenRender.SchedulingPolicy getSchedulingPolicy(Intent intent) {
+        return parseSchedulingPolicy(intent.getStringExtra(SCHEDULING_POLICY));
+    }
+
+    /** Returns the frame rate of the fixed rate render loop a section activity was launched with. */
+    public static float getTargetFps(Intent intent) {
+        return intent.getFloatExtra(TARGET_FPS, OffscreenRender.DEFAULT_TARGET_FPS);
+    }
+
+    /** Returns the interval of periodic frame captures a section activity was launched with, 0 if none. */
+    public static int getCaptureInterval(Intent intent) {
+        return Math.max(intent.getIntExtra(CAPTURE_INTERVAL, 0), 0);
+    }
+
+    /**
+     * Returns the name the validation results, golden images, preview image and periodic captures of
+     * a section activity playing back {@code recordingName} are kept under. Every point of a sweep
+     * replays the same recording, so the sweep point is part of the key.
+     */
+    public static String getSectionKey(Intent intent, String recordingName) {
+        return getSectionKey(recordingName, intent.getBooleanExtra("useCloud", false), intent.getStringExtra(SWEEP_POINT));
+    }
 
-        for (int i = 0; i < ACTIVITY_RECORDINGS.length; i++) {
-            ACTIVITY_RECORDINGS[i].setEnabled(sectionCheckBoxes[i].isChecked());
+    private static String getSectionKey(ActivityRecording activityRecording) {
+        return getSectionKey(activityRecording.getRecordingFileName(), activityRecording.isUsingCloud(),
+                activityRecording.getSweepName() != null ? formatSweepPoint(activityRecording.getSweepParameters()) : null);
+    }
+
+    private static String getSectionKey(String recordingName, boolean useCloud, String sweepPoint) {
+        return recordingName.replace(".mp4", "") + (useCloud ? "-cloud" : "") + (sweepPoint != null ? "-" + sweepPoint : "");
+    }
+
+    /** Returns e.g. "RENDER_SCALE_0.5-CUBEMAP_RESOLUTION_8" for a sweep point, usable in file names. */
+    private static String formatSweepPoint(Map<String, Object> sweepParameters) {
+        StringBuilder point = new StringBuilder();
+        for (Map.Entry<String, Object> parameter : sweepParameters.entrySet()) {
+            if (point.length() > 0) {
+                point.append('-');
+            }
+            point.append(parameter.getKey().replace("benchmark.", "")).append('_').append(parameter.getValue());
         }
+        return point.toString().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /** Returns the file the last frame of the section with {@code sectionKey} is saved to. */
+    public static File getPreviewFile(Context context, String sectionKey) {
+        return new File(context.getExternalFilesDir(null), sectionKey + ".jpg");
+    }
+
+    /** Returns the directory periodic frame captures of the section with {@code sectionKey} are written to. */
+    public static File getCaptureDirectory(Context context, String sectionKey) {
+        return new File(context.getExternalFilesDir(null), "captures/" + sectionKey);
+    }
+
+    /** Returns the object counts of the stress mode a section activity was launched with, empty if none. */
+    public static int[] getStressObjectCounts(Intent intent) {
+        return parseStressObjectCounts(intent.getStringExtra(STRESS_OBJECTS));
+    }
 
-        for (int i = 0; i < ACTIVITY_RECORDINGS.length; i++) {
-            if (ACTIVITY_RECORDINGS[i].isEnabled()) {
-                Intent intent = new Intent(this, ACTIVITY_RECORDINGS[i].getActivity());
-                intent.putExtra(ACTIVITY_NUMBER, i);
-                intent.putExtra("useCloud", ACTIVITY_RECORDINGS[i].isUsingCloud());
-                intent.addCategory(Intent.CATEGORY_OPENABLE);
-                startActivityForResult(intent, i);
-                break;
+    /** Returns the number of frames measured for each object count of the stress mode. */
+    public static int getStressStepFrames(Intent intent) {
+        return Math.max(intent.getIntExtra(STRESS_STEP_FRAMES, DEFAULT_STRESS_STEP_FRAMES), 1);
+    }
+
+    private boolean isStressTest(ActivityRecording activityRecording) {
+        Object value = getIntent().hasExtra(STRESS_OBJECTS)
+                ? getIntent().getStringExtra(STRESS_OBJECTS)
+                : activityRecording.getParameters().get(STRESS_OBJECTS);
+        return activityRecording.getActivity() == AugmentedObjectGenerationActivity.class
+                && parseStressObjectCounts(value != null ? value.toString() : null).length > 0;
+    }
+
+    private static int[] parseStressObjectCounts(String counts) {
+        if (counts == null || counts.trim().isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = counts.split(",");
+        int[] result = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                result[i] = Integer.parseInt(parts[i].trim());
+                if (result[i] < 1 || (i > 0 && result[i] <= result[i - 1])) {
+                    throw new NumberFormatException("Object counts must be positive and ascending");
+                }
             }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid stress object counts " + counts + ", stress mode disabled", e);
+            return new int[0];
+        }
+        return result;
+    }
+
+    private OffscreenRender.SchedulingPolicy getSchedulingPolicy(ActivityRecording activityRecording) {
+        Object value = getIntent().hasExtra(SCHEDULING_POLICY)
+                ? getIntent().getStringExtra(SCHEDULING_POLICY)
+                : activityRecording.getParameters().get(SCHEDULING_POLICY);
+        return parseSchedulingPolicy(value != null ? value.toString() : null);
+    }
+
+    private float getTargetFps(ActivityRecording activityRecording) {
+        // Numbers in the manifest may be integers, extras are given as floats.
+        if (getIntent().hasExtra(TARGET_FPS)) {
+            return getIntent().getFloatExtra(TARGET_FPS, OffscreenRender.DEFAULT_TARGET_FPS);
+        }
+        Object value = activityRecording.getParameters().get(TARGET_FPS);
+        return value instanceof Number ? ((Number) value).floatValue() : OffscreenRender.DEFAULT_TARGET_FPS;
+    }
+
+    private GLError.Policy getGlErrorPolicy() {
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        GLError.Policy defaultPolicy = debuggable ? GLError.Policy.EVERY_CALL : GLError.Policy.PER_FRAME;
+        String name = getIntent().getStringExtra(GL_ERROR_CHECKS);
+        if (name == null) {
+            return defaultPolicy;
+        }
+        try {
+            return GLError.Policy.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Unknown GL error checks " + name + ", using " + defaultPolicy);
+            return defaultPolicy;
         }
     }
 
+    private static OffscreenRender.SchedulingPolicy parseSchedulingPolicy(String name) {
+        if (name == null) {
+            return OffscreenRender.SchedulingPolicy.UNTHROTTLED;
+        }
+        try {
+            return OffscreenRender.SchedulingPolicy.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Unknown scheduling policy " + name + ", rendering unthrottled");
+            return OffscreenRender.SchedulingPolicy.UNTHROTTLED;
+        }
+    }
+
+    private static String getSectionLabel(ActivityRecording activityRecording) {
+        return activityRecording.getSectionName() + (activityRecording.isUsingCloud() ? " (Cloud)" : "");
+    }
+
     private void turnCameraOn() {
         camera = Camera.open(0);
         cameraPreview.setSurfaceTextureListener(cameraPreview);
@@ -232,126 +560,439 @@ public class BenchmarkActivity extends AppCompatActivity {
         if (resultCode == RESULT_CANCELED) {
             new AlertDialog.Builder(this).setMessage("Test " + requestCode + " did not complete").show();
         }
-
-        boolean flag = false;
-        for (int i = requestCode + 1; i < ACTIVITY_RECORDINGS.length; i++) {
-            if (ACTIVITY_RECORDINGS[i].isEnabled()) {
-                Intent intent = new Intent(this, ACTIVITY_RECORDINGS[i].getActivity());
-                intent.putExtra(ACTIVITY_NUMBER, i);
-                intent.putExtra("useCloud", ACTIVITY_RECORDINGS[i].isUsingCloud());
-                startActivityForResult(intent, i);
-                flag = true;
-                break;
+        if (data != null && data.hasExtra(SectionHostActivity.STARTUP_TRACES)) {
+            List<StartupTrace> traces = StartupTrace.fromArray(data.getLongArrayExtra(SectionHostActivity.STARTUP_TRACES));
+            for (int i = 0; i < traces.size() && launchRunIndex + i <= requestCode; i++) {
+                int section = runs.get(launchRunIndex + i).section;
+                if (startupResults[section] == null) {
+                    startupResults[section] = new StartupResults(getSectionLabel(activityRecordings.get(section)));
+                }
+                startupResults[section].add(traces.get(i));
             }
         }
 
-        if (!flag) {
+        if (requestCode + 1 < runs.size()) {
+            startRun(requestCode + 1);
+        } else {
             reportResults();
         }
     }
 
     @SuppressLint("SetTextI18n")
     private void reportResults() {
-        BufferedReader fpsLog;
-        String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
+        DeviceStateLog deviceStateLog = new DeviceStateLog(new String[0]);
+        if (deviceStateSampler != null) {
+            deviceStateSampler.close();
+            deviceStateLog = deviceStateSampler.getLog();
+            deviceStateSampler = null;
+        }
+
+        List<FrameLogSection> sections;
         try {
-            fpsLog = new BufferedReader(new FileReader(logPath));
+            sections = FrameLogReader.read(new File(getExternalFilesDir(null), FrameLogWriter.FILE_NAME));
         } catch (FileNotFoundException e) {
             new AlertDialog.Builder(this).setMessage("Could not access logged frame data").show();
             return;
-        }
-
-        String line;
-        try {
-            line = fpsLog.readLine();
         } catch (IOException e) {
             new AlertDialog.Builder(this).setMessage("Error reading frame data").show();
             return;
         }
-        for (int testNumber = 0; testNumber < ACTIVITY_RECORDINGS.length; testNumber++) {
-            if (!ACTIVITY_RECORDINGS[testNumber].isEnabled()) {
+
+        SectionResults[] sectionResults = new SectionResults[activityRecordings.size()];
+        int sectionIndex = 0;
+        for (int runIndex = 0; runIndex < runs.size(); runIndex++) {
+            BenchmarkRun run = runs.get(runIndex);
+            ActivityRecording activityRecording = activityRecordings.get(run.section);
+            String recordingName = activityRecording.getRecordingFileName();
+            FrameLogSection section = sectionIndex < sections.size() ? sections.get(sectionIndex) : null;
+            if (section == null || !section.getRecordingName().equals(recordingName)) {
+                new AlertDialog.Builder(this).setMessage(recordingName + ": No frame data for run " + (runIndex + 1)).show();
                 continue;
             }
-            String recordingName = ACTIVITY_RECORDINGS[testNumber].getRecordingFileName();
-            String sectionName = ACTIVITY_RECORDINGS[testNumber].getSectionName() + (ACTIVITY_RECORDINGS[testNumber].isUsingCloud() ? " (Cloud)" : "");
-            int currentPhase = 1;
-            long startTime = 0, t = 0;
-            long process = 0, maxInput = 0, total = 0;
-            float renderObjects = 0.f;
-            try {
-                if (line == null || !line.equals("test " + recordingName)) {
-                    new AlertDialog.Builder(this).setMessage(recordingName + ": No frame data for test " + testNumber + 1).show();
-                    continue;
-                } else {
-                    line = fpsLog.readLine();
-                    startTime = Long.decode(line.split(",")[1]);
+            sectionIndex++;
+            // Warmup runs absorb JIT, shader compilation and ARCore startup costs and are not reported.
+            if (run.warmup) {
+                continue;
+            }
+            if (section.size() == 0) {
+                new AlertDialog.Builder(this).setMessage(recordingName + ": No frame data for run " + (runIndex + 1)).show();
+                continue;
+            }
+            if (sectionResults[run.section] == null) {
+                OffscreenRender.SchedulingPolicy schedulingPolicy = getSchedulingPolicy(activityRecording);
+                sectionResults[run.section] = new SectionResults(getSectionLabel(activityRecording), recordingName,
+                        schedulingPolicy.name(),
+                        schedulingPolicy == OffscreenRender.SchedulingPolicy.FIXED_RATE ? getTargetFps(activityRecording) : Float.NaN);
+                sectionResults[run.section].setStressTest(isStressTest(activityRecording));
+                if (activityRecording.getSweepName() != null) {
+                    sectionResults[run.section].setSweep(activityRecording.getSweepName(),
+                            activityRecording.getSweepParameters());
                 }
-                ImageView previewImage = new ImageView(this);
-                File imageFile = new File(getExternalFilesDir(null) + "/" + recordingName.replace(".mp4", ".jpg"));
-                FileInputStream fis = new FileInputStream(imageFile);
-                Bitmap bitmap = BitmapFactory.decodeStream(fis);
-                previewImage.setImageBitmap(bitmap);
-                resultsDisplay.addView(previewImage);
-                int i = 0;
-                while (true) {
-                    if (line != null && !line.startsWith("test ")) {
-                        String[] times = line.split(",");
-                        if (times.length < 6) {
-                            line = fpsLog.readLine();
-                            continue;
-                        }
-                        int phase = Integer.decode(times[0]);
-                        if (phase != currentPhase) {
-                            float fps = 1000.f * (i - 1) / (t - startTime);
-                            TextView results = new TextView(this);
-                            results.setText(
-                                    "FPS and Runtimes - " + sectionName + " Phase " + currentPhase + "\n"
-                                            + "File name: " + recordingName + "\n"
-                                            + "FPS: " + fps + "\n"
-                                            + "ARCore Processing Time: " + (float) process / i + "\n"
-                                            + "Max Input Handling Time: " + maxInput + "\n"
-                                            + "GPU Object Rendering Time: " + renderObjects / i + "\n"
-                                            + "Total CPU Runtime per frame: " + (float) total / i + "\n");
-                            resultsDisplay.addView(results);
-                            startTime = Long.decode(times[1]);
-                            currentPhase = phase;
-                            process = 0;
-                            maxInput = 0;
-                            renderObjects = 0;
-                            total = 0;
-                            i = 0;
-                        }
-                        t = Long.decode(times[1]);
-                        process += Integer.decode(times[2]);
-                        maxInput = Math.max(maxInput, Integer.decode(times[3]));
-                        renderObjects += Float.parseFloat(times[4]) / 1e6;
-                        total += Integer.decode(times[5]);
-                        i++;
+            }
+            sectionResults[run.section].addRepetition(section);
+        }
+
+        // Preview images of the last sections may still be encoding, and golden image checks running.
+        FrameCapture.awaitWrites();
+        List<SectionResults> results = new ArrayList<>();
+        for (int i = 0; i < sectionResults.length; i++) {
+            SectionResults section = sectionResults[i];
+            if (section != null) {
+                String sectionKey = getSectionKey(activityRecordings.get(i));
+                section.setValidation(GoldenImageValidator.getResults(sectionKey));
+                addSectionResults(section, sectionKey, deviceStateLog);
+                results.add(section);
+            }
+        }
+        addSweepResults(results);
+        List<StartupResults> startup = new ArrayList<>();
+        for (StartupResults section : startupResults) {
+            if (section != null) {
+                addStartupResults(section);
+                startup.add(section);
+            }
+        }
+        BenchmarkResults benchmarkResults = new BenchmarkResults(System.currentTimeMillis(), getDeviceInfo(), getBuildInfo(), results,
+                startup, deviceStateLog);
+        writeResultsFile(benchmarkResults);
+        storeResults(benchmarkResults);
+    }
+
+    /** Keeps the run in the results store and compares it against the baseline run. */
+    @SuppressLint("SetTextI18n")
+    private void storeResults(BenchmarkResults results) {
+        ResultsStore store = new ResultsStore(new File(getExternalFilesDir(null), ResultsStore.DIRECTORY_NAME));
+        String baselineName = getIntent().getStringExtra(EXTRA_BASELINE);
+        File baseline = baselineName != null ? store.getRun(baselineName) : store.getLatestRun();
+        if (baselineName != null && baseline == null) {
+            new AlertDialog.Builder(this).setMessage("Unknown baseline run " + baselineName).show();
+        }
+        File run;
+        try {
+            run = store.save(results);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to store benchmark results", e);
+            new AlertDialog.Builder(this).setMessage("Error storing benchmark results").show();
+            return;
+        }
+        if (baseline == null) {
+            return;
+        }
+
+        RunComparator comparator = new RunComparator(
+                getIntent().getFloatExtra(EXTRA_SIGNIFICANCE_LEVEL, (float) RunComparator.DEFAULT_SIGNIFICANCE_LEVEL),
+                getIntent().getFloatExtra(EXTRA_THRESHOLD_PERCENT, (float) RunComparator.DEFAULT_THRESHOLD_PERCENT));
+        String report;
+        try {
+            report = RunComparator.format(comparator.compare(
+                    ResultsStore.loadFrameLogs(baseline), ResultsStore.loadFrameLogs(run)));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compare with " + baseline.getName(), e);
+            return;
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(run, COMPARISON_FILE_NAME)), StandardCharsets.UTF_8)) {
+            out.write(report);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write comparison", e);
+        }
+        TextView comparison = new TextView(this);
+        comparison.setTextIsSelectable(true);
+        comparison.setText("Comparison of run " + run.getName() + " with " + baseline.getName() + "\n" + report);
+        resultsDisplay.addView(comparison);
+    }
+
+    /** Writes the results to a temporary file first so host scripts never pull a partial file. */
+    private void writeResultsFile(BenchmarkResults results) {
+        File resultsFile = new File(getExternalFilesDir(null), BenchmarkResults.FILE_NAME);
+        File temporaryFile = new File(getExternalFilesDir(null), BenchmarkResults.FILE_NAME + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8)) {
+            results.writeJson(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write benchmark results", e);
+            new AlertDialog.Builder(this).setMessage("Error writing benchmark results").show();
+            return;
+        }
+        if (!temporaryFile.renameTo(resultsFile)) {
+            Log.e(TAG, "Failed to move benchmark results to " + resultsFile.getAbsolutePath());
+            return;
+        }
+        Log.i(TAG, "Wrote benchmark results to " + resultsFile.getAbsolutePath());
+    }
+
+    private static Map<String, String> getDeviceInfo() {
+        Map<String, String> info = new LinkedHashMap<>();
+        info.put("manufacturer", Build.MANUFACTURER);
+        info.put("model", Build.MODEL);
+        info.put("device", Build.DEVICE);
+        info.put("hardware", Build.HARDWARE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            info.put("socManufacturer", Build.SOC_MANUFACTURER);
+            info.put("socModel", Build.SOC_MODEL);
+        }
+        info.put("supportedAbis", TextUtils.join(",", Build.SUPPORTED_ABIS));
+        info.put("androidRelease", Build.VERSION.RELEASE);
+        info.put("sdkInt", String.valueOf(Build.VERSION.SDK_INT));
+        info.put("fingerprint", Build.FINGERPRINT);
+        return info;
+    }
+
+    private Map<String, String> getBuildInfo() {
+        Map<String, String> info = new LinkedHashMap<>();
+        info.put("packageName", getPackageName());
+        try {
+            PackageInfo packageInfo = getPackageManager().getPackageInfo(getPackageName(), 0);
+            info.put("versionName", packageInfo.versionName);
+            info.put("versionCode", String.valueOf(PackageInfoCompat.getLongVersionCode(packageInfo)));
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "Missing package info for " + getPackageName());
+        }
+        info.put("debuggable", String.valueOf((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0));
+        info.put("glErrorChecks", GLError.getPolicy().name());
+        try {
+            info.put("arcoreVersion", getPackageManager().getPackageInfo("com.google.ar.core", 0).versionName);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "ARCore is not installed");
+        }
+        return info;
+    }
+
+    @SuppressLint("SetTextI18n")
+    private void addSectionResults(SectionResults results, String sectionKey, DeviceStateLog deviceStateLog) {
+        String sectionName = results.getSectionName();
+        String recordingName = results.getRecordingName();
+        String renderLoop = Float.isNaN(results.getTargetFps())
+                ? results.getSchedulingPolicy()
+                : results.getSchedulingPolicy() + " (" + results.getTargetFps() + " fps)";
+        try {
+            ImageView previewImage = new ImageView(this);
+            File imageFile = getPreviewFile(this, sectionKey);
+            FileInputStream fis = new FileInputStream(imageFile);
+            Bitmap bitmap = BitmapFactory.decodeStream(fis);
+            previewImage.setImageBitmap(bitmap);
+            resultsDisplay.addView(previewImage);
+        } catch (FileNotFoundException e) {
+            Log.w(TAG, "Missing preview image for " + sectionKey);
+        }
+
+        ValidationResults validation = results.getValidation();
+        if (validation != null) {
+            TextView validationView = new TextView(this);
+            validationView.setTextIsSelectable(true);
+            validationView.setText("Golden image validation - " + sectionName + ": "
+                    + validation.getStatus().toUpperCase(Locale.ROOT) + "\n"
+                    + "Frames passed / failed / missed / recorded: "
+                    + validation.getCount(ValidationResults.Outcome.PASSED) + " / "
+                    + validation.getCount(ValidationResults.Outcome.FAILED) + " / "
+                    + validation.getCount(ValidationResults.Outcome.MISSED) + " / "
+                    + validation.getCount(ValidationResults.Outcome.RECORDED) + "\n"
+                    + "Min SSIM / PSNR (dB): " + (float) validation.getMinSsim() + " / "
+                    + (float) validation.getMinPsnr() + "\n");
+            resultsDisplay.addView(validationView);
+        }
+
+        List<List<PhaseStatistics>> repetitions = results.getRepetitions();
+        if (results.isStressTest()) {
+            StringBuilder curve = new StringBuilder();
+            for (int objects : results.getPhases()) {
+                curve.append("  ").append(objects).append(": ")
+                        .append(formatMeasure(results.getMeasure(objects, PhaseMetric.FPS))).append(" / ")
+                        .append(formatMeasure(results.getMeasure(objects, PhaseMetric.FRAME_TIME_P50))).append(" / ")
+                        .append(formatMeasure(results.getMeasure(objects, PhaseMetric.FRAME_TIME_P99))).append("\n");
+            }
+            TextView curveView = new TextView(this);
+            curveView.setTextIsSelectable(true);
+            curveView.setText("Scaling curve - " + sectionName + "\n"
+                    + "Objects: FPS / frame time p50 / p99 (ms)\n" + curve);
+            resultsDisplay.addView(curveView);
+        }
+        if (repetitions.size() > 1) {
+            for (int phase : results.getPhases()) {
+                StringBuilder summary = new StringBuilder();
+                for (PhaseMetric metric : PhaseMetric.values()) {
+                    RepeatedMeasure measure = results.getMeasure(phase, metric);
+                    summary.append(metric.getLabel()).append(": ");
+                    if (measure.getCount() > 1) {
+                        summary.append((float) measure.getMean()).append(" \u00b1 ")
+                                .append((float) measure.getConfidenceInterval95());
                     } else {
-                        float fps = 1000.f * (i - 1) / (t - startTime);
-                        TextView results = new TextView(this);
-                        results.setTextIsSelectable(true);
-                        results.setText(
-                                "FPS and Runtimes - " + sectionName + " Phase " + currentPhase + "\n"
-                                        + "File name: " + recordingName + "\n"
-                                        + "FPS: " + fps + "\n"
-                                        + "ARCore Processing Time: " + (float) process / i + "\n"
-                                        + "Max Input Handling Time: " + maxInput + "\n"
-                                        + "GPU Object Rendering Time: " + renderObjects / i + "\n"
-                                        + "Total CPU Runtime per frame: " + (float) total / i + "\n");
-                        resultsDisplay.addView(results);
-                        break;
+                        summary.append(measure.getCount() > 0 ? String.valueOf((float) measure.getMean()) : "n/a");
+                    }
+                    if (measure.getCount() < repetitions.size()) {
+                        summary.append(" (").append(measure.getCount()).append(" runs)");
                     }
-                    line = fpsLog.readLine();
+                    summary.append("\n");
                 }
-            } catch (IOException e) {
-                new AlertDialog.Builder(this).setMessage("Error reading frame data").show();
+                TextView summaryView = new TextView(this);
+                summaryView.setTextIsSelectable(true);
+                summaryView.setText("Mean \u00b1 95% CI over " + repetitions.size() + " runs - " + sectionName
+                        + " Phase " + phase + "\n"
+                        + "File name: " + recordingName + "\n"
+                        + "Render loop: " + renderLoop + "\n"
+                        + summary);
+                resultsDisplay.addView(summaryView);
+            }
+        }
+
+        for (int repetition = 0; repetition < repetitions.size(); repetition++) {
+            String runName = repetitions.size() > 1 ? sectionName + " Run " + (repetition + 1) : sectionName;
+            for (PhaseStatistics phase : repetitions.get(repetition)) {
+                addPhaseResults(runName, recordingName, renderLoop, phase, deviceStateLog);
+            }
+        }
+
+        if (results.getDroppedRecords() > 0) {
+            TextView dropped = new TextView(this);
+            dropped.setText(sectionName + ": Dropped frame records: " + results.getDroppedRecords() + "\n");
+            resultsDisplay.addView(dropped);
+        }
+    }
+
+    /** Shows the cost of every point of each sweep over all frames of its runs, one table per sweep. */
+    @SuppressLint("SetTextI18n")
+    private void addSweepResults(List<SectionResults> results) {
+        Map<String, StringBuilder> tables = new LinkedHashMap<>();
+        for (SectionResults section : results) {
+            if (section.getSweepName() == null) {
+                continue;
+            }
+            StringBuilder table = tables.get(section.getSweepName());
+            if (table == null) {
+                table = new StringBuilder();
+                tables.put(section.getSweepName(), table);
             }
+            table.append("  ").append(section.getSweepParameters()).append(": ")
+                    .append(formatMeasure(section.getTotalMeasure(PhaseMetric.FRAME_TIME_P50))).append(" / ")
+                    .append(formatMeasure(section.getTotalMeasure(PhaseMetric.FRAME_TIME_P99))).append(" / ")
+                    .append(formatMeasure(section.getTotalMeasure(PhaseMetric.GPU_TIME))).append("\n");
         }
+        for (Map.Entry<String, StringBuilder> table : tables.entrySet()) {
+            TextView sweepView = new TextView(this);
+            sweepView.setTextIsSelectable(true);
+            sweepView.setText("Sweep - " + table.getKey() + "\n"
+                    + "Setting: frame time p50 / p99 / GPU time (ms)\n" + table.getValue());
+            resultsDisplay.addView(sweepView);
+        }
+    }
+
+    @SuppressLint("SetTextI18n")
+    private void addPhaseResults(String sectionName, String recordingName, String renderLoop, PhaseStatistics phase,
+                                 DeviceStateLog deviceStateLog) {
+        int gpuFrames = phase.getGpuFrameCount();
+        StringBuilder stages = new StringBuilder();
+        for (int stage = 0; stage < FrameProfiler.STAGE_COUNT; stage++) {
+            stages.append("  ").append(FrameProfiler.getStageName(stage)).append(": ")
+                    .append(phase.getMeanStageTime(stage)).append(" / ").append(phase.getMeanStageCpuTime(stage))
+                    .append("\n");
+        }
+        StringBuilder passes = new StringBuilder();
+        for (int pass = 0; pass < GpuTimerPool.PASS_COUNT; pass++) {
+            passes.append("  ").append(GpuTimerPool.getPassName(pass)).append(": ")
+                    .append(gpuFrames > 0 ? String.valueOf(phase.getMeanGpuPassTime(pass)) : "n/a").append("\n");
+        }
+        long frameTimes = Math.max(phase.getFrameTimeCount(), 1);
+        DeviceStateLog.Summary deviceState = deviceStateLog.summarize(phase.getStartTime(), phase.getEndTime());
+        StringBuilder frequencies = new StringBuilder();
+        for (int cluster = 0; cluster < deviceStateLog.getClusterCount(); cluster++) {
+            frequencies.append("  ").append(deviceStateLog.getClusterName(cluster)).append(": ")
+                    .append(deviceState.getMeanCpuFrequency(cluster)).append("\n");
+        }
+        StringBuilder threads = new StringBuilder();
+        for (int category = 0; category < ThreadCpuReader.CATEGORY_COUNT; category++) {
+            threads.append("  ").append(ThreadCpuReader.getCategoryName(category)).append(": ")
+                    .append(100 * deviceState.getCpuUtilization(category)).append("\n");
+        }
+        String pacing = "n/a";
+        if (phase.getPresentPace() > 0) {
+            pacing = phase.getPresentPace() + " vsyncs, missed vsyncs: " + phase.getMissedVsyncs()
+                    + ", janky frames: " + phase.getJankyFrames() + " ("
+                    + PhaseMetric.JANKY_FRAMES.get(phase) + "%)";
+        }
+        TextView results = new TextView(this);
+        results.setTextIsSelectable(true);
+        results.setText(
+                "FPS and Runtimes - " + sectionName + " Phase " + phase.getPhase() + "\n"
+                        + "File name: " + recordingName + "\n"
+                        + "Render loop: " + renderLoop + "\n"
+                        + "FPS: " + phase.getFps() + "\n"
+                        + "Frame time p50/p90/p99/p99.9 (ms): " + phase.getFrameTimePercentile(50) + " / "
+                        + phase.getFrameTimePercentile(90) + " / " + phase.getFrameTimePercentile(99) + " / "
+                        + phase.getFrameTimePercentile(99.9) + "\n"
+                        + "Frame time std dev (ms): " + phase.getFrameTimeStdDev() + "\n"
+                        + "Frames over 16.6 ms: " + phase.getFramesOver60FpsBudget()
+                        + " (" + 100.f * phase.getFramesOver60FpsBudget() / frameTimes + "%)\n"
+                        + "Frames over 33.3 ms: " + phase.getFramesOver30FpsBudget()
+                        + " (" + 100.f * phase.getFramesOver30FpsBudget() / frameTimes + "%)\n"
+                        + "Frames shown: " + phase.getPresentedFrameCount() + ", pace: " + pacing + "\n"
+                        + "Present interval mean / variance (ms, ms\u00b2): " + phase.getMeanPresentInterval() + " / "
+                        + phase.getPresentIntervalVariance() + "\n"
+                        + "ARCore Processing Time: " + phase.getMeanProcessTime() + "\n"
+                        + "Max Input Handling Time: " + phase.getMaxHandleInputTime() + "\n"
+                        + "GPU Rendering Time: " + (gpuFrames > 0 ? String.valueOf(phase.getMeanGpuTime()) : "n/a") + "\n"
+                        + "Total CPU Runtime per frame: " + phase.getMeanTotalTime() + "\n"
+                        + "Java heap allocated per frame (KiB): " + phase.getAllocatedPerFrame() + "\n"
+                        + "GCs: " + formatCount(phase.getGcCount()) + " (" + formatCount(phase.getGcTime()) + " ms), blocking: "
+                        + formatCount(phase.getBlockingGcCount()) + " (" + formatCount(phase.getBlockingGcTime()) + " ms)\n"
+                        + "Peak Java / native heap (KiB): " + formatCount(phase.getPeakJavaHeap()) + " / "
+                        + formatCount(phase.getPeakNativeHeap()) + "\n"
+                        + "Stage times per frame, wall / render thread CPU (ms):\n" + stages
+                        + "GPU pass times per frame (ms, " + gpuFrames + " frames measured):\n" + passes
+                        + "Max thermal status: " + (deviceState.getMaxThermalStatus() >= 0 ? String.valueOf(deviceState.getMaxThermalStatus()) : "n/a") + "\n"
+                        + "Min thermal headroom: " + deviceState.getMinThermalHeadroom() + "\n"
+                        + "Mean battery power (mW): " + deviceState.getMeanBatteryPower() + "\n"
+                        + "Mean CPU frequency (MHz, " + deviceState.getSampleCount() + " samples):\n" + frequencies
+                        + "Thread CPU usage (% of one core):\n" + threads);
+        resultsDisplay.addView(results);
+    }
+
+    @SuppressLint("SetTextI18n")
+    private void addStartupResults(StartupResults results) {
+        StringBuilder stages = new StringBuilder();
+        for (int stage = 0; stage < StartupTrace.STAGE_COUNT; stage++) {
+            stages.append("  ").append(StartupTrace.getStageName(stage)).append(": ")
+                    .append(formatMeasure(results.getStageMeasure(stage, true))).append(" / ")
+                    .append(formatMeasure(results.getStageMeasure(stage, false))).append("\n");
+        }
+        TextView startup = new TextView(this);
+        startup.setTextIsSelectable(true);
+        startup.setText(
+                "Startup - " + results.getSectionName() + "\n"
+                        + "Starts cold / warm: " + results.getCount(true) + " / " + results.getCount(false) + "\n"
+                        + "Time to first frame (ms): " + formatMeasure(results.getTotalMeasure(true)) + " / "
+                        + formatMeasure(results.getTotalMeasure(false)) + "\n"
+                        + "Stage times, cold / warm (ms):\n" + stages);
+        resultsDisplay.addView(startup);
+    }
+
+    /** Formats the mean of a measure, with its 95% confidence interval if there are several samples. */
+    private static String formatMeasure(RepeatedMeasure measure) {
+        if (measure.getCount() == 0) {
+            return "n/a";
+        }
+        String mean = String.valueOf((float) measure.getMean());
+        return measure.getCount() > 1 ? mean + " \u00b1 " + (float) measure.getConfidenceInterval95() : mean;
+    }
+
+    /** Formats a count that is negative when unknown. */
+    private static String formatCount(int count) {
+        return count >= 0 ? String.valueOf(count) : "n/a";
     }
 
     protected void onDestroy() {
 //        turnCameraOff();
+        if (deviceStateSampler != null) {
+            deviceStateSampler.close();
+        }
         super.onDestroy();
     }
-}
\ No newline at end of file
+
+    /** One launch of a section activity; warmup runs are logged but left out of the results. */
+    private static class BenchmarkRun {
+        final int section;
+        final boolean warmup;
+
+        BenchmarkRun(int section, boolean warmup) {
+            this.section = section;
+            this.warmup = warmup;
+        }
+    }
+}
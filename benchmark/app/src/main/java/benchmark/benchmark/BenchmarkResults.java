@@ -0,0 +1,304 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Results of one benchmark run with the device and build it ran on, serialized as the JSON document
+ * pulled by host scripts. Free of Android dependencies so it can be used on a desktop JVM.
+ */
+public class BenchmarkResults {
+    public static final String FILE_NAME = "benchmark-results.json";
+    /** Incremented whenever fields are renamed or removed from the JSON document. */
+    public static final int FORMAT_VERSION = 1;
+
+    private final long timestamp;
+    private final Map<String, String> deviceInfo;
+    private final Map<String, String> buildInfo;
+    private final List<SectionResults> sections;
+    private final List<StartupResults> startup;
+    private final DeviceStateLog deviceStateLog;
+
+    /**
+     * @param timestamp Wall clock time the run finished, in milliseconds since the epoch
+     * @param deviceInfo Description of the device, e.g. model and OS version
+     * @param buildInfo Description of the benchmark build
+     * @param startup Startup traces of the sections that record them
+     * @param deviceStateLog Device state sampled during the run, summarized per phase
+     */
+    public BenchmarkResults(long timestamp, Map<String, String> deviceInfo, Map<String, String> buildInfo,
+                            List<SectionResults> sections, List<StartupResults> startup, DeviceStateLog deviceStateLog) {
+        this.timestamp = timestamp;
+        this.deviceInfo = Collections.unmodifiableMap(new LinkedHashMap<>(deviceInfo));
+        this.buildInfo = Collections.unmodifiableMap(new LinkedHashMap<>(buildInfo));
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+        this.startup = Collections.unmodifiableList(new ArrayList<>(startup));
+        this.deviceStateLog = deviceStateLog;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Map<String, String> getDeviceInfo() {
+        return deviceInfo;
+    }
+
+    public Map<String, String> getBuildInfo() {
+        return buildInfo;
+    }
+
+    public List<SectionResults> getSections() {
+        return sections;
+    }
+
+    public List<StartupResults> getStartup() {
+        return startup;
+    }
+
+    public DeviceStateLog getDeviceStateLog() {
+        return deviceStateLog;
+    }
+
+    public void writeJson(Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out, "  ");
+        json.beginObject();
+        json.name("formatVersion").value(FORMAT_VERSION);
+        json.name("timestamp").value(timestamp);
+        json.name("device");
+        writeMap(json, deviceInfo);
+        json.name("build");
+        writeMap(json, buildInfo);
+        json.name("sections").beginArray();
+        for (SectionResults section : sections) {
+            writeSection(json, section, deviceStateLog);
+        }
+        json.endArray();
+        json.name("startup").beginArray();
+        for (StartupResults section : startup) {
+            json.beginObject();
+            json.name("name").value(section.getSectionName());
+            json.name("cold");
+            writeStartup(json, section, true);
+            json.name("warm");
+            writeStartup(json, section, false);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeMap(JsonWriter json, Map<String, String> map) throws IOException {
+        json.beginObject();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            json.name(entry.getKey()).value(entry.getValue());
+        }
+        json.endObject();
+    }
+
+    private static void writeSection(JsonWriter json, SectionResults section, DeviceStateLog deviceStateLog)
+            throws IOException {
+        json.beginObject();
+        json.name("name").value(section.getSectionName());
+        json.name("recording").value(section.getRecordingName());
+        json.name("schedulingPolicy").value(section.getSchedulingPolicy());
+        json.name("targetFps").value(section.getTargetFps());
+        json.name("droppedRecords").value(section.getDroppedRecords());
+        // The phases of a stress test are its object counts.
+        json.name("stressTest").value(section.isStressTest());
+        if (section.getSweepName() != null) {
+            json.name("sweep").beginObject();
+            json.name("name").value(section.getSweepName());
+            json.name("parameters").beginObject();
+            for (Map.Entry<String, Object> parameter : section.getSweepParameters().entrySet()) {
+                json.name(parameter.getKey());
+                Object value = parameter.getValue();
+                if (value instanceof Number) {
+                    json.value(((Number) value).doubleValue());
+                } else if (value instanceof Boolean) {
+                    json.value((Boolean) value);
+                } else {
+                    json.value(String.valueOf(value));
+                }
+            }
+            json.endObject();
+            json.endObject();
+        }
+
+        // All frames of the section, regardless of phase.
+        json.name("total").beginObject();
+        for (PhaseMetric metric : PhaseMetric.values()) {
+            json.name(metric.name());
+            writeMeasure(json, section.getTotalMeasure(metric));
+        }
+        json.endObject();
+
+        ValidationResults validation = section.getValidation();
+        if (validation != null) {
+            json.name("validation").beginObject();
+            json.name("status").value(validation.getStatus());
+            for (ValidationResults.Outcome outcome : ValidationResults.Outcome.values()) {
+                json.name(outcome.name().toLowerCase(Locale.ROOT)).value(validation.getCount(outcome));
+            }
+            json.name("minSsim").value(validation.getMinSsim());
+            json.name("minPsnr").value(validation.getMinPsnr());
+            json.endObject();
+        }
+
+        json.name("summary").beginArray();
+        for (int phase : section.getPhases()) {
+            json.beginObject();
+            json.name("phase").value(phase);
+            for (PhaseMetric metric : PhaseMetric.values()) {
+                json.name(metric.name());
+                writeMeasure(json, section.getMeasure(phase, metric));
+            }
+            json.endObject();
+        }
+        json.endArray();
+
+        json.name("repetitions").beginArray();
+        for (List<PhaseStatistics> repetition : section.getRepetitions()) {
+            json.beginArray();
+            for (PhaseStatistics phase : repetition) {
+                writePhase(json, phase, deviceStateLog);
+            }
+            json.endArray();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private static void writePhase(JsonWriter json, PhaseStatistics phase, DeviceStateLog deviceStateLog)
+            throws IOException {
+        json.beginObject();
+        json.name("phase").value(phase.getPhase());
+        json.name("frames").value(phase.getFrameCount());
+        json.name("startTime").value(phase.getStartTime());
+        json.name("durationMs").value(phase.getDuration());
+        for (PhaseMetric metric : PhaseMetric.values()) {
+            json.name(metric.name()).value(metric.get(phase));
+        }
+        json.name("framesOver16ms").value(phase.getFramesOver60FpsBudget());
+        json.name("framesOver33ms").value(phase.getFramesOver30FpsBudget());
+        json.name("presentedFrames").value(phase.getPresentedFrameCount());
+        json.name("presentPaceVsyncs").value(phase.getPresentPace());
+        json.name("meanPresentIntervalMs").value(phase.getMeanPresentInterval());
+        json.name("maxHandleInputTimeMs").value(phase.getMaxHandleInputTime());
+        json.name("gpuFrames").value(phase.getGpuFrameCount());
+        json.name("stageTimesMs").beginObject();
+        for (int stage = 0; stage < FrameStages.STAGE_COUNT; stage++) {
+            json.name(FrameStages.getStageName(stage)).value(phase.getMeanStageTime(stage));
+        }
+        json.endObject();
+        json.name("stageCpuTimesMs").beginObject();
+        for (int stage = 0; stage < FrameStages.STAGE_COUNT; stage++) {
+            json.name(FrameStages.getStageName(stage)).value(phase.getMeanStageCpuTime(stage));
+        }
+        json.endObject();
+        json.name("glStateCalls").beginObject();
+        json.name("issued").value(phase.getMeanStateCallsIssued());
+        json.name("skipped").value(phase.getMeanStateCallsSkipped());
+        json.endObject();
+        json.name("gpuPassTimesMs").beginObject();
+        for (int pass = 0; pass < GpuPasses.PASS_COUNT; pass++) {
+            json.name(GpuPasses.getPassName(pass)).value(phase.getMeanGpuPassTime(pass));
+        }
+        json.endObject();
+        json.name("memory").beginObject();
+        writeCount(json, "allocatedKb", phase.getAllocated());
+        writeCount(json, "gcCount", phase.getGcCount());
+        writeCount(json, "gcTimeMs", phase.getGcTime());
+        writeCount(json, "blockingGcCount", phase.getBlockingGcCount());
+        writeCount(json, "blockingGcTimeMs", phase.getBlockingGcTime());
+        writeCount(json, "peakJavaHeapKb", phase.getPeakJavaHeap());
+        writeCount(json, "peakNativeHeapKb", phase.getPeakNativeHeap());
+        json.endObject();
+
+        DeviceStateLog.Summary deviceState = deviceStateLog.summarize(phase.getStartTime(), phase.getEndTime());
+        json.name("deviceState").beginObject();
+        json.name("samples").value(deviceState.getSampleCount());
+        if (deviceState.getMaxThermalStatus() == DeviceStateLog.THERMAL_STATUS_UNKNOWN) {
+            json.name("maxThermalStatus").nullValue();
+        } else {
+            json.name("maxThermalStatus").value(deviceState.getMaxThermalStatus());
+        }
+        json.name("minThermalHeadroom").value(deviceState.getMinThermalHeadroom());
+        json.name("meanBatteryPowerMw").value(deviceState.getMeanBatteryPower());
+        json.name("meanCpuFrequencyMhz").beginObject();
+        for (int cluster = 0; cluster < deviceStateLog.getClusterCount(); cluster++) {
+            json.name(deviceStateLog.getClusterName(cluster)).value(deviceState.getMeanCpuFrequency(cluster));
+        }
+        json.endObject();
+        json.name("threadCpuUtilization").beginObject();
+        for (int category = 0; category < ThreadCpuReader.CATEGORY_COUNT; category++) {
+            json.name(ThreadCpuReader.getCategoryName(category)).value(deviceState.getCpuUtilization(category));
+        }
+        json.endObject();
+        json.endObject();
+        json.endObject();
+    }
+
+    private static void writeStartup(JsonWriter json, StartupResults section, boolean cold) throws IOException {
+        json.beginObject();
+        json.name("starts").value(section.getCount(cold));
+        json.name("timeToFirstFrameMs");
+        writeMeasure(json, section.getTotalMeasure(cold));
+        json.name("stageTimesMs").beginObject();
+        for (int stage = 0; stage < StartupTrace.STAGE_COUNT; stage++) {
+            json.name(StartupTrace.getStageName(stage));
+            writeMeasure(json, section.getStageMeasure(stage, cold));
+        }
+        json.endObject();
+        json.endObject();
+    }
+
+    private static void writeMeasure(JsonWriter json, RepeatedMeasure measure) throws IOException {
+        json.beginObject();
+        json.name("mean").value(measure.getMean());
+        json.name("ci95").value(measure.getConfidenceInterval95());
+        json.name("n").value(measure.getCount());
+        json.endObject();
+    }
+
+    /** Writes a count that is negative when unknown, as null in that case. */
+    private static void writeCount(JsonWriter json, String name, int count) throws IOException {
+        json.name(name);
+        if (count >= 0) {
+            json.value(count);
+        } else {
+            json.nullValue();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import com.google.ar.core.Frame;
+import com.google.ar.core.Session;
+
+import benchmark.common.samplerender.SampleRender;
+
+/**
+ * A benchmark section that can be run by a {@link SectionHostActivity}, which plays back several
+ * recordings one after another on the same render thread, GL context and ARCore {@link Session}.
+ *
+ * <p>GL resources such as shaders, textures and meshes are created once in {@link
+ * #onSurfaceCreated} and kept for every recording. Per-recording state, e.g. anchors, must be reset
+ * in {@link #onRecordingStarted}, and the GL resources are released in {@link #onSurfaceDestroyed}.
+ * Apart from {@link #configureSession}, which is also called from the UI thread for the first
+ * recording, every method is called on the render thread.
+ */
+public interface BenchmarkSection {
+    /** Creates the GL resources of the section. */
+    void onSurfaceCreated(SampleRender render);
+
+    void onSurfaceChanged(SampleRender render, int width, int height);
+
+    /** Applies the configuration of the section. Called while the session is paused, before every recording. */
+    void configureSession(Session session);
+
+    /**
+     * Called before the first frame of a recording.
+     *
+     * @param recordingName File name of the recording being played back
+     * @param frameRecorder Recorder for the frames of this recording, or null if the log could not be opened
+     */
+    void onRecordingStarted(Session session, String recordingName, FrameRecorder frameRecorder);
+
+    /**
+     * Updates the session and renders one frame of the current recording.
+     *
+     * @return The frame returned by {@code session.update()}, or null if the session could not be updated
+     */
+    Frame onDrawFrame(SampleRender render, Session session);
+
+    /**
+     * Called after the last frame of a recording, before its frame recorder is closed. The GL context
+     * still holds the last rendered frame.
+     */
+    void onRecordingFinished(SampleRender render);
+
+    /** Releases the GL resources of the section after its last frame, before the GL context is destroyed. */
+    void onSurfaceDestroyed(SampleRender render);
+}
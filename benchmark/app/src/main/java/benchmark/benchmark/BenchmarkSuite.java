@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.content.Context;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sections, recordings and repetition counts of a benchmark run, declared in a JSON manifest.
+ *
+ * <p>The manifest is read from {@link #MANIFEST_NAME} in the external files directory if present, and
+ * from the bundled asset of the same name otherwise. Its format is:
+ *
+ * <pre>
+ * {
+ *   "warmupIterations": 1,
+ *   "repetitions": 3,
+ *   "deviceSamplingIntervalMs": 1000,
+ *   "goldenFramesMs": [1000, 5000],
+ *   "sections": [
+ *     {
+ *       "activity": "benchmark.augmented_faces.AugmentedFacesActivity",
+ *       "recording": "aug-faces-1.mp4",
+ *       "name": "Augmented Faces",
+ *       "useCloud": false,
+ *       "requiresGCPKeys": false,
+ *       "requiresCredentialsFile": false,
+ *       "warmupIterations": 0,
+ *       "repetitions": 5,
+ *       "parameters": {"someExtra": 10},
+ *       "goldenFramesMs": [2000],
+ *       "sweep": {"benchmark.RENDER_SCALE": [0.5, 1], "benchmark.CUBEMAP_RESOLUTION": [8, 16]}
+ *     }
+ *   ]
+ * }
+ * </pre>
+ *
+ * Only "activity", "recording" and "name" are required; per-section counts override the suite
+ * defaults, and parameters are passed to the section as intent extras. Device state, e.g. thermal
+ * status, is sampled every "deviceSamplingIntervalMs" while the suite runs. In validation mode the
+ * frames at the "goldenFramesMs" recording timestamps are checked against golden images, see
+ * {@link GoldenImageValidator}.
+ *
+ * <p>A section with a "sweep" is expanded into one section per combination of the listed parameter
+ * values, e.g. four sections for the example above, which replay the same recording. The values are
+ * added to the parameters and the section name, see {@link RenderParameters}.
+ */
+public class BenchmarkSuite {
+    public static final String MANIFEST_NAME = "benchmark_suite.json";
+    public static final long DEFAULT_DEVICE_SAMPLING_INTERVAL_MS = 1000;
+
+    private final List<ActivityRecording> sections;
+    private final long deviceSamplingIntervalMs;
+
+    private BenchmarkSuite(List<ActivityRecording> sections, long deviceSamplingIntervalMs) {
+        this.sections = Collections.unmodifiableList(sections);
+        this.deviceSamplingIntervalMs = deviceSamplingIntervalMs;
+    }
+
+    public List<ActivityRecording> getSections() {
+        return sections;
+    }
+
+    public long getDeviceSamplingIntervalMs() {
+        return deviceSamplingIntervalMs;
+    }
+
+    /** Loads the manifest from external storage, falling back to the bundled asset. */
+    public static BenchmarkSuite load(Context context) throws IOException {
+        File override = new File(context.getExternalFilesDir(null), MANIFEST_NAME);
+        try (InputStream in = override.exists() ? new FileInputStream(override) : context.getAssets().open(MANIFEST_NAME)) {
+            return parse(readFully(in));
+        }
+    }
+
+    public static BenchmarkSuite parse(String manifest) throws IOException {
+        try {
+            JSONObject root = new JSONObject(manifest);
+            int warmupIterations = root.optInt("warmupIterations", 0);
+            int repetitions = root.optInt("repetitions", 1);
+            long deviceSamplingIntervalMs = root.optLong("deviceSamplingIntervalMs", DEFAULT_DEVICE_SAMPLING_INTERVAL_MS);
+            if (deviceSamplingIntervalMs <= 0) {
+                throw new IOException("Device sampling interval must be positive");
+            }
+            long[] goldenFrameTimes = parseTimes(root.optJSONArray("goldenFramesMs"), new long[0]);
+            JSONArray sectionArray = root.getJSONArray("sections");
+            List<ActivityRecording> sections = new ArrayList<>();
+            for (int i = 0; i < sectionArray.length(); i++) {
+                JSONObject section = sectionArray.getJSONObject(i);
+                int sectionRepetitions = section.optInt("repetitions", repetitions);
+                if (sectionRepetitions < 1) {
+                    throw new IOException("Section " + i + " of the benchmark suite has no repetitions");
+                }
+                Map<String, Object> parameters = parseParameters(section.optJSONObject("parameters"));
+                List<Map<String, Object>> sweepPoints = parseSweep(section.optJSONObject("sweep"));
+                for (Map<String, Object> sweepPoint : sweepPoints) {
+                    Map<String, Object> pointParameters = new LinkedHashMap<>(parameters);
+                    pointParameters.putAll(sweepPoint);
+                    String name = section.getString("name");
+                    ActivityRecording activityRecording = new ActivityRecording(
+                            Class.forName(section.getString("activity")),
+                            section.getString("recording"),
+                            sweepPoint.isEmpty() ? name : name + " " + formatSweepPoint(sweepPoint),
+                            section.optBoolean("useCloud", false),
+                            section.optBoolean("requiresGCPKeys", false),
+                            section.optBoolean("requiresCredentialsFile", false),
+                            Math.max(section.optInt("warmupIterations", warmupIterations), 0),
+                            sectionRepetitions,
+                            pointParameters,
+                            parseTimes(section.optJSONArray("goldenFramesMs"), goldenFrameTimes));
+                    if (!sweepPoint.isEmpty()) {
+                        activityRecording.setSweep(name, sweepPoint);
+                    }
+                    sections.add(activityRecording);
+                }
+            }
+            return new BenchmarkSuite(sections, deviceSamplingIntervalMs);
+        } catch (JSONException e) {
+            throw new IOException("Malformed benchmark suite manifest", e);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown activity in benchmark suite manifest: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, Object> parseParameters(JSONObject parameters) throws JSONException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (parameters == null) {
+            return result;
+        }
+        for (Iterator<String> keys = parameters.keys(); keys.hasNext(); ) {
+            String key = keys.next();
+            Object value = parameters.get(key);
+            if (!(value instanceof String || value instanceof Boolean || value instanceof Number)) {
+                throw new JSONException("Parameter " + key + " must be a string, boolean or number");
+            }
+            result.put(key, value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns every combination of the values of the swept parameters, with the last parameter
+     * changing fastest, or a single empty combination if there is no sweep.
+     */
+    private static List<Map<String, Object>> parseSweep(JSONObject sweep) throws JSONException {
+        List<Map<String, Object>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<>());
+        if (sweep == null) {
+            return points;
+        }
+        for (Iterator<String> keys = sweep.keys(); keys.hasNext(); ) {
+            String key = keys.next();
+            JSONArray values = sweep.getJSONArray(key);
+            if (values.length() == 0) {
+                throw new JSONException("Sweep of " + key + " has no values");
+            }
+            List<Map<String, Object>> expanded = new ArrayList<>();
+            for (Map<String, Object> point : points) {
+                for (int i = 0; i < values.length(); i++) {
+                    Object value = values.get(i);
+                    if (!(value instanceof String || value instanceof Boolean || value instanceof Number)) {
+                        throw new JSONException("Sweep values of " + key + " must be strings, booleans or numbers");
+                    }
+                    Map<String, Object> next = new LinkedHashMap<>(point);
+                    next.put(key, value);
+                    expanded.add(next);
+                }
+            }
+            points = expanded;
+        }
+        return points;
+    }
+
+    /** Returns e.g. "[RENDER_SCALE=0.5, CUBEMAP_RESOLUTION=8]". */
+    private static String formatSweepPoint(Map<String, Object> point) {
+        StringBuilder name = new StringBuilder("[");
+        for (Map.Entry<String, Object> entry : point.entrySet()) {
+            if (name.length() > 1) {
+                name.append(", ");
+            }
+            name.append(entry.getKey().replace("benchmark.", "")).append('=').append(entry.getValue());
+        }
+        return name.append(']').toString();
+    }
+
+    /** Returns the ascending times in {@code array}, or {@code defaultTimes} if it is absent. */
+    private static long[] parseTimes(JSONArray array, long[] defaultTimes) throws JSONException {
+        if (array == null) {
+            return defaultTimes;
+        }
+        long[] times = new long[array.length()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = array.getLong(i);
+            if (times[i] < 0 || (i > 0 && times[i] <= times[i - 1])) {
+                throw new JSONException("Golden frame times must be ascending and non-negative");
+            }
+        }
+        return times;
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the current frequency of every CPU cluster from the cpufreq sysfs interface, where each
+ * policy directory covers one cluster of cores sharing a clock. The root directory is a parameter
+ * so parsing can be checked against fixture files on a desktop JVM.
+ */
+public class CpuFrequencyReader {
+    public static final File DEFAULT_ROOT = new File("/sys/devices/system/cpu/cpufreq");
+    /** Value reported for frequencies that could not be read. */
+    public static final long FREQUENCY_UNKNOWN = -1;
+
+    private static final String POLICY_PREFIX = "policy";
+
+    private final File[] currentFrequencyFiles;
+    private final String[] clusterNames;
+    private final long[] maxFrequencies;
+    private final byte[] buffer = new byte[64];
+
+    /** @param root cpufreq directory holding one policy directory per cluster */
+    public CpuFrequencyReader(File root) {
+        File[] policies = root.listFiles((dir, name) -> name.startsWith(POLICY_PREFIX) && parseIndex(name) >= 0);
+        if (policies == null) {
+            policies = new File[0];
+        }
+        Arrays.sort(policies, (a, b) -> Integer.compare(parseIndex(a.getName()), parseIndex(b.getName())));
+
+        currentFrequencyFiles = new File[policies.length];
+        clusterNames = new String[policies.length];
+        maxFrequencies = new long[policies.length];
+        for (int i = 0; i < policies.length; i++) {
+            currentFrequencyFiles[i] = new File(policies[i], "scaling_cur_freq");
+            maxFrequencies[i] = readValue(new File(policies[i], "cpuinfo_max_freq"));
+            String cpus = readLine(new File(policies[i], "related_cpus"));
+            clusterNames[i] = cpus != null ? "CPU " + cpus.replace(' ', ',') : policies[i].getName();
+        }
+    }
+
+    public int getClusterCount() {
+        return clusterNames.length;
+    }
+
+    /** Returns a name listing the cores of {@code cluster}, e.g. "CPU 4,5,6". */
+    public String getClusterName(int cluster) {
+        return clusterNames[cluster];
+    }
+
+    /** Returns the highest frequency of {@code cluster} in kHz, or {@link #FREQUENCY_UNKNOWN}. */
+    public long getMaxFrequency(int cluster) {
+        return maxFrequencies[cluster];
+    }
+
+    /**
+     * Fills {@code frequencies} with the current frequency of every cluster in kHz, or {@link
+     * #FREQUENCY_UNKNOWN} where it could not be read. Does not allocate apart from file handles.
+     */
+    public void read(long[] frequencies) {
+        for (int cluster = 0; cluster < currentFrequencyFiles.length; cluster++) {
+            frequencies[cluster] = readValue(currentFrequencyFiles[cluster]);
+        }
+    }
+
+    private long readValue(File file) {
+        int length;
+        try (FileInputStream in = new FileInputStream(file)) {
+            length = in.read(buffer);
+        } catch (IOException e) {
+            return FREQUENCY_UNKNOWN;
+        }
+        return parseValue(buffer, Math.max(length, 0));
+    }
+
+    /** Parses the leading decimal number of a sysfs value, or returns {@link #FREQUENCY_UNKNOWN}. */
+    static long parseValue(byte[] bytes, int length) {
+        int i = 0;
+        while (i < length && (bytes[i] == ' ' || bytes[i] == '\t')) {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        for (; i < length && bytes[i] >= '0' && bytes[i] <= '9' && digits < 18; i++, digits++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return digits > 0 ? value : FREQUENCY_UNKNOWN;
+    }
+
+    private static String readLine(File file) {
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[256];
+            int length = Math.max(in.read(bytes), 0);
+            String text = new String(bytes, 0, length, StandardCharsets.US_ASCII);
+            int end = text.indexOf('\n');
+            String line = (end >= 0 ? text.substring(0, end) : text).trim();
+            return line.isEmpty() ? null : line;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int parseIndex(String policyName) {
+        try {
+            return Integer.parseInt(policyName.substring(POLICY_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Device state samples, thermal status, CPU cluster frequencies, battery power and the cumulative CPU
+ * time of each {@link ThreadCpuReader} thread group, stored as primitive columns. Timestamps use {@link System#currentTimeMillis()} like the frame records, so
+ * samples can be matched to the phases of a section.
+ *
+ * <p>Not thread-safe: the sampler owns the log while it runs, and readers must wait for it to stop.
+ */
+public class DeviceStateLog {
+    /** Value of thermal status samples taken on devices without thermal status support. */
+    public static final int THERMAL_STATUS_UNKNOWN = -1;
+    /** Value of battery samples that could not be read. */
+    public static final int BATTERY_UNKNOWN = Integer.MIN_VALUE;
+
+    private final String[] clusterNames;
+    private int size = 0;
+    private long[] timestamps;
+    private int[] thermalStatuses;
+    private float[] thermalHeadrooms;
+    private int[] batteryCurrents;
+    private int[] batteryVoltages;
+    private int[] cpuFrequencies;
+    private long[] threadCpuTimes;
+
+    /** @param clusterNames Names of the CPU clusters whose frequencies are sampled */
+    public DeviceStateLog(String[] clusterNames) {
+        this.clusterNames = clusterNames.clone();
+        int capacity = 256;
+        timestamps = new long[capacity];
+        thermalStatuses = new int[capacity];
+        thermalHeadrooms = new float[capacity];
+        batteryCurrents = new int[capacity];
+        batteryVoltages = new int[capacity];
+        cpuFrequencies = new int[capacity * clusterNames.length];
+        threadCpuTimes = new long[capacity * ThreadCpuReader.CATEGORY_COUNT];
+    }
+
+    /**
+     * @param thermalStatus PowerManager thermal status, or {@link #THERMAL_STATUS_UNKNOWN}
+     * @param thermalHeadroom PowerManager thermal headroom, or NaN if unknown
+     * @param batteryCurrent Battery current in microamperes, or {@link #BATTERY_UNKNOWN}
+     * @param batteryVoltage Battery voltage in millivolts, or {@link #BATTERY_UNKNOWN}
+     * @param frequencies Frequency of each CPU cluster in kHz, negative if unknown
+     * @param cpuTimes CPU time of each thread group since sampling started in nanoseconds
+     */
+    public void add(long timestamp, int thermalStatus, float thermalHeadroom, int batteryCurrent, int batteryVoltage,
+                    long[] frequencies, long[] cpuTimes) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            thermalStatuses = Arrays.copyOf(thermalStatuses, capacity);
+            thermalHeadrooms = Arrays.copyOf(thermalHeadrooms, capacity);
+            batteryCurrents = Arrays.copyOf(batteryCurrents, capacity);
+            batteryVoltages = Arrays.copyOf(batteryVoltages, capacity);
+            cpuFrequencies = Arrays.copyOf(cpuFrequencies, capacity * clusterNames.length);
+            threadCpuTimes = Arrays.copyOf(threadCpuTimes, capacity * ThreadCpuReader.CATEGORY_COUNT);
+        }
+        timestamps[size] = timestamp;
+        thermalStatuses[size] = thermalStatus;
+        thermalHeadrooms[size] = thermalHeadroom;
+        batteryCurrents[size] = batteryCurrent;
+        batteryVoltages[size] = batteryVoltage;
+        for (int cluster = 0; cluster < clusterNames.length; cluster++) {
+            cpuFrequencies[size * clusterNames.length + cluster] = (int) Math.max(frequencies[cluster], -1);
+        }
+        System.arraycopy(cpuTimes, 0, threadCpuTimes, size * ThreadCpuReader.CATEGORY_COUNT,
+                ThreadCpuReader.CATEGORY_COUNT);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getClusterCount() {
+        return clusterNames.length;
+    }
+
+    public String getClusterName(int cluster) {
+        return clusterNames[cluster];
+    }
+
+    /**
+     * Summarizes the samples taken between {@code startTime} and {@code endTime}. If the interval is
+     * shorter than the sampling interval, the last sample before its end is used instead.
+     */
+    public Summary summarize(long startTime, long endTime) {
+        Summary summary = new Summary(clusterNames.length);
+        int first = 0;
+        while (first < size && timestamps[first] < startTime) {
+            first++;
+        }
+        int last = first;
+        while (last < size && timestamps[last] <= endTime) {
+            last++;
+        }
+        if (first == last && first > 0) {
+            first--;
+        }
+        for (int sample = first; sample < last; sample++) {
+            summary.add(this, sample);
+        }
+        return summary;
+    }
+
+    /** Aggregate device state over an interval, e.g. a phase of a section. */
+    public static class Summary {
+        private int sampleCount;
+        private int maxThermalStatus = THERMAL_STATUS_UNKNOWN;
+        private float minThermalHeadroom = Float.NaN;
+        private final long[] frequencySums;
+        private final int[] frequencyCounts;
+        private double powerSum;
+        private int powerCount;
+        private int firstSample = -1;
+        private int lastSample = -1;
+        private DeviceStateLog log;
+
+        Summary(int clusterCount) {
+            frequencySums = new long[clusterCount];
+            frequencyCounts = new int[clusterCount];
+        }
+
+        private void add(DeviceStateLog log, int sample) {
+            this.log = log;
+            if (firstSample < 0) {
+                firstSample = sample;
+            }
+            lastSample = sample;
+            sampleCount++;
+            maxThermalStatus = Math.max(maxThermalStatus, log.thermalStatuses[sample]);
+            float headroom = log.thermalHeadrooms[sample];
+            if (!Float.isNaN(headroom) && (Float.isNaN(minThermalHeadroom) || headroom < minThermalHeadroom)) {
+                minThermalHeadroom = headroom;
+            }
+            for (int cluster = 0; cluster < frequencySums.length; cluster++) {
+                int frequency = log.cpuFrequencies[sample * frequencySums.length + cluster];
+                if (frequency >= 0) {
+                    frequencySums[cluster] += frequency;
+                    frequencyCounts[cluster]++;
+                }
+            }
+            int current = log.batteryCurrents[sample];
+            int voltage = log.batteryVoltages[sample];
+            if (current != BATTERY_UNKNOWN && voltage != BATTERY_UNKNOWN) {
+                // Devices disagree on the sign of the discharge current.
+                powerSum += Math.abs((double) current) * voltage / 1e6;
+                powerCount++;
+            }
+        }
+
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        /** Returns the most severe thermal status, or {@link #THERMAL_STATUS_UNKNOWN}. */
+        public int getMaxThermalStatus() {
+            return maxThermalStatus;
+        }
+
+        /** Returns the lowest thermal headroom, or NaN if unknown. */
+        public float getMinThermalHeadroom() {
+            return minThermalHeadroom;
+        }
+
+        /** Returns the mean frequency of {@code cluster} in MHz, or NaN if unknown. */
+        public float getMeanCpuFrequency(int cluster) {
+            return frequencyCounts[cluster] > 0 ? frequencySums[cluster] / 1000.f / frequencyCounts[cluster] : Float.NaN;
+        }
+
+        /** Returns the mean battery power in milliwatts, or NaN if unknown. */
+        public float getMeanBatteryPower() {
+            return powerCount > 0 ? (float) (powerSum / powerCount) : Float.NaN;
+        }
+
+        /**
+         * Returns the CPU time of {@code category}, a {@link ThreadCpuReader} thread group, divided by
+         * the wall time between the first and last sample, or NaN if fewer than two samples were
+         * taken. A value of 1 means one core was busy all the time.
+         */
+        public float getCpuUtilization(int category) {
+            if (firstSample < 0 || lastSample == firstSample) {
+                return Float.NaN;
+            }
+            long cpuTime = log.threadCpuTimes[lastSample * ThreadCpuReader.CATEGORY_COUNT + category]
+                    - log.threadCpuTimes[firstSample * ThreadCpuReader.CATEGORY_COUNT + category];
+            long wallTime = log.timestamps[lastSample] - log.timestamps[firstSample];
+            return wallTime > 0 ? cpuTime / 1e6f / wallTime : Float.NaN;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.Process;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import java.io.Closeable;
+
+/**
+ * Samples thermal status, CPU cluster frequencies, battery power and per-thread CPU time into a
+ * {@link DeviceStateLog} on a low priority background thread, so throttling and contention can be
+ * correlated with the frame records.
+ */
+public class DeviceStateSampler implements Closeable {
+    private static final String TAG = DeviceStateSampler.class.getSimpleName();
+
+    private final Context context;
+    private final long intervalMs;
+    private final PowerManager powerManager;
+    private final BatteryManager batteryManager;
+    private final IntentFilter batteryChangedFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+    private final CpuFrequencyReader cpuFrequencyReader = new CpuFrequencyReader(CpuFrequencyReader.DEFAULT_ROOT);
+    private final long[] cpuFrequencies = new long[cpuFrequencyReader.getClusterCount()];
+    // Threads are attributed to the UI group by comparing their id to the process id.
+    private final ThreadCpuReader threadCpuReader = new ThreadCpuReader(ThreadCpuReader.DEFAULT_ROOT,
+            Process.myPid(), Os.sysconf(OsConstants._SC_CLK_TCK));
+    private final long[] threadCpuTimes = new long[ThreadCpuReader.CATEGORY_COUNT];
+    private final DeviceStateLog log;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Starts sampling immediately.
+     *
+     * @param intervalMs Time between samples. Thermal headroom is rate limited by the platform and
+     *     reads as unknown when sampled more often than once per second.
+     */
+    public DeviceStateSampler(Context context, long intervalMs) {
+        this.context = context.getApplicationContext();
+        this.intervalMs = intervalMs;
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        String[] clusterNames = new String[cpuFrequencyReader.getClusterCount()];
+        for (int cluster = 0; cluster < clusterNames.length; cluster++) {
+            clusterNames[cluster] = cpuFrequencyReader.getClusterName(cluster);
+        }
+        log = new DeviceStateLog(clusterNames);
+        thread = new Thread(this::sampleLoop, TAG);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Returns the samples taken so far. Only safe to read after {@link #close}. */
+    public DeviceStateLog getLog() {
+        return log;
+    }
+
+    private void sampleLoop() {
+        while (running) {
+            sample();
+            try {
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void sample() {
+        long timestamp = System.currentTimeMillis();
+        int thermalStatus = DeviceStateLog.THERMAL_STATUS_UNKNOWN;
+        float thermalHeadroom = Float.NaN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalStatus = powerManager.getCurrentThermalStatus();
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            thermalHeadroom = powerManager.getThermalHeadroom(0);
+        }
+
+        long current = batteryManager.getLongProperty(BatteryManager.BATTERY_PROPERTY_CURRENT_NOW);
+        int batteryCurrent = current == Long.MIN_VALUE || current == 0 || Math.abs(current) > Integer.MAX_VALUE
+                ? DeviceStateLog.BATTERY_UNKNOWN : (int) current;
+        // The sticky broadcast is returned without registering a receiver.
+        Intent batteryStatus = context.registerReceiver(null, batteryChangedFilter);
+        int voltage = batteryStatus != null ? batteryStatus.getIntExtra(BatteryManager.EXTRA_VOLTAGE, -1) : -1;
+        int batteryVoltage = voltage > 0 ? voltage : DeviceStateLog.BATTERY_UNKNOWN;
+
+        cpuFrequencyReader.read(cpuFrequencies);
+        threadCpuReader.read(threadCpuTimes);
+        log.add(timestamp, thermalStatus, thermalHeadroom, batteryCurrent, batteryVoltage, cpuFrequencies,
+                threadCpuTimes);
+    }
+
+    /** Stops sampling and waits for the sampling thread to finish. */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Log.d(TAG, "Took " + log.size() + " device state samples");
+    }
+}
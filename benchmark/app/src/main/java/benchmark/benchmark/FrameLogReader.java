@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a frame log written by {@link FrameLogWriter}.
+ *
+ * <p>Logs produced before the binary format was introduced (one {@code test <recording>} line per
+ * section followed by comma separated frame lines) are detected and parsed as well.
+ */
+public class FrameLogReader {
+    private static final String LEGACY_SECTION_PREFIX = "test ";
+    private static final int LEGACY_FIELDS = 6;
+    // Section header size of versions before 4, which did not store stage and pass counts.
+    private static final int SECTION_HEADER_SIZE_V1 = 10;
+    // Number of memory fields in records of version 6 and later. Sections do not store the count, so
+    // a version that changes it has to be read with a count of its own.
+    private static final int MEMORY_FIELD_COUNT_V6 = 7;
+    private static final int MAX_INITIAL_SECTION_CAPACITY = 1 << 14;
+
+    /** Returns the sections of the log at {@code file} in the order they were written. */
+    public static List<FrameLogSection> read(File file) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            FileChannel channel = inputStream.getChannel();
+            ByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() >= 4 && buffer.getInt(0) == FrameLogWriter.SECTION_MAGIC) {
+                return readBinary(buffer);
+            }
+        }
+        return readLegacy(file);
+    }
+
+    private static List<FrameLogSection> readBinary(ByteBuffer buffer) throws IOException {
+        List<FrameLogSection> sections = new ArrayList<>();
+        FrameLogSection section = null;
+        int recordSize = FrameLogWriter.RECORD_SIZE;
+        int stageCount = 0;
+        int passCount = 0;
+        int stageCpuCount = 0;
+        int memoryFieldCount = 0;
+        boolean hasPresentation = false;
+        boolean hasStateCalls = false;
+        boolean hasFrameTimeNanos = false;
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            if (buffer.getInt(start) == FrameLogWriter.SECTION_MAGIC) {
+                if (buffer.remaining() < SECTION_HEADER_SIZE_V1) {
+                    break;
+                }
+                buffer.getInt();
+                short version = buffer.getShort();
+                recordSize = buffer.getShort();
+                int nameLength = buffer.getShort();
+                if (version >= 4) {
+                    if (buffer.remaining() < FrameLogWriter.SECTION_HEADER_SIZE - SECTION_HEADER_SIZE_V1) {
+                        break;
+                    }
+                    stageCount = buffer.getShort();
+                    passCount = buffer.getShort();
+                    // Version 5 added the CPU time of every stage after the pass times.
+                    stageCpuCount = version >= 5 ? stageCount : 0;
+                    // Version 6 added memory statistics after the stage CPU times.
+                    memoryFieldCount = version >= 6 ? MEMORY_FIELD_COUNT_V6 : 0;
+                    // Version 7 added the present time and vsync period after the memory statistics.
+                    hasPresentation = version >= 7;
+                    // Version 8 added the GL state call counts after the presentation fields.
+                    hasStateCalls = version >= 8;
+                    // Version 9 added the monotonic frame start time after the state call counts.
+                    hasFrameTimeNanos = version >= 9;
+                } else {
+                    // Version 3 added stage times, earlier versions only have the base fields.
+                    stageCount = (recordSize - FrameLogWriter.BASE_RECORD_SIZE) / 4;
+                    passCount = 0;
+                    stageCpuCount = 0;
+                    memoryFieldCount = 0;
+                    hasPresentation = false;
+                    hasStateCalls = false;
+                    hasFrameTimeNanos = false;
+                }
+                if (version < 1 || recordSize < FrameLogWriter.BASE_RECORD_SIZE
+                        + 4 * (stageCount + passCount + stageCpuCount + memoryFieldCount)
+                        + (hasPresentation ? FrameLogWriter.PRESENTATION_SIZE : 0)
+                        + (hasStateCalls ? FrameLogWriter.STATE_CALLS_SIZE : 0)
+                        + (hasFrameTimeNanos ? FrameLogWriter.FRAME_TIME_NANOS_SIZE : 0)) {
+                    throw new IOException("Unsupported frame log version " + version + " with record size " + recordSize);
+                }
+                if (buffer.remaining() < nameLength) {
+                    break;
+                }
+                byte[] name = new byte[nameLength];
+                buffer.get(name);
+                section = new FrameLogSection(
+                        new String(name, StandardCharsets.UTF_8),
+                        Math.min(buffer.remaining() / recordSize, MAX_INITIAL_SECTION_CAPACITY));
+                sections.add(section);
+                continue;
+            }
+            if (section != null && buffer.getInt(start) == FrameLogWriter.SECTION_END_MAGIC) {
+                if (buffer.remaining() < FrameLogWriter.SECTION_END_SIZE) {
+                    break;
+                }
+                buffer.getInt();
+                section.setDroppedRecords(buffer.getLong());
+                continue;
+            }
+            if (section == null) {
+                throw new IOException("Frame record without a section header at offset " + start);
+            }
+            if (buffer.remaining() < recordSize) {
+                // Truncated record from an interrupted run.
+                break;
+            }
+            section.add(
+                    buffer.getInt(),
+                    buffer.getLong(),
+                    buffer.getInt(),
+                    buffer.getInt(),
+                    buffer.getLong(),
+                    buffer.getInt());
+            // Older versions have fewer stages and passes, newer ones may have more than we know of.
+            int frame = section.size() - 1;
+            int stagesStart = buffer.position();
+            for (int stage = 0; stage < Math.min(stageCount, FrameStages.STAGE_COUNT); stage++) {
+                section.setStageTime(frame, stage, buffer.getInt());
+            }
+            buffer.position(stagesStart + 4 * stageCount);
+            int passesStart = buffer.position();
+            for (int pass = 0; pass < Math.min(passCount, GpuPasses.PASS_COUNT); pass++) {
+                section.setGpuPassTime(frame, pass, buffer.getInt());
+            }
+            buffer.position(passesStart + 4 * passCount);
+            for (int stage = 0; stage < Math.min(stageCpuCount, FrameStages.STAGE_COUNT); stage++) {
+                section.setStageCpuTime(frame, stage, buffer.getInt());
+            }
+            buffer.position(passesStart + 4 * (passCount + stageCpuCount));
+            for (int field = 0; field < Math.min(memoryFieldCount, MemoryFields.FIELD_COUNT); field++) {
+                section.setMemoryStat(frame, field, buffer.getInt());
+            }
+            if (hasPresentation) {
+                buffer.position(passesStart + 4 * (passCount + stageCpuCount + memoryFieldCount));
+                section.setPresentation(frame, buffer.getLong(), buffer.getInt());
+            }
+            if (hasStateCalls) {
+                section.setStateCalls(frame, buffer.getInt(), buffer.getInt());
+            }
+            if (hasFrameTimeNanos) {
+                section.setFrameTimeNanos(frame, buffer.getLong());
+            }
+            // Skip fields appended by newer format versions.
+            buffer.position(start + recordSize);
+        }
+        return sections;
+    }
+
+    private static List<FrameLogSection> readLegacy(File file) throws IOException {
+        List<FrameLogSection> sections = new ArrayList<>();
+        FrameLogSection section = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(LEGACY_SECTION_PREFIX)) {
+                    section = new FrameLogSection(line.substring(LEGACY_SECTION_PREFIX.length()), 0);
+                    sections.add(section);
+                    continue;
+                }
+                String[] times = line.split(",");
+                if (section == null || times.length < LEGACY_FIELDS) {
+                    continue;
+                }
+                try {
+                    section.add(
+                            Integer.decode(times[0]),
+                            Long.decode(times[1]),
+                            Integer.decode(times[2]),
+                            Integer.decode(times[3]),
+                            (long) Float.parseFloat(times[4]),
+                            Integer.decode(times[5]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed frame log line: " + line, e);
+                }
+            }
+        }
+        return sections;
+    }
+
+    private FrameLogReader() {}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.Arrays;
+
+/** Frame records of one benchmark section, stored column-wise in primitive arrays. */
+public class FrameLogSection {
+    /** Present time of frames that were not shown, or were logged before present times were. */
+    public static final long PRESENT_TIME_UNKNOWN = -1;
+    /** Value of counts that were not measured, or were logged before they were. */
+    public static final int COUNT_UNKNOWN = -1;
+    /** Monotonic frame time of frames logged before it was. */
+    public static final long FRAME_TIME_NANOS_UNKNOWN = -1;
+
+    private final String recordingName;
+    private int size;
+    private int[] phases;
+    private long[] frameTimes;
+    private int[] processTimes;
+    private int[] handleInputTimes;
+    private long[] gpuTimes;
+    private int[] totalTimes;
+    private int[] stageTimes;
+    private int[] stageCpuTimes;
+    private int[] gpuPassTimes;
+    private int[] memoryStats;
+    private long[] presentTimes;
+    private int[] vsyncPeriods;
+    private int[] stateCallsIssued;
+    private int[] stateCallsSkipped;
+    private long[] frameTimesNanos;
+    private long droppedRecords;
+
+    public FrameLogSection(String recordingName, int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.recordingName = recordingName;
+        this.phases = new int[capacity];
+        this.frameTimes = new long[capacity];
+        this.processTimes = new int[capacity];
+        this.handleInputTimes = new int[capacity];
+        this.gpuTimes = new long[capacity];
+        this.totalTimes = new int[capacity];
+        this.stageTimes = new int[capacity * FrameStages.STAGE_COUNT];
+        this.stageCpuTimes = new int[capacity * FrameStages.STAGE_COUNT];
+        this.gpuPassTimes = new int[capacity * GpuPasses.PASS_COUNT];
+        this.memoryStats = new int[capacity * MemoryFields.FIELD_COUNT];
+        this.presentTimes = new long[capacity];
+        this.vsyncPeriods = new int[capacity];
+        this.stateCallsIssued = new int[capacity];
+        this.stateCallsSkipped = new int[capacity];
+        this.frameTimesNanos = new long[capacity];
+    }
+
+    /* package-private */
+    void add(int phase, long frameTime, int processTime, int handleInputTime, long gpuTime, int totalTime) {
+        if (size == phases.length) {
+            int capacity = size * 2;
+            phases = Arrays.copyOf(phases, capacity);
+            frameTimes = Arrays.copyOf(frameTimes, capacity);
+            processTimes = Arrays.copyOf(processTimes, capacity);
+            handleInputTimes = Arrays.copyOf(handleInputTimes, capacity);
+            gpuTimes = Arrays.copyOf(gpuTimes, capacity);
+            totalTimes = Arrays.copyOf(totalTimes, capacity);
+            stageTimes = Arrays.copyOf(stageTimes, capacity * FrameStages.STAGE_COUNT);
+            stageCpuTimes = Arrays.copyOf(stageCpuTimes, capacity * FrameStages.STAGE_COUNT);
+            gpuPassTimes = Arrays.copyOf(gpuPassTimes, capacity * GpuPasses.PASS_COUNT);
+            memoryStats = Arrays.copyOf(memoryStats, capacity * MemoryFields.FIELD_COUNT);
+            presentTimes = Arrays.copyOf(presentTimes, capacity);
+            vsyncPeriods = Arrays.copyOf(vsyncPeriods, capacity);
+            stateCallsIssued = Arrays.copyOf(stateCallsIssued, capacity);
+            stateCallsSkipped = Arrays.copyOf(stateCallsSkipped, capacity);
+            frameTimesNanos = Arrays.copyOf(frameTimesNanos, capacity);
+        }
+        phases[size] = phase;
+        frameTimes[size] = frameTime;
+        processTimes[size] = processTime;
+        handleInputTimes[size] = handleInputTime;
+        gpuTimes[size] = gpuTime;
+        totalTimes[size] = totalTime;
+        Arrays.fill(stageCpuTimes, size * FrameStages.STAGE_COUNT, (size + 1) * FrameStages.STAGE_COUNT,
+                FrameStages.CPU_TIME_UNKNOWN);
+        Arrays.fill(gpuPassTimes, size * GpuPasses.PASS_COUNT, (size + 1) * GpuPasses.PASS_COUNT,
+                GpuPasses.TIME_UNKNOWN);
+        Arrays.fill(memoryStats, size * MemoryFields.FIELD_COUNT, (size + 1) * MemoryFields.FIELD_COUNT,
+                MemoryFields.VALUE_UNKNOWN);
+        presentTimes[size] = PRESENT_TIME_UNKNOWN;
+        vsyncPeriods[size] = 0;
+        stateCallsIssued[size] = COUNT_UNKNOWN;
+        stateCallsSkipped[size] = COUNT_UNKNOWN;
+        frameTimesNanos[size] = FRAME_TIME_NANOS_UNKNOWN;
+        size++;
+    }
+
+    public String getRecordingName() {
+        return recordingName;
+    }
+
+    /* package-private */
+    void setStageTime(int frame, int stage, int stageTime) {
+        stageTimes[frame * FrameStages.STAGE_COUNT + stage] = stageTime;
+    }
+
+    /* package-private */
+    void setStageCpuTime(int frame, int stage, int stageCpuTime) {
+        stageCpuTimes[frame * FrameStages.STAGE_COUNT + stage] = stageCpuTime;
+    }
+
+    /* package-private */
+    void setGpuPassTime(int frame, int pass, int passTime) {
+        gpuPassTimes[frame * GpuPasses.PASS_COUNT + pass] = passTime;
+    }
+
+    /* package-private */
+    void setMemoryStat(int frame, int field, int value) {
+        memoryStats[frame * MemoryFields.FIELD_COUNT + field] = value;
+    }
+
+    /* package-private */
+    void setPresentation(int frame, long presentTime, int vsyncPeriod) {
+        presentTimes[frame] = presentTime;
+        vsyncPeriods[frame] = vsyncPeriod;
+    }
+
+    /* package-private */
+    void setStateCalls(int frame, int issued, int skipped) {
+        stateCallsIssued[frame] = issued;
+        stateCallsSkipped[frame] = skipped;
+    }
+
+    /* package-private */
+    void setFrameTimeNanos(int frame, long frameTimeNanos) {
+        frameTimesNanos[frame] = frameTimeNanos;
+    }
+
+    /** Returns the number of rendered frames that are missing from the log. */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /* package-private */
+    void setDroppedRecords(long droppedRecords) {
+        this.droppedRecords = droppedRecords;
+    }
+
+    /** Returns the number of frames in this section. */
+    public int size() {
+        return size;
+    }
+
+    public int getPhase(int frame) {
+        return phases[frame];
+    }
+
+    /** Returns the wall-clock time in milliseconds at which the frame started. */
+    public long getFrameTime(int frame) {
+        return frameTimes[frame];
+    }
+
+    /**
+     * Returns the monotonic time in nanoseconds at which the frame started, or {@link
+     * #FRAME_TIME_NANOS_UNKNOWN}. Only the differences between frames are meaningful.
+     */
+    public long getFrameTimeNanos(int frame) {
+        return frameTimesNanos[frame];
+    }
+
+    /** Returns the ARCore processing time of the frame in milliseconds. */
+    public int getProcessTime(int frame) {
+        return processTimes[frame];
+    }
+
+    /** Returns the input handling time of the frame in milliseconds. */
+    public int getHandleInputTime(int frame) {
+        return handleInputTimes[frame];
+    }
+
+    /** Returns the GPU time of all timed render passes in nanoseconds, negative if unknown. */
+    public long getGpuTime(int frame) {
+        return gpuTimes[frame];
+    }
+
+    /** Returns the total CPU time of the frame in milliseconds. */
+    public int getTotalTime(int frame) {
+        return totalTimes[frame];
+    }
+
+    /** Returns the time spent in {@code stage} during {@code frame} in nanoseconds, 0 if not logged. */
+    public int getStageTime(int frame, int stage) {
+        return stageTimes[frame * FrameStages.STAGE_COUNT + stage];
+    }
+
+    /**
+     * Returns the render thread CPU time spent in {@code stage} during {@code frame} in nanoseconds,
+     * or {@link FrameStages#CPU_TIME_UNKNOWN} if it was not measured.
+     */
+    public int getStageCpuTime(int frame, int stage) {
+        return stageCpuTimes[frame * FrameStages.STAGE_COUNT + stage];
+    }
+
+    /**
+     * Returns the GPU time of {@code pass} during {@code frame} in nanoseconds, or {@link
+     * GpuPasses#TIME_UNKNOWN} if it was not measured.
+     */
+    public int getGpuPassTime(int frame, int pass) {
+        return gpuPassTimes[frame * GpuPasses.PASS_COUNT + pass];
+    }
+
+    /**
+     * Returns the {@link MemoryFields} {@code field} most recently sampled at {@code frame}, or
+     * {@link MemoryFields#VALUE_UNKNOWN}. Memory is not sampled on every frame, so consecutive
+     * frames may repeat the same sample.
+     */
+    public int getMemoryStat(int frame, int field) {
+        return memoryStats[frame * MemoryFields.FIELD_COUNT + field];
+    }
+
+    /**
+     * Returns the estimated time at which the frame was shown in nanoseconds, or {@link
+     * #PRESENT_TIME_UNKNOWN}. Offscreen sections only show some of the frames they render.
+     */
+    public long getPresentTime(int frame) {
+        return presentTimes[frame];
+    }
+
+    /** Returns the vsync period of the display the frame was shown on in nanoseconds, 0 if unknown. */
+    public int getVsyncPeriod(int frame) {
+        return vsyncPeriods[frame];
+    }
+
+    /**
+     * Returns the number of GL state calls issued through the state cache of the render during the
+     * frame, or {@link #COUNT_UNKNOWN}.
+     */
+    public int getStateCallsIssued(int frame) {
+        return stateCallsIssued[frame];
+    }
+
+    /**
+     * Returns the number of GL state calls the state cache of the render skipped during the frame
+     * because they would not have changed the state, or {@link #COUNT_UNKNOWN}.
+     */
+    public int getStateCallsSkipped(int frame) {
+        return stateCallsSkipped[frame];
+    }
+}
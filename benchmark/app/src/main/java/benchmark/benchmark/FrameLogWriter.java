@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends a section of fixed-size binary frame records to the frame log.
+ *
+ * <p>Every section starts with a header holding {@link #SECTION_MAGIC}, the format version, the
+ * size of one frame record, the length of the recording file name, the number of profiler stages
+ * and GPU passes per record, and the recording file name. It is followed by one {@link
+ * #RECORD_SIZE} byte little-endian record per rendered frame:
+ *
+ * <pre>
+ *   int  phase
+ *   long frame start timestamp (ms)
+ *   int  ARCore processing time (ms)
+ *   int  input handling time (ms)
+ *   long GPU time (ns), -1 if unknown
+ *   int  total CPU time (ms)
+ *   int  time spent in each {@link FrameStages} stage (ns), {@link FrameStages#STAGE_COUNT} times
+ *   int  GPU time of each {@link GpuPasses} pass (ns), {@link GpuPasses#PASS_COUNT} times
+ *   int  render thread CPU time in each stage (ns), -1 if unknown, {@link FrameStages#STAGE_COUNT} times
+ *   int  each {@link MemoryFields} field, -1 if unknown, {@link MemoryFields#FIELD_COUNT} times
+ *   long estimated present time (ns), -1 if the frame was not shown
+ *   int  vsync period of the display the frame was shown on (ns), 0 if not shown
+ *   int  GL state calls issued through the state cache of the render, -1 if unknown
+ *   int  GL state calls the state cache skipped as redundant, -1 if unknown
+ *   long monotonic frame start timestamp from {@link System#nanoTime} (ns), -1 if unknown
+ * </pre>
+ *
+ * <p>Frame intervals are taken from the monotonic timestamp; the wall-clock one only aligns frames
+ * with other logs, and is too coarse for them.
+ *
+ * <p>A section may be terminated by {@link #SECTION_END_MAGIC} followed by a long holding the
+ * number of frames that were rendered but could not be recorded.
+ *
+ * <p>Records are staged in a direct buffer so that {@link #writeFrame} does not allocate.
+ */
+public class FrameLogWriter implements Closeable {
+    public static final String FILE_NAME = "frame-log";
+
+    // "ARFL" when read as a little-endian int. Never a valid phase number.
+    static final int SECTION_MAGIC = 0x4C465241;
+    // "ARFE" when read as a little-endian int.
+    static final int SECTION_END_MAGIC = 0x45465241;
+    static final int SECTION_END_SIZE = 12;
+    static final short VERSION = 9;
+    // Size of the records written before stage times were added.
+    static final int BASE_RECORD_SIZE = 32;
+    // Size of the presentation fields added in version 7.
+    static final int PRESENTATION_SIZE = 12;
+    // Size of the state call counts added in version 8.
+    static final int STATE_CALLS_SIZE = 8;
+    // Size of the monotonic frame start timestamp added in version 9.
+    static final int FRAME_TIME_NANOS_SIZE = 8;
+    static final int RECORD_SIZE = BASE_RECORD_SIZE + 8 * FrameStages.STAGE_COUNT + 4 * GpuPasses.PASS_COUNT
+            + 4 * MemoryFields.FIELD_COUNT + PRESENTATION_SIZE + STATE_CALLS_SIZE + FRAME_TIME_NANOS_SIZE;
+    static final int SECTION_HEADER_SIZE = 14;
+
+    private static final int RECORDS_PER_WRITE = 256;
+
+    private final FileOutputStream outputStream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private boolean closed = false;
+
+    /**
+     * Opens {@code file} for appending and writes the header of a new section.
+     *
+     * @param recordingName Name of the recording the following frames were rendered from
+     */
+    public FrameLogWriter(File file, String recordingName) throws IOException {
+        byte[] name = recordingName.getBytes(StandardCharsets.UTF_8);
+        outputStream = new FileOutputStream(file, /*append=*/ true);
+        channel = outputStream.getChannel();
+        buffer = ByteBuffer.allocateDirect(Math.max(RECORD_SIZE * RECORDS_PER_WRITE, SECTION_HEADER_SIZE + name.length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(SECTION_MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) RECORD_SIZE);
+        buffer.putShort((short) name.length);
+        buffer.putShort((short) FrameStages.STAGE_COUNT);
+        buffer.putShort((short) GpuPasses.PASS_COUNT);
+        buffer.put(name);
+        flush();
+    }
+
+    /**
+     * Appends one frame record. Records are written to disk in batches.
+     *
+     * @param stageTimes Array holding the stage times of the frame at {@code stageOffset}
+     * @param stageCpuTimes Array holding the stage CPU times of the frame at {@code stageOffset}
+     * @param passTimes Array holding the GPU pass times of the frame at {@code passOffset}
+     * @param memoryStats Array holding the memory statistics of the frame at {@code memoryOffset}
+     * @param presentTime Estimated time the frame was shown, or -1 if it was not
+     * @param stateCallsIssued GL state calls issued during the frame, or -1 if unknown
+     * @param stateCallsSkipped GL state calls skipped during the frame, or -1 if unknown
+     * @param frameTimeNanos Monotonic start time of the frame in nanoseconds, or -1 if unknown
+     */
+    public void writeFrame(int phase, long frameTime, int processTime, int handleInputTime, long gpuTime, int totalTime,
+                           int[] stageTimes, int[] stageCpuTimes, int stageOffset, int[] passTimes, int passOffset,
+                           int[] memoryStats, int memoryOffset, long presentTime, int vsyncPeriod,
+                           int stateCallsIssued, int stateCallsSkipped, long frameTimeNanos) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            flush();
+        }
+        buffer.putInt(phase);
+        buffer.putLong(frameTime);
+        buffer.putInt(processTime);
+        buffer.putInt(handleInputTime);
+        buffer.putLong(gpuTime);
+        buffer.putInt(totalTime);
+        for (int stage = 0; stage < FrameStages.STAGE_COUNT; stage++) {
+            buffer.putInt(stageTimes[stageOffset + stage]);
+        }
+        for (int pass = 0; pass < GpuPasses.PASS_COUNT; pass++) {
+            buffer.putInt(passTimes[passOffset + pass]);
+        }
+        for (int stage = 0; stage < FrameStages.STAGE_COUNT; stage++) {
+            buffer.putInt(stageCpuTimes[stageOffset + stage]);
+        }
+        for (int field = 0; field < MemoryFields.FIELD_COUNT; field++) {
+            buffer.putInt(memoryStats[memoryOffset + field]);
+        }
+        buffer.putLong(presentTime);
+        buffer.putInt(vsyncPeriod);
+        buffer.putInt(stateCallsIssued);
+        buffer.putInt(stateCallsSkipped);
+        buffer.putLong(frameTimeNanos);
+    }
+
+    /** Ends the section, recording how many frames were dropped before reaching the log. */
+    public void writeSectionEnd(long droppedRecords) throws IOException {
+        if (buffer.remaining() < SECTION_END_SIZE) {
+            flush();
+        }
+        buffer.putInt(SECTION_END_MAGIC);
+        buffer.putLong(droppedRecords);
+    }
+
+    /** Writes all buffered records to the log file. */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+}
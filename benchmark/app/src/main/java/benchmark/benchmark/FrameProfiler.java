@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.os.Debug;
+
+import java.util.Arrays;
+
+/**
+ * Measures how long each stage of a frame takes with nanosecond resolution, both in wall time and
+ * in CPU time of the calling thread. The difference is time the thread spent waiting, e.g. on
+ * ARCore or the GPU driver, or preempted by other work.
+ *
+ * <p>Stages are identified by the preregistered {@code STAGE_*} constants so that every benchmark
+ * section reports the same breakdown. A stage may be entered several times per frame, e.g. once
+ * per drawn object; its durations are summed. All storage is allocated up front, so spans can be
+ * opened and closed on the render thread without allocating.
+ *
+ * <p>A frame starts with {@link #beginFrame}. {@link #endFrame} closes it and makes its stage times
+ * available through {@link #getFrameStageTime}. Spans that end after {@link #endFrame} are counted
+ * towards the next frame; the log stage relies on this, since it times recording the frame that has
+ * just ended. Frames that are abandoned without calling {@link #endFrame}, e.g. because tracking
+ * was lost, are discarded by the next {@link #beginFrame}.
+ */
+public class FrameProfiler {
+    // The stages are defined by FrameStages, which code reading the frame log uses off-device.
+    public static final int STAGE_SESSION_UPDATE = FrameStages.STAGE_SESSION_UPDATE;
+    public static final int STAGE_INPUT = FrameStages.STAGE_INPUT;
+    public static final int STAGE_BACKGROUND = FrameStages.STAGE_BACKGROUND;
+    public static final int STAGE_POINT_CLOUD = FrameStages.STAGE_POINT_CLOUD;
+    public static final int STAGE_PLANES = FrameStages.STAGE_PLANES;
+    public static final int STAGE_VIRTUAL_OBJECTS = FrameStages.STAGE_VIRTUAL_OBJECTS;
+    public static final int STAGE_COMPOSITE = FrameStages.STAGE_COMPOSITE;
+    public static final int STAGE_LOG = FrameStages.STAGE_LOG;
+    public static final int STAGE_COUNT = FrameStages.STAGE_COUNT;
+    /** CPU time reported when the platform does not support per-thread CPU clocks. */
+    public static final int CPU_TIME_UNKNOWN = FrameStages.CPU_TIME_UNKNOWN;
+
+    private final long[] spanStarts = new long[STAGE_COUNT];
+    private final long[] spanCpuStarts = new long[STAGE_COUNT];
+    private final long[] stageTimes = new long[STAGE_COUNT];
+    private final long[] stageCpuTimes = new long[STAGE_COUNT];
+    private final long[] frameStageTimes = new long[STAGE_COUNT];
+    private final long[] frameStageCpuTimes = new long[STAGE_COUNT];
+    private boolean cpuTimeSupported = true;
+    private boolean frameEnded = false;
+
+    public FrameProfiler() {
+        Arrays.fill(spanStarts, -1);
+    }
+
+    /** Returns the display name of {@code stage}. */
+    public static String getStageName(int stage) {
+        return FrameStages.getStageName(stage);
+    }
+
+    /** Starts a new frame, dropping the stage times of a frame that was never ended. */
+    public void beginFrame() {
+        if (!frameEnded) {
+            Arrays.fill(stageTimes, 0);
+            Arrays.fill(stageCpuTimes, 0);
+        }
+        frameEnded = false;
+    }
+
+    /** Opens a span of {@code stage}. Spans must be closed on the thread that opened them. */
+    public void begin(int stage) {
+        spanCpuStarts[stage] = Debug.threadCpuTimeNanos();
+        spanStarts[stage] = System.nanoTime();
+    }
+
+    /** Closes the span of {@code stage} opened by the last call to {@link #begin}. */
+    public void end(int stage) {
+        long start = spanStarts[stage];
+        if (start < 0) {
+            return;
+        }
+        stageTimes[stage] += System.nanoTime() - start;
+        long cpuEnd = Debug.threadCpuTimeNanos();
+        if (cpuEnd < 0 || spanCpuStarts[stage] < 0) {
+            cpuTimeSupported = false;
+        }
+        stageCpuTimes[stage] += cpuEnd - spanCpuStarts[stage];
+        spanStarts[stage] = -1;
+    }
+
+    /** Publishes the stage times of the current frame and starts a new one. */
+    public void endFrame() {
+        System.arraycopy(stageTimes, 0, frameStageTimes, 0, STAGE_COUNT);
+        System.arraycopy(stageCpuTimes, 0, frameStageCpuTimes, 0, STAGE_COUNT);
+        Arrays.fill(stageTimes, 0);
+        Arrays.fill(stageCpuTimes, 0);
+        frameEnded = true;
+    }
+
+    /** Returns the time spent in {@code stage} during the last completed frame, in nanoseconds. */
+    public long getFrameStageTime(int stage) {
+        return frameStageTimes[stage];
+    }
+
+    /**
+     * Returns the CPU time the render thread spent in {@code stage} during the last completed frame,
+     * in nanoseconds, or {@link #CPU_TIME_UNKNOWN} if thread CPU time cannot be measured.
+     */
+    public long getFrameStageCpuTime(int stage) {
+        return cpuTimeSupported ? frameStageCpuTimes[stage] : CPU_TIME_UNKNOWN;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import benchmark.common.samplerender.GpuTimerPool;
+import benchmark.common.samplerender.SampleRender;
+
+/**
+ * Records per-frame metrics of a benchmark section without doing I/O on the render thread.
+ *
+ * <p>{@link #record} pushes into a {@link FrameRingBuffer}; a low priority flusher thread drains
+ * it into a {@link FrameLogWriter} in batches. {@link #close} waits for all recorded frames to be
+ * written, so the next section can safely append to the same log. The flusher is woken rather than
+ * interrupted, since an interrupt during a write closes the file channel of the log.
+ *
+ * <p>GPU pass times only become available a few frames after a frame was rendered. Frames recorded
+ * with a {@link GpuTimerPool} are held back until its results for that frame arrive, so that every
+ * record carries the GPU times of its own frame.
+ *
+ * <p>A frame is only swapped to the screen after it was recorded. Each frame is therefore held back
+ * until the next one is recorded, which takes the present time of the last swap from the {@link
+ * SampleRender} if there was one since.
+ *
+ * <p>Memory and GC statistics are sampled with a {@link MemoryProfiler} on the first frame of every
+ * phase and every {@link #MEMORY_SAMPLE_INTERVAL} frames in between; other frames repeat the latest
+ * sample.
+ */
+public class FrameRecorder implements Closeable {
+    private static final String TAG = FrameRecorder.class.getSimpleName();
+
+    private static final int RING_BUFFER_CAPACITY = 8192;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int PENDING_CAPACITY = 2 * GpuTimerPool.MAX_FRAMES_IN_FLIGHT;
+    /** Frames between memory samples within a phase. */
+    public static final int MEMORY_SAMPLE_INTERVAL = 30;
+
+    private final FrameLogWriter writer;
+    private final FrameRingBuffer ringBuffer = new FrameRingBuffer(RING_BUFFER_CAPACITY);
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // Set by the flusher before it ends, read after joining it.
+    private IOException failure;
+    private boolean closed = false;
+
+    private final MemoryProfiler memoryProfiler = new MemoryProfiler();
+    private final int[] memoryStats = new int[MemoryProfiler.FIELD_COUNT];
+    private int lastPhase;
+    private int framesSinceMemorySample = -1;
+
+    // Frames waiting for GPU results, pendingCount entries starting at pendingHead. Only accessed
+    // by the render thread.
+    private final long[] pendingFrameNumbers = new long[PENDING_CAPACITY];
+    private final int[] pendingPhases = new int[PENDING_CAPACITY];
+    private final long[] pendingFrameTimes = new long[PENDING_CAPACITY];
+    private final long[] pendingFrameTimesNanos = new long[PENDING_CAPACITY];
+    private final int[] pendingProcessTimes = new int[PENDING_CAPACITY];
+    private final int[] pendingHandleInputTimes = new int[PENDING_CAPACITY];
+    private final int[] pendingTotalTimes = new int[PENDING_CAPACITY];
+    private final int[] pendingStageTimes = new int[PENDING_CAPACITY * FrameProfiler.STAGE_COUNT];
+    private final int[] pendingStageCpuTimes = new int[PENDING_CAPACITY * FrameProfiler.STAGE_COUNT];
+    private final int[] pendingMemoryStats = new int[PENDING_CAPACITY * MemoryProfiler.FIELD_COUNT];
+    private final long[] pendingPresentTimes = new long[PENDING_CAPACITY];
+    private final int[] pendingVsyncPeriods = new int[PENDING_CAPACITY];
+    private final int[] pendingStateCallsIssued = new int[PENDING_CAPACITY];
+    private final int[] pendingStateCallsSkipped = new int[PENDING_CAPACITY];
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+    // Whether the last recorded frame is still pending, so that its present time can be set.
+    private boolean lastFramePending = false;
+    private long presentedFrameCount = -1;
+    private final GpuTimerPool.ResultListener gpuResultListener = this::onGpuFrameCompleted;
+
+    /**
+     * Starts a new section of the frame log at {@code file}.
+     *
+     * @param recordingName Name of the recording the section plays back
+     */
+    public FrameRecorder(File file, String recordingName) throws IOException {
+        writer = new FrameLogWriter(file, recordingName);
+        flusher = new Thread(this::flushLoop, TAG);
+        flusher.setPriority(Thread.MIN_PRIORITY);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Records one frame. Only the render thread may call this method; it never blocks, and only
+     * allocates when memory statistics are sampled.
+     *
+     * @param frameTime Wall-clock start time of the frame from {@link System#currentTimeMillis}
+     * @param frameTimeNanos Monotonic start time of the frame from {@link System#nanoTime}, which
+     *                       frame intervals are measured with
+     * @param profiler Profiler whose last completed frame holds the stage times of this frame
+     * @param gpuTimerPool Pool whose last frame is this frame, or null if GPU times are not measured
+     * @param render Render the frames are drawn with, or null if present times and GL state calls
+     *               are not measured
+     */
+    public void record(int phase, long frameTime, long frameTimeNanos, int processTime, int handleInputTime, int totalTime,
+                       FrameProfiler profiler, GpuTimerPool gpuTimerPool, SampleRender render) {
+        if (render != null && render.getPresentedFrameCount() != presentedFrameCount) {
+            // The first call only notes how many frames the render had presented before this section.
+            if (presentedFrameCount >= 0 && lastFramePending) {
+                int last = (pendingHead + pendingCount - 1) % PENDING_CAPACITY;
+                pendingPresentTimes[last] = render.getLastPresentTime();
+                pendingVsyncPeriods[last] = (int) Math.min(render.getLastVsyncPeriod(), Integer.MAX_VALUE);
+            }
+            presentedFrameCount = render.getPresentedFrameCount();
+        }
+        if (pendingCount == PENDING_CAPACITY) {
+            // GPU results are overdue, record the oldest frame without them.
+            emitPending(null);
+        }
+        int index = (pendingHead + pendingCount) % PENDING_CAPACITY;
+        pendingFrameNumbers[index] = gpuTimerPool != null ? gpuTimerPool.getFrameNumber() : -1;
+        pendingPhases[index] = phase;
+        pendingFrameTimes[index] = frameTime;
+        pendingFrameTimesNanos[index] = frameTimeNanos;
+        pendingProcessTimes[index] = processTime;
+        pendingHandleInputTimes[index] = handleInputTime;
+        pendingTotalTimes[index] = totalTime;
+        pendingPresentTimes[index] = FrameLogSection.PRESENT_TIME_UNKNOWN;
+        pendingVsyncPeriods[index] = 0;
+        // The frame is drawn up to this call, which renderers make once they are done with GL.
+        pendingStateCallsIssued[index] = render != null ? render.getFrameStateCallsIssued() : FrameLogSection.COUNT_UNKNOWN;
+        pendingStateCallsSkipped[index] = render != null ? render.getFrameStateCallsSkipped() : FrameLogSection.COUNT_UNKNOWN;
+        for (int stage = 0; stage < FrameProfiler.STAGE_COUNT; stage++) {
+            long stageTime = profiler != null ? profiler.getFrameStageTime(stage) : 0;
+            long stageCpuTime = profiler != null ? profiler.getFrameStageCpuTime(stage) : FrameProfiler.CPU_TIME_UNKNOWN;
+            pendingStageTimes[index * FrameProfiler.STAGE_COUNT + stage] = (int) Math.min(stageTime, Integer.MAX_VALUE);
+            pendingStageCpuTimes[index * FrameProfiler.STAGE_COUNT + stage] = (int) Math.min(stageCpuTime, Integer.MAX_VALUE);
+        }
+        if (framesSinceMemorySample < 0 || phase != lastPhase || framesSinceMemorySample >= MEMORY_SAMPLE_INTERVAL) {
+            memoryProfiler.sample(memoryStats, 0);
+            lastPhase = phase;
+            framesSinceMemorySample = 0;
+        }
+        framesSinceMemorySample++;
+        System.arraycopy(memoryStats, 0, pendingMemoryStats, index * MemoryProfiler.FIELD_COUNT,
+                MemoryProfiler.FIELD_COUNT);
+        pendingCount++;
+        lastFramePending = true;
+
+        if (gpuTimerPool == null || !gpuTimerPool.isSupported()) {
+            while (pendingCount > 1) {
+                emitPending(null);
+            }
+        } else {
+            gpuTimerPool.collectResults(gpuResultListener);
+        }
+    }
+
+    private void onGpuFrameCompleted(long frameNumber, int[] passTimes) {
+        // Frames older than the completed one will not receive results anymore.
+        while (pendingCount > 0 && pendingFrameNumbers[pendingHead] < frameNumber) {
+            emitPending(null);
+        }
+        if (pendingCount > 0 && pendingFrameNumbers[pendingHead] == frameNumber) {
+            emitPending(passTimes);
+        }
+    }
+
+    /** Moves the oldest pending frame into the ring buffer. */
+    private void emitPending(int[] passTimes) {
+        int index = pendingHead;
+        ringBuffer.offer(
+                pendingPhases[index],
+                pendingFrameTimes[index],
+                pendingProcessTimes[index],
+                pendingHandleInputTimes[index],
+                pendingTotalTimes[index],
+                pendingStageTimes,
+                pendingStageCpuTimes,
+                index * FrameProfiler.STAGE_COUNT,
+                passTimes,
+                pendingMemoryStats,
+                index * MemoryProfiler.FIELD_COUNT,
+                pendingPresentTimes[index],
+                pendingVsyncPeriods[index],
+                pendingStateCallsIssued[index],
+                pendingStateCallsSkipped[index],
+                pendingFrameTimesNanos[index]);
+        pendingHead = (pendingHead + 1) % PENDING_CAPACITY;
+        pendingCount--;
+        if (pendingCount == 0) {
+            lastFramePending = false;
+        }
+    }
+
+    /** Returns the number of frames dropped because the flusher could not keep up. */
+    public long getDroppedRecords() {
+        return ringBuffer.getDroppedRecords();
+    }
+
+    private void flushLoop() {
+        try {
+            while (running) {
+                if (ringBuffer.drainTo(writer) > 0) {
+                    writer.flush();
+                }
+                // Woken early by close().
+                LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+            }
+            // Every frame emitted before close() cleared running is in the ring buffer now. The
+            // section is ended here as well, so that no file I/O runs on a thread that may be
+            // interrupted.
+            ringBuffer.drainTo(writer);
+            long dropped = ringBuffer.getDroppedRecords();
+            if (dropped > 0) {
+                Log.w(TAG, "Dropped " + dropped + " frame records");
+            }
+            writer.writeSectionEnd(dropped);
+            writer.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write frame log", e);
+            failure = e;
+        }
+    }
+
+    /**
+     * Stops the flusher after it has written every recorded frame and the end of the section, then
+     * closes the log. Frames still waiting for GPU results are written without them. Must be called from the render thread, or
+     * after it has stopped.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        while (pendingCount > 0) {
+            emitPending(null);
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Only closes the stream unless the flusher failed, it has written the end of the section.
+        try {
+            writer.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                throw e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer ring buffer of frame records.
+ *
+ * <p>The render thread calls {@link #offer} and one consumer thread calls {@link #drainTo}. Fields
+ * are kept in primitive columns so that neither side allocates. When the consumer falls behind and
+ * the buffer is full, new records are dropped and counted instead of blocking the producer.
+ */
+public class FrameRingBuffer {
+    private final int capacity;
+    private final int mask;
+
+    private final int[] phases;
+    private final long[] frameTimes;
+    private final int[] processTimes;
+    private final int[] handleInputTimes;
+    private final long[] gpuTimes;
+    private final int[] totalTimes;
+    private final int[] stageTimes;
+    private final int[] stageCpuTimes;
+    private final int[] passTimes;
+    private final int[] memoryStats;
+    private final long[] presentTimes;
+    private final int[] vsyncPeriods;
+    private final int[] stateCallsIssued;
+    private final int[] stateCallsSkipped;
+    private final long[] frameTimesNanos;
+
+    // Index of the next record to read. Written by the consumer only.
+    private final AtomicLong head = new AtomicLong();
+    // Index of the next record to write. Written by the producer only.
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    // Producer-local copy of head, refreshed only when the buffer looks full.
+    private long cachedHead = 0;
+
+    /** @param capacity Number of records the buffer can hold. Must be a power of two. */
+    public FrameRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.phases = new int[capacity];
+        this.frameTimes = new long[capacity];
+        this.processTimes = new int[capacity];
+        this.handleInputTimes = new int[capacity];
+        this.gpuTimes = new long[capacity];
+        this.totalTimes = new int[capacity];
+        this.stageTimes = new int[capacity * FrameStages.STAGE_COUNT];
+        this.stageCpuTimes = new int[capacity * FrameStages.STAGE_COUNT];
+        this.passTimes = new int[capacity * GpuPasses.PASS_COUNT];
+        this.memoryStats = new int[capacity * MemoryFields.FIELD_COUNT];
+        this.presentTimes = new long[capacity];
+        this.vsyncPeriods = new int[capacity];
+        this.stateCallsIssued = new int[capacity];
+        this.stateCallsSkipped = new int[capacity];
+        this.frameTimesNanos = new long[capacity];
+    }
+
+    /**
+     * Adds a record. Must only be called from the producer thread.
+     *
+     * @param stageTimes Array holding the {@link FrameStages} stage times at {@code stageOffset}
+     * @param stageCpuTimes Array holding the stage CPU times at {@code stageOffset}
+     * @param passTimes {@link GpuPasses} pass times of the frame, or null if they are unknown
+     * @param memoryStats Array holding the {@link MemoryFields} fields at {@code memoryOffset}
+     * @param presentTime Estimated time the frame was shown, or -1 if it was not
+     * @param stateCallsIssued GL state calls issued during the frame, or -1 if unknown
+     * @param stateCallsSkipped GL state calls skipped during the frame, or -1 if unknown
+     * @param frameTimeNanos Monotonic start time of the frame in nanoseconds
+     * @return false if the buffer was full and the record was dropped
+     */
+    public boolean offer(int phase, long frameTime, int processTime, int handleInputTime, int totalTime,
+                         int[] stageTimes, int[] stageCpuTimes, int stageOffset, int[] passTimes,
+                         int[] memoryStats, int memoryOffset, long presentTime, int vsyncPeriod,
+                         int stateCallsIssued, int stateCallsSkipped, long frameTimeNanos) {
+        long currentTail = tail.get();
+        if (currentTail - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (currentTail - cachedHead >= capacity) {
+                droppedRecords.lazySet(droppedRecords.get() + 1);
+                return false;
+            }
+        }
+        int index = (int) currentTail & mask;
+        phases[index] = phase;
+        frameTimes[index] = frameTime;
+        processTimes[index] = processTime;
+        handleInputTimes[index] = handleInputTime;
+        totalTimes[index] = totalTime;
+        System.arraycopy(stageTimes, stageOffset, this.stageTimes, index * FrameStages.STAGE_COUNT,
+                FrameStages.STAGE_COUNT);
+        System.arraycopy(stageCpuTimes, stageOffset, this.stageCpuTimes, index * FrameStages.STAGE_COUNT,
+                FrameStages.STAGE_COUNT);
+        int passOffset = index * GpuPasses.PASS_COUNT;
+        long gpuTime = GpuPasses.TIME_UNKNOWN;
+        if (passTimes != null && passTimes[0] != GpuPasses.TIME_UNKNOWN) {
+            gpuTime = 0;
+            for (int pass = 0; pass < GpuPasses.PASS_COUNT; pass++) {
+                gpuTime += passTimes[pass];
+            }
+            System.arraycopy(passTimes, 0, this.passTimes, passOffset, GpuPasses.PASS_COUNT);
+        } else {
+            Arrays.fill(this.passTimes, passOffset, passOffset + GpuPasses.PASS_COUNT, GpuPasses.TIME_UNKNOWN);
+        }
+        gpuTimes[index] = gpuTime;
+        System.arraycopy(memoryStats, memoryOffset, this.memoryStats, index * MemoryFields.FIELD_COUNT,
+                MemoryFields.FIELD_COUNT);
+        presentTimes[index] = presentTime;
+        vsyncPeriods[index] = vsyncPeriod;
+        this.stateCallsIssued[index] = stateCallsIssued;
+        this.stateCallsSkipped[index] = stateCallsSkipped;
+        frameTimesNanos[index] = frameTimeNanos;
+        // Publish the record to the consumer.
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Writes all published records to {@code writer}. Must only be called from the consumer thread.
+     *
+     * @return the number of records written
+     */
+    public int drainTo(FrameLogWriter writer) throws IOException {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        for (long i = currentHead; i < currentTail; i++) {
+            int index = (int) i & mask;
+            writer.writeFrame(
+                    phases[index],
+                    frameTimes[index],
+                    processTimes[index],
+                    handleInputTimes[index],
+                    gpuTimes[index],
+                    totalTimes[index],
+                    stageTimes,
+                    stageCpuTimes,
+                    index * FrameStages.STAGE_COUNT,
+                    passTimes,
+                    index * GpuPasses.PASS_COUNT,
+                    memoryStats,
+                    index * MemoryFields.FIELD_COUNT,
+                    presentTimes[index],
+                    vsyncPeriods[index],
+                    stateCallsIssued[index],
+                    stateCallsSkipped[index],
+                    frameTimesNanos[index]);
+        }
+        // Release the slots back to the producer.
+        head.lazySet(currentTail);
+        return (int) (currentTail - currentHead);
+    }
+
+    /** Returns the number of records dropped because the buffer was full. */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/**
+ * Stages of a frame timed by {@link FrameProfiler}. Kept apart from the profiler, which reads
+ * Android thread clocks, so that the frame log and the results can be read on a desktop JVM.
+ */
+public class FrameStages {
+    public static final int STAGE_SESSION_UPDATE = 0;
+    public static final int STAGE_INPUT = 1;
+    public static final int STAGE_BACKGROUND = 2;
+    public static final int STAGE_POINT_CLOUD = 3;
+    public static final int STAGE_PLANES = 4;
+    public static final int STAGE_VIRTUAL_OBJECTS = 5;
+    public static final int STAGE_COMPOSITE = 6;
+    public static final int STAGE_LOG = 7;
+    public static final int STAGE_COUNT = 8;
+    /** CPU time reported when the platform does not support per-thread CPU clocks. */
+    public static final int CPU_TIME_UNKNOWN = -1;
+
+    private static final String[] STAGE_NAMES = {
+            "session.update",
+            "input",
+            "background",
+            "point cloud",
+            "planes",
+            "virtual objects",
+            "composite",
+            "log",
+    };
+
+    /** Returns the display name of {@code stage}. */
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    private FrameStages() {}
+}
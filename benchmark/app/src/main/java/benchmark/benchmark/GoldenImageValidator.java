@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import benchmark.common.samplerender.FrameCapture;
+
+/**
+ * Checks that a section renders the same images as before, for validating rendering
+ * optimizations. Enabled with the {@link BenchmarkActivity#VALIDATE} extra.
+ *
+ * <p>The first frame at or after each of the {@link BenchmarkActivity#GOLDEN_FRAMES} recording
+ * timestamps is read back with {@link FrameCapture#readPixels} and compared on its background
+ * thread against the golden image {@code golden/<key>/<timestamp in ms>.png}, taken from the
+ * external files directory or else from the assets. A frame passes if both its SSIM and PSNR reach
+ * the {@link BenchmarkActivity#MIN_SSIM} and {@link BenchmarkActivity#MIN_PSNR} thresholds; a failed
+ * frame is saved to {@code validation/<key>/} for inspection. If there is no golden image the frame
+ * is saved as one, so a run of the reference build records the golden images for later runs.
+ *
+ * <p>Outcomes are collected per {@link BenchmarkActivity#getSectionKey section key} in {@link
+ * ValidationResults}, which are complete once
+ * {@link FrameCapture#awaitWrites} returns.
+ */
+public class GoldenImageValidator {
+    private static final String TAG = GoldenImageValidator.class.getSimpleName();
+
+    public static final String DIRECTORY_NAME = "golden";
+    public static final String FAILURE_DIRECTORY_NAME = "validation";
+    public static final float DEFAULT_MIN_SSIM = 0.95f;
+    public static final float DEFAULT_MIN_PSNR = 30;
+
+    // Guarded by itself.
+    private static final Map<String, ValidationResults> results = new HashMap<>();
+
+    private final Context context;
+    private final FrameCapture frameCapture;
+    private final String key;
+    private final long[] checkpointTimes;
+    private final float minSsim;
+    private final float minPsnr;
+    private long firstTimestamp = -1;
+    private int nextCheckpoint = 0;
+
+    /**
+     * @param intent Intent the section activity was launched with
+     * @param recordingName Recording the section plays back
+     * @param frameCapture Capture of the frames the section renders
+     */
+    public GoldenImageValidator(Context context, Intent intent, String recordingName, FrameCapture frameCapture) {
+        this.context = context.getApplicationContext();
+        this.frameCapture = frameCapture;
+        key = BenchmarkActivity.getSectionKey(intent, recordingName);
+        long[] times = intent.getLongArrayExtra(BenchmarkActivity.GOLDEN_FRAMES);
+        checkpointTimes = intent.getBooleanExtra(BenchmarkActivity.VALIDATE, false) && times != null ? times : new long[0];
+        minSsim = intent.getFloatExtra(BenchmarkActivity.MIN_SSIM, DEFAULT_MIN_SSIM);
+        minPsnr = intent.getFloatExtra(BenchmarkActivity.MIN_PSNR, DEFAULT_MIN_PSNR);
+    }
+
+    /** Forgets the results of earlier benchmark runs. */
+    public static void clearResults() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    /** Returns the outcome of the checkpoints of the section with {@code key}, null if it had none. */
+    public static ValidationResults getResults(String key) {
+        synchronized (results) {
+            return results.get(key);
+        }
+    }
+
+    private static ValidationResults getOrCreateResults(String key) {
+        synchronized (results) {
+            ValidationResults sectionResults = results.get(key);
+            if (sectionResults == null) {
+                sectionResults = new ValidationResults();
+                results.put(key, sectionResults);
+            }
+            return sectionResults;
+        }
+    }
+
+    /**
+     * Captures the frame just rendered if a checkpoint is due. Call on the render thread before
+     * {@link FrameCapture#endFrame}.
+     *
+     * @param timestamp Camera timestamp of the frame in the recording, in nanoseconds
+     */
+    public void onFrame(long timestamp) {
+        if (nextCheckpoint >= checkpointTimes.length) {
+            return;
+        }
+        if (firstTimestamp < 0) {
+            firstTimestamp = timestamp;
+        }
+        if (timestamp - firstTimestamp >= checkpointTimes[nextCheckpoint] * 1_000_000) {
+            long checkpointTime = checkpointTimes[nextCheckpoint++];
+            frameCapture.readPixels((pixels, width, height) -> compare(checkpointTime, pixels, width, height));
+        }
+    }
+
+    /** Records the checkpoints the recording ended before. Call when the recording has finished. */
+    public void finish() {
+        for (; nextCheckpoint < checkpointTimes.length; nextCheckpoint++) {
+            Log.w(TAG, key + ": Recording ended before " + checkpointTimes[nextCheckpoint] + " ms");
+            getOrCreateResults(key).add(ValidationResults.Outcome.MISSED, Double.NaN, Double.NaN);
+        }
+    }
+
+    private void compare(long checkpointTime, int[] pixels, int width, int height) {
+        String fileName = checkpointTime + ".png";
+        File goldenFile = new File(context.getExternalFilesDir(null), DIRECTORY_NAME + "/" + key + "/" + fileName);
+        Bitmap golden = loadGoldenImage(goldenFile, DIRECTORY_NAME + "/" + key + "/" + fileName);
+        ValidationResults sectionResults = getOrCreateResults(key);
+        if (golden == null) {
+            Log.i(TAG, key + ": Recording golden image " + goldenFile.getAbsolutePath());
+            save(pixels, width, height, goldenFile);
+            sectionResults.add(ValidationResults.Outcome.RECORDED, Double.NaN, Double.NaN);
+            return;
+        }
+
+        ValidationResults.Outcome outcome;
+        double ssim = Double.NaN;
+        double psnr = Double.NaN;
+        if (golden.getWidth() != width || golden.getHeight() != height) {
+            Log.w(TAG, key + " at " + checkpointTime + " ms: Frame is " + width + "x" + height
+                    + ", golden image " + golden.getWidth() + "x" + golden.getHeight());
+            outcome = ValidationResults.Outcome.FAILED;
+        } else {
+            int[] expected = new int[width * height];
+            golden.getPixels(expected, 0, width, 0, 0, width, height);
+            ssim = ImageComparison.ssim(expected, pixels, width, height);
+            psnr = ImageComparison.psnr(expected, pixels);
+            outcome = ssim >= minSsim && psnr >= minPsnr
+                    ? ValidationResults.Outcome.PASSED
+                    : ValidationResults.Outcome.FAILED;
+            Log.i(TAG, key + " at " + checkpointTime + " ms: SSIM " + ssim + ", PSNR " + psnr + " dB, " + outcome);
+        }
+        golden.recycle();
+        if (outcome == ValidationResults.Outcome.FAILED) {
+            save(pixels, width, height,
+                    new File(context.getExternalFilesDir(null), FAILURE_DIRECTORY_NAME + "/" + key + "/" + fileName));
+        }
+        sectionResults.add(outcome, ssim, psnr);
+    }
+
+    /** Decodes the golden image from external storage, falling back to the bundled asset. */
+    private Bitmap loadGoldenImage(File file, String assetName) {
+        if (file.exists()) {
+            return BitmapFactory.decodeFile(file.getAbsolutePath());
+        }
+        try (InputStream in = context.getAssets().open(assetName)) {
+            return BitmapFactory.decodeStream(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read golden image " + assetName, e);
+            return null;
+        }
+    }
+
+    private static void save(int[] pixels, int width, int height, File file) {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Failed to create " + directory);
+            return;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save " + file.getAbsolutePath(), e);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
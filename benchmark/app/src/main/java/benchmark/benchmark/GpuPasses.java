@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/**
+ * Render passes whose GPU time is measured by {@link benchmark.common.samplerender.GpuTimerPool}.
+ * Kept apart from the pool, which needs GL, so that the frame log and the results can be read on a
+ * desktop JVM.
+ */
+public class GpuPasses {
+    public static final int PASS_BACKGROUND = 0;
+    public static final int PASS_PLANES = 1;
+    public static final int PASS_POINT_CLOUD = 2;
+    public static final int PASS_VIRTUAL_SCENE = 3;
+    public static final int PASS_COMPOSITE = 4;
+    public static final int PASS_COUNT = 5;
+
+    /** Pass time of frames whose results were discarded, or were not measured. */
+    public static final int TIME_UNKNOWN = -1;
+
+    private static final String[] PASS_NAMES = {
+            "background", "planes", "point cloud", "virtual scene", "composite",
+    };
+
+    /** Returns the display name of {@code pass}. */
+    public static String getPassName(int pass) {
+        return PASS_NAMES[pass];
+    }
+
+    private GpuPasses() {}
+}
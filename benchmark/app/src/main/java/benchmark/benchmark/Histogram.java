@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory histogram of non-negative long values with a bounded relative error, following the
+ * bucket layout of HdrHistogram.
+ *
+ * <p>Values are grouped into buckets whose width doubles with every power of two, each divided
+ * into {@code 2^precisionBits} linear sub-buckets. Recording is O(1) and never allocates; values
+ * above the highest trackable value are clamped to it.
+ */
+public class Histogram {
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final long highestTrackableValue;
+    private final int[] counts;
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = 0;
+
+    /**
+     * @param highestTrackableValue Largest value that can be told apart from larger ones
+     * @param precisionBits Number of bits of precision per power of two; the relative error of
+     *     reported values is at most {@code 2^-precisionBits}
+     */
+    public Histogram(long highestTrackableValue, int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16 || highestTrackableValue < 2L << precisionBits) {
+            throw new IllegalArgumentException("Unsupported histogram range " + highestTrackableValue
+                    + " with precision " + precisionBits);
+        }
+        this.subBucketHalfCountMagnitude = precisionBits;
+        this.subBucketHalfCount = 1 << precisionBits;
+        this.subBucketMask = (2L << precisionBits) - 1;
+        this.highestTrackableValue = highestTrackableValue;
+        int bucketCount = 1;
+        long smallestUntrackableValue = 2L << precisionBits;
+        while (smallestUntrackableValue <= highestTrackableValue) {
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+        this.counts = new int[(bucketCount + 1) * subBucketHalfCount];
+    }
+
+    /** Adds one occurrence of {@code value}. Negative values are ignored. */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        value = Math.min(value, highestTrackableValue);
+        counts[countsIndex(value)]++;
+        totalCount++;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /** Returns the smallest recorded value, or 0 if the histogram is empty. */
+    public long getMinValue() {
+        return totalCount == 0 ? 0 : minValue;
+    }
+
+    /** Returns the largest recorded value, or 0 if the histogram is empty. */
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * Returns the value below or at which {@code percentile} percent of the recorded values fall,
+     * rounded up to the end of its bucket. Returns 0 if the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double clamped = Math.min(Math.max(percentile, 0.0), 100.0);
+        long countAtPercentile = Math.max(1, (long) Math.ceil(clamped / 100.0 * totalCount));
+        long cumulativeCount = 0;
+        for (int index = 0; index < counts.length; index++) {
+            cumulativeCount += counts[index];
+            if (cumulativeCount >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(index), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    private int countsIndex(long value) {
+        // Bucket 0 holds values up to 2 * subBucketHalfCount with unit resolution.
+        int bucketIndex = 63 - Long.numberOfLeadingZeros(value | subBucketMask) - subBucketHalfCountMagnitude;
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + subBucketIndex - subBucketHalfCount;
+    }
+
+    private long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex << bucketIndex) + (1L << bucketIndex) - 1;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/**
+ * Full-reference image quality metrics on ARGB pixels, as returned by {@code Bitmap.getPixels}.
+ * Alpha is ignored. Plain Java, so rendering changes can be checked against golden images on a
+ * desktop JVM as well.
+ */
+public final class ImageComparison {
+    // SSIM is computed on the luma of 8x8 windows that overlap by half, as in Wang et al. (2004).
+    private static final int WINDOW_SIZE = 8;
+    private static final int WINDOW_STRIDE = 4;
+    private static final double C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double C2 = (0.03 * 255) * (0.03 * 255);
+
+    private ImageComparison() {}
+
+    /**
+     * Returns the peak signal-to-noise ratio of the RGB channels in dB, infinite if the images are
+     * identical.
+     */
+    public static double psnr(int[] expected, int[] actual) {
+        checkSize(expected, actual, expected.length, 1);
+        long squaredError = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int difference = ((expected[i] >> shift) & 0xff) - ((actual[i] >> shift) & 0xff);
+                squaredError += difference * difference;
+            }
+        }
+        if (squaredError == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double meanSquaredError = (double) squaredError / (3.0 * expected.length);
+        return 10 * Math.log10(255 * 255 / meanSquaredError);
+    }
+
+    /**
+     * Returns the mean structural similarity of two images of {@code width} by {@code height}
+     * pixels, between -1 and 1 for identical images. Images smaller than a window are compared as a
+     * whole.
+     */
+    public static double ssim(int[] expected, int[] actual, int width, int height) {
+        checkSize(expected, actual, width, height);
+        float[] x = luma(expected);
+        float[] y = luma(actual);
+        int windowWidth = Math.min(WINDOW_SIZE, width);
+        int windowHeight = Math.min(WINDOW_SIZE, height);
+        double sum = 0;
+        int windows = 0;
+        for (int top = 0; top + windowHeight <= height; top += WINDOW_STRIDE) {
+            for (int left = 0; left + windowWidth <= width; left += WINDOW_STRIDE) {
+                sum += windowSsim(x, y, width, left, top, windowWidth, windowHeight);
+                windows++;
+            }
+        }
+        return sum / windows;
+    }
+
+    private static double windowSsim(float[] x, float[] y, int stride, int left, int top, int width, int height) {
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumYY = 0;
+        double sumXY = 0;
+        for (int row = top; row < top + height; row++) {
+            for (int i = row * stride + left; i < row * stride + left + width; i++) {
+                sumX += x[i];
+                sumY += y[i];
+                sumXX += x[i] * x[i];
+                sumYY += y[i] * y[i];
+                sumXY += x[i] * y[i];
+            }
+        }
+        int n = width * height;
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double varianceX = sumXX / n - meanX * meanX;
+        double varianceY = sumYY / n - meanY * meanY;
+        double covariance = sumXY / n - meanX * meanY;
+        return (2 * meanX * meanY + C1) * (2 * covariance + C2)
+                / ((meanX * meanX + meanY * meanY + C1) * (varianceX + varianceY + C2));
+    }
+
+    /** Returns the Rec. 601 luma of every pixel, from 0 to 255. */
+    private static float[] luma(int[] pixels) {
+        float[] luma = new float[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            luma[i] = 0.299f * ((pixel >> 16) & 0xff) + 0.587f * ((pixel >> 8) & 0xff) + 0.114f * (pixel & 0xff);
+        }
+        return luma;
+    }
+
+    private static void checkSize(int[] expected, int[] actual, int width, int height) {
+        if (width <= 0 || height <= 0 || expected.length != width * height || actual.length != expected.length) {
+            throw new IllegalArgumentException("Cannot compare " + expected.length + " with " + actual.length
+                    + " pixels as " + width + "x" + height + " images");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Two-sided Mann-Whitney U test of whether two samples come from the same distribution. Uses the
+ * normal approximation with tie and continuity corrections, which is accurate for the sample sizes
+ * of per-frame data.
+ */
+public class MannWhitneyU {
+    private final double u;
+    private final double z;
+    private final double pValue;
+
+    private MannWhitneyU(double u, double z, double pValue) {
+        this.u = u;
+        this.z = z;
+        this.pValue = pValue;
+    }
+
+    /** Returns the U statistic of the first sample. */
+    public double getU() {
+        return u;
+    }
+
+    /** Returns the standardized statistic; positive if the first sample tends to be larger. */
+    public double getZ() {
+        return z;
+    }
+
+    /** Returns the two-sided p-value, or NaN if either sample is empty. */
+    public double getPValue() {
+        return pValue;
+    }
+
+    public static MannWhitneyU test(double[] first, double[] second) {
+        int n1 = first.length;
+        int n2 = second.length;
+        if (n1 == 0 || n2 == 0) {
+            return new MannWhitneyU(Double.NaN, Double.NaN, Double.NaN);
+        }
+        int n = n1 + n2;
+        double[] a = Arrays.copyOf(first, n1);
+        double[] b = Arrays.copyOf(second, n2);
+        Arrays.sort(a);
+        Arrays.sort(b);
+
+        // Merge the sorted samples; tied values share the mean of their 1-based ranks.
+        double firstRankSum = 0;
+        double tieCorrection = 0;
+        int i = 0;
+        int j = 0;
+        while (i < n1 || j < n2) {
+            double value = j == n2 || (i < n1 && a[i] <= b[j]) ? a[i] : b[j];
+            int firstTies = 0;
+            while (i < n1 && a[i] == value) {
+                i++;
+                firstTies++;
+            }
+            int secondTies = 0;
+            while (j < n2 && b[j] == value) {
+                j++;
+                secondTies++;
+            }
+            double ties = firstTies + secondTies;
+            if (ties == 0) {
+                throw new IllegalArgumentException("Samples must not contain NaN");
+            }
+            double rank = (i + j) - (ties - 1) / 2.0;
+            firstRankSum += firstTies * rank;
+            tieCorrection += ties * ties * ties - ties;
+        }
+
+        double u = firstRankSum - n1 * (n1 + 1) / 2.0;
+        double mean = (double) n1 * n2 / 2.0;
+        double variance = (double) n1 * n2 / 12.0 * ((n + 1) - tieCorrection / ((double) n * (n - 1)));
+        if (variance <= 0) {
+            // All values are tied.
+            return new MannWhitneyU(u, 0, 1);
+        }
+        double deviation = u - mean;
+        double corrected = Math.max(Math.abs(deviation) - 0.5, 0);
+        double z = Math.signum(deviation) * corrected / Math.sqrt(variance);
+        return new MannWhitneyU(u, z, Math.min(1, erfc(Math.abs(z) / Math.sqrt(2))));
+    }
+
+    /** Complementary error function with a fractional error below 1.2e-7 (Numerical Recipes). */
+    static double erfc(double x) {
+        double t = 1 / (1 + 0.5 * Math.abs(x));
+        double result = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? result : 2 - result;
+    }
+}
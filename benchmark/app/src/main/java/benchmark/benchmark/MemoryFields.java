@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/**
+ * Fields sampled by {@link MemoryProfiler}, in the order they are stored with the frame records.
+ * Kept apart from the profiler, which reads Android runtime statistics, so that the frame log and
+ * the results can be read on a desktop JVM.
+ */
+public class MemoryFields {
+    /** Java heap in use, in KiB. */
+    public static final int FIELD_JAVA_HEAP = 0;
+    /** Native heap in use, in KiB. */
+    public static final int FIELD_NATIVE_HEAP = 1;
+    /** Bytes allocated on the Java heap since the process started, in KiB. */
+    public static final int FIELD_ALLOCATED = 2;
+    public static final int FIELD_GC_COUNT = 3;
+    /** Time spent in garbage collection, in ms. */
+    public static final int FIELD_GC_TIME = 4;
+    /** Collections that stopped allocating threads until they finished. */
+    public static final int FIELD_BLOCKING_GC_COUNT = 5;
+    /** Time spent in blocking garbage collections, in ms. */
+    public static final int FIELD_BLOCKING_GC_TIME = 6;
+    public static final int FIELD_COUNT = 7;
+    /** Value of fields that could not be read, and of frames logged before memory was sampled. */
+    public static final int VALUE_UNKNOWN = -1;
+
+    private static final String[] FIELD_NAMES = {
+            "javaHeapKb",
+            "nativeHeapKb",
+            "allocatedKb",
+            "gcCount",
+            "gcTimeMs",
+            "blockingGcCount",
+            "blockingGcTimeMs",
+    };
+
+    public static String getFieldName(int field) {
+        return FIELD_NAMES[field];
+    }
+
+    private MemoryFields() {}
+}
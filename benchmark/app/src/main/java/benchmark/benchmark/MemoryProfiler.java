@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.os.Debug;
+
+/**
+ * Samples Java and native heap usage, allocation volume and garbage collector activity of the
+ * process. Values are stored as ints in a fixed field order so that they can travel with the frame
+ * records in primitive columns.
+ *
+ * <p>The allocation and GC fields are cumulative since the process started, so the activity during
+ * a phase is the difference between samples taken at its boundaries. Allocations are measured in
+ * bytes allocated rather than objects, as counting objects with {@link Debug#startAllocCounting}
+ * slows every allocation down and would distort the frame times being measured.
+ */
+public class MemoryProfiler {
+    // The fields are defined by MemoryFields, which code reading the frame log uses off-device.
+    public static final int FIELD_JAVA_HEAP = MemoryFields.FIELD_JAVA_HEAP;
+    public static final int FIELD_NATIVE_HEAP = MemoryFields.FIELD_NATIVE_HEAP;
+    public static final int FIELD_ALLOCATED = MemoryFields.FIELD_ALLOCATED;
+    public static final int FIELD_GC_COUNT = MemoryFields.FIELD_GC_COUNT;
+    public static final int FIELD_GC_TIME = MemoryFields.FIELD_GC_TIME;
+    public static final int FIELD_BLOCKING_GC_COUNT = MemoryFields.FIELD_BLOCKING_GC_COUNT;
+    public static final int FIELD_BLOCKING_GC_TIME = MemoryFields.FIELD_BLOCKING_GC_TIME;
+    public static final int FIELD_COUNT = MemoryFields.FIELD_COUNT;
+    /** Value of fields that could not be read, and of frames logged before memory was sampled. */
+    public static final int VALUE_UNKNOWN = MemoryFields.VALUE_UNKNOWN;
+
+    private final Runtime runtime = Runtime.getRuntime();
+
+    public static String getFieldName(int field) {
+        return MemoryFields.getFieldName(field);
+    }
+
+    /**
+     * Fills {@link #FIELD_COUNT} values of {@code values} starting at {@code offset}. Takes a few
+     * microseconds and allocates the strings of the runtime statistics, so it should not be called
+     * on every frame.
+     */
+    public void sample(int[] values, int offset) {
+        values[offset + FIELD_JAVA_HEAP] = toKb(runtime.totalMemory() - runtime.freeMemory());
+        values[offset + FIELD_NATIVE_HEAP] = toKb(Debug.getNativeHeapAllocatedSize());
+        values[offset + FIELD_ALLOCATED] = toKb(readRuntimeStat("art.gc.bytes-allocated"));
+        values[offset + FIELD_GC_COUNT] = toInt(readRuntimeStat("art.gc.gc-count"));
+        values[offset + FIELD_GC_TIME] = toInt(readRuntimeStat("art.gc.gc-time"));
+        values[offset + FIELD_BLOCKING_GC_COUNT] = toInt(readRuntimeStat("art.gc.blocking-gc-count"));
+        values[offset + FIELD_BLOCKING_GC_TIME] = toInt(readRuntimeStat("art.gc.blocking-gc-time"));
+    }
+
+    private static long readRuntimeStat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) {
+            return VALUE_UNKNOWN;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return VALUE_UNKNOWN;
+        }
+    }
+
+    private static int toKb(long bytes) {
+        return bytes >= 0 ? toInt(bytes / 1024) : VALUE_UNKNOWN;
+    }
+
+    private static int toInt(long value) {
+        return value >= 0 ? (int) Math.min(value, Integer.MAX_VALUE) : VALUE_UNKNOWN;
+    }
+}
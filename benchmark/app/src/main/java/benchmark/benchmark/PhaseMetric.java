@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/** Per-phase metrics that are compared across repetitions of a section. */
+public enum PhaseMetric {
+    FPS("FPS") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFps();
+        }
+    },
+    FRAME_TIME_P50("Frame time p50 (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimePercentile(50);
+        }
+    },
+    FRAME_TIME_P90("Frame time p90 (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimePercentile(90);
+        }
+    },
+    FRAME_TIME_P99("Frame time p99 (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimePercentile(99);
+        }
+    },
+    FRAME_TIME_P999("Frame time p99.9 (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimePercentile(99.9);
+        }
+    },
+    FRAME_TIME_STD_DEV("Frame time std dev (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimeStdDev();
+        }
+    },
+    FRAMES_OVER_16_MS("Frames over 16.6 ms (%)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimeCount() > 0
+                    ? 100.f * phase.getFramesOver60FpsBudget() / phase.getFrameTimeCount() : Float.NaN;
+        }
+    },
+    FRAMES_OVER_33_MS("Frames over 33.3 ms (%)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getFrameTimeCount() > 0
+                    ? 100.f * phase.getFramesOver30FpsBudget() / phase.getFrameTimeCount() : Float.NaN;
+        }
+    },
+    MISSED_VSYNCS("Missed vsyncs") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getPresentPace() > 0 ? phase.getMissedVsyncs() : Float.NaN;
+        }
+    },
+    JANKY_FRAMES("Janky frames (%)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getPresentPace() > 0
+                    ? 100.f * phase.getJankyFrames() / phase.getPresentIntervalCount() : Float.NaN;
+        }
+    },
+    PRESENT_INTERVAL_VARIANCE("Present interval variance (ms\u00b2)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getPresentIntervalVariance();
+        }
+    },
+    PROCESS_TIME("ARCore Processing Time (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getMeanProcessTime();
+        }
+    },
+    GPU_TIME("GPU Rendering Time (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getMeanGpuTime();
+        }
+    },
+    TOTAL_TIME("Total CPU Runtime per frame (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getMeanTotalTime();
+        }
+    },
+    ALLOCATED_PER_FRAME("Java heap allocated per frame (KiB)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getAllocatedPerFrame();
+        }
+    },
+    GC_COUNT("GC count") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getGcCount() >= 0 ? phase.getGcCount() : Float.NaN;
+        }
+    },
+    GC_TIME("GC time (ms)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getGcTime() >= 0 ? phase.getGcTime() : Float.NaN;
+        }
+    },
+    PEAK_JAVA_HEAP("Peak Java heap (KiB)") {
+        @Override
+        public float get(PhaseStatistics phase) {
+            return phase.getPeakJavaHeap() >= 0 ? phase.getPeakJavaHeap() : Float.NaN;
+        }
+    };
+
+    private final String label;
+
+    PhaseMetric(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /** Returns the metric of {@code phase}, or NaN if the phase has no data for it. */
+    public abstract float get(PhaseStatistics phase);
+}
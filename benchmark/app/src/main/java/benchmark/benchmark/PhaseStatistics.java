@@ -0,0 +1,442 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-phase aggregate of a logged section: averages of the logged runtimes plus the distribution of
+ * frame times, i.e. the intervals between consecutive frames of the phase, and the memory allocated
+ * and garbage collected while the phase ran.
+ *
+ * <p>Frame pacing is measured on the frames that were shown, from the intervals between their
+ * present times in whole vsync periods. The most common interval of the phase is taken as the
+ * pace it was rendered at; every longer interval is a janky frame, and the vsyncs it lasted beyond
+ * that pace are missed vsyncs.
+ */
+public class PhaseStatistics {
+    /** Frame time budget for 60 FPS, in microseconds. */
+    public static final long BUDGET_60_FPS_US = 16_667;
+    /** Frame time budget for 30 FPS, in microseconds. */
+    public static final long BUDGET_30_FPS_US = 33_333;
+
+    // Frame times are tracked in microseconds up to one minute, to within 1/128 of the value.
+    private static final long MAX_FRAME_TIME_US = 60_000_000;
+    private static final int FRAME_TIME_PRECISION_BITS = 7;
+    // Present intervals are counted per number of vsyncs up to this one, longer ones are summed.
+    private static final int MAX_COUNTED_PRESENT_INTERVAL = 16;
+
+    private final int phase;
+    private final Histogram frameTimes = new Histogram(MAX_FRAME_TIME_US, FRAME_TIME_PRECISION_BITS);
+    private final long[] stageTotals = new long[FrameStages.STAGE_COUNT];
+    private final long[] stageCpuTotals = new long[FrameStages.STAGE_COUNT];
+    private int cpuFrames;
+    private long stateCallsIssued;
+    private long stateCallsSkipped;
+    private int stateCallFrames;
+    private final long[] passTotals = new long[GpuPasses.PASS_COUNT];
+    private final int[] memoryStart = new int[MemoryFields.FIELD_COUNT];
+    private final int[] memoryEnd = new int[MemoryFields.FIELD_COUNT];
+    private int peakJavaHeap = MemoryFields.VALUE_UNKNOWN;
+    private int peakNativeHeap = MemoryFields.VALUE_UNKNOWN;
+    private int frames;
+    private int gpuFrames;
+    private long startTime;
+    private long lastFrameTime;
+    private long lastFrameTimeNanos;
+    private long process;
+    private long maxInput;
+    private long gpuTotal;
+    private long total;
+    private double frameTimeMean;
+    private double frameTimeSquaredDeviations;
+    private int framesOver60FpsBudget;
+    private int framesOver30FpsBudget;
+    private int presentedFrames;
+    private long lastPresentTime;
+    private final long[] presentIntervalCounts = new long[MAX_COUNTED_PRESENT_INTERVAL + 1];
+    private long longPresentIntervals;
+    private long longPresentIntervalVsyncs;
+    private long presentIntervals;
+    private double presentIntervalMean;
+    private double presentIntervalSquaredDeviations;
+
+    /** Phase number of the statistics of a whole section, see {@link #computeTotal}. */
+    public static final int ALL_PHASES = -1;
+
+    private PhaseStatistics(int phase) {
+        this.phase = phase;
+    }
+
+    /** Aggregates every phase of {@code section} in a single pass, in the order the phases were logged. */
+    public static List<PhaseStatistics> compute(FrameLogSection section) {
+        List<PhaseStatistics> phases = new ArrayList<>();
+        PhaseStatistics current = null;
+        for (int frame = 0; frame < section.size(); frame++) {
+            int phase = section.getPhase(frame);
+            if (current == null || current.phase != phase) {
+                if (current != null) {
+                    // Memory is sampled on the first frame of every phase, so the next phase's
+                    // first sample is the most accurate end of this one.
+                    current.setMemoryEnd(section, frame);
+                }
+                current = new PhaseStatistics(phase);
+                phases.add(current);
+            }
+            current.add(section, frame);
+        }
+        return phases;
+    }
+
+    /** Aggregates all frames of {@code section} as one phase, numbered {@link #ALL_PHASES}. */
+    public static PhaseStatistics computeTotal(FrameLogSection section) {
+        PhaseStatistics total = new PhaseStatistics(ALL_PHASES);
+        for (int frame = 0; frame < section.size(); frame++) {
+            total.add(section, frame);
+        }
+        return total;
+    }
+
+    private void add(FrameLogSection section, int frame) {
+        long frameTime = section.getFrameTime(frame);
+        long frameTimeNanos = section.getFrameTimeNanos(frame);
+        if (frames == 0) {
+            startTime = frameTime;
+            for (int field = 0; field < MemoryFields.FIELD_COUNT; field++) {
+                memoryStart[field] = section.getMemoryStat(frame, field);
+            }
+        } else {
+            addFrameTime(getFrameIntervalUs(frameTime, frameTimeNanos));
+        }
+        lastFrameTime = frameTime;
+        lastFrameTimeNanos = frameTimeNanos;
+        frames++;
+
+        process += section.getProcessTime(frame);
+        maxInput = Math.max(maxInput, section.getHandleInputTime(frame));
+        // Frames whose GPU results were discarded do not count towards the GPU averages.
+        if (section.getGpuTime(frame) >= 0) {
+            gpuTotal += section.getGpuTime(frame);
+            for (int pass = 0; pass < GpuPasses.PASS_COUNT; pass++) {
+                passTotals[pass] += Math.max(section.getGpuPassTime(frame, pass), 0);
+            }
+            gpuFrames++;
+        }
+        total += section.getTotalTime(frame);
+        for (int stage = 0; stage < FrameStages.STAGE_COUNT; stage++) {
+            stageTotals[stage] += section.getStageTime(frame, stage);
+        }
+        // Logs written before CPU times were recorded, or on devices without thread CPU clocks.
+        if (section.getStageCpuTime(frame, 0) != FrameStages.CPU_TIME_UNKNOWN) {
+            for (int stage = 0; stage < FrameStages.STAGE_COUNT; stage++) {
+                stageCpuTotals[stage] += section.getStageCpuTime(frame, stage);
+            }
+            cpuFrames++;
+        }
+        // Logs written before state calls were counted, or frames recorded without a render.
+        if (section.getStateCallsIssued(frame) != FrameLogSection.COUNT_UNKNOWN) {
+            stateCallsIssued += section.getStateCallsIssued(frame);
+            stateCallsSkipped += section.getStateCallsSkipped(frame);
+            stateCallFrames++;
+        }
+        long presentTime = section.getPresentTime(frame);
+        if (presentTime != FrameLogSection.PRESENT_TIME_UNKNOWN) {
+            if (presentedFrames > 0) {
+                addPresentInterval(presentTime - lastPresentTime, section.getVsyncPeriod(frame));
+            }
+            lastPresentTime = presentTime;
+            presentedFrames++;
+        }
+        setMemoryEnd(section, frame);
+        peakJavaHeap = Math.max(peakJavaHeap, section.getMemoryStat(frame, MemoryFields.FIELD_JAVA_HEAP));
+        peakNativeHeap = Math.max(peakNativeHeap, section.getMemoryStat(frame, MemoryFields.FIELD_NATIVE_HEAP));
+    }
+
+    private void setMemoryEnd(FrameLogSection section, int frame) {
+        for (int field = 0; field < MemoryFields.FIELD_COUNT; field++) {
+            memoryEnd[field] = section.getMemoryStat(frame, field);
+        }
+    }
+
+    /**
+     * Returns the interval to the previous frame in microseconds, from the monotonic frame times if
+     * both frames have one. Logs written before them only have whole milliseconds.
+     */
+    private long getFrameIntervalUs(long frameTime, long frameTimeNanos) {
+        if (frameTimeNanos != FrameLogSection.FRAME_TIME_NANOS_UNKNOWN
+                && lastFrameTimeNanos != FrameLogSection.FRAME_TIME_NANOS_UNKNOWN) {
+            return (frameTimeNanos - lastFrameTimeNanos) / 1000;
+        }
+        return (frameTime - lastFrameTime) * 1000;
+    }
+
+    private void addFrameTime(long frameTimeUs) {
+        frameTimes.record(frameTimeUs);
+        // Welford's update keeps the variance stable over long recordings.
+        long count = frameTimes.getTotalCount();
+        double delta = frameTimeUs - frameTimeMean;
+        frameTimeMean += delta / count;
+        frameTimeSquaredDeviations += delta * (frameTimeUs - frameTimeMean);
+        if (frameTimeUs > BUDGET_60_FPS_US) {
+            framesOver60FpsBudget++;
+        }
+        if (frameTimeUs > BUDGET_30_FPS_US) {
+            framesOver30FpsBudget++;
+        }
+    }
+
+    private void addPresentInterval(long intervalNs, int vsyncPeriod) {
+        presentIntervals++;
+        double intervalMs = intervalNs / 1e6;
+        double delta = intervalMs - presentIntervalMean;
+        presentIntervalMean += delta / presentIntervals;
+        presentIntervalSquaredDeviations += delta * (intervalMs - presentIntervalMean);
+        if (vsyncPeriod <= 0) {
+            return;
+        }
+        long vsyncs = Math.max(Math.round((double) intervalNs / vsyncPeriod), 1);
+        if (vsyncs <= MAX_COUNTED_PRESENT_INTERVAL) {
+            presentIntervalCounts[(int) vsyncs]++;
+        } else {
+            longPresentIntervals++;
+            longPresentIntervalVsyncs += vsyncs;
+        }
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /** Returns the wall clock time of the first frame of the phase, in milliseconds. */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** Returns the wall clock time of the last frame of the phase, in milliseconds. */
+    public long getEndTime() {
+        return lastFrameTime;
+    }
+
+    /** Returns the time between the first and the last frame of the phase, in milliseconds. */
+    public long getDuration() {
+        return lastFrameTime - startTime;
+    }
+
+    public float getFps() {
+        return 1000.f * (frames - 1) / getDuration();
+    }
+
+    public float getMeanProcessTime() {
+        return (float) process / frames;
+    }
+
+    public long getMaxHandleInputTime() {
+        return maxInput;
+    }
+
+    /** Returns the number of frames with GPU timings; GPU averages are taken over these frames only. */
+    public int getGpuFrameCount() {
+        return gpuFrames;
+    }
+
+    /** Returns the mean GPU time per frame in milliseconds, or NaN if no frame has GPU timings. */
+    public float getMeanGpuTime() {
+        return gpuFrames > 0 ? gpuTotal / 1e6f / gpuFrames : Float.NaN;
+    }
+
+    /** Returns the mean GPU time of {@code pass} in milliseconds, or NaN if no frame has GPU timings. */
+    public float getMeanGpuPassTime(int pass) {
+        return gpuFrames > 0 ? passTotals[pass] / 1e6f / gpuFrames : Float.NaN;
+    }
+
+    public float getMeanTotalTime() {
+        return (float) total / frames;
+    }
+
+    /** Returns the mean CPU time of {@code stage} per frame, in milliseconds. */
+    public float getMeanStageTime(int stage) {
+        return stageTotals[stage] / 1e6f / frames;
+    }
+
+    /**
+     * Returns the mean render thread CPU time spent in {@code stage} per frame in milliseconds, or
+     * NaN if it was not measured. The gap to {@link #getMeanStageTime} is time spent blocked.
+     */
+    public float getMeanStageCpuTime(int stage) {
+        return cpuFrames > 0 ? stageCpuTotals[stage] / 1e6f / cpuFrames : Float.NaN;
+    }
+
+    /**
+     * Returns the mean number of GL state calls the render issued per frame, or NaN if they were not
+     * counted.
+     */
+    public float getMeanStateCallsIssued() {
+        return stateCallFrames > 0 ? (float) stateCallsIssued / stateCallFrames : Float.NaN;
+    }
+
+    /**
+     * Returns the mean number of redundant GL state calls the render skipped per frame, or NaN if
+     * they were not counted.
+     */
+    public float getMeanStateCallsSkipped() {
+        return stateCallFrames > 0 ? (float) stateCallsSkipped / stateCallFrames : Float.NaN;
+    }
+
+    /** Returns the number of frame time samples, one less than the number of frames. */
+    public long getFrameTimeCount() {
+        return frameTimes.getTotalCount();
+    }
+
+    /** Returns the frame time at {@code percentile}, in milliseconds. */
+    public float getFrameTimePercentile(double percentile) {
+        return frameTimes.getValueAtPercentile(percentile) / 1000.f;
+    }
+
+    /** Returns the sample standard deviation of the frame time, in milliseconds. */
+    public float getFrameTimeStdDev() {
+        long count = frameTimes.getTotalCount();
+        return count > 1 ? (float) Math.sqrt(frameTimeSquaredDeviations / (count - 1)) / 1000.f : 0.f;
+    }
+
+    /** Returns the number of frame times over {@link #BUDGET_60_FPS_US}. */
+    public int getFramesOver60FpsBudget() {
+        return framesOver60FpsBudget;
+    }
+
+    /** Returns the number of frame times over {@link #BUDGET_30_FPS_US}. */
+    public int getFramesOver30FpsBudget() {
+        return framesOver30FpsBudget;
+    }
+
+    /** Returns the number of frames of the phase that were shown. */
+    public int getPresentedFrameCount() {
+        return presentedFrames;
+    }
+
+    /**
+     * Returns the most common interval between shown frames in vsync periods, i.e. the pace the
+     * phase was rendered at, or 0 if fewer than two frames were shown.
+     */
+    public int getPresentPace() {
+        int pace = 0;
+        for (int vsyncs = 1; vsyncs <= MAX_COUNTED_PRESENT_INTERVAL; vsyncs++) {
+            if (presentIntervalCounts[vsyncs] > presentIntervalCounts[pace]) {
+                pace = vsyncs;
+            }
+        }
+        return pace;
+    }
+
+    /** Returns the number of vsyncs shown frames lasted beyond {@link #getPresentPace}. */
+    public long getMissedVsyncs() {
+        int pace = getPresentPace();
+        long missed = longPresentIntervalVsyncs - longPresentIntervals * pace;
+        for (int vsyncs = pace + 1; vsyncs <= MAX_COUNTED_PRESENT_INTERVAL; vsyncs++) {
+            missed += presentIntervalCounts[vsyncs] * (vsyncs - pace);
+        }
+        return missed;
+    }
+
+    /** Returns the number of shown frames that lasted longer than {@link #getPresentPace}. */
+    public long getJankyFrames() {
+        long janky = longPresentIntervals;
+        for (int vsyncs = getPresentPace() + 1; vsyncs <= MAX_COUNTED_PRESENT_INTERVAL; vsyncs++) {
+            janky += presentIntervalCounts[vsyncs];
+        }
+        return janky;
+    }
+
+    /** Returns the number of intervals between shown frames, one less than the frames shown. */
+    public long getPresentIntervalCount() {
+        return presentIntervals;
+    }
+
+    /** Returns the mean interval between shown frames in milliseconds, or NaN if there is none. */
+    public float getMeanPresentInterval() {
+        return presentIntervals > 0 ? (float) presentIntervalMean : Float.NaN;
+    }
+
+    /**
+     * Returns the sample variance of the interval between shown frames in squared milliseconds, or
+     * NaN if fewer than three frames were shown.
+     */
+    public float getPresentIntervalVariance() {
+        return presentIntervals > 1 ? (float) (presentIntervalSquaredDeviations / (presentIntervals - 1)) : Float.NaN;
+    }
+
+    /** Returns the KiB allocated on the Java heap during the phase, or -1 if memory was not sampled. */
+    public int getAllocated() {
+        return getMemoryDelta(MemoryFields.FIELD_ALLOCATED);
+    }
+
+    /** Returns the KiB allocated on the Java heap per frame, or NaN if memory was not sampled. */
+    public float getAllocatedPerFrame() {
+        int allocated = getAllocated();
+        return allocated >= 0 ? (float) allocated / frames : Float.NaN;
+    }
+
+    /** Returns the number of garbage collections during the phase, or -1 if unknown. */
+    public int getGcCount() {
+        return getMemoryDelta(MemoryFields.FIELD_GC_COUNT);
+    }
+
+    /** Returns the time spent in garbage collection during the phase in milliseconds, or -1 if unknown. */
+    public int getGcTime() {
+        return getMemoryDelta(MemoryFields.FIELD_GC_TIME);
+    }
+
+    /** Returns the number of blocking garbage collections during the phase, or -1 if unknown. */
+    public int getBlockingGcCount() {
+        return getMemoryDelta(MemoryFields.FIELD_BLOCKING_GC_COUNT);
+    }
+
+    /** Returns the time spent in blocking garbage collections in milliseconds, or -1 if unknown. */
+    public int getBlockingGcTime() {
+        return getMemoryDelta(MemoryFields.FIELD_BLOCKING_GC_TIME);
+    }
+
+    /** Returns the largest sampled Java heap usage in KiB, or -1 if unknown. */
+    public int getPeakJavaHeap() {
+        return peakJavaHeap;
+    }
+
+    /** Returns the largest sampled native heap usage in KiB, or -1 if unknown. */
+    public int getPeakNativeHeap() {
+        return peakNativeHeap;
+    }
+
+    /** Returns the growth of a cumulative {@link MemoryFields} field over the phase, or -1 if unknown. */
+    private int getMemoryDelta(int field) {
+        if (memoryStart[field] == MemoryFields.VALUE_UNKNOWN || memoryEnd[field] == MemoryFields.VALUE_UNKNOWN) {
+            return MemoryFields.VALUE_UNKNOWN;
+        }
+        return Math.max(memoryEnd[field] - memoryStart[field], 0);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import java.util.Locale;
+
+/**
+ * Rendering quality settings of a section, read from the extras it was launched with so that they
+ * can be set per section in the suite manifest parameters or swept over a grid, see {@link
+ * BenchmarkSuite}. Settings a section does not have are ignored.
+ */
+public class RenderParameters {
+    /** Size of each face of the filtered environment cubemap, in pixels. */
+    public static final String CUBEMAP_RESOLUTION = "benchmark.CUBEMAP_RESOLUTION";
+    /** Importance samples per texel when filtering the environment cubemap. */
+    public static final String CUBEMAP_SAMPLES = "benchmark.CUBEMAP_SAMPLES";
+    /** Size of the virtual scene framebuffer relative to the viewport. */
+    public static final String RENDER_SCALE = "benchmark.RENDER_SCALE";
+    /** Size of point cloud points, in pixels. */
+    public static final String POINT_SIZE = "benchmark.POINT_SIZE";
+    /** Distance of the far clipping plane, in meters. */
+    public static final String Z_FAR = "benchmark.Z_FAR";
+    /** 1 to queue virtual object draws and flush them sorted by state, 0 to draw them in order. */
+    public static final String RENDER_QUEUE = "benchmark.RENDER_QUEUE";
+
+    public static final int DEFAULT_CUBEMAP_RESOLUTION = 16;
+    public static final int DEFAULT_CUBEMAP_SAMPLES = 32;
+    public static final float DEFAULT_RENDER_SCALE = 1;
+    public static final float DEFAULT_POINT_SIZE = 5;
+    public static final int DEFAULT_RENDER_QUEUE = 1;
+
+    private final int cubemapResolution;
+    private final int cubemapSamples;
+    private final float renderScale;
+    private final float pointSize;
+    private final float zFar;
+    private final boolean renderQueueEnabled;
+
+    /** @param defaultZFar Far clipping plane of the section if it is not set */
+    public RenderParameters(Intent intent, float defaultZFar) {
+        Bundle extras = intent.getExtras();
+        cubemapResolution = Math.max(getInt(extras, CUBEMAP_RESOLUTION, DEFAULT_CUBEMAP_RESOLUTION), 1);
+        cubemapSamples = Math.max(getInt(extras, CUBEMAP_SAMPLES, DEFAULT_CUBEMAP_SAMPLES), 1);
+        float scale = getFloat(extras, RENDER_SCALE, DEFAULT_RENDER_SCALE);
+        renderScale = scale > 0 ? scale : DEFAULT_RENDER_SCALE;
+        pointSize = getFloat(extras, POINT_SIZE, DEFAULT_POINT_SIZE);
+        zFar = getFloat(extras, Z_FAR, defaultZFar);
+        renderQueueEnabled = getInt(extras, RENDER_QUEUE, DEFAULT_RENDER_QUEUE) != 0;
+    }
+
+    public int getCubemapResolution() {
+        return cubemapResolution;
+    }
+
+    public int getCubemapSamples() {
+        return cubemapSamples;
+    }
+
+    public float getRenderScale() {
+        return renderScale;
+    }
+
+    /** Returns {@code size} scaled by the render scale, at least 1 pixel. */
+    public int scale(int size) {
+        return Math.max(Math.round(size * renderScale), 1);
+    }
+
+    public float getPointSize() {
+        return pointSize;
+    }
+
+    public float getZFar() {
+        return zFar;
+    }
+
+    public boolean isRenderQueueEnabled() {
+        return renderQueueEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "cubemap %d px, %d samples, render scale %s, point size %s, z far %s, render queue %b",
+                cubemapResolution, cubemapSamples, renderScale, pointSize, zFar, renderQueueEnabled);
+    }
+
+    // Numbers in the manifest arrive as int or float extras depending on how they were written.
+    private static int getInt(Bundle extras, String name, int defaultValue) {
+        Object value = extras != null ? extras.get(name) : null;
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private static float getFloat(Bundle extras, String name, float defaultValue) {
+        Object value = extras != null ? extras.get(name) : null;
+        return value instanceof Number ? ((Number) value).floatValue() : defaultValue;
+    }
+}
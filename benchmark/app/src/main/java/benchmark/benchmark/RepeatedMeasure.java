@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/**
+ * Mean and 95% confidence interval of one metric across the measured repetitions of a section.
+ * NaN samples, e.g. GPU times of a run without timer queries, are ignored.
+ */
+public class RepeatedMeasure {
+    // Two-sided 97.5% quantiles of Student's t distribution for 1 to 30 degrees of freedom.
+    private static final double[] T_QUANTILES = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042,
+    };
+
+    private int count;
+    private double mean;
+    private double squaredDeviations;
+
+    public void add(double sample) {
+        if (Double.isNaN(sample)) {
+            return;
+        }
+        count++;
+        double delta = sample - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (sample - mean);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** Returns the mean of the samples, or NaN if there are none. */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /** Returns the sample standard deviation, or NaN with fewer than two samples. */
+    public double getStdDev() {
+        return count > 1 ? Math.sqrt(squaredDeviations / (count - 1)) : Double.NaN;
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the mean, or NaN with fewer than two
+     * samples.
+     */
+    public double getConfidenceInterval95() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        int degreesOfFreedom = count - 1;
+        // Beyond the table, the first-order Cornish-Fisher expansion is within 0.2% of the quantile.
+        double t = degreesOfFreedom <= T_QUANTILES.length
+                ? T_QUANTILES[degreesOfFreedom - 1]
+                : 1.95996 + 2.3722 / degreesOfFreedom;
+        return t * getStdDev() / Math.sqrt(count);
+    }
+}
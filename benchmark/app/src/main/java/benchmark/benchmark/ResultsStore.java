@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Directory of past benchmark runs, one subdirectory per run named after its completion time. Each
+ * run keeps its JSON results and, per section, the frame log of every measured repetition so later
+ * runs can be compared frame by frame. Free of Android dependencies so pulled stores can be read on a
+ * desktop JVM.
+ */
+public class ResultsStore {
+    public static final String DIRECTORY_NAME = "results";
+    private static final String FRAME_LOG_SUFFIX = ".framelog";
+
+    private final File root;
+
+    public ResultsStore(File root) {
+        this.root = root;
+    }
+
+    /** Returns the stored runs, oldest first. */
+    public List<File> listRuns() {
+        File[] runs = root.listFiles(File::isDirectory);
+        if (runs == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(runs);
+        return new ArrayList<>(Arrays.asList(runs));
+    }
+
+    /** Returns the most recent run, or null if the store is empty. */
+    public File getLatestRun() {
+        List<File> runs = listRuns();
+        return runs.isEmpty() ? null : runs.get(runs.size() - 1);
+    }
+
+    /** Returns the run named {@code name}, or null if there is none. */
+    public File getRun(String name) {
+        File run = new File(root, name);
+        return run.isDirectory() ? run : null;
+    }
+
+    /** Stores {@code results} as a new run and returns its directory. */
+    public File save(BenchmarkResults results) throws IOException {
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date(results.getTimestamp()));
+        File run = new File(root, name);
+        for (int suffix = 2; run.exists(); suffix++) {
+            run = new File(root, name + "-" + suffix);
+        }
+        if (!run.mkdirs()) {
+            throw new IOException("Could not create " + run.getAbsolutePath());
+        }
+
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(run, BenchmarkResults.FILE_NAME)),
+                StandardCharsets.UTF_8)) {
+            results.writeJson(out);
+        }
+        for (SectionResults section : results.getSections()) {
+            // Section names may repeat in a manifest; keep each section in its own file.
+            String fileName = toFileName(section.getSectionName());
+            File frameLog = new File(run, fileName + FRAME_LOG_SUFFIX);
+            for (int suffix = 2; frameLog.exists(); suffix++) {
+                frameLog = new File(run, fileName + " " + suffix + FRAME_LOG_SUFFIX);
+            }
+            for (FrameLogSection repetition : section.getFrameLogs()) {
+                writeSection(frameLog, repetition);
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Reads the per-frame data of a stored run.
+     *
+     * @return Frame logs of the measured repetitions keyed by section file name, in name order
+     */
+    public static Map<String, List<FrameLogSection>> loadFrameLogs(File run) throws IOException {
+        File[] files = run.listFiles((dir, name) -> name.endsWith(FRAME_LOG_SUFFIX));
+        if (files == null) {
+            throw new IOException("Not a stored benchmark run: " + run.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        Map<String, List<FrameLogSection>> frameLogs = new LinkedHashMap<>();
+        for (File file : files) {
+            String name = file.getName();
+            frameLogs.put(name.substring(0, name.length() - FRAME_LOG_SUFFIX.length()), FrameLogReader.read(file));
+        }
+        return frameLogs;
+    }
+
+    private static String toFileName(String sectionName) {
+        return sectionName.replaceAll("[^A-Za-z0-9 ()._-]", "_");
+    }
+
+    private static void writeSection(File file, FrameLogSection section) throws IOException {
+        int[] stageTimes = new int[FrameStages.STAGE_COUNT];
+        int[] stageCpuTimes = new int[FrameStages.STAGE_COUNT];
+        int[] passTimes = new int[GpuPasses.PASS_COUNT];
+        int[] memoryStats = new int[MemoryFields.FIELD_COUNT];
+        try (FrameLogWriter writer = new FrameLogWriter(file, section.getRecordingName())) {
+            for (int frame = 0; frame < section.size(); frame++) {
+                for (int stage = 0; stage < stageTimes.length; stage++) {
+                    stageTimes[stage] = section.getStageTime(frame, stage);
+                    stageCpuTimes[stage] = section.getStageCpuTime(frame, stage);
+                }
+                for (int pass = 0; pass < passTimes.length; pass++) {
+                    passTimes[pass] = section.getGpuPassTime(frame, pass);
+                }
+                for (int field = 0; field < memoryStats.length; field++) {
+                    memoryStats[field] = section.getMemoryStat(frame, field);
+                }
+                writer.writeFrame(section.getPhase(frame), section.getFrameTime(frame), section.getProcessTime(frame),
+                        section.getHandleInputTime(frame), section.getGpuTime(frame), section.getTotalTime(frame),
+                        stageTimes, stageCpuTimes, 0, passTimes, 0, memoryStats, 0, section.getPresentTime(frame),
+                        section.getVsyncPeriod(frame), section.getStateCallsIssued(frame),
+                        section.getStateCallsSkipped(frame), section.getFrameTimeNanos(frame));
+            }
+            writer.writeSectionEnd(section.getDroppedRecords());
+        }
+    }
+}
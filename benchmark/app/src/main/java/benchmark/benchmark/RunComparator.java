@@ -0,0 +1,306 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the per-frame data of two stored runs section by section and phase by phase, flagging
+ * changes that are both statistically significant (Mann-Whitney U) and larger than a relative
+ * threshold. Consecutive frames are correlated, so p-values alone overstate significance; the
+ * threshold keeps small but consistent shifts from being reported.
+ *
+ * <p>Also usable from a desktop JVM on runs pulled from a device:
+ * <pre>
+ * java benchmark.benchmark.RunComparator [--alpha 0.01] [--threshold 5] baseline-run candidate-run
+ * </pre>
+ * which exits with status 1 if any regression is found.
+ */
+public class RunComparator {
+    public static final double DEFAULT_SIGNIFICANCE_LEVEL = 0.01;
+    public static final double DEFAULT_THRESHOLD_PERCENT = 5;
+
+    /** Per-frame metrics that are compared; larger values are worse for all of them. */
+    public enum Metric {
+        FRAME_TIME("Frame time"),
+        PROCESS_TIME("ARCore processing time"),
+        GPU_TIME("GPU time"),
+        TOTAL_TIME("Total CPU runtime");
+
+        private final String label;
+
+        Metric(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /** Appends the values of the frames of {@code phase} in milliseconds, skipping unknown ones. */
+        void collect(FrameLogSection section, int phase, List<Double> values) {
+            for (int frame = 0; frame < section.size(); frame++) {
+                if (section.getPhase(frame) != phase) {
+                    continue;
+                }
+                switch (this) {
+                    case FRAME_TIME:
+                        if (frame > 0 && section.getPhase(frame - 1) == phase) {
+                            values.add(getFrameIntervalMs(section, frame));
+                        }
+                        break;
+                    case PROCESS_TIME:
+                        values.add((double) section.getProcessTime(frame));
+                        break;
+                    case GPU_TIME:
+                        if (section.getGpuTime(frame) >= 0) {
+                            values.add(section.getGpuTime(frame) / 1e6);
+                        }
+                        break;
+                    case TOTAL_TIME:
+                        values.add((double) section.getTotalTime(frame));
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Returns the interval from the previous frame in milliseconds, from the monotonic frame
+         * times like {@link PhaseStatistics}. Logs written before them only have whole milliseconds.
+         */
+        private static double getFrameIntervalMs(FrameLogSection section, int frame) {
+            long frameTimeNanos = section.getFrameTimeNanos(frame);
+            long lastFrameTimeNanos = section.getFrameTimeNanos(frame - 1);
+            if (frameTimeNanos != FrameLogSection.FRAME_TIME_NANOS_UNKNOWN
+                    && lastFrameTimeNanos != FrameLogSection.FRAME_TIME_NANOS_UNKNOWN) {
+                return (frameTimeNanos - lastFrameTimeNanos) / 1e6;
+            }
+            return section.getFrameTime(frame) - section.getFrameTime(frame - 1);
+        }
+    }
+
+    public enum Verdict {
+        NO_CHANGE, IMPROVEMENT, REGRESSION
+    }
+
+    /** Outcome of comparing one metric of one phase of a section. */
+    public static class Comparison {
+        private final String section;
+        private final int phase;
+        private final Metric metric;
+        private final double baselineMean;
+        private final double candidateMean;
+        private final double pValue;
+        private final Verdict verdict;
+
+        Comparison(String section, int phase, Metric metric, double baselineMean, double candidateMean,
+                   double pValue, Verdict verdict) {
+            this.section = section;
+            this.phase = phase;
+            this.metric = metric;
+            this.baselineMean = baselineMean;
+            this.candidateMean = candidateMean;
+            this.pValue = pValue;
+            this.verdict = verdict;
+        }
+
+        public String getSection() {
+            return section;
+        }
+
+        public int getPhase() {
+            return phase;
+        }
+
+        public Metric getMetric() {
+            return metric;
+        }
+
+        public double getBaselineMean() {
+            return baselineMean;
+        }
+
+        public double getCandidateMean() {
+            return candidateMean;
+        }
+
+        /** Returns the change of the mean relative to the baseline, in percent. */
+        public double getChangePercent() {
+            return 100 * (candidateMean - baselineMean) / baselineMean;
+        }
+
+        public double getPValue() {
+            return pValue;
+        }
+
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s phase %d %s: %.3f -> %.3f ms (%+.1f%%, p=%.2g)%s", section, phase,
+                    metric.getLabel(), baselineMean, candidateMean, getChangePercent(), pValue,
+                    verdict == Verdict.NO_CHANGE ? "" : " " + verdict);
+        }
+    }
+
+    private final double significanceLevel;
+    private final double thresholdPercent;
+
+    /**
+     * @param significanceLevel Largest p-value at which a change is considered significant
+     * @param thresholdPercent Smallest relative change of the mean, in percent, that is flagged
+     */
+    public RunComparator(double significanceLevel, double thresholdPercent) {
+        this.significanceLevel = significanceLevel;
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    /**
+     * Compares every section and phase present in both runs, as returned by
+     * {@link ResultsStore#loadFrameLogs}.
+     */
+    public List<Comparison> compare(Map<String, List<FrameLogSection>> baseline,
+                                    Map<String, List<FrameLogSection>> candidate) {
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Map.Entry<String, List<FrameLogSection>> entry : candidate.entrySet()) {
+            List<FrameLogSection> baselineSections = baseline.get(entry.getKey());
+            if (baselineSections == null) {
+                continue;
+            }
+            for (int phase : getPhases(entry.getValue())) {
+                for (Metric metric : Metric.values()) {
+                    double[] baselineValues = collect(baselineSections, phase, metric);
+                    double[] candidateValues = collect(entry.getValue(), phase, metric);
+                    if (baselineValues.length == 0 || candidateValues.length == 0) {
+                        continue;
+                    }
+                    comparisons.add(compare(entry.getKey(), phase, metric, baselineValues, candidateValues));
+                }
+            }
+        }
+        return comparisons;
+    }
+
+    private Comparison compare(String section, int phase, Metric metric, double[] baseline, double[] candidate) {
+        double baselineMean = mean(baseline);
+        double candidateMean = mean(candidate);
+        double pValue = MannWhitneyU.test(baseline, candidate).getPValue();
+        double change = 100 * (candidateMean - baselineMean) / baselineMean;
+        Verdict verdict = Verdict.NO_CHANGE;
+        if (pValue < significanceLevel && Math.abs(change) > thresholdPercent) {
+            verdict = change > 0 ? Verdict.REGRESSION : Verdict.IMPROVEMENT;
+        }
+        return new Comparison(section, phase, metric, baselineMean, candidateMean, pValue, verdict);
+    }
+
+    /** Returns one line per comparison, significant changes first. */
+    public static String format(List<Comparison> comparisons) {
+        StringBuilder report = new StringBuilder();
+        for (Verdict verdict : new Verdict[]{Verdict.REGRESSION, Verdict.IMPROVEMENT, Verdict.NO_CHANGE}) {
+            for (Comparison comparison : comparisons) {
+                if (comparison.getVerdict() == verdict) {
+                    report.append(comparison).append('\n');
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    public static boolean hasRegressions(List<Comparison> comparisons) {
+        for (Comparison comparison : comparisons) {
+            if (comparison.getVerdict() == Verdict.REGRESSION) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Integer> getPhases(List<FrameLogSection> sections) {
+        List<Integer> phases = new ArrayList<>();
+        for (FrameLogSection section : sections) {
+            for (int frame = 0; frame < section.size(); frame++) {
+                if (!phases.contains(section.getPhase(frame))) {
+                    phases.add(section.getPhase(frame));
+                }
+            }
+        }
+        return phases;
+    }
+
+    private static double[] collect(List<FrameLogSection> sections, int phase, Metric metric) {
+        List<Double> values = new ArrayList<>();
+        for (FrameLogSection section : sections) {
+            metric.collect(section, phase, values);
+        }
+        double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        double significanceLevel = DEFAULT_SIGNIFICANCE_LEVEL;
+        double thresholdPercent = DEFAULT_THRESHOLD_PERCENT;
+        List<String> runs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--alpha")) {
+                    significanceLevel = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--threshold")) {
+                    thresholdPercent = Double.parseDouble(args[++i]);
+                } else {
+                    runs.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            runs.clear();
+        }
+        if (runs.size() != 2) {
+            System.err.println("Usage: RunComparator [--alpha 0.01] [--threshold 5] baseline-run candidate-run");
+            System.exit(2);
+        }
+
+        List<Comparison> comparisons = new RunComparator(significanceLevel, thresholdPercent).compare(
+                ResultsStore.loadFrameLogs(new File(runs.get(0))), ResultsStore.loadFrameLogs(new File(runs.get(1))));
+        System.out.print(format(comparisons));
+        System.exit(hasRegressions(comparisons) ? 1 : 0);
+    }
+}
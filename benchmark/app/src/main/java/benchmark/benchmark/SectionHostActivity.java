@@ -0,0 +1,447 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.ar.core.ArCoreApk;
+import com.google.ar.core.Frame;
+import com.google.ar.core.PlaybackStatus;
+import com.google.ar.core.Session;
+import com.google.ar.core.exceptions.CameraNotAvailableException;
+import com.google.ar.core.exceptions.PlaybackFailedException;
+import com.google.ar.core.exceptions.UnavailableApkTooOldException;
+import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
+import com.google.ar.core.exceptions.UnavailableDeviceNotCompatibleException;
+import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
+import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import benchmark.common.helpers.CameraPermissionHelper;
+import benchmark.common.helpers.DisplayRotationHelper;
+import benchmark.common.helpers.FullScreenHelper;
+import benchmark.common.helpers.SnackbarHelper;
+import benchmark.common.helpers.TapHelper;
+import benchmark.common.samplerender.OffscreenRender;
+import benchmark.common.samplerender.SampleRender;
+
+/**
+ * Runs a {@link BenchmarkSection} over several recordings in one activity. The offscreen render
+ * thread, its EGL context, the GL resources of the section and the ARCore session are created once;
+ * between recordings only the playback dataset is swapped. Each recording is logged as its own
+ * section of the frame log, so the results look the same as with one activity per recording.
+ *
+ * <p>The recordings are passed as {@link #RECORDING_FILE_NAMES}. A single {@link
+ * BenchmarkActivity#RECORDING_FILE_NAME} is accepted as well. The time to the first frame of every
+ * recording is returned as {@link StartupTrace}s in the {@link #STARTUP_TRACES} result extra.
+ */
+public abstract class SectionHostActivity extends AppCompatActivity implements SampleRender.Renderer {
+    private static final String TAG = SectionHostActivity.class.getSimpleName();
+
+    /** String array extra with the file names of the recordings to play back, in order. */
+    public static final String RECORDING_FILE_NAMES = "benchmark.RECORDING_FILE_NAMES";
+    /** Long array result extra with the startup trace of every recording, see {@link StartupTrace#toArray}. */
+    public static final String STARTUP_TRACES = "benchmark.STARTUP_TRACES";
+
+    // Host activities started before in this process; their later starts are warm.
+    private static final Set<Class<?>> startedActivities = new HashSet<>();
+
+    private final SnackbarHelper messageSnackbarHelper = new SnackbarHelper();
+    private SurfaceView surfaceView;
+    private OffscreenRender render;
+    private DisplayRotationHelper displayRotationHelper;
+    private TapHelper tapHelper;
+    private BenchmarkSection section;
+    private String[] recordingNames;
+    private AssetStager assetStager;
+    private boolean installRequested;
+
+    // Guards the session lifecycle, which is driven by the UI thread when the activity pauses and
+    // resumes and by the render thread when a recording finishes.
+    private final Object sessionLock = new Object();
+    private Session session;
+    private int recordingIndex = -1;
+    private boolean recordingStarted = false;
+    private FrameRecorder frameRecorder;
+
+    // Startup trace of the current recording until its first frame, in elapsedRealtimeNanos.
+    private final List<StartupTrace> startupTraces = new ArrayList<>();
+    private StartupTrace startupTrace;
+    private long startupStartTime;
+    private long resumeTime;
+
+    /** Creates the section to run. Called once from {@link #onCreate}. */
+    protected abstract BenchmarkSection createSection();
+
+    /** Returns the helper receiving taps on the render surface, for sections that handle live input. */
+    protected TapHelper getTapHelper() {
+        return tapHelper;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        long onCreateStartTime = SystemClock.elapsedRealtimeNanos();
+        super.onCreate(savedInstanceState);
+        surfaceView = new SurfaceView(this);
+        setContentView(surfaceView);
+        displayRotationHelper = new DisplayRotationHelper(/*context=*/ this);
+        tapHelper = new TapHelper(/*context=*/ this);
+        surfaceView.setOnTouchListener(tapHelper);
+        surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
+            @Override
+            public void surfaceCreated(SurfaceHolder holder) {
+                render = new OffscreenRender(surfaceView, SectionHostActivity.this, getAssets(),
+                        BenchmarkActivity.getSchedulingPolicy(getIntent()), BenchmarkActivity.getTargetFps(getIntent()));
+            }
+
+            @Override
+            public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            }
+
+            @Override
+            public void surfaceDestroyed(SurfaceHolder holder) {
+                render.stop();
+            }
+        });
+
+        Intent intent = getIntent();
+        recordingNames = intent.getStringArrayExtra(RECORDING_FILE_NAMES);
+        if (recordingNames == null) {
+            recordingNames = new String[] {intent.getStringExtra(BenchmarkActivity.RECORDING_FILE_NAME)};
+        }
+        // The later recordings are copied in the background while the first one plays.
+        long assetCopyStartTime = SystemClock.elapsedRealtimeNanos();
+        assetStager = AssetStager.getInstance(this);
+        try {
+            assetStager.stageRecording(recordingNames[0]);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (int i = 1; i < recordingNames.length; i++) {
+            assetStager.prefetchRecording(recordingNames[i]);
+        }
+        long assetCopyTime = SystemClock.elapsedRealtimeNanos() - assetCopyStartTime;
+        section = createSection();
+
+        synchronized (sessionLock) {
+            startupTrace = new StartupTrace(startedActivities.add(getClass()));
+            long launchTime = intent.getLongExtra(BenchmarkActivity.LAUNCH_TIME, StartupTrace.TIME_UNKNOWN);
+            if (launchTime != StartupTrace.TIME_UNKNOWN) {
+                startupStartTime = launchTime;
+                startupTrace.setStageTime(StartupTrace.STAGE_LAUNCH, onCreateStartTime - launchTime);
+            } else {
+                startupStartTime = onCreateStartTime;
+            }
+            startupTrace.setStageTime(StartupTrace.STAGE_ON_CREATE,
+                    SystemClock.elapsedRealtimeNanos() - onCreateStartTime - assetCopyTime);
+            startupTrace.setStageTime(StartupTrace.STAGE_ASSET_COPY, assetCopyTime);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (render != null) {
+            render.stop();
+        }
+        synchronized (sessionLock) {
+            if (session != null) {
+                session.close();
+                session = null;
+            }
+            closeFrameRecorder();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        synchronized (sessionLock) {
+            if (session == null && recordingIndex < recordingNames.length) {
+                if (!createSession()) {
+                    return;
+                }
+            }
+            if (session == null) {
+                return;
+            }
+            try {
+                if (recordingIndex < 0) {
+                    startRecording(0);
+                } else {
+                    session.resume();
+                }
+            } catch (CameraNotAvailableException e) {
+                messageSnackbarHelper.showError(this, "Camera not available. Try restarting the app.");
+                session = null;
+                return;
+            } catch (PlaybackFailedException | IOException e) {
+                Log.e(TAG, "Failed to play back " + recordingNames[Math.max(recordingIndex, 0)], e);
+                finishSection(RESULT_CANCELED);
+                return;
+            }
+        }
+        displayRotationHelper.onResume();
+    }
+
+    /** Returns false if the session could not be created yet, e.g. while ARCore is being installed. */
+    private boolean createSession() {
+        Exception exception = null;
+        String message = null;
+        try {
+            switch (ArCoreApk.getInstance().requestInstall(this, !installRequested)) {
+                case INSTALL_REQUESTED:
+                    installRequested = true;
+                    return false;
+                case INSTALLED:
+                    break;
+            }
+            if (!CameraPermissionHelper.hasCameraPermission(this)) {
+                CameraPermissionHelper.requestCameraPermission(this);
+                return false;
+            }
+            long sessionCreationStartTime = SystemClock.elapsedRealtimeNanos();
+            session = new Session(/* context= */ this);
+            if (startupTrace != null) {
+                startupTrace.setStageTime(StartupTrace.STAGE_SESSION_CREATION,
+                        SystemClock.elapsedRealtimeNanos() - sessionCreationStartTime);
+            }
+        } catch (UnavailableArcoreNotInstalledException | UnavailableUserDeclinedInstallationException e) {
+            message = "Please install ARCore";
+            exception = e;
+        } catch (UnavailableApkTooOldException e) {
+            message = "Please update ARCore";
+            exception = e;
+        } catch (UnavailableSdkTooOldException e) {
+            message = "Please update this app";
+            exception = e;
+        } catch (UnavailableDeviceNotCompatibleException e) {
+            message = "This device does not support AR";
+            exception = e;
+        } catch (Exception e) {
+            message = "Failed to create AR session";
+            exception = e;
+        }
+        if (message != null) {
+            messageSnackbarHelper.showError(this, message);
+            Log.e(TAG, "Exception creating session", exception);
+            return false;
+        }
+        return true;
+    }
+
+    /** Switches the paused session to the recording at {@code index} and resumes it. */
+    private void startRecording(int index) throws CameraNotAvailableException, PlaybackFailedException, IOException {
+        String recordingName = recordingNames[index];
+        if (index > 0) {
+            // Everything but the playback dataset is reused from the previous recording.
+            startupStartTime = SystemClock.elapsedRealtimeNanos();
+            startupTrace = new StartupTrace(/* cold= */ false);
+            for (int stage = 0; stage < StartupTrace.STAGE_COUNT; stage++) {
+                startupTrace.setStageTime(stage, 0);
+            }
+        }
+        // Waits for the prefetch of the recording if it is still running.
+        File recording = assetStager.stageRecording(recordingName);
+        if (index > 0) {
+            startupTrace.setStageTime(StartupTrace.STAGE_ASSET_COPY, SystemClock.elapsedRealtimeNanos() - startupStartTime);
+        }
+        recordingIndex = index;
+        recordingStarted = false;
+        section.configureSession(session);
+        long setPlaybackDatasetStartTime = SystemClock.elapsedRealtimeNanos();
+        session.setPlaybackDataset(recording.getAbsolutePath());
+        startupTrace.setStageTime(StartupTrace.STAGE_SET_PLAYBACK_DATASET,
+                SystemClock.elapsedRealtimeNanos() - setPlaybackDatasetStartTime);
+        try {
+            File logFile = new File(getExternalFilesDir(null), FrameLogWriter.FILE_NAME);
+            frameRecorder = new FrameRecorder(logFile, recordingName);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open frame log", e);
+            messageSnackbarHelper.showError(this, "Could not open file to log FPS");
+        }
+        session.resume();
+        resumeTime = SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        synchronized (sessionLock) {
+            if (session != null) {
+                displayRotationHelper.onPause();
+                session.pause();
+            }
+        }
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] results) {
+        super.onRequestPermissionsResult(requestCode, permissions, results);
+        if (!CameraPermissionHelper.hasCameraPermission(this)) {
+            // Use toast instead of snackbar here since the activity will exit.
+            Toast.makeText(this, "Camera permission is needed to run this application", Toast.LENGTH_LONG)
+                    .show();
+            if (!CameraPermissionHelper.shouldShowRequestPermissionRationale(this)) {
+                // Permission denied with checking "Do not ask again".
+                CameraPermissionHelper.launchPermissionSettings(this);
+            }
+            finish();
+        }
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        super.onWindowFocusChanged(hasFocus);
+        FullScreenHelper.setFullScreenOnWindowFocusChanged(this, hasFocus);
+    }
+
+    @Override
+    public void onSurfaceCreated(SampleRender render) {
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        long shaderCompileTime = render.getShaderCompileTime();
+        long textureDecodeTime = render.getTextureDecodeTime();
+        long meshParseTime = render.getMeshParseTime();
+        section.onSurfaceCreated(render);
+        synchronized (sessionLock) {
+            // Only the first surface is part of the startup; later ones are recreated after a pause.
+            if (startupTrace != null && recordingIndex <= 0) {
+                startupTrace.setStageTime(StartupTrace.STAGE_SURFACE_CREATED, SystemClock.elapsedRealtimeNanos() - startTime);
+                startupTrace.setStageTime(StartupTrace.STAGE_SHADER_COMPILE, render.getShaderCompileTime() - shaderCompileTime);
+                startupTrace.setStageTime(StartupTrace.STAGE_TEXTURE_DECODE, render.getTextureDecodeTime() - textureDecodeTime);
+                startupTrace.setStageTime(StartupTrace.STAGE_MESH_PARSE, render.getMeshParseTime() - meshParseTime);
+            }
+        }
+    }
+
+    @Override
+    public void onSurfaceChanged(SampleRender render, int width, int height) {
+        displayRotationHelper.onSurfaceChanged(width, height);
+        section.onSurfaceChanged(render, width, height);
+    }
+
+    @Override
+    public void onSurfaceDestroyed(SampleRender render) {
+        section.onSurfaceDestroyed(render);
+    }
+
+    @Override
+    public void onDrawFrame(SampleRender render) {
+        Session session;
+        synchronized (sessionLock) {
+            session = this.session;
+            if (session == null) {
+                return;
+            }
+            if (session.getPlaybackStatus() == PlaybackStatus.FINISHED) {
+                finishRecording(render);
+                return;
+            }
+            if (!recordingStarted) {
+                section.onRecordingStarted(session, recordingNames[recordingIndex], frameRecorder);
+                recordingStarted = true;
+            }
+        }
+        // Notify ARCore session that the view size changed so that the perspective matrix and
+        // the video background can be properly adjusted.
+        displayRotationHelper.updateSessionIfNeeded(session);
+        Frame frame = section.onDrawFrame(render, session);
+        if (frame != null && frame.getTimestamp() != 0) {
+            synchronized (sessionLock) {
+                if (startupTrace != null) {
+                    finishStartupTrace();
+                }
+            }
+        }
+    }
+
+    /** Completes the startup trace of the current recording at its first camera frame. Holds the session lock. */
+    private void finishStartupTrace() {
+        long time = SystemClock.elapsedRealtimeNanos();
+        startupTrace.setStageTime(StartupTrace.STAGE_FIRST_FRAME, time - resumeTime);
+        startupTrace.setTotalTime(time - startupStartTime);
+        startupTraces.add(startupTrace);
+        Log.i(TAG, "First frame of " + recordingNames[recordingIndex] + " after "
+                + (time - startupStartTime) / 1000000 + " ms" + (startupTrace.isCold() ? " (cold)" : ""));
+        startupTrace = null;
+    }
+
+    /** Closes the log of the finished recording and moves on to the next one. Holds the session lock. */
+    private void finishRecording(SampleRender render) {
+        if (recordingStarted) {
+            section.onRecordingFinished(render);
+        }
+        closeFrameRecorder();
+        if (recordingIndex + 1 >= recordingNames.length) {
+            finishSection(RESULT_OK);
+            return;
+        }
+        session.pause();
+        int nextRecordingIndex = recordingIndex + 1;
+        try {
+            startRecording(nextRecordingIndex);
+        } catch (CameraNotAvailableException | PlaybackFailedException | IOException e) {
+            Log.e(TAG, "Failed to play back " + recordingNames[nextRecordingIndex], e);
+            finishSection(RESULT_CANCELED);
+        }
+    }
+
+    private void finishSection(int resultCode) {
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+        recordingIndex = recordingNames.length;
+        closeFrameRecorder();
+        setResult(resultCode, new Intent().putExtra(STARTUP_TRACES, StartupTrace.toArray(startupTraces)));
+        finish();
+    }
+
+    private void closeFrameRecorder() {
+        if (frameRecorder == null) {
+            return;
+        }
+        try {
+            frameRecorder.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Exception closing frame log: ", e);
+        }
+        frameRecorder = null;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** Per-phase statistics of every measured repetition of one section of the benchmark suite. */
+public class SectionResults {
+    private final String sectionName;
+    private final String recordingName;
+    private final String schedulingPolicy;
+    private final float targetFps;
+    private final List<List<PhaseStatistics>> repetitions = new ArrayList<>();
+    private final List<FrameLogSection> frameLogs = new ArrayList<>();
+    private final List<PhaseStatistics> totals = new ArrayList<>();
+    private final List<Integer> phases = new ArrayList<>();
+    private long droppedRecords;
+    private ValidationResults validation;
+    private boolean stressTest;
+    private String sweepName;
+    private Map<String, Object> sweepParameters = Collections.emptyMap();
+
+    /**
+     * @param schedulingPolicy Name of the render loop scheduling policy the section ran with
+     * @param targetFps Frame rate of a fixed rate render loop, NaN for other policies
+     */
+    public SectionResults(String sectionName, String recordingName, String schedulingPolicy, float targetFps) {
+        this.sectionName = sectionName;
+        this.recordingName = recordingName;
+        this.schedulingPolicy = schedulingPolicy;
+        this.targetFps = targetFps;
+    }
+
+    public String getSectionName() {
+        return sectionName;
+    }
+
+    public String getRecordingName() {
+        return recordingName;
+    }
+
+    public String getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+
+    public float getTargetFps() {
+        return targetFps;
+    }
+
+    /** Adds the statistics and per-frame data of one measured run. */
+    public void addRepetition(FrameLogSection frameLog) {
+        List<PhaseStatistics> repetition = PhaseStatistics.compute(frameLog);
+        repetitions.add(Collections.unmodifiableList(repetition));
+        frameLogs.add(frameLog);
+        totals.add(PhaseStatistics.computeTotal(frameLog));
+        droppedRecords += frameLog.getDroppedRecords();
+        for (PhaseStatistics phase : repetition) {
+            if (!phases.contains(phase.getPhase())) {
+                phases.add(phase.getPhase());
+            }
+        }
+    }
+
+    public List<List<PhaseStatistics>> getRepetitions() {
+        return Collections.unmodifiableList(repetitions);
+    }
+
+    /** Returns the logged frames of every repetition, in the order of {@link #getRepetitions()}. */
+    public List<FrameLogSection> getFrameLogs() {
+        return Collections.unmodifiableList(frameLogs);
+    }
+
+    /** Returns the number of frame records dropped across all repetitions. */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /** Returns the name of the sweep the section is a point of, null if it is not part of a sweep. */
+    public String getSweepName() {
+        return sweepName;
+    }
+
+    /** Returns the parameter values of this point of the sweep. */
+    public Map<String, Object> getSweepParameters() {
+        return sweepParameters;
+    }
+
+    public void setSweep(String sweepName, Map<String, Object> sweepParameters) {
+        this.sweepName = sweepName;
+        this.sweepParameters = Collections.unmodifiableMap(sweepParameters);
+    }
+
+    /** Returns whether the section ran in stress mode, where the phase is the number of objects. */
+    public boolean isStressTest() {
+        return stressTest;
+    }
+
+    public void setStressTest(boolean stressTest) {
+        this.stressTest = stressTest;
+    }
+
+    /** Returns the golden image checks of every run of the section, null if it was not validated. */
+    public ValidationResults getValidation() {
+        return validation;
+    }
+
+    public void setValidation(ValidationResults validation) {
+        this.validation = validation;
+    }
+
+    /** Returns the phase numbers seen in any repetition, in the order they were first logged. */
+    public List<Integer> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /** Returns {@code metric} of all frames of the section, across repetitions. */
+    public RepeatedMeasure getTotalMeasure(PhaseMetric metric) {
+        RepeatedMeasure measure = new RepeatedMeasure();
+        for (PhaseStatistics total : totals) {
+            measure.add(metric.get(total));
+        }
+        return measure;
+    }
+
+    /** Returns {@code metric} of {@code phase} across the repetitions that logged the phase. */
+    public RepeatedMeasure getMeasure(int phase, PhaseMetric metric) {
+        RepeatedMeasure measure = new RepeatedMeasure();
+        for (List<PhaseStatistics> repetition : repetitions) {
+            for (PhaseStatistics statistics : repetition) {
+                if (statistics.getPhase() == phase) {
+                    measure.add(metric.get(statistics));
+                    break;
+                }
+            }
+        }
+        return measure;
+    }
+}
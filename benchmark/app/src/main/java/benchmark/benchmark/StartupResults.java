@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Startup traces of every launch of one section, summarized separately for cold and warm starts. */
+public class StartupResults {
+    private final String sectionName;
+    private final List<StartupTrace> traces = new ArrayList<>();
+
+    public StartupResults(String sectionName) {
+        this.sectionName = sectionName;
+    }
+
+    public String getSectionName() {
+        return sectionName;
+    }
+
+    public void add(StartupTrace trace) {
+        traces.add(trace);
+    }
+
+    public List<StartupTrace> getTraces() {
+        return Collections.unmodifiableList(traces);
+    }
+
+    public int getCount(boolean cold) {
+        int count = 0;
+        for (StartupTrace trace : traces) {
+            if (trace.isCold() == cold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the time of a stage across the cold or warm starts, in ms. */
+    public RepeatedMeasure getStageMeasure(int stage, boolean cold) {
+        RepeatedMeasure measure = new RepeatedMeasure();
+        for (StartupTrace trace : traces) {
+            if (trace.isCold() == cold) {
+                measure.add(toMillis(trace.getStageTime(stage)));
+            }
+        }
+        return measure;
+    }
+
+    /** Returns the time to the first camera frame across the cold or warm starts, in ms. */
+    public RepeatedMeasure getTotalMeasure(boolean cold) {
+        RepeatedMeasure measure = new RepeatedMeasure();
+        for (StartupTrace trace : traces) {
+            if (trace.isCold() == cold) {
+                measure.add(toMillis(trace.getTotalTime()));
+            }
+        }
+        return measure;
+    }
+
+    private static double toMillis(long time) {
+        return time != StartupTrace.TIME_UNKNOWN ? time / 1e6 : Double.NaN;
+    }
+}
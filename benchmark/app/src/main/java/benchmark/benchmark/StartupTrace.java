@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time from the launch of a section to its first camera frame, broken down into stages, in
+ * nanoseconds. Stages may run concurrently, e.g. onSurfaceCreated on the render thread while the UI
+ * thread creates the session, so they do not add up to the total. Shader compile, texture decode and
+ * mesh parse are the parts of onSurfaceCreated spent in the GL resource loaders.
+ *
+ * <p>A trace is cold when it is the first start of the section's activity in the process, and warm
+ * for every later start, including a section host switching to its next recording; stages that a
+ * warm start skips are zero.
+ */
+public class StartupTrace {
+    /** From the intent launch in the benchmark activity to onCreate of the section activity. */
+    public static final int STAGE_LAUNCH = 0;
+    /** onCreate of the section activity, without the asset copy. */
+    public static final int STAGE_ON_CREATE = 1;
+    /** Copy of the recordings from the assets to the external files directory. */
+    public static final int STAGE_ASSET_COPY = 2;
+    public static final int STAGE_SESSION_CREATION = 3;
+    public static final int STAGE_SET_PLAYBACK_DATASET = 4;
+    public static final int STAGE_SURFACE_CREATED = 5;
+    public static final int STAGE_SHADER_COMPILE = 6;
+    public static final int STAGE_TEXTURE_DECODE = 7;
+    public static final int STAGE_MESH_PARSE = 8;
+    /** From resuming the session to the first session.update() returning a camera frame. */
+    public static final int STAGE_FIRST_FRAME = 9;
+    public static final int STAGE_COUNT = 10;
+    /** Time of stages that were not measured. */
+    public static final long TIME_UNKNOWN = -1;
+
+    private static final String[] STAGE_NAMES = {
+            "launch",
+            "onCreate",
+            "asset copy",
+            "session creation",
+            "setPlaybackDataset",
+            "onSurfaceCreated",
+            "shader compile",
+            "texture decode",
+            "mesh parse",
+            "first frame",
+    };
+    // Cold flag and total time precede the stage times of each trace in the array form.
+    private static final int ARRAY_HEADER_SIZE = 2;
+
+    private final boolean cold;
+    private final long[] stageTimes = new long[STAGE_COUNT];
+    private long totalTime = TIME_UNKNOWN;
+
+    public StartupTrace(boolean cold) {
+        this.cold = cold;
+        Arrays.fill(stageTimes, TIME_UNKNOWN);
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    public boolean isCold() {
+        return cold;
+    }
+
+    public long getStageTime(int stage) {
+        return stageTimes[stage];
+    }
+
+    public void setStageTime(int stage, long time) {
+        stageTimes[stage] = time;
+    }
+
+    /** Returns the time from the launch to the first camera frame, or {@link #TIME_UNKNOWN}. */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public void setTotalTime(long totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    /** Flattens traces into an array that can be passed as an intent extra. */
+    public static long[] toArray(List<StartupTrace> traces) {
+        int traceSize = ARRAY_HEADER_SIZE + STAGE_COUNT;
+        long[] array = new long[traces.size() * traceSize];
+        for (int i = 0; i < traces.size(); i++) {
+            StartupTrace trace = traces.get(i);
+            array[i * traceSize] = trace.cold ? 1 : 0;
+            array[i * traceSize + 1] = trace.totalTime;
+            System.arraycopy(trace.stageTimes, 0, array, i * traceSize + ARRAY_HEADER_SIZE, STAGE_COUNT);
+        }
+        return array;
+    }
+
+    /** Reads traces flattened by {@link #toArray}. */
+    public static List<StartupTrace> fromArray(long[] array) {
+        int traceSize = ARRAY_HEADER_SIZE + STAGE_COUNT;
+        List<StartupTrace> traces = new ArrayList<>();
+        for (int offset = 0; offset + traceSize <= array.length; offset += traceSize) {
+            StartupTrace trace = new StartupTrace(array[offset] != 0);
+            trace.totalTime = array[offset + 1];
+            System.arraycopy(array, offset + ARRAY_HEADER_SIZE, trace.stageTimes, 0, STAGE_COUNT);
+            traces.add(trace);
+        }
+        return traces;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Accounts the CPU time of every thread of the process to a few thread groups by sampling {@code
+ * /proc/self/task/<tid>/stat}. Threads are grouped by name, which the kernel truncates to 15
+ * characters. ARCore's native tracking threads have no stable names and are counted as other. The
+ * root directory is a parameter so parsing can be checked against fixture files on a desktop JVM.
+ */
+public class ThreadCpuReader {
+    public static final File DEFAULT_ROOT = new File("/proc/self/task");
+
+    /** GLSurfaceView and offscreen rendering threads. */
+    public static final int CATEGORY_RENDER = 0;
+    /** The main thread of the process. */
+    public static final int CATEGORY_UI = 1;
+    /** Kotlin coroutine dispatcher threads, which run ML inference. */
+    public static final int CATEGORY_WORKER = 2;
+    /** Threads of the benchmark itself, the frame log writer, the device state sampler and asset prefetching. */
+    public static final int CATEGORY_BENCHMARK = 3;
+    /** Everything else, including ARCore, the runtime and binder threads. */
+    public static final int CATEGORY_OTHER = 4;
+    public static final int CATEGORY_COUNT = 5;
+
+    private static final String[] CATEGORY_NAMES = {"render", "ui", "worker", "benchmark", "other"};
+    private static final String[] RENDER_PREFIXES = {"GLThread", "OffscreenRender"};
+    private static final String[] WORKER_PREFIXES = {"DefaultDispatch"};
+    private static final String[] BENCHMARK_PREFIXES = {"FrameRecorder", "DeviceStateSamp", "AssetStager", "FrameCapture"};
+    // Index of utime within the fields following the thread name, counting from the state field.
+    private static final int UTIME_FIELD = 11;
+
+    private final File root;
+    private final int mainThreadId;
+    private final long ticksPerSecond;
+    private final byte[] buffer = new byte[512];
+    // Threads by id. Entries of threads that exited are dropped on the next read.
+    private final Map<Integer, ThreadState> threads = new HashMap<>();
+    private final long[] cpuTicks = new long[CATEGORY_COUNT];
+    private int generation = 0;
+
+    /**
+     * Takes the baseline that later reads are relative to.
+     *
+     * @param root task directory holding one directory per thread id
+     * @param mainThreadId Thread id of the main thread, which equals the process id
+     * @param ticksPerSecond Clock ticks per second the stat times are reported in
+     */
+    public ThreadCpuReader(File root, int mainThreadId, long ticksPerSecond) {
+        this.root = root;
+        this.mainThreadId = mainThreadId;
+        this.ticksPerSecond = ticksPerSecond;
+        sample(false);
+    }
+
+    public static String getCategoryName(int category) {
+        return CATEGORY_NAMES[category];
+    }
+
+    /**
+     * Fills {@code cpuTimes} with the CPU time each thread group consumed since construction, in
+     * nanoseconds. Time of threads that exited between two reads is partly lost.
+     */
+    public void read(long[] cpuTimes) {
+        sample(true);
+        for (int category = 0; category < CATEGORY_COUNT; category++) {
+            cpuTimes[category] = cpuTicks[category] * 1_000_000_000L / ticksPerSecond;
+        }
+    }
+
+    private void sample(boolean accumulate) {
+        String[] tids = root.list();
+        if (tids == null) {
+            return;
+        }
+        generation++;
+        for (String name : tids) {
+            int tid;
+            try {
+                tid = Integer.parseInt(name);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            int length;
+            try (FileInputStream in = new FileInputStream(new File(new File(root, name), "stat"))) {
+                length = in.read(buffer);
+            } catch (IOException e) {
+                // The thread exited after the directory was listed.
+                continue;
+            }
+            if (length <= 0) {
+                continue;
+            }
+            long ticks = parseCpuTicks(buffer, length);
+            if (ticks < 0) {
+                continue;
+            }
+            ThreadState thread = threads.get(tid);
+            if (thread == null) {
+                thread = new ThreadState();
+                threads.put(tid, thread);
+            } else if (thread.ticks > ticks) {
+                // The thread id was reused.
+                thread.ticks = 0;
+            }
+            if (accumulate) {
+                // Threads started after the previous read are counted from their start.
+                cpuTicks[categorize(tid, parseName(buffer, length))] += ticks - thread.ticks;
+            }
+            thread.ticks = ticks;
+            thread.generation = generation;
+        }
+        for (Iterator<ThreadState> it = threads.values().iterator(); it.hasNext(); ) {
+            if (it.next().generation != generation) {
+                it.remove();
+            }
+        }
+    }
+
+    private int categorize(int tid, String name) {
+        if (tid == mainThreadId) {
+            return CATEGORY_UI;
+        } else if (startsWithAny(name, RENDER_PREFIXES)) {
+            return CATEGORY_RENDER;
+        } else if (startsWithAny(name, WORKER_PREFIXES)) {
+            return CATEGORY_WORKER;
+        } else if (startsWithAny(name, BENCHMARK_PREFIXES)) {
+            return CATEGORY_BENCHMARK;
+        }
+        return CATEGORY_OTHER;
+    }
+
+    private static boolean startsWithAny(String name, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the thread name of a stat line, which is enclosed in parentheses after the id. */
+    static String parseName(byte[] stat, int length) {
+        int open = 0;
+        while (open < length && stat[open] != '(') {
+            open++;
+        }
+        int close = lastIndexOf(stat, length, (byte) ')');
+        return close > open ? new String(stat, open + 1, close - open - 1, StandardCharsets.UTF_8) : "";
+    }
+
+    /** Returns utime + stime of a stat line in clock ticks, or -1 if it cannot be parsed. */
+    static long parseCpuTicks(byte[] stat, int length) {
+        // The name may contain spaces and parentheses, so fields are counted from the last ')'.
+        int i = lastIndexOf(stat, length, (byte) ')');
+        if (i < 0) {
+            return -1;
+        }
+        i++;
+        int field = -1;
+        long total = 0;
+        while (i < length && field < UTIME_FIELD + 1) {
+            while (i < length && stat[i] == ' ') {
+                i++;
+            }
+            field++;
+            long value = 0;
+            int digits = 0;
+            for (; i < length && stat[i] != ' '; i++) {
+                if (stat[i] >= '0' && stat[i] <= '9') {
+                    value = value * 10 + (stat[i] - '0');
+                    digits++;
+                }
+            }
+            if (field >= UTIME_FIELD) {
+                if (digits == 0) {
+                    return -1;
+                }
+                total += value;
+            }
+        }
+        return field == UTIME_FIELD + 1 ? total : -1;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int length, byte value) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class ThreadState {
+        long ticks;
+        int generation;
+    }
+}
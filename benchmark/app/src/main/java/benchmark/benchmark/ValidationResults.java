@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021, Brown University, Providence, RI.
+ * Rahul Shahi, Sherief Reda, Seif Abdelaziz
+ *
+ *                        All Rights Reserved
+ *
+ * Permission to use, copy, modify, and distribute this software and
+ * its documentation for any purpose other than its incorporation into a
+ * commercial product or service is hereby granted without fee, provided
+ * that the above copyright notice appear in all copies and that both
+ * that copyright notice and this permission notice appear in supporting
+ * documentation, and that the name of Brown University not be used in
+ * advertising or publicity pertaining to distribution of the software
+ * without specific, written prior permission.
+ *
+ * BROWN UNIVERSITY DISCLAIMS ALL WARRANTIES WITH REGARD TO THIS SOFTWARE,
+ * INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR ANY
+ * PARTICULAR PURPOSE.  IN NO EVENT SHALL BROWN UNIVERSITY BE LIABLE FOR
+ * ANY SPECIAL, INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package benchmark.benchmark;
+
+/**
+ * Outcome of the golden image checks of one section across all of its runs, see
+ * {@link GoldenImageValidator}.
+ *
+ * <p>A section passes if it compared at least one frame against a golden image and every
+ * checkpoint was reached and matched. Checkpoints without a golden image record one instead and
+ * are neither passed nor failed.
+ */
+public class ValidationResults {
+    /** What became of one checkpoint. */
+    public enum Outcome {
+        /** The frame matched its golden image. */
+        PASSED,
+        /** The frame differed from its golden image, or had a different size. */
+        FAILED,
+        /** There was no golden image, so the frame was saved as one. */
+        RECORDED,
+        /** The recording ended before the checkpoint. */
+        MISSED
+    }
+
+    private final int[] counts = new int[Outcome.values().length];
+    private double minSsim = Double.POSITIVE_INFINITY;
+    private double minPsnr = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param ssim Structural similarity to the golden image, NaN if not compared
+     * @param psnr Peak signal-to-noise ratio to the golden image in dB, NaN if not compared
+     */
+    public synchronized void add(Outcome outcome, double ssim, double psnr) {
+        counts[outcome.ordinal()]++;
+        if (!Double.isNaN(ssim)) {
+            minSsim = Math.min(minSsim, ssim);
+        }
+        if (!Double.isNaN(psnr)) {
+            minPsnr = Math.min(minPsnr, psnr);
+        }
+    }
+
+    public synchronized int getCount(Outcome outcome) {
+        return counts[outcome.ordinal()];
+    }
+
+    /** Returns the lowest structural similarity of any compared frame, NaN if none was compared. */
+    public synchronized double getMinSsim() {
+        return getComparedCount() > 0 ? minSsim : Double.NaN;
+    }
+
+    /** Returns the lowest PSNR of any compared frame in dB, NaN if none was compared. */
+    public synchronized double getMinPsnr() {
+        return getComparedCount() > 0 ? minPsnr : Double.NaN;
+    }
+
+    /** Returns "pass", "fail", or "no golden" if no frame could be compared. */
+    public synchronized String getStatus() {
+        if (getCount(Outcome.FAILED) > 0 || getCount(Outcome.MISSED) > 0) {
+            return "fail";
+        }
+        return getCount(Outcome.PASSED) > 0 ? "pass" : "no golden";
+    }
+
+    private int getComparedCount() {
+        return getCount(Outcome.PASSED) + getCount(Outcome.FAILED);
+    }
+}
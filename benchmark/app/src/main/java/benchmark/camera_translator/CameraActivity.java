@@ -41,7 +41,6 @@
 package benchmark.camera_translator;
 
 import android.content.DialogInterface;
-import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -99,14 +98,13 @@ import com.googlecode.tesseract.android.TessBaseAPI;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+import benchmark.benchmark.AssetStager;
 import benchmark.benchmark.R;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.DepthSettings;
@@ -120,6 +118,7 @@ import benchmark.common.samplerender.Framebuffer;
 import benchmark.common.samplerender.GLError;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.SampleRender;
+import benchmark.common.samplerender.SceneUniforms;
 import benchmark.common.samplerender.Shader;
 import benchmark.common.samplerender.Texture;
 import benchmark.common.samplerender.VertexBuffer;
@@ -207,14 +206,14 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
     private Texture dfgTexture;
     private SpecularCubemapFilter cubemapFilter;
 
+    // Camera and lighting uniform blocks, uploaded once per frame for all shaders.
+    private SceneUniforms sceneUniforms;
+
     // Temporary matrix allocated here to reduce number of allocations for each frame.
     private final float[] modelMatrix = new float[16];
     private final float[] viewMatrix = new float[16];
     private final float[] projectionMatrix = new float[16];
-    private final float[] modelViewMatrix = new float[16]; // view x model
-    private final float[] modelViewProjectionMatrix = new float[16]; // projection x view x model
     private final float[] sphericalHarmonicsCoefficients = new float[9 * 3];
-    private final float[] viewInverseMatrix = new float[16];
     private final float[] worldLightDirection = {0.0f, 0.0f, 0.0f, 0.0f};
     private final float[] viewLightDirection = new float[4]; // view x world light direction
 
@@ -236,10 +235,12 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         // Set up renderer.
         render = new SampleRender(surfaceView, this, getAssets());
 
-        File f = new File(getFilesDir() + "/tesseract/tessdata");
-        File trainedDataFile = new File(f.getPath() + "/" + File.separator + "eng.traineddata");
-        if (!f.exists()) f.mkdirs();
-        copyTrainedData();
+        File trainedDataFile = new File(getFilesDir(), "tesseract/tessdata/eng.traineddata");
+        try {
+            AssetStager.getInstance(this).stage("tessdata/eng.traineddata", trainedDataFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
 
         initializeTranslator();
 
@@ -421,6 +422,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         // Prepare the rendering objects. This involves reading shaders and 3D model files, so may throw
         // an IOException.
         try {
+            sceneUniforms = new SceneUniforms(render);
             planeRenderer = new PlaneRenderer(render);
             backgroundRenderer = new BackgroundRenderer(render);
             virtualSceneFramebuffer = new Framebuffer(render, /*width=*/ 1, /*height=*/ 1);
@@ -467,6 +469,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
                             .setVec4(
                                     "u_Color", new float[]{31.0f / 255.0f, 188.0f / 255.0f, 210.0f / 255.0f, 1.0f})
                             .setFloat("u_PointSize", 5.0f);
+            SceneUniforms.attachCameraBlock(pointCloudShader);
             // four entries per vertex: X, Y, Z, confidence
             pointCloudVertexBuffer =
                     new VertexBuffer(render, /*numberOfEntriesPerVertex=*/ 4, /*entries=*/ null);
@@ -505,6 +508,8 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
                             .setTexture("u_RoughnessMetallicAmbientOcclusionTexture", virtualObjectPbrTexture)
                             .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
                             .setTexture("u_DfgTexture", dfgTexture);
+            SceneUniforms.attachCameraBlock(virtualObjectShader);
+            SceneUniforms.attachLightingBlock(virtualObjectShader);
         } catch (IOException e) {
             Log.e(TAG, "Failed to read a required asset file", e);
             messageSnackbarHelper.showError(this, "Failed to read a required asset file: " + e);
@@ -624,6 +629,11 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
 
         // Get camera matrix and draw.
         camera.getViewMatrix(viewMatrix, 0);
+        sceneUniforms.setCamera(viewMatrix, projectionMatrix);
+
+        // Update lighting parameters, then upload the camera and lighting blocks for all shaders.
+        updateLightEstimation(frame.getLightEstimate(), viewMatrix);
+        sceneUniforms.update();
 
         // Visualize tracked points.
         // Use try-with-resources to automatically release the point cloud.
@@ -632,23 +642,15 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
                 pointCloudVertexBuffer.set(pointCloud.getPoints());
                 lastPointCloudTimestamp = pointCloud.getTimestamp();
             }
-            Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
-            pointCloudShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
             render.draw(pointCloudMesh, pointCloudShader);
         }
 
         // Visualize planes.
         planeRenderer.drawPlanes(
-                render,
-                session.getAllTrackables(Plane.class),
-                camera.getDisplayOrientedPose(),
-                projectionMatrix);
+                render, session.getAllTrackables(Plane.class), camera.getDisplayOrientedPose());
 
         // -- Draw occluded virtual objects
 
-        // Update lighting parameters in the shader
-        updateLightEstimation(frame.getLightEstimate(), viewMatrix);
-
         // Visualize anchors created by touch.
         render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
         for (Anchor anchor : anchors) {
@@ -660,13 +662,8 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
             // during calls to session.update() as ARCore refines its estimate of the world.
             anchor.getPose().toMatrix(modelMatrix, 0);
 
-            // Calculate model/view/projection matrices
-            Matrix.multiplyMM(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
-            Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, modelViewMatrix, 0);
-
-            // Update shader properties and draw
-            virtualObjectShader.setMat4("u_ModelView", modelViewMatrix);
-            virtualObjectShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
+            // Update shader properties and draw. The view and projection are read from the camera block.
+            virtualObjectShader.setMat4("u_Model", modelMatrix);
             render.draw(virtualObjectMesh, virtualObjectShader, virtualSceneFramebuffer);
         }
 
@@ -749,25 +746,6 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         textView.requestLayout();
     }
 
-    private void copyTrainedData() {
-        try {
-            String filepath = getFilesDir() + "/tesseract/tessdata/eng.traineddata";
-            AssetManager assetManager = getAssets();
-            InputStream inStream = assetManager.open("tessdata/eng.traineddata");
-            OutputStream outStream = new FileOutputStream(filepath);
-            byte[] buffer = new byte[1024];
-            int read;
-            while ((read = inStream.read(buffer)) != -1) {
-                outStream.write(buffer, 0, read);
-            }
-            outStream.flush();
-            outStream.close();
-            inStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     private void showFrameAlertDialog(ImageView view, String originalText, String translatedText) {
         new AlertDialog.Builder(CameraActivity.this)
                 .setTitle("Frame captured:")
@@ -902,13 +880,10 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
      */
     private void updateLightEstimation(LightEstimate lightEstimate, float[] viewMatrix) {
         if (lightEstimate.getState() != LightEstimate.State.VALID) {
-            virtualObjectShader.setBool("u_LightEstimateIsValid", false);
+            sceneUniforms.setLightEstimateIsValid(false);
             return;
         }
-        virtualObjectShader.setBool("u_LightEstimateIsValid", true);
-
-        Matrix.invertM(viewInverseMatrix, 0, viewMatrix, 0);
-        virtualObjectShader.setMat4("u_ViewInverse", viewInverseMatrix);
+        sceneUniforms.setLightEstimateIsValid(true);
 
         updateMainLight(
                 lightEstimate.getEnvironmentalHdrMainLightDirection(),
@@ -925,8 +900,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         worldLightDirection[1] = direction[1];
         worldLightDirection[2] = direction[2];
         Matrix.multiplyMV(viewLightDirection, 0, viewMatrix, 0, worldLightDirection, 0);
-        virtualObjectShader.setVec4("u_ViewLightDirection", viewLightDirection);
-        virtualObjectShader.setVec3("u_LightIntensity", intensity);
+        sceneUniforms.setMainLight(viewLightDirection, intensity);
     }
 
     private void updateSphericalHarmonicsCoefficients(float[] coefficients) {
@@ -953,8 +927,7 @@ public class CameraActivity extends AppCompatActivity implements SampleRender.Re
         for (int i = 0; i < 9 * 3; ++i) {
             sphericalHarmonicsCoefficients[i] = coefficients[i] * sphericalHarmonicFactors[i / 3];
         }
-        virtualObjectShader.setVec3Array(
-                "u_SphericalHarmonicsCoefficients", sphericalHarmonicsCoefficients);
+        sceneUniforms.setSphericalHarmonicsCoefficients(sphericalHarmonicsCoefficients);
     }
 
     /**
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES30;
+import android.util.Log;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Captures frames of the default framebuffer to JPEG files without stalling the render thread.
+ *
+ * <p>A capture reads the framebuffer into one of {@link #BUFFER_COUNT} pixel pack buffers and
+ * places a fence behind the read. Once the fence has signaled the buffer is mapped, its rows are
+ * copied bottom-up into a new buffer, and the bitmap is built and encoded on a shared background
+ * thread. {@link #endFrame} collects finished reads without waiting.
+ *
+ * <p>Besides the final frame of a recording, passed to {@link #capture}, every Nth frame can be
+ * captured with {@link #setPeriodicCapture}. A periodic capture is skipped instead of waited for if
+ * all buffers are still being read. {@link #readPixels} hands a frame to a {@link Listener} instead
+ * of a file.
+ */
+public class FrameCapture implements Closeable {
+  private static final String TAG = FrameCapture.class.getSimpleName();
+
+  public static final int BUFFER_COUNT = 3;
+
+  private static final int JPEG_QUALITY = 50;
+  private static final int BYTES_PER_PIXEL = 4;
+  // Longest wait for the GPU when a capture must not be skipped.
+  private static final long WAIT_TIMEOUT_NS = 1_000_000_000L;
+
+  // Named so its CPU time is accounted to the benchmark, see ThreadCpuReader.
+  private static final ExecutorService encoder =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final SampleRender render;
+  private final int[] buffers = new int[BUFFER_COUNT];
+  private final int[] bufferSizes = new int[BUFFER_COUNT];
+  private final long[] fences = new long[BUFFER_COUNT];
+  private final int[] widths = new int[BUFFER_COUNT];
+  private final int[] heights = new int[BUFFER_COUNT];
+  private final File[] files = new File[BUFFER_COUNT];
+  private final Listener[] listeners = new Listener[BUFFER_COUNT];
+  // Reads in flight occupy pendingCount buffers starting at oldestBuffer.
+  private int oldestBuffer = 0;
+  private int pendingCount = 0;
+
+  private int interval = 0;
+  private File directory;
+  private long frameNumber = 0;
+  private int skippedCaptures = 0;
+
+  /** Receives the pixels of a captured frame on the background thread. */
+  public interface Listener {
+    /**
+     * @param pixels ARGB color of every pixel, in rows from the top, as returned by {@code
+     *     Bitmap.getPixels}
+     */
+    void onFrameCaptured(int[] pixels, int width, int height);
+  }
+
+  public FrameCapture(SampleRender render) {
+    this.render = render;
+    GLES30.glGenBuffers(BUFFER_COUNT, buffers, 0);
+    GLError.maybeThrowGLException("Failed to create pixel pack buffers", "glGenBuffers");
+  }
+
+  /**
+   * Captures every {@code interval}th frame ended with {@link #endFrame} to {@code directory}, or
+   * none if {@code interval} is 0. Frame numbers in the file names restart at 0.
+   */
+  public void setPeriodicCapture(int interval, File directory) {
+    this.interval = interval;
+    this.directory = directory;
+    frameNumber = 0;
+  }
+
+  /** Returns the number of periodic captures skipped because no buffer was free. */
+  public int getSkippedCaptures() {
+    return skippedCaptures;
+  }
+
+  /**
+   * Ends a rendered frame: starts a periodic capture of it if one is due, and hands finished reads
+   * to the encoder. Never blocks.
+   */
+  public void endFrame() {
+    if (buffers[0] == 0) {
+      return;
+    }
+    if (interval > 0 && frameNumber % interval == 0) {
+      File file = new File(directory, String.format(Locale.US, "frame-%06d.jpg", frameNumber));
+      if (pendingCount == BUFFER_COUNT) {
+        skippedCaptures++;
+      } else {
+        startRead(file, null);
+      }
+    }
+    frameNumber++;
+    while (pendingCount > 0 && finishRead(/*wait=*/ false)) {}
+  }
+
+  /**
+   * Captures the current frame to {@code file}, replacing it. Waits for the GPU to finish this and
+   * earlier reads, but not for the file to be written; see {@link #awaitWrites}.
+   */
+  public void capture(File file) {
+    if (buffers[0] == 0) {
+      return;
+    }
+    if (pendingCount == BUFFER_COUNT) {
+      finishRead(/*wait=*/ true);
+    }
+    startRead(file, null);
+    while (pendingCount > 0) {
+      finishRead(/*wait=*/ true);
+    }
+  }
+
+  /**
+   * Captures the current frame for {@code listener}. Only waits for the GPU if all buffers are
+   * being read; the read is finished by a later {@link #endFrame}.
+   */
+  public void readPixels(Listener listener) {
+    if (buffers[0] == 0) {
+      return;
+    }
+    if (pendingCount == BUFFER_COUNT) {
+      finishRead(/*wait=*/ true);
+    }
+    startRead(null, listener);
+  }
+
+  /**
+   * Blocks until every file captured so far, by any {@link FrameCapture}, has been written and
+   * every listener has returned.
+   */
+  public static void awaitWrites() {
+    // The encoder runs tasks in order, so an empty task completes after all earlier ones.
+    try {
+      encoder.submit(() -> {}).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void startRead(File file, Listener listener) {
+    int width = render.getViewportWidth();
+    int height = render.getViewportHeight();
+    int size = width * height * BYTES_PER_PIXEL;
+    int buffer = (oldestBuffer + pendingCount) % BUFFER_COUNT;
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, buffers[buffer]);
+    if (bufferSizes[buffer] != size) {
+      GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, size, null, GLES30.GL_STREAM_READ);
+      bufferSizes[buffer] = size;
+    }
+    // With a pack buffer bound, the last argument is an offset into it and the read is queued.
+    GLES30.glReadPixels(0, 0, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, 0);
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+    GLError.maybeThrowGLException("Failed to read pixels", "glReadPixels");
+    fences[buffer] = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    widths[buffer] = width;
+    heights[buffer] = height;
+    files[buffer] = file;
+    listeners[buffer] = listener;
+    pendingCount++;
+  }
+
+  /** Hands the oldest read to the encoder, returns false if it has not finished yet. */
+  private boolean finishRead(boolean wait) {
+    int buffer = oldestBuffer;
+    int status =
+        GLES30.glClientWaitSync(
+            fences[buffer], GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, wait ? WAIT_TIMEOUT_NS : 0);
+    if (status == GLES30.GL_TIMEOUT_EXPIRED && !wait) {
+      return false;
+    }
+    GLES30.glDeleteSync(fences[buffer]);
+    oldestBuffer = (oldestBuffer + 1) % BUFFER_COUNT;
+    pendingCount--;
+    if (status == GLES30.GL_TIMEOUT_EXPIRED || status == GLES30.GL_WAIT_FAILED) {
+      Log.w(TAG, "Gave up on capturing " + (files[buffer] != null ? files[buffer] : "frame"));
+      files[buffer] = null;
+      listeners[buffer] = null;
+      return true;
+    }
+
+    int width = widths[buffer];
+    int height = heights[buffer];
+    int rowSize = width * BYTES_PER_PIXEL;
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, buffers[buffer]);
+    ByteBuffer mapped =
+        (ByteBuffer)
+            GLES30.glMapBufferRange(
+                GLES30.GL_PIXEL_PACK_BUFFER, 0, rowSize * height, GLES30.GL_MAP_READ_BIT);
+    if (mapped == null) {
+      GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+      GLError.maybeLogGLError(Log.WARN, TAG, "Failed to map pixel pack buffer", "glMapBufferRange");
+      return true;
+    }
+    // GL rows start at the bottom, bitmap rows at the top.
+    ByteBuffer pixels = ByteBuffer.allocateDirect(rowSize * height).order(ByteOrder.nativeOrder());
+    for (int row = 0; row < height; row++) {
+      mapped.limit((row + 1) * rowSize).position(row * rowSize);
+      pixels.position((height - 1 - row) * rowSize);
+      pixels.put(mapped);
+    }
+    pixels.rewind();
+    GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+    GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+
+    File file = files[buffer];
+    Listener listener = listeners[buffer];
+    files[buffer] = null;
+    listeners[buffer] = null;
+    if (listener != null) {
+      encoder.execute(() -> listener.onFrameCaptured(toArgb(pixels), width, height));
+    } else {
+      encoder.execute(() -> write(pixels, width, height, file));
+    }
+    return true;
+  }
+
+  /** Converts RGBA bytes to ARGB ints. */
+  private static int[] toArgb(ByteBuffer pixels) {
+    IntBuffer rgba = pixels.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+    int[] argb = new int[rgba.remaining()];
+    rgba.get(argb);
+    for (int i = 0; i < argb.length; i++) {
+      argb[i] = (argb[i] >>> 8) | (argb[i] << 24);
+    }
+    return argb;
+  }
+
+  private static void write(ByteBuffer pixels, int width, int height, File file) {
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.copyPixelsFromBuffer(pixels);
+    File directory = file.getParentFile();
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      Log.e(TAG, "Failed to create " + directory);
+      return;
+    }
+    file.delete();
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to save frame capture: ", e);
+    } finally {
+      bitmap.recycle();
+    }
+  }
+
+  /** Hands reads still in flight to the encoder and frees the buffers. */
+  @Override
+  public void close() {
+    if (buffers[0] == 0) {
+      return;
+    }
+    while (pendingCount > 0) {
+      finishRead(/*wait=*/ true);
+    }
+    GLES30.glDeleteBuffers(BUFFER_COUNT, buffers, 0);
+    GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free pixel pack buffers", "glDeleteBuffers");
+    if (skippedCaptures > 0) {
+      Log.w(TAG, "Skipped " + skippedCaptures + " periodic captures");
+    }
+    buffers[0] = 0;
+  }
+}
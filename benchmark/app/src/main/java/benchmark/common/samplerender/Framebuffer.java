@@ -23,6 +23,7 @@ import java.io.Closeable;
 public class Framebuffer implements Closeable {
   private static final String TAG = Framebuffer.class.getSimpleName();
 
+  private final GLStateCache stateCache;
   private final int[] framebufferId = {0};
   private final Texture colorTexture;
   private final Texture depthTexture;
@@ -36,6 +37,7 @@ public class Framebuffer implements Closeable {
    * Framebuffer)}.
    */
   public Framebuffer(SampleRender render, int width, int height) {
+    stateCache = render.getStateCache();
     try {
       colorTexture =
           new Texture(
@@ -66,8 +68,7 @@ public class Framebuffer implements Closeable {
       // Create framebuffer object and bind to the color and depth textures.
       GLES30.glGenFramebuffers(1, framebufferId, 0);
       GLError.maybeThrowGLException("Framebuffer creation failed", "glGenFramebuffers");
-      GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferId[0]);
-      GLError.maybeThrowGLException("Failed to bind framebuffer", "glBindFramebuffer");
+      stateCache.bindFramebuffer(framebufferId[0]);
       GLES30.glFramebufferTexture2D(
           GLES30.GL_FRAMEBUFFER,
           GLES30.GL_COLOR_ATTACHMENT0,
@@ -100,6 +101,8 @@ public class Framebuffer implements Closeable {
     if (framebufferId[0] != 0) {
       GLES30.glDeleteFramebuffers(1, framebufferId, 0);
       GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free framebuffer", "glDeleteFramebuffers");
+      // Deleting the bound framebuffer binds the default one.
+      stateCache.invalidateFramebuffer();
       framebufferId[0] = 0;
     }
     colorTexture.close();
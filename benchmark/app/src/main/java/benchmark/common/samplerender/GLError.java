@@ -23,10 +23,80 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-/** Module for handling OpenGL errors. */
+/**
+ * Module for handling OpenGL errors.
+ *
+ * <p>Every {@code glGetError} waits for the driver to catch up with the calls before it, so while a
+ * frame is drawn, {@link #maybeThrowGLException} only checks for errors under {@link
+ * Policy#EVERY_CALL}. Under the batched policies the errors of a frame are logged at the end of its
+ * pass or of the frame instead, without naming the failing call. They are not thrown since the
+ * renderer has already returned, and nothing would catch them on the render thread. Outside of
+ * frames, e.g. while resources are created, every check is made.
+ */
 public class GLError {
-  /** Throws a {@link GLException} if a GL error occurred. */
+  private static final String TAG = GLError.class.getSimpleName();
+
+  /** When GL errors are checked while a frame is drawn. */
+  public enum Policy {
+    /** After every checked GL call, so errors name the failing call. */
+    EVERY_CALL,
+    /** At the end of every render pass, see {@link #checkPass}, and of every frame. */
+    PER_PASS,
+    /** At the end of every frame. */
+    PER_FRAME,
+  }
+
+  private static volatile Policy policy = Policy.EVERY_CALL;
+  // Only accessed on the render thread.
+  private static boolean inFrame;
+  private static long errorChecks;
+
+  /** Sets when errors are checked, for every render thread of the process. */
+  public static void setPolicy(Policy policy) {
+    GLError.policy = policy;
+  }
+
+  public static Policy getPolicy() {
+    return policy;
+  }
+
+  /** Returns the number of {@code glGetError} calls made so far on render threads. */
+  public static long getErrorChecks() {
+    return errorChecks;
+  }
+
+  /** Throws a {@link GLException} if a GL error occurred, unless the policy defers the check. */
   public static void maybeThrowGLException(String reason, String api) {
+    if (inFrame && policy != Policy.EVERY_CALL) {
+      return;
+    }
+    throwIfError(reason, api);
+  }
+
+  /** Marks the start of a frame. Called by {@link SampleRender}. */
+  static void beginFrame() {
+    inFrame = true;
+  }
+
+  /**
+   * Marks the end of a frame, also if it threw, and logs errors of the frame under the batched
+   * policies. Called by {@link SampleRender}.
+   */
+  static void endFrame() {
+    inFrame = false;
+    if (policy != Policy.EVERY_CALL) {
+      maybeLogGLError(Log.ERROR, TAG, "Failed to draw frame", "GL calls of the frame");
+    }
+  }
+
+  /** Logs errors of the render pass that just ended under {@link Policy#PER_PASS}. */
+  public static void checkPass(String pass) {
+    if (inFrame && policy == Policy.PER_PASS) {
+      maybeLogGLError(Log.ERROR, TAG, "Failed to draw render pass", pass);
+    }
+  }
+
+  private static void throwIfError(String reason, String api) {
     List<Integer> errorCodes = getGlErrors();
     if (errorCodes != null) {
       throw new GLException(errorCodes.get(0), formatErrorMessage(reason, api, errorCodes));
@@ -55,6 +125,7 @@ public class GLError {
   }
 
   private static List<Integer> getGlErrors() {
+    errorChecks++;
     int errorCode = GLES30.glGetError();
     // Shortcut for no errors
     if (errorCode == GLES30.GL_NO_ERROR) {
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import android.opengl.GLES30;
+
+/**
+ * Shadow copy of the GL state that {@link SampleRender} draws with, so that binds and state sets
+ * that would not change anything are skipped.
+ *
+ * <p>The cache only knows about calls made through it. Code that changes the same state with raw GL
+ * calls in the middle of a frame must call {@link SampleRender#invalidateState} afterwards; the
+ * cache is also invalidated at the start of every frame drawn by {@link SampleRender}.
+ */
+/* package-private */
+class GLStateCache {
+  private static final int UNKNOWN = -1;
+
+  // Only accessed on the render thread.
+  private int framebuffer;
+  private int viewportWidth;
+  private int viewportHeight;
+  private int program;
+  private int sourceRgbBlend;
+  private int destRgbBlend;
+  private int sourceAlphaBlend;
+  private int destAlphaBlend;
+  // Booleans are stored as 0 or 1, or UNKNOWN.
+  private int depthWrite;
+  private int depthTest;
+  private int vertexArray;
+
+  private long issuedCalls;
+  private long skippedCalls;
+
+  GLStateCache() {
+    invalidate();
+  }
+
+  /** Forgets all cached state, so that the next call of every kind is issued. */
+  void invalidate() {
+    framebuffer = UNKNOWN;
+    viewportWidth = UNKNOWN;
+    viewportHeight = UNKNOWN;
+    program = UNKNOWN;
+    sourceRgbBlend = UNKNOWN;
+    destRgbBlend = UNKNOWN;
+    sourceAlphaBlend = UNKNOWN;
+    destAlphaBlend = UNKNOWN;
+    depthWrite = UNKNOWN;
+    depthTest = UNKNOWN;
+    vertexArray = UNKNOWN;
+  }
+
+  /** Returns the number of state calls issued to GL so far. */
+  long getIssuedCalls() {
+    return issuedCalls;
+  }
+
+  /** Returns the number of state calls skipped so far because they would not change the state. */
+  long getSkippedCalls() {
+    return skippedCalls;
+  }
+
+  void bindFramebuffer(int framebufferId) {
+    if (framebuffer == framebufferId) {
+      skippedCalls++;
+      return;
+    }
+    GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferId);
+    GLError.maybeThrowGLException("Failed to bind framebuffer", "glBindFramebuffer");
+    framebuffer = framebufferId;
+    issuedCalls++;
+  }
+
+  /** Forgets the bound framebuffer, e.g. after it was deleted. */
+  void invalidateFramebuffer() {
+    framebuffer = UNKNOWN;
+  }
+
+  void viewport(int width, int height) {
+    if (viewportWidth == width && viewportHeight == height) {
+      skippedCalls++;
+      return;
+    }
+    GLES30.glViewport(0, 0, width, height);
+    GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
+    viewportWidth = width;
+    viewportHeight = height;
+    issuedCalls++;
+  }
+
+  void useProgram(int programId) {
+    if (program == programId) {
+      skippedCalls++;
+      return;
+    }
+    GLES30.glUseProgram(programId);
+    GLError.maybeThrowGLException("Failed to use shader program", "glUseProgram");
+    program = programId;
+    issuedCalls++;
+  }
+
+  /** Forgets the program in use, e.g. after it was deleted. */
+  void invalidateProgram() {
+    program = UNKNOWN;
+  }
+
+  void blendFuncSeparate(int sourceRgb, int destRgb, int sourceAlpha, int destAlpha) {
+    if (sourceRgbBlend == sourceRgb
+        && destRgbBlend == destRgb
+        && sourceAlphaBlend == sourceAlpha
+        && destAlphaBlend == destAlpha) {
+      skippedCalls++;
+      return;
+    }
+    GLES30.glBlendFuncSeparate(sourceRgb, destRgb, sourceAlpha, destAlpha);
+    GLError.maybeThrowGLException("Failed to set blend mode", "glBlendFuncSeparate");
+    sourceRgbBlend = sourceRgb;
+    destRgbBlend = destRgb;
+    sourceAlphaBlend = sourceAlpha;
+    destAlphaBlend = destAlpha;
+    issuedCalls++;
+  }
+
+  void depthMask(boolean write) {
+    int value = write ? 1 : 0;
+    if (depthWrite == value) {
+      skippedCalls++;
+      return;
+    }
+    GLES30.glDepthMask(write);
+    GLError.maybeThrowGLException("Failed to set depth write mask", "glDepthMask");
+    depthWrite = value;
+    issuedCalls++;
+  }
+
+  void setDepthTest(boolean test) {
+    int value = test ? 1 : 0;
+    if (depthTest == value) {
+      skippedCalls++;
+      return;
+    }
+    if (test) {
+      GLES30.glEnable(GLES30.GL_DEPTH_TEST);
+      GLError.maybeThrowGLException("Failed to enable depth test", "glEnable");
+    } else {
+      GLES30.glDisable(GLES30.GL_DEPTH_TEST);
+      GLError.maybeThrowGLException("Failed to disable depth test", "glDisable");
+    }
+    depthTest = value;
+    issuedCalls++;
+  }
+
+  void bindVertexArray(int vertexArrayId) {
+    if (vertexArray == vertexArrayId) {
+      skippedCalls++;
+      return;
+    }
+    GLES30.glBindVertexArray(vertexArrayId);
+    GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+    vertexArray = vertexArrayId;
+    issuedCalls++;
+  }
+
+  /** Forgets the bound vertex array, e.g. after it was deleted. */
+  void invalidateVertexArray() {
+    vertexArray = UNKNOWN;
+  }
+}
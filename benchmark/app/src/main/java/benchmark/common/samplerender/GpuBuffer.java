@@ -33,7 +33,7 @@ class GpuBuffer {
   private int size;
   private int capacity;
 
-  public GpuBuffer(int target, int numberOfBytesPerEntry, Buffer entries) {
+  public GpuBuffer(GLStateCache stateCache, int target, int numberOfBytesPerEntry, Buffer entries) {
     if (entries != null) {
       if (!entries.isDirect()) {
         throw new IllegalArgumentException("If non-null, entries buffer must be a direct buffer");
@@ -57,8 +57,7 @@ class GpuBuffer {
 
     try {
       // Clear VAO to prevent unintended state change.
-      GLES30.glBindVertexArray(0);
-      GLError.maybeThrowGLException("Failed to unbind vertex array", "glBindVertexArray");
+      stateCache.bindVertexArray(0);
 
       GLES30.glGenBuffers(1, bufferId, 0);
       GLError.maybeThrowGLException("Failed to generate buffers", "glGenBuffers");
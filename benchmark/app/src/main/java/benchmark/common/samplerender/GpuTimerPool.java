@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import android.opengl.GLES30;
+import android.util.Log;
+import benchmark.benchmark.GpuPasses;
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * A pool of {@code GL_EXT_disjoint_timer_query} timer queries measuring the GPU time of several
+ * named render passes per frame.
+ *
+ * <p>Queries of up to {@link #MAX_FRAMES_IN_FLIGHT} frames are kept in flight so that reading
+ * results never stalls the pipeline. Results are reported through {@link #collectResults} tagged
+ * with the number of the frame they were issued in, as returned by {@link #getFrameNumber}. Frames
+ * during which the GPU reported a disjoint operation are reported with {@link #TIME_UNKNOWN} for
+ * every pass. Frames whose results did not arrive before their queries had to be reused are not
+ * reported at all.
+ *
+ * <p>Only one pass may be timed at a time. When the extension is not available all methods are
+ * no-ops, and {@link #isSupported} returns false.
+ */
+public class GpuTimerPool implements Closeable {
+  private static final String TAG = GpuTimerPool.class.getSimpleName();
+
+  // The passes are defined by GpuPasses, which code reading the frame log uses without GL.
+  public static final int PASS_BACKGROUND = GpuPasses.PASS_BACKGROUND;
+  public static final int PASS_PLANES = GpuPasses.PASS_PLANES;
+  public static final int PASS_POINT_CLOUD = GpuPasses.PASS_POINT_CLOUD;
+  public static final int PASS_VIRTUAL_SCENE = GpuPasses.PASS_VIRTUAL_SCENE;
+  public static final int PASS_COMPOSITE = GpuPasses.PASS_COMPOSITE;
+  public static final int PASS_COUNT = GpuPasses.PASS_COUNT;
+
+  /** Pass time of frames whose results were discarded. */
+  public static final int TIME_UNKNOWN = GpuPasses.TIME_UNKNOWN;
+
+  public static final int MAX_FRAMES_IN_FLIGHT = 8;
+
+  // From the EXT_disjoint_timer_query specification.
+  private static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+  private static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+  /** Receives the GPU times of completed frames. */
+  public interface ResultListener {
+    /**
+     * Called once per completed frame, in frame order.
+     *
+     * @param passTimes GPU time of each pass in nanoseconds, 0 for passes that were not drawn or
+     *     {@link #TIME_UNKNOWN}. Only valid for the duration of the call.
+     */
+    void onGpuFrameCompleted(long frameNumber, int[] passTimes);
+  }
+
+  private final boolean supported;
+  // Query names, MAX_FRAMES_IN_FLIGHT slots of PASS_COUNT queries each.
+  private final int[] queries = new int[MAX_FRAMES_IN_FLIGHT * PASS_COUNT];
+  private final boolean[] issued = new boolean[MAX_FRAMES_IN_FLIGHT * PASS_COUNT];
+  private final long[] slotFrameNumbers = new long[MAX_FRAMES_IN_FLIGHT];
+  private final boolean[] slotDisjoint = new boolean[MAX_FRAMES_IN_FLIGHT];
+  private final int[] passTimes = new int[PASS_COUNT];
+  private final int[] queryResult = new int[1];
+
+  private long frameNumber = -1;
+  private int currentSlot = -1;
+  // Ended frames awaiting results occupy pendingCount slots starting at oldestSlot.
+  private int oldestSlot = 0;
+  private int pendingCount = 0;
+  private int activePass = -1;
+  private boolean recording = false;
+
+  public GpuTimerPool(SampleRender render) {
+    String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
+    supported = extensions != null && extensions.contains("GL_EXT_disjoint_timer_query");
+    if (!supported) {
+      Log.w(TAG, "GL_EXT_disjoint_timer_query is unavailable, GPU times will not be measured");
+      return;
+    }
+    GLES30.glGenQueries(queries.length, queries, 0);
+    GLError.maybeThrowGLException("Failed to create timer queries", "glGenQueries");
+    // Clear the disjoint flag so that it only reflects operations issued from now on.
+    GLES30.glGetIntegerv(GL_GPU_DISJOINT_EXT, queryResult, 0);
+  }
+
+  /** Returns whether GPU times are measured on this device. */
+  public boolean isSupported() {
+    return supported;
+  }
+
+  /** Returns the display name of {@code pass}. */
+  public static String getPassName(int pass) {
+    return GpuPasses.getPassName(pass);
+  }
+
+  /** Returns the number of the current frame, or of the last frame if it has been ended. */
+  public long getFrameNumber() {
+    return frameNumber;
+  }
+
+  /**
+   * Starts a new frame. A frame that has not been ended yet is ended first. If the queries of all
+   * slots are still in flight, the oldest frame is abandoned.
+   */
+  public void beginFrame() {
+    endFrame();
+    frameNumber++;
+    if (queries[0] == 0) {
+      return;
+    }
+    currentSlot = (currentSlot + 1) % MAX_FRAMES_IN_FLIGHT;
+    if (pendingCount == MAX_FRAMES_IN_FLIGHT) {
+      oldestSlot = (oldestSlot + 1) % MAX_FRAMES_IN_FLIGHT;
+      pendingCount--;
+    }
+    slotFrameNumbers[currentSlot] = frameNumber;
+    slotDisjoint[currentSlot] = false;
+    Arrays.fill(issued, currentSlot * PASS_COUNT, (currentSlot + 1) * PASS_COUNT, false);
+    recording = true;
+  }
+
+  /** Starts timing {@code pass}. Ignored if another pass is being timed or was timed already. */
+  public void begin(int pass) {
+    int query = currentSlot * PASS_COUNT + pass;
+    if (!recording || activePass >= 0 || issued[query]) {
+      return;
+    }
+    GLES30.glBeginQuery(GL_TIME_ELAPSED_EXT, queries[query]);
+    issued[query] = true;
+    activePass = pass;
+  }
+
+  /** Stops timing {@code pass}, and checks its GL errors under {@link GLError.Policy#PER_PASS}. */
+  public void end(int pass) {
+    GLError.checkPass(GpuPasses.getPassName(pass));
+    if (!recording || activePass != pass) {
+      return;
+    }
+    GLES30.glEndQuery(GL_TIME_ELAPSED_EXT);
+    activePass = -1;
+  }
+
+  /** Ends the current frame. Its results can be collected once the GPU has finished it. */
+  public void endFrame() {
+    if (!recording) {
+      return;
+    }
+    if (activePass >= 0) {
+      end(activePass);
+    }
+    pendingCount++;
+    recording = false;
+  }
+
+  /**
+   * Reports every frame whose results have become available, oldest first, to {@code listener}.
+   * Never blocks.
+   */
+  public void collectResults(ResultListener listener) {
+    if (queries[0] == 0) {
+      return;
+    }
+    // A disjoint operation invalidates every query that has not been read yet.
+    GLES30.glGetIntegerv(GL_GPU_DISJOINT_EXT, queryResult, 0);
+    if (queryResult[0] != 0) {
+      Arrays.fill(slotDisjoint, true);
+    }
+    while (pendingCount > 0) {
+      int slot = oldestSlot;
+      if (slotDisjoint[slot]) {
+        Arrays.fill(passTimes, TIME_UNKNOWN);
+      } else if (!readSlot(slot)) {
+        // Deliver in frame order: wait for the oldest frame.
+        return;
+      }
+      oldestSlot = (oldestSlot + 1) % MAX_FRAMES_IN_FLIGHT;
+      pendingCount--;
+      listener.onGpuFrameCompleted(slotFrameNumbers[slot], passTimes);
+    }
+  }
+
+  /** Reads all queries of {@code slot} into {@link #passTimes}, returns false if not yet available. */
+  private boolean readSlot(int slot) {
+    for (int pass = 0; pass < PASS_COUNT; pass++) {
+      int query = slot * PASS_COUNT + pass;
+      if (!issued[query]) {
+        continue;
+      }
+      GLES30.glGetQueryObjectuiv(queries[query], GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult, 0);
+      if (queryResult[0] != GLES30.GL_TRUE) {
+        return false;
+      }
+    }
+    for (int pass = 0; pass < PASS_COUNT; pass++) {
+      int query = slot * PASS_COUNT + pass;
+      if (!issued[query]) {
+        passTimes[pass] = 0;
+        continue;
+      }
+      GLES30.glGetQueryObjectuiv(queries[query], GLES30.GL_QUERY_RESULT, queryResult, 0);
+      // Elapsed times are unsigned; clamp the rare >2s pass instead of wrapping.
+      passTimes[pass] = queryResult[0] < 0 ? Integer.MAX_VALUE : queryResult[0];
+    }
+    return true;
+  }
+
+  @Override
+  public void close() {
+    if (queries[0] == 0) {
+      return;
+    }
+    GLES30.glDeleteQueries(queries.length, queries, 0);
+    GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free timer queries", "glDeleteQueries");
+    Arrays.fill(queries, 0);
+    pendingCount = 0;
+    recording = false;
+  }
+}
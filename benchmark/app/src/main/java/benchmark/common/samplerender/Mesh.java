@@ -59,6 +59,7 @@ public class Mesh implements Closeable {
     }
   }
 
+  private final GLStateCache stateCache;
   private final int[] vertexArrayId = {0};
   private final PrimitiveMode primitiveMode;
   private final IndexBuffer indexBuffer;
@@ -85,6 +86,7 @@ public class Mesh implements Closeable {
       throw new IllegalArgumentException("Must pass at least one vertex buffer");
     }
 
+    this.stateCache = render.getStateCache();
     this.primitiveMode = primitiveMode;
     this.indexBuffer = indexBuffer;
     this.vertexBuffers = vertexBuffers;
@@ -95,8 +97,7 @@ public class Mesh implements Closeable {
       GLError.maybeThrowGLException("Failed to generate a vertex array", "glGenVertexArrays");
 
       // Bind vertex array
-      GLES30.glBindVertexArray(vertexArrayId[0]);
-      GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+      stateCache.bindVertexArray(vertexArrayId[0]);
 
       if (indexBuffer != null) {
         GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getBufferId());
@@ -129,6 +130,7 @@ public class Mesh implements Closeable {
    */
   public static Mesh createFromAsset(SampleRender render, String assetFileName) throws IOException {
     try (InputStream inputStream = render.getAssets().open(assetFileName)) {
+      long parseStartTime = System.nanoTime();
       Obj obj = ObjUtils.convertToRenderable(ObjReader.read(inputStream));
 
       // Obtain the data from the OBJ, as direct buffers:
@@ -136,6 +138,7 @@ public class Mesh implements Closeable {
       FloatBuffer localCoordinates = ObjData.getVertices(obj);
       FloatBuffer textureCoordinates = ObjData.getTexCoords(obj, /*dimensions=*/ 2);
       FloatBuffer normals = ObjData.getNormals(obj);
+      render.addMeshParseTime(System.nanoTime() - parseStartTime);
 
       VertexBuffer[] vertexBuffers = {
         new VertexBuffer(render, 3, localCoordinates),
@@ -155,9 +158,16 @@ public class Mesh implements Closeable {
       GLES30.glDeleteVertexArrays(1, vertexArrayId, 0);
       GLError.maybeLogGLError(
           Log.WARN, TAG, "Failed to free vertex array object", "glDeleteVertexArrays");
+      // Deleting the bound vertex array binds the default one.
+      stateCache.invalidateVertexArray();
     }
   }
 
+  /* package-private */
+  int getVertexArrayId() {
+    return vertexArrayId[0];
+  }
+
   /**
    * Draws the mesh. Don't call this directly unless you are doing low level OpenGL code; instead,
    * prefer {@link SampleRender#draw}.
@@ -167,8 +177,8 @@ public class Mesh implements Closeable {
       throw new IllegalStateException("Tried to draw a freed Mesh");
     }
 
-    GLES30.glBindVertexArray(vertexArrayId[0]);
-    GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+    // Draws of the same mesh in a row keep it bound.
+    stateCache.bindVertexArray(vertexArrayId[0]);
     if (indexBuffer == null) {
       // Sanity check for debugging
       int numberOfVertices = vertexBuffers[0].getNumberOfVertices();
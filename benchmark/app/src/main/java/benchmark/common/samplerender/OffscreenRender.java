@@ -19,7 +19,9 @@ import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
+import android.os.Looper;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
@@ -41,12 +43,39 @@ import benchmark.common.samplerender.GLError;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.Shader;
 
-/** Renders frames offscreen as frequently as possible. */
+/**
+ * Renders frames on its own thread and EGL context, by default as frequently as possible, showing
+ * an onscreen preview at about 30 fps.
+ */
 public class OffscreenRender extends SampleRender {
   private static final String TAG = OffscreenRender.class.getSimpleName();
 
+  /** When the render loop draws a frame. */
+  public enum SchedulingPolicy {
+    /** Draws frames back to back. */
+    UNTHROTTLED,
+    /** Draws one frame per display vsync, signalled by {@link Choreographer}, and swaps every frame. */
+    VSYNC,
+    /** Draws frames at a fixed rate and sleeps in between. */
+    FIXED_RATE,
+    /**
+     * Draws only frames with a new camera image. Renderers report the camera timestamp with {@link
+     * SampleRender#beginCameraFrame}; renderers that do not are drawn unthrottled.
+     */
+    NEW_CAMERA_FRAME,
+  }
+
+  public static final float DEFAULT_TARGET_FPS = 30;
+  private static final long PREVIEW_FRAME_INTERVAL_MS = 33;
+  // Wait before polling for a new camera image again.
+  private static final long CAMERA_FRAME_POLL_INTERVAL_MS = 1;
+
   private Renderer renderer;
   private Thread renderingThread;
+  private final SchedulingPolicy schedulingPolicy;
+  private final long frameIntervalNanos;
+  private long lastCameraTimestamp = -1;
+  private boolean cameraFrameSkipped;
 
   // EGL Context Information
   EGL10 mEGL;
@@ -59,18 +88,35 @@ public class OffscreenRender extends SampleRender {
   private static int EGL_OPENGL_ES2_BIT = 4;
   private static int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
 
-  private boolean running = true;
+  private volatile boolean running = true;
+  // Looper of the render thread under SchedulingPolicy.VSYNC, quit by stop().
+  private volatile Looper vsyncLooper;
 
   /**
-   * Constructs and renders to an offscreen EGL context.
+   * Constructs and renders to an offscreen EGL context as frequently as possible.
    *
    * @param renderer Renderer implementation to receive callbacks
    * @param assetManager AssetManager for loading Android resources
    */
   public OffscreenRender(SurfaceView surfaceView, Renderer renderer, AssetManager assetManager) {
+    this(surfaceView, renderer, assetManager, SchedulingPolicy.UNTHROTTLED, DEFAULT_TARGET_FPS);
+  }
+
+  /**
+   * Constructs and renders to an offscreen EGL context.
+   *
+   * @param renderer Renderer implementation to receive callbacks
+   * @param assetManager AssetManager for loading Android resources
+   * @param targetFps Frame rate of {@link SchedulingPolicy#FIXED_RATE}
+   */
+  public OffscreenRender(SurfaceView surfaceView, Renderer renderer, AssetManager assetManager,
+                         SchedulingPolicy schedulingPolicy, float targetFps) {
     super(assetManager);
+    this.schedulingPolicy = schedulingPolicy;
+    frameIntervalNanos = (long) (1e9 / (targetFps > 0 ? targetFps : DEFAULT_TARGET_FPS));
 
-    renderingThread = new Thread() {
+    // Named so its CPU time can be told apart in per-thread profiles.
+    renderingThread = new Thread(TAG) {
       public void run() {
         setupEGL(surfaceView.getHolder());
         GLES30.glEnable(GLES30.GL_BLEND);
@@ -78,6 +124,9 @@ public class OffscreenRender extends SampleRender {
         renderer.onSurfaceCreated(OffscreenRender.this);
         renderer.onSurfaceChanged(OffscreenRender.this, viewportWidth, viewportHeight);
         loop();
+        Log.i(TAG, "glGetError calls per frame with " + GLError.getPolicy() + " checks: "
+            + getErrorChecksPerFrame());
+        renderer.onSurfaceDestroyed(OffscreenRender.this);
         shutdownEGL();
       }
     };
@@ -86,6 +135,7 @@ public class OffscreenRender extends SampleRender {
     viewportHeight = surfaceView.getHeight();
 
     this.renderer = renderer;
+    startVsyncTracker(surfaceView.getDisplay());
 
     renderingThread.start();
   }
@@ -135,23 +185,115 @@ public class OffscreenRender extends SampleRender {
 
   private void loop() {
     clear(null,0f, 0f, 0f, 1f);
+    if (schedulingPolicy == SchedulingPolicy.VSYNC) {
+      loopOnVsync();
+      return;
+    }
     long lastPreviewFrameTime = System.currentTimeMillis();
+    long nextFrameTime = System.nanoTime();
     while (running) {
-        renderer.onDrawFrame(this);
+        cameraFrameSkipped = false;
+        drawFrame(renderer);
+        if (cameraFrameSkipped) {
+          if (!sleep(CAMERA_FRAME_POLL_INTERVAL_MS, 0)) {
+            break;
+          }
+          continue;
+        }
         long currentFrameTime = System.currentTimeMillis();
         // Display onscreen preview at approx 30fps
-        if (currentFrameTime - lastPreviewFrameTime > 33) {
+        if (currentFrameTime - lastPreviewFrameTime > PREVIEW_FRAME_INTERVAL_MS) {
           mEGL.eglSwapBuffers(mEGLDisplay, mEGLSurface);
+          onFrameSwapped(System.nanoTime());
           lastPreviewFrameTime = currentFrameTime;
         }
+        if (schedulingPolicy == SchedulingPolicy.FIXED_RATE) {
+          nextFrameTime += frameIntervalNanos;
+          long delay = nextFrameTime - System.nanoTime();
+          if (delay <= 0) {
+            // Late frames are not made up for with a burst of frames.
+            nextFrameTime = System.nanoTime();
+          } else if (!sleep(delay / 1000000, (int) (delay % 1000000))) {
+            break;
+          }
+        }
     }
   }
 
-  public int getViewportWidth() { return viewportWidth; }
-  public int getViewportHeight() { return viewportHeight; }
+  /** Draws and swaps from vsync callbacks on a looper of the render thread until stopped. */
+  private void loopOnVsync() {
+    Looper.prepare();
+    vsyncLooper = Looper.myLooper();
+    if (!running) {
+      return;
+    }
+    Choreographer choreographer = Choreographer.getInstance();
+    choreographer.postFrameCallback(new Choreographer.FrameCallback() {
+      @Override
+      public void doFrame(long frameTimeNanos) {
+        if (!running) {
+          Looper.myLooper().quit();
+          return;
+        }
+        drawFrame(renderer);
+        mEGL.eglSwapBuffers(mEGLDisplay, mEGLSurface);
+        onFrameSwapped(System.nanoTime());
+        choreographer.postFrameCallback(this);
+      }
+    });
+    Looper.loop();
+  }
+
+  /** Returns false if the render thread was interrupted. */
+  private static boolean sleep(long millis, int nanos) {
+    try {
+      Thread.sleep(millis, nanos);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
 
+  @Override
+  public boolean beginCameraFrame(long timestamp) {
+    if (schedulingPolicy == SchedulingPolicy.NEW_CAMERA_FRAME && timestamp == lastCameraTimestamp) {
+      cameraFrameSkipped = true;
+      return false;
+    }
+    lastCameraTimestamp = timestamp;
+    return true;
+  }
+
+  public SchedulingPolicy getSchedulingPolicy() {
+    return schedulingPolicy;
+  }
+
+  /**
+   * Stops the render loop and, unless called from the render thread, waits until the renderer has
+   * released its GL resources and the EGL context is destroyed.
+   */
   public void stop() {
     running = false;
+    stopVsyncTracker();
+    Looper looper = vsyncLooper;
+    if (looper != null) {
+      looper.quit();
+    }
+    if (Thread.currentThread() == renderingThread) {
+      return;
+    }
+    boolean interrupted = false;
+    while (renderingThread.isAlive()) {
+      try {
+        renderingThread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   private void shutdownEGL() {
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import java.util.Arrays;
+
+/**
+ * Draws recorded by {@link SampleRender#queue}, made sorted when the queue is flushed.
+ *
+ * <p>Every draw saves the render state and uniform values of its {@link Shader}, so that the shader
+ * can be set up for the next draw right away. Draws are sorted by a 64-bit key:
+ *
+ * <pre>
+ *   3 bits  framebuffer, in the order the queue first drew to it
+ *   1 bit   blended, so opaque draws come first
+ *   opaque:  12 bits program, 12 bits first texture, 11 bits vertex array, 24 bits depth
+ *   blended: 24 bits inverted depth, 12 bits program, 12 bits first texture, 11 bits vertex array
+ * </pre>
+ *
+ * <p>Opaque draws are grouped by state and drawn front to back within a group, blended draws are
+ * drawn back to front. Draws with equal keys keep the order they were recorded in. A queue holds
+ * draws to at most {@link #MAX_FRAMEBUFFERS} framebuffers; recording a draw to another one flushes
+ * the queue first.
+ *
+ * <p>The arrays holding the draws grow when full and are reused afterwards, so recording and
+ * flushing do not allocate once the queue has seen its largest frame.
+ */
+/* package-private */
+class RenderQueue {
+  /* package-private */
+  static final int MAX_FRAMEBUFFERS = 8;
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int DEPTH_BITS = 24;
+  private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+  private static final long PROGRAM_MASK = (1L << 12) - 1;
+  private static final long TEXTURE_MASK = (1L << 12) - 1;
+  private static final long VERTEX_ARRAY_MASK = (1L << 11) - 1;
+
+  private final SampleRender render;
+
+  // Draws in the order they were recorded, size entries.
+  private int size;
+  private Mesh[] meshes = new Mesh[INITIAL_CAPACITY];
+  private Shader[] shaders = new Shader[INITIAL_CAPACITY];
+  private int[] framebufferIndices = new int[INITIAL_CAPACITY];
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private int[] intOffsets = new int[INITIAL_CAPACITY];
+  private int[] floatOffsets = new int[INITIAL_CAPACITY];
+  private int[] textureOffsets = new int[INITIAL_CAPACITY];
+  // Offsets of the state a shader had when the queue was flushed, at the last draw of the shader.
+  private int[] currentIntOffsets = new int[INITIAL_CAPACITY];
+  private int[] currentFloatOffsets = new int[INITIAL_CAPACITY];
+  private int[] currentTextureOffsets = new int[INITIAL_CAPACITY];
+  // Indices of the draws sorted by key, and scratch space of the merge sort.
+  private int[] order = new int[INITIAL_CAPACITY];
+  private int[] scratch = new int[INITIAL_CAPACITY];
+
+  // Saved shader state of all draws.
+  private int intSize;
+  private int floatSize;
+  private int textureSize;
+  private int[] savedInts = new int[INITIAL_CAPACITY * 64];
+  private float[] savedFloats = new float[INITIAL_CAPACITY * 32];
+  private Texture[] savedTextures = new Texture[INITIAL_CAPACITY * 8];
+
+  private final Framebuffer[] framebuffers = new Framebuffer[MAX_FRAMEBUFFERS];
+  private int framebufferCount;
+
+  // Serial number of the first draw of the queue, counting every draw ever recorded.
+  private long firstDraw;
+
+  RenderQueue(SampleRender render) {
+    this.render = render;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Records a draw of {@code mesh} with the current state of {@code shader}.
+   *
+   * @param depth Distance of the mesh from the camera along the view direction
+   */
+  void add(Mesh mesh, Shader shader, Framebuffer framebuffer, float depth) {
+    int framebufferIndex = getFramebufferIndex(framebuffer);
+    if (framebufferIndex < 0) {
+      flush();
+      framebufferIndex = getFramebufferIndex(framebuffer);
+    }
+    if (size == meshes.length) {
+      growDraws();
+    }
+    meshes[size] = mesh;
+    shaders[size] = shader;
+    framebufferIndices[size] = framebufferIndex;
+    keys[size] = createKey(framebufferIndex, mesh, shader, depth);
+    intOffsets[size] = intSize;
+    floatOffsets[size] = floatSize;
+    textureOffsets[size] = textureSize;
+    saveState(shader);
+    shader.lastQueuedDraw = firstDraw + size;
+    size++;
+  }
+
+  /**
+   * Makes all recorded draws, sorted by their keys, and empties the queue. Shaders are left with
+   * the state they had before.
+   */
+  void flush() {
+    if (size == 0) {
+      return;
+    }
+    // The last draw of each shader saves its current state, which may have been set since.
+    for (int draw = 0; draw < size; draw++) {
+      if (shaders[draw].lastQueuedDraw == firstDraw + draw) {
+        currentIntOffsets[draw] = intSize;
+        currentFloatOffsets[draw] = floatSize;
+        currentTextureOffsets[draw] = textureSize;
+        saveState(shaders[draw]);
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    sort(0, size);
+    try {
+      for (int i = 0; i < size; i++) {
+        int draw = order[i];
+        restoreState(shaders[draw], intOffsets[draw], floatOffsets[draw], textureOffsets[draw]);
+        render.drawImmediately(meshes[draw], shaders[draw], framebuffers[framebufferIndices[draw]]);
+      }
+    } finally {
+      for (int draw = 0; draw < size; draw++) {
+        if (shaders[draw].lastQueuedDraw == firstDraw + draw) {
+          restoreState(
+              shaders[draw],
+              currentIntOffsets[draw],
+              currentFloatOffsets[draw],
+              currentTextureOffsets[draw]);
+          shaders[draw].lastQueuedDraw = -1;
+        }
+      }
+      clear();
+    }
+  }
+
+  /** Empties the queue without drawing. */
+  private void clear() {
+    firstDraw += size;
+    Arrays.fill(meshes, 0, size, null);
+    Arrays.fill(shaders, 0, size, null);
+    Arrays.fill(savedTextures, 0, textureSize, null);
+    Arrays.fill(framebuffers, 0, framebufferCount, null);
+    size = 0;
+    intSize = 0;
+    floatSize = 0;
+    textureSize = 0;
+    framebufferCount = 0;
+  }
+
+  /**
+   * Returns the depth of the point ({@code x}, {@code y}, {@code z}) in world space along the view
+   * direction of {@code viewMatrix}, i.e. its distance in front of the camera.
+   */
+  static float getViewDepth(float[] viewMatrix, float x, float y, float z) {
+    // The camera looks down -Z in view space.
+    return -(viewMatrix[2] * x + viewMatrix[6] * y + viewMatrix[10] * z + viewMatrix[14]);
+  }
+
+  /** Appends the current state of {@code shader} to the saved state. */
+  private void saveState(Shader shader) {
+    int intCount = shader.getSavedIntCount();
+    int floatCount = shader.getSavedFloatCount();
+    int textureCount = shader.getSavedTextureCount();
+    if (intSize + intCount > savedInts.length) {
+      savedInts = Arrays.copyOf(savedInts, Math.max(savedInts.length * 2, intSize + intCount));
+    }
+    if (floatSize + floatCount > savedFloats.length) {
+      savedFloats =
+          Arrays.copyOf(savedFloats, Math.max(savedFloats.length * 2, floatSize + floatCount));
+    }
+    if (textureSize + textureCount > savedTextures.length) {
+      savedTextures =
+          Arrays.copyOf(
+              savedTextures, Math.max(savedTextures.length * 2, textureSize + textureCount));
+    }
+    shader.saveState(savedInts, intSize, savedFloats, floatSize, savedTextures, textureSize);
+    intSize += intCount;
+    floatSize += floatCount;
+    textureSize += textureCount;
+  }
+
+  private void restoreState(Shader shader, int intOffset, int floatOffset, int textureOffset) {
+    shader.restoreState(
+        savedInts, intOffset, savedFloats, floatOffset, savedTextures, textureOffset);
+  }
+
+  /** Returns the index of {@code framebuffer} in the queue, or -1 if there is no room for it. */
+  private int getFramebufferIndex(Framebuffer framebuffer) {
+    for (int i = 0; i < framebufferCount; i++) {
+      if (framebuffers[i] == framebuffer) {
+        return i;
+      }
+    }
+    if (framebufferCount == MAX_FRAMEBUFFERS) {
+      return -1;
+    }
+    framebuffers[framebufferCount] = framebuffer;
+    return framebufferCount++;
+  }
+
+  private static long createKey(int framebufferIndex, Mesh mesh, Shader shader, float depth) {
+    long program = shader.getProgramId() & PROGRAM_MASK;
+    long texture = shader.getFirstTextureId() & TEXTURE_MASK;
+    long vertexArray = mesh.getVertexArrayId() & VERTEX_ARRAY_MASK;
+    // The bits of non-negative floats sort like the floats; the top ones are kept.
+    long depthBits = (Float.floatToIntBits(Math.max(depth, 0f)) >>> (31 - DEPTH_BITS)) & DEPTH_MASK;
+    long key = (long) framebufferIndex << 60;
+    if (shader.isBlended()) {
+      return key
+          | 1L << 59
+          | (DEPTH_MASK - depthBits) << 35
+          | program << 23
+          | texture << 11
+          | vertexArray;
+    }
+    return key | program << 47 | texture << 35 | vertexArray << 24 | depthBits;
+  }
+
+  /** Stable merge sort of order[from, to) by key, which does not allocate. */
+  private void sort(int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    sort(from, middle);
+    sort(middle, to);
+    if (keys[order[middle - 1]] <= keys[order[middle]]) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < middle && keys[scratch[left]] <= keys[scratch[right]])) {
+        order[i] = scratch[left++];
+      } else {
+        order[i] = scratch[right++];
+      }
+    }
+  }
+
+  private void growDraws() {
+    int capacity = meshes.length * 2;
+    meshes = Arrays.copyOf(meshes, capacity);
+    shaders = Arrays.copyOf(shaders, capacity);
+    framebufferIndices = Arrays.copyOf(framebufferIndices, capacity);
+    keys = Arrays.copyOf(keys, capacity);
+    intOffsets = Arrays.copyOf(intOffsets, capacity);
+    floatOffsets = Arrays.copyOf(floatOffsets, capacity);
+    textureOffsets = Arrays.copyOf(textureOffsets, capacity);
+    currentIntOffsets = new int[capacity];
+    currentFloatOffsets = new int[capacity];
+    currentTextureOffsets = new int[capacity];
+    order = new int[capacity];
+    scratch = new int[capacity];
+  }
+}
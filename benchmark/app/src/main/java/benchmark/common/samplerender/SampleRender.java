@@ -18,6 +18,8 @@ package benchmark.common.samplerender;
 import android.content.res.AssetManager;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
+import android.view.Display;
+import android.view.View;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
@@ -30,6 +32,85 @@ public class SampleRender {
   protected int viewportWidth = 1;
   protected int viewportHeight = 1;
 
+  // Time spent in the resource loaders, in ns, for startup traces.
+  private long shaderCompileTime;
+  private long textureDecodeTime;
+  private long meshParseTime;
+
+  /** Present time of frames that were not shown. */
+  public static final long PRESENT_TIME_UNKNOWN = -1;
+
+  // Follows vsync while frames are shown, to estimate their present times.
+  private volatile VsyncTracker vsyncTracker;
+  private long presentedFrameCount;
+  private long lastPresentTime = PRESENT_TIME_UNKNOWN;
+  private long lastVsyncPeriod;
+  private boolean frameDrawn;
+  private long drawnFrameCount;
+  private long errorChecksAtFirstFrame = -1;
+
+  // Skips redundant binds and state sets of draws; only accessed on the render thread.
+  private final GLStateCache stateCache = new GLStateCache();
+  private long issuedStateCallsAtFrameStart;
+  private long skippedStateCallsAtFrameStart;
+
+  // Draws recorded by queue() until they are flushed.
+  private final RenderQueue renderQueue = new RenderQueue(this);
+  private boolean renderQueueEnabled = true;
+
+  /** Draws a frame with the renderer, checking GL errors as the {@link GLError.Policy} says. */
+  protected void drawFrame(Renderer renderer) {
+    if (errorChecksAtFirstFrame < 0) {
+      errorChecksAtFirstFrame = GLError.getErrorChecks();
+    }
+    // Renderers may change state with raw GL calls between frames.
+    stateCache.invalidate();
+    issuedStateCallsAtFrameStart = stateCache.getIssuedCalls();
+    skippedStateCallsAtFrameStart = stateCache.getSkippedCalls();
+    GLError.beginFrame();
+    try {
+      renderer.onDrawFrame(this);
+      // Draws the renderer did not flush.
+      renderQueue.flush();
+    } finally {
+      GLError.endFrame();
+    }
+    drawnFrameCount++;
+  }
+
+  /**
+   * Returns the mean number of {@code glGetError} calls per drawn frame on the render thread, or 0
+   * if no frame was drawn.
+   */
+  public double getErrorChecksPerFrame() {
+    if (drawnFrameCount == 0) {
+      return 0;
+    }
+    return (double) (GLError.getErrorChecks() - errorChecksAtFirstFrame) / drawnFrameCount;
+  }
+
+  /**
+   * Forgets the GL state that draws of this render set, so that the next draw sets all of it again.
+   * Must be called after changing the framebuffer binding, viewport, program, blend function, depth
+   * mask, depth test or vertex array binding with raw GL calls while a frame is drawn.
+   */
+  public void invalidateState() {
+    stateCache.invalidate();
+  }
+
+  /** Returns the number of GL state calls issued so far in the frame being drawn. */
+  public int getFrameStateCallsIssued() {
+    return (int) (stateCache.getIssuedCalls() - issuedStateCallsAtFrameStart);
+  }
+
+  /**
+   * Returns the number of GL state calls skipped so far in the frame being drawn, because they
+   * would have set the state it already had.
+   */
+  public int getFrameStateCallsSkipped() {
+    return (int) (stateCache.getSkippedCalls() - skippedStateCallsAtFrameStart);
+  }
+
   /* Inherited by OffscreenRender */
   public SampleRender(AssetManager assetManager) {
     this.assetManager = assetManager;
@@ -65,12 +146,34 @@ public class SampleRender {
 
           @Override
           public void onDrawFrame(GL10 gl) {
+            // GLSurfaceView swaps right after this callback returns, so the previous frame has been
+            // queued by now.
+            if (frameDrawn) {
+              onFrameSwapped(System.nanoTime());
+            }
+            frameDrawn = true;
+            stateCache.invalidate();
             clear(/*framebuffer=*/ null, 0f, 0f, 0f, 1f);
-            renderer.onDrawFrame(SampleRender.this);
+            drawFrame(renderer);
           }
         });
     glSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
     glSurfaceView.setWillNotDraw(false);
+    glSurfaceView.addOnAttachStateChangeListener(
+        new View.OnAttachStateChangeListener() {
+          @Override
+          public void onViewAttachedToWindow(View view) {
+            startVsyncTracker(view.getDisplay());
+          }
+
+          @Override
+          public void onViewDetachedFromWindow(View view) {
+            stopVsyncTracker();
+          }
+        });
+    if (glSurfaceView.isAttachedToWindow()) {
+      startVsyncTracker(glSurfaceView.getDisplay());
+    }
   }
 
   /** Draw a {@link Mesh} with the specified {@link Shader}. */
@@ -82,11 +185,125 @@ public class SampleRender {
    * Draw a {@link Mesh} with the specified {@link Shader} to the given {@link Framebuffer}.
    *
    * <p>The {@code framebuffer} argument may be null, in which case the default framebuffer is used.
+   *
+   * <p>Draws are made immediately, in call order. Queued draws are flushed first.
    */
   public void draw(Mesh mesh, Shader shader, Framebuffer framebuffer) {
-    useFramebuffer(framebuffer);
-    shader.lowLevelUse();
-    mesh.lowLevelDraw();
+    renderQueue.flush();
+    drawImmediately(mesh, shader, framebuffer);
+  }
+
+  /**
+   * Records a draw of a {@link Mesh} with the current uniforms and render state of the {@link
+   * Shader}, to be made by {@link #flushQueue}. The shader may be changed for the next draw right
+   * away.
+   *
+   * <p>Queued draws are sorted to reduce state changes: opaque draws are grouped by framebuffer,
+   * shader, texture and mesh and drawn front to back, blended draws are drawn back to front after
+   * them. Use {@link #draw} for passes whose draws must be made in order. If the queue is disabled
+   * with {@link #setRenderQueueEnabled}, the draw is made immediately.
+   *
+   * <p>The {@code framebuffer} argument may be null, in which case the default framebuffer is used.
+   *
+   * @param depth Distance of the mesh in front of the camera, see {@link #getViewDepth}
+   */
+  public void queue(Mesh mesh, Shader shader, Framebuffer framebuffer, float depth) {
+    if (renderQueueEnabled) {
+      renderQueue.add(mesh, shader, framebuffer, depth);
+    } else {
+      drawImmediately(mesh, shader, framebuffer);
+    }
+  }
+
+  /**
+   * Makes the queued draws, see {@link #queue}. Also called by {@link #draw} and {@link #clear},
+   * and at the end of every frame.
+   */
+  public void flushQueue() {
+    renderQueue.flush();
+  }
+
+  /** Sets whether {@link #queue} records draws, or makes them immediately like {@link #draw}. */
+  public void setRenderQueueEnabled(boolean enabled) {
+    renderQueue.flush();
+    renderQueueEnabled = enabled;
+  }
+
+  public boolean isRenderQueueEnabled() {
+    return renderQueueEnabled;
+  }
+
+  /**
+   * Returns the depth of the world space point ({@code x}, {@code y}, {@code z}) in front of the
+   * camera with the given view matrix, for {@link #queue}.
+   */
+  public static float getViewDepth(float[] viewMatrix, float x, float y, float z) {
+    return RenderQueue.getViewDepth(viewMatrix, x, y, z);
+  }
+
+  /**
+   * Called by renderers after updating the AR session, with the timestamp of the camera image of
+   * the frame. Returns false if the frame should not be drawn because the render loop only draws
+   * new camera images and this one was drawn before. Always true for onscreen rendering.
+   */
+  public boolean beginCameraFrame(long timestamp) {
+    return true;
+  }
+
+  public int getViewportWidth() {
+    return viewportWidth;
+  }
+
+  public int getViewportHeight() {
+    return viewportHeight;
+  }
+
+  /**
+   * Returns the number of frames swapped to the screen so far. Frame pacing is measured from the
+   * frames that were swapped; offscreen rendering may draw frames that are never shown.
+   */
+  public long getPresentedFrameCount() {
+    return presentedFrameCount;
+  }
+
+  /**
+   * Returns the estimated time at which the last swapped frame was presented, in the {@link
+   * System#nanoTime} timebase, or {@link #PRESENT_TIME_UNKNOWN}. See {@link VsyncTracker}.
+   */
+  public long getLastPresentTime() {
+    return lastPresentTime;
+  }
+
+  /** Returns the vsync period of the display the last swapped frame was presented on, in ns. */
+  public long getLastVsyncPeriod() {
+    return lastVsyncPeriod;
+  }
+
+  /* package-private */
+  void startVsyncTracker(Display display) {
+    stopVsyncTracker();
+    VsyncTracker tracker = new VsyncTracker(display);
+    tracker.start();
+    vsyncTracker = tracker;
+  }
+
+  /* package-private */
+  void stopVsyncTracker() {
+    VsyncTracker tracker = vsyncTracker;
+    if (tracker != null) {
+      tracker.stop();
+    }
+  }
+
+  /** Records that the last drawn frame was swapped at {@code swapTime}. Called on the GL thread. */
+  void onFrameSwapped(long swapTime) {
+    VsyncTracker tracker = vsyncTracker;
+    if (tracker == null) {
+      return;
+    }
+    lastPresentTime = tracker.getPresentTime(swapTime);
+    lastVsyncPeriod = tracker.getVsyncPeriod();
+    presentedFrameCount++;
   }
 
   /**
@@ -96,11 +313,11 @@ public class SampleRender {
    * cleared.
    */
   public void clear(Framebuffer framebuffer, float r, float g, float b, float a) {
+    renderQueue.flush();
     useFramebuffer(framebuffer);
     GLES30.glClearColor(r, g, b, a);
     GLError.maybeThrowGLException("Failed to set clear color", "glClearColor");
-    GLES30.glDepthMask(true);
-    GLError.maybeThrowGLException("Failed to set depth write mask", "glDepthMask");
+    stateCache.depthMask(true);
     GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT);
     GLError.maybeThrowGLException("Failed to clear framebuffer", "glClear");
   }
@@ -127,6 +344,39 @@ public class SampleRender {
      * <p>See {@link GLSurfaceView.Renderer#onDrawFrame}.
      */
     public void onDrawFrame(SampleRender render);
+
+    /**
+     * Called by {@link OffscreenRender} on the render thread after the last frame, while the GL
+     * context is still current, to release GL resources such as queries and buffers.
+     */
+    public default void onSurfaceDestroyed(SampleRender render) {}
+  }
+
+  /** Returns the time spent compiling and linking the {@link Shader}s of this context, in ns. */
+  public long getShaderCompileTime() {
+    return shaderCompileTime;
+  }
+
+  /** Returns the time spent decoding the images of {@link Texture}s loaded from assets, in ns. */
+  public long getTextureDecodeTime() {
+    return textureDecodeTime;
+  }
+
+  /** Returns the time spent parsing the OBJ files of {@link Mesh}es loaded from assets, in ns. */
+  public long getMeshParseTime() {
+    return meshParseTime;
+  }
+
+  /* package-private */
+  void drawImmediately(Mesh mesh, Shader shader, Framebuffer framebuffer) {
+    useFramebuffer(framebuffer);
+    shader.lowLevelUse();
+    mesh.lowLevelDraw();
+  }
+
+  /* package-private */
+  GLStateCache getStateCache() {
+    return stateCache;
   }
 
   /* package-private */
@@ -134,6 +384,21 @@ public class SampleRender {
     return assetManager;
   }
 
+  /* package-private */
+  void addShaderCompileTime(long time) {
+    shaderCompileTime += time;
+  }
+
+  /* package-private */
+  void addTextureDecodeTime(long time) {
+    textureDecodeTime += time;
+  }
+
+  /* package-private */
+  void addMeshParseTime(long time) {
+    meshParseTime += time;
+  }
+
   private void useFramebuffer(Framebuffer framebuffer) {
     int framebufferId;
     int viewportWidth;
@@ -147,9 +412,7 @@ public class SampleRender {
       viewportWidth = framebuffer.getWidth();
       viewportHeight = framebuffer.getHeight();
     }
-    GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferId);
-    GLError.maybeThrowGLException("Failed to bind framebuffer", "glBindFramebuffer");
-    GLES30.glViewport(0, 0, viewportWidth, viewportHeight);
-    GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
+    stateCache.bindFramebuffer(framebufferId);
+    stateCache.viewport(viewportWidth, viewportHeight);
   }
 }
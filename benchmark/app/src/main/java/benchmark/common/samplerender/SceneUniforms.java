@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import android.opengl.Matrix;
+import java.io.Closeable;
+
+/**
+ * Camera and lighting data of a frame, shared by every shader that declares the {@code
+ * CameraBlock} or {@code LightingBlock} uniform blocks. The blocks are uploaded and bound once per
+ * frame by {@link #update}, instead of being set as uniforms of every shader and every draw.
+ *
+ * <p>Shaders declare the blocks as follows, and attach them once with {@link #attachCameraBlock}
+ * and {@link #attachLightingBlock}:
+ *
+ * <pre>
+ * layout(std140) uniform CameraBlock {
+ *   highp mat4 u_View;
+ *   highp mat4 u_Projection;
+ *   highp mat4 u_ViewProjection;
+ *   highp mat4 u_ViewInverse;
+ *   highp vec3 u_CameraPos;
+ * };
+ *
+ * layout(std140) uniform LightingBlock {
+ *   highp vec4 u_ViewLightDirection;
+ *   highp vec3 u_LightIntensity;
+ *   bool u_LightEstimateIsValid;
+ *   highp vec3 u_SphericalHarmonicsCoefficients[9];
+ * };
+ * </pre>
+ */
+public class SceneUniforms implements Closeable {
+  public static final String CAMERA_BLOCK = "CameraBlock";
+  public static final String LIGHTING_BLOCK = "LightingBlock";
+  public static final int CAMERA_BINDING = 0;
+  public static final int LIGHTING_BINDING = 1;
+
+  // Offsets of the block members in floats, as laid out by std140.
+  private static final int VIEW_OFFSET = 0;
+  private static final int PROJECTION_OFFSET = 16;
+  private static final int VIEW_PROJECTION_OFFSET = 32;
+  private static final int VIEW_INVERSE_OFFSET = 48;
+  private static final int CAMERA_POS_OFFSET = 64;
+  private static final int CAMERA_BLOCK_SIZE = 68;
+  private static final int VIEW_LIGHT_DIRECTION_OFFSET = 0;
+  private static final int LIGHT_INTENSITY_OFFSET = 4;
+  private static final int LIGHT_ESTIMATE_IS_VALID_OFFSET = 7;
+  private static final int SPHERICAL_HARMONICS_OFFSET = 8;
+  private static final int LIGHTING_BLOCK_SIZE = 8 + 9 * 4;
+
+  private final UniformBuffer cameraBuffer;
+  private final UniformBuffer lightingBuffer;
+  private final float[] viewProjectionMatrix = new float[16];
+  private final float[] viewInverseMatrix = new float[16];
+  private final float[] cameraPosition = new float[3];
+
+  public SceneUniforms(SampleRender render) {
+    cameraBuffer = new UniformBuffer(render, CAMERA_BINDING, CAMERA_BLOCK_SIZE);
+    lightingBuffer = new UniformBuffer(render, LIGHTING_BINDING, LIGHTING_BLOCK_SIZE);
+  }
+
+  /** Makes {@code shader} read its {@code CameraBlock} from the camera data. */
+  public static Shader attachCameraBlock(Shader shader) {
+    return shader.setUniformBlock(CAMERA_BLOCK, CAMERA_BINDING);
+  }
+
+  /** Makes {@code shader} read its {@code LightingBlock} from the lighting data. */
+  public static Shader attachLightingBlock(Shader shader) {
+    return shader.setUniformBlock(LIGHTING_BLOCK, LIGHTING_BINDING);
+  }
+
+  /** Sets the view and projection matrices of the frame, and the ones derived from them. */
+  public void setCamera(float[] viewMatrix, float[] projectionMatrix) {
+    Matrix.multiplyMM(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+    Matrix.invertM(viewInverseMatrix, 0, viewMatrix, 0);
+    cameraPosition[0] = viewInverseMatrix[12];
+    cameraPosition[1] = viewInverseMatrix[13];
+    cameraPosition[2] = viewInverseMatrix[14];
+    cameraBuffer
+        .setFloats(VIEW_OFFSET, viewMatrix)
+        .setFloats(PROJECTION_OFFSET, projectionMatrix)
+        .setFloats(VIEW_PROJECTION_OFFSET, viewProjectionMatrix)
+        .setFloats(VIEW_INVERSE_OFFSET, viewInverseMatrix)
+        .setFloats(CAMERA_POS_OFFSET, cameraPosition);
+  }
+
+  /** Sets whether the light estimate is valid; the other lighting data is kept if it is not. */
+  public void setLightEstimateIsValid(boolean valid) {
+    lightingBuffer.setBool(LIGHT_ESTIMATE_IS_VALID_OFFSET, valid);
+  }
+
+  /**
+   * Sets the main directional light.
+   *
+   * @param viewLightDirection Direction of the light in view space, with w = 0
+   * @param intensity RGB intensity of the light
+   */
+  public void setMainLight(float[] viewLightDirection, float[] intensity) {
+    lightingBuffer
+        .setFloats(VIEW_LIGHT_DIRECTION_OFFSET, viewLightDirection)
+        .setFloats(LIGHT_INTENSITY_OFFSET, intensity);
+  }
+
+  /** Sets the 9 premultiplied RGB spherical harmonics coefficients of the ambient light. */
+  public void setSphericalHarmonicsCoefficients(float[] coefficients) {
+    if (coefficients.length != 9 * 3) {
+      throw new IllegalArgumentException("Value array length must be 27 (9 x vec3)");
+    }
+    lightingBuffer.setArray(SPHERICAL_HARMONICS_OFFSET, coefficients, 3);
+  }
+
+  /** Uploads the data that changed and binds both blocks. Call every frame before drawing. */
+  public void update() {
+    cameraBuffer.update();
+    lightingBuffer.update();
+  }
+
+  @Override
+  public void close() {
+    cameraBuffer.close();
+    lightingBuffer.close();
+  }
+}
@@ -66,13 +66,34 @@ public class Shader implements Closeable {
     }
   }
 
+  // How the values of a uniform slot are uploaded, chosen by the setter.
+  private static final int UPLOAD_INT = 0;
+  private static final int UPLOAD_1F = 1;
+  private static final int UPLOAD_2F = 2;
+  private static final int UPLOAD_3F = 3;
+  private static final int UPLOAD_4F = 4;
+  private static final int UPLOAD_MATRIX_2F = 5;
+  private static final int UPLOAD_MATRIX_3F = 6;
+  private static final int UPLOAD_MATRIX_4F = 7;
+  private static final int UPLOAD_TEXTURE = 8;
+
+  // Render state saved with the uniforms of a queued draw, ahead of the slots.
+  private static final int SAVED_STATE_INTS = 6;
+  // Ints saved per slot ahead of its values: upload, count and the number of int and float values.
+  private static final int SAVED_SLOT_INTS = 4;
+  private static final BlendFactor[] BLEND_FACTORS = BlendFactor.values();
+
+  private final GLStateCache stateCache;
   private int programId = 0;
-  private final Map<Integer, Uniform> uniforms = new HashMap<>();
+  // Serial number of the last draw of this shader recorded by a RenderQueue, -1 if none.
+  /* package-private */
+  long lastQueuedDraw = -1;
+  // Active uniforms of the program, found after linking. Setters copy values into their slot and
+  // only changed slots are uploaded, since uniform values are stored as part of the program.
+  private UniformSlot[] uniformSlots = new UniformSlot[0];
+  private final Map<String, UniformSlot> uniformsByName = new HashMap<>();
   private int maxTextureUnit = 0;
 
-  private final Map<String, Integer> uniformLocations = new HashMap<>();
-  private final Map<Integer, String> uniformNames = new HashMap<>();
-
   private boolean depthTest = true;
   private boolean depthWrite = true;
   private BlendFactor sourceRgbBlend = BlendFactor.ONE;
@@ -91,6 +112,8 @@ public class Shader implements Closeable {
       String vertexShaderCode,
       String fragmentShaderCode,
       Map<String, String> defines) {
+    stateCache = render.getStateCache();
+    long startTime = System.nanoTime();
     int vertexShaderId = 0;
     int fragmentShaderId = 0;
     String definesCode = createShaderDefinesCode(defines);
@@ -119,6 +142,7 @@ public class Shader implements Closeable {
             Log.WARN, TAG, "Failed to retrieve shader program info log", "glGetProgramInfoLog");
         throw new GLException(0, "Shader link failed: " + infoLog);
       }
+      createUniformSlots();
     } catch (Throwable t) {
       close();
       throw t;
@@ -133,6 +157,7 @@ public class Shader implements Closeable {
         GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free fragment shader", "glDeleteShader");
       }
     }
+    render.addShaderCompileTime(System.nanoTime() - startTime);
   }
 
   /**
@@ -161,6 +186,8 @@ public class Shader implements Closeable {
   public void close() {
     if (programId != 0) {
       GLES30.glDeleteProgram(programId);
+      // A new program may be given the same name.
+      stateCache.invalidateProgram();
       programId = 0;
     }
   }
@@ -223,37 +250,33 @@ public class Shader implements Closeable {
   public Shader setTexture(String name, Texture texture) {
     // Special handling for Textures. If replacing an existing texture uniform, reuse the texture
     // unit.
-    int location = getUniformLocation(name);
-    Uniform uniform = uniforms.get(location);
-    int textureUnit;
-    if (!(uniform instanceof UniformTexture)) {
-      textureUnit = maxTextureUnit++;
-    } else {
-      UniformTexture uniformTexture = (UniformTexture) uniform;
-      textureUnit = uniformTexture.getTextureUnit();
-    }
-    uniforms.put(location, new UniformTexture(textureUnit, texture));
+    UniformSlot slot = getUniformSlot(name);
+    if (slot.upload != UPLOAD_TEXTURE) {
+      slot.upload = UPLOAD_TEXTURE;
+      slot.ensureIntCapacity(1);
+      slot.intValues[0] = maxTextureUnit++;
+      slot.count = 1;
+      slot.dirty = true;
+    }
+    slot.texture = texture;
     return this;
   }
 
   /** Sets a {@code bool} uniform. */
   public Shader setBool(String name, boolean v0) {
-    int[] values = {v0 ? 1 : 0};
-    uniforms.put(getUniformLocation(name), new UniformInt(values));
+    getUniformSlot(name).setInt(v0 ? 1 : 0);
     return this;
   }
 
   /** Sets an {@code int} uniform. */
   public Shader setInt(String name, int v0) {
-    int[] values = {v0};
-    uniforms.put(getUniformLocation(name), new UniformInt(values));
+    getUniformSlot(name).setInt(v0);
     return this;
   }
 
   /** Sets a {@code float} uniform. */
   public Shader setFloat(String name, float v0) {
-    float[] values = {v0};
-    uniforms.put(getUniformLocation(name), new Uniform1f(values));
+    getUniformSlot(name).setFloat(v0);
     return this;
   }
 
@@ -262,7 +285,7 @@ public class Shader implements Closeable {
     if (values.length != 2) {
       throw new IllegalArgumentException("Value array length must be 2");
     }
-    uniforms.put(getUniformLocation(name), new Uniform2f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_2F, values, 2);
     return this;
   }
   /** Sets a {@code vec3} uniform. */
@@ -270,7 +293,7 @@ public class Shader implements Closeable {
     if (values.length != 3) {
       throw new IllegalArgumentException("Value array length must be 3");
     }
-    uniforms.put(getUniformLocation(name), new Uniform3f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_3F, values, 3);
     return this;
   }
 
@@ -279,7 +302,7 @@ public class Shader implements Closeable {
     if (values.length != 4) {
       throw new IllegalArgumentException("Value array length must be 4");
     }
-    uniforms.put(getUniformLocation(name), new Uniform4f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_4F, values, 4);
     return this;
   }
 
@@ -288,7 +311,7 @@ public class Shader implements Closeable {
     if (values.length != 4) {
       throw new IllegalArgumentException("Value array length must be 4 (2x2)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix2f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_MATRIX_2F, values, 4);
     return this;
   }
 
@@ -297,7 +320,7 @@ public class Shader implements Closeable {
     if (values.length != 9) {
       throw new IllegalArgumentException("Value array length must be 9 (3x3)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix3f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_MATRIX_3F, values, 9);
     return this;
   }
 
@@ -306,29 +329,25 @@ public class Shader implements Closeable {
     if (values.length != 16) {
       throw new IllegalArgumentException("Value array length must be 16 (4x4)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix4f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_MATRIX_4F, values, 16);
     return this;
   }
 
   /** Sets a {@code bool} array uniform. */
   public Shader setBoolArray(String name, boolean[] values) {
-    int[] intValues = new int[values.length];
-    for (int i = 0; i < values.length; ++i) {
-      intValues[i] = values[i] ? 1 : 0;
-    }
-    uniforms.put(getUniformLocation(name), new UniformInt(intValues));
+    getUniformSlot(name).setBools(values);
     return this;
   }
 
   /** Sets an {@code int} array uniform. */
   public Shader setIntArray(String name, int[] values) {
-    uniforms.put(getUniformLocation(name), new UniformInt(values.clone()));
+    getUniformSlot(name).setInts(values);
     return this;
   }
 
   /** Sets a {@code float} array uniform. */
   public Shader setFloatArray(String name, float[] values) {
-    uniforms.put(getUniformLocation(name), new Uniform1f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_1F, values, 1);
     return this;
   }
 
@@ -337,7 +356,7 @@ public class Shader implements Closeable {
     if (values.length % 2 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 2");
     }
-    uniforms.put(getUniformLocation(name), new Uniform2f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_2F, values, 2);
     return this;
   }
   /** Sets a {@code vec3} array uniform. */
@@ -345,7 +364,7 @@ public class Shader implements Closeable {
     if (values.length % 3 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 3");
     }
-    uniforms.put(getUniformLocation(name), new Uniform3f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_3F, values, 3);
     return this;
   }
 
@@ -354,7 +373,7 @@ public class Shader implements Closeable {
     if (values.length % 4 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 4");
     }
-    uniforms.put(getUniformLocation(name), new Uniform4f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_4F, values, 4);
     return this;
   }
 
@@ -363,7 +382,7 @@ public class Shader implements Closeable {
     if (values.length % 4 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 4 (2x2)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix2f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_MATRIX_2F, values, 4);
     return this;
   }
 
@@ -372,7 +391,7 @@ public class Shader implements Closeable {
     if (values.length % 9 != 0) {
       throw new IllegalArgumentException("Values array length must be divisible by 9 (3x3)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix3f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_MATRIX_3F, values, 9);
     return this;
   }
 
@@ -381,214 +400,479 @@ public class Shader implements Closeable {
     if (values.length % 16 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 16 (4x4)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix4f(values.clone()));
+    getUniformSlot(name).setFloats(UPLOAD_MATRIX_4F, values, 16);
+    return this;
+  }
+
+  /**
+   * Makes the uniform block {@code blockName} read from the {@link UniformBuffer} bound to {@code
+   * binding}. The binding is stored as part of the program, so this only needs to be called once.
+   *
+   * @see <a
+   *     href="https://www.khronos.org/registry/OpenGL-Refpages/es3.0/html/glUniformBlockBinding.xhtml">glUniformBlockBinding</a>
+   */
+  public Shader setUniformBlock(String blockName, int binding) {
+    int blockIndex = GLES30.glGetUniformBlockIndex(programId, blockName);
+    GLError.maybeThrowGLException("Failed to find uniform block", "glGetUniformBlockIndex");
+    if (blockIndex == GLES30.GL_INVALID_INDEX) {
+      throw new IllegalArgumentException("Shader uniform block does not exist: " + blockName);
+    }
+    GLES30.glUniformBlockBinding(programId, blockIndex, binding);
+    GLError.maybeThrowGLException("Failed to bind uniform block", "glUniformBlockBinding");
     return this;
   }
 
   /**
    * Activates the shader. Don't call this directly unless you are doing low level OpenGL code;
    * instead, prefer {@link SampleRender#draw}.
+   *
+   * <p>The program and render state are set through the state cache of the {@link SampleRender}
+   * the shader was created with, see {@link SampleRender#invalidateState}.
    */
   public void lowLevelUse() {
     // Make active shader/set uniforms
     if (programId == 0) {
       throw new IllegalStateException("Attempted to use freed shader");
     }
-    GLES30.glUseProgram(programId);
-    GLError.maybeThrowGLException("Failed to use shader program", "glUseProgram");
-    GLES30.glBlendFuncSeparate(
+    // State that is already set, e.g. by the previous draw with this shader, is skipped.
+    stateCache.useProgram(programId);
+    stateCache.blendFuncSeparate(
         sourceRgbBlend.glesEnum,
         destRgbBlend.glesEnum,
         sourceAlphaBlend.glesEnum,
         destAlphaBlend.glesEnum);
-    GLError.maybeThrowGLException("Failed to set blend mode", "glBlendFuncSeparate");
-    GLES30.glDepthMask(depthWrite);
-    GLError.maybeThrowGLException("Failed to set depth write mask", "glDepthMask");
-    if (depthTest) {
-      GLES30.glEnable(GLES30.GL_DEPTH_TEST);
-      GLError.maybeThrowGLException("Failed to enable depth test", "glEnable");
-    } else {
-      GLES30.glDisable(GLES30.GL_DEPTH_TEST);
-      GLError.maybeThrowGLException("Failed to disable depth test", "glDisable");
-    }
+    stateCache.depthMask(depthWrite);
+    stateCache.setDepthTest(depthTest);
     try {
-      // Remove all non-texture uniforms from the map after setting them, since they're stored as
-      // part of the program.
-      ArrayList<Integer> obsoleteEntries = new ArrayList<>(uniforms.size());
-      for (Map.Entry<Integer, Uniform> entry : uniforms.entrySet()) {
+      // Textures are bound on every use, other uniforms only when their values changed.
+      for (UniformSlot slot : uniformSlots) {
         try {
-          entry.getValue().use(entry.getKey());
-          if (!(entry.getValue() instanceof UniformTexture)) {
-            obsoleteEntries.add(entry.getKey());
-          }
+          slot.use();
         } catch (GLException e) {
-          String name = uniformNames.get(entry.getKey());
-          throw new IllegalArgumentException("Error setting uniform `" + name + "'", e);
+          throw new IllegalArgumentException("Error setting uniform `" + slot.name + "'", e);
         }
       }
-      uniforms.keySet().removeAll(obsoleteEntries);
     } finally {
       GLES30.glActiveTexture(GLES30.GL_TEXTURE0);
       GLError.maybeLogGLError(Log.WARN, TAG, "Failed to set active texture", "glActiveTexture");
     }
   }
 
-  private static interface Uniform {
-    public void use(int location);
+  /* package-private */
+  int getProgramId() {
+    return programId;
   }
 
-  private static class UniformTexture implements Uniform {
-    private final int textureUnit;
-    private final Texture texture;
-
-    public UniformTexture(int textureUnit, Texture texture) {
-      this.textureUnit = textureUnit;
-      this.texture = texture;
-    }
-
-    public int getTextureUnit() {
-      return textureUnit;
-    }
+  /* package-private */
+  boolean isBlended() {
+    return sourceRgbBlend != BlendFactor.ONE
+        || destRgbBlend != BlendFactor.ZERO
+        || sourceAlphaBlend != BlendFactor.ONE
+        || destAlphaBlend != BlendFactor.ZERO;
+  }
 
-    @Override
-    public void use(int location) {
-      if (texture.getTextureId() == 0) {
-        throw new IllegalStateException("Tried to draw with freed texture");
+  /** Returns the name of the first texture set on the shader, or 0 if there is none. */
+  /* package-private */
+  int getFirstTextureId() {
+    for (UniformSlot slot : uniformSlots) {
+      if (slot.upload == UPLOAD_TEXTURE) {
+        return slot.texture.getTextureId();
       }
-      GLES30.glActiveTexture(GLES30.GL_TEXTURE0 + textureUnit);
-      GLError.maybeThrowGLException("Failed to set active texture", "glActiveTexture");
-      GLES30.glBindTexture(texture.getTarget().glesEnum, texture.getTextureId());
-      GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
-      GLES30.glUniform1i(location, textureUnit);
-      GLError.maybeThrowGLException("Failed to set shader texture uniform", "glUniform1i");
     }
+    return 0;
   }
 
-  private static class UniformInt implements Uniform {
-    private final int[] values;
-
-    public UniformInt(int[] values) {
-      this.values = values;
+  /** Returns the number of ints {@link #saveState} writes. */
+  /* package-private */
+  int getSavedIntCount() {
+    int count = SAVED_STATE_INTS;
+    for (UniformSlot slot : uniformSlots) {
+      count += SAVED_SLOT_INTS + slot.getIntLength();
     }
+    return count;
+  }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniform1iv(location, values.length, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 1i", "glUniform1iv");
+  /** Returns the number of floats {@link #saveState} writes. */
+  /* package-private */
+  int getSavedFloatCount() {
+    int count = 0;
+    for (UniformSlot slot : uniformSlots) {
+      count += slot.getFloatLength();
     }
+    return count;
   }
 
-  private static class Uniform1f implements Uniform {
-    private final float[] values;
-
-    public Uniform1f(float[] values) {
-      this.values = values;
-    }
+  /** Returns the number of textures {@link #saveState} writes, one per uniform. */
+  /* package-private */
+  int getSavedTextureCount() {
+    return uniformSlots.length;
+  }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniform1fv(location, values.length, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 1f", "glUniform1fv");
+  /**
+   * Copies the render state and uniform values of the shader to the given arrays, so that a draw
+   * recorded now can be made later with {@link #restoreState}.
+   */
+  /* package-private */
+  void saveState(
+      int[] ints,
+      int intOffset,
+      float[] floats,
+      int floatOffset,
+      Texture[] textures,
+      int textureOffset) {
+    ints[intOffset++] = depthTest ? 1 : 0;
+    ints[intOffset++] = depthWrite ? 1 : 0;
+    ints[intOffset++] = sourceRgbBlend.ordinal();
+    ints[intOffset++] = destRgbBlend.ordinal();
+    ints[intOffset++] = sourceAlphaBlend.ordinal();
+    ints[intOffset++] = destAlphaBlend.ordinal();
+    for (UniformSlot slot : uniformSlots) {
+      int intLength = slot.getIntLength();
+      int floatLength = slot.getFloatLength();
+      ints[intOffset++] = slot.upload;
+      ints[intOffset++] = slot.count;
+      ints[intOffset++] = intLength;
+      ints[intOffset++] = floatLength;
+      System.arraycopy(slot.intValues, 0, ints, intOffset, intLength);
+      intOffset += intLength;
+      System.arraycopy(slot.floatValues, 0, floats, floatOffset, floatLength);
+      floatOffset += floatLength;
+      textures[textureOffset++] = slot.texture;
     }
   }
 
-  private static class Uniform2f implements Uniform {
-    private final float[] values;
-
-    public Uniform2f(float[] values) {
-      this.values = values;
+  /**
+   * Sets the render state and uniform values saved by {@link #saveState}. Uniforms whose values did
+   * not change are not uploaded again.
+   */
+  /* package-private */
+  void restoreState(
+      int[] ints,
+      int intOffset,
+      float[] floats,
+      int floatOffset,
+      Texture[] textures,
+      int textureOffset) {
+    depthTest = ints[intOffset++] != 0;
+    depthWrite = ints[intOffset++] != 0;
+    sourceRgbBlend = BLEND_FACTORS[ints[intOffset++]];
+    destRgbBlend = BLEND_FACTORS[ints[intOffset++]];
+    sourceAlphaBlend = BLEND_FACTORS[ints[intOffset++]];
+    destAlphaBlend = BLEND_FACTORS[ints[intOffset++]];
+    for (UniformSlot slot : uniformSlots) {
+      int upload = ints[intOffset++];
+      int count = ints[intOffset++];
+      int intLength = ints[intOffset++];
+      int floatLength = ints[intOffset++];
+      slot.restore(upload, count, ints, intOffset, intLength, floats, floatOffset, floatLength);
+      intOffset += intLength;
+      floatOffset += floatLength;
+      slot.texture = textures[textureOffset++];
+    }
+  }
+
+  /** Values of one active uniform, uploaded in place when changed. */
+  private static class UniformSlot {
+    private final String name;
+    private final int location;
+    private int upload = -1;
+    private float[] floatValues;
+    private int[] intValues;
+    // Number of values set, which may be less than the capacity of the arrays.
+    private int count;
+    private boolean dirty;
+    private Texture texture;
+
+    UniformSlot(String name, int location, int capacity) {
+      this.name = name;
+      this.location = location;
+      // Values of a slot are only set as either floats or ints, but the reflected type does not
+      // tell which for bool and sampler uniforms, so both arrays start at the reflected size.
+      floatValues = new float[capacity];
+      intValues = new int[capacity];
+    }
+
+    void setInt(int v0) {
+      ensureIntCapacity(1);
+      if (upload != UPLOAD_INT || count != 1 || intValues[0] != v0) {
+        upload = UPLOAD_INT;
+        intValues[0] = v0;
+        count = 1;
+        dirty = true;
+      }
     }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniform2fv(location, values.length / 2, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 2f", "glUniform2fv");
+    void setInts(int[] values) {
+      ensureIntCapacity(values.length);
+      if (upload != UPLOAD_INT || count != values.length || !sameValues(intValues, values)) {
+        upload = UPLOAD_INT;
+        System.arraycopy(values, 0, intValues, 0, values.length);
+        count = values.length;
+        dirty = true;
+      }
     }
-  }
-
-  private static class Uniform3f implements Uniform {
-    private final float[] values;
 
-    public Uniform3f(float[] values) {
-      this.values = values;
+    void setBools(boolean[] values) {
+      ensureIntCapacity(values.length);
+      boolean changed = upload != UPLOAD_INT || count != values.length;
+      for (int i = 0; i < values.length; i++) {
+        int value = values[i] ? 1 : 0;
+        changed |= intValues[i] != value;
+        intValues[i] = value;
+      }
+      if (changed) {
+        upload = UPLOAD_INT;
+        count = values.length;
+        dirty = true;
+      }
     }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniform3fv(location, values.length / 3, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 3f", "glUniform3fv");
+    void setFloat(float v0) {
+      ensureFloatCapacity(1);
+      if (upload != UPLOAD_1F || count != 1 || Float.compare(floatValues[0], v0) != 0) {
+        upload = UPLOAD_1F;
+        floatValues[0] = v0;
+        count = 1;
+        dirty = true;
+      }
     }
-  }
-
-  private static class Uniform4f implements Uniform {
-    private final float[] values;
 
-    public Uniform4f(float[] values) {
-      this.values = values;
+    /** Copies {@code values}, uploaded with {@code upload} as elements of {@code components}. */
+    void setFloats(int upload, float[] values, int components) {
+      ensureFloatCapacity(values.length);
+      int count = values.length / components;
+      if (this.upload != upload || this.count != count || !sameValues(floatValues, values)) {
+        this.upload = upload;
+        System.arraycopy(values, 0, floatValues, 0, values.length);
+        this.count = count;
+        dirty = true;
+      }
     }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniform4fv(location, values.length / 4, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 4f", "glUniform4fv");
+    /** Returns the number of int values in use. */
+    int getIntLength() {
+      switch (upload) {
+        case UPLOAD_INT:
+          return count;
+        case UPLOAD_TEXTURE:
+          return 1;
+        default:
+          return 0;
+      }
     }
-  }
-
-  private static class UniformMatrix2f implements Uniform {
-    private final float[] values;
 
-    public UniformMatrix2f(float[] values) {
-      this.values = values;
+    /** Returns the number of float values in use. */
+    int getFloatLength() {
+      switch (upload) {
+        case UPLOAD_1F:
+          return count;
+        case UPLOAD_2F:
+          return count * 2;
+        case UPLOAD_3F:
+          return count * 3;
+        case UPLOAD_4F:
+        case UPLOAD_MATRIX_2F:
+          return count * 4;
+        case UPLOAD_MATRIX_3F:
+          return count * 9;
+        case UPLOAD_MATRIX_4F:
+          return count * 16;
+        default:
+          return 0;
+      }
     }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniformMatrix2fv(location, values.length / 4, /*transpose=*/ false, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform matrix 2f", "glUniformMatrix2fv");
+    /** Sets values saved from this slot, marking it dirty if they differ from the current ones. */
+    void restore(
+        int upload,
+        int count,
+        int[] ints,
+        int intOffset,
+        int intLength,
+        float[] floats,
+        int floatOffset,
+        int floatLength) {
+      ensureIntCapacity(intLength);
+      ensureFloatCapacity(floatLength);
+      boolean changed = this.upload != upload || this.count != count;
+      for (int i = 0; i < intLength; i++) {
+        changed |= intValues[i] != ints[intOffset + i];
+        intValues[i] = ints[intOffset + i];
+      }
+      for (int i = 0; i < floatLength; i++) {
+        changed |= Float.compare(floatValues[i], floats[floatOffset + i]) != 0;
+        floatValues[i] = floats[floatOffset + i];
+      }
+      if (changed) {
+        this.upload = upload;
+        this.count = count;
+        dirty = true;
+      }
     }
-  }
-
-  private static class UniformMatrix3f implements Uniform {
-    private final float[] values;
 
-    public UniformMatrix3f(float[] values) {
-      this.values = values;
+    void ensureIntCapacity(int length) {
+      if (intValues.length < length) {
+        intValues = new int[length];
+      }
     }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniformMatrix3fv(location, values.length / 9, /*transpose=*/ false, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform matrix 3f", "glUniformMatrix3fv");
+    void ensureFloatCapacity(int length) {
+      if (floatValues.length < length) {
+        floatValues = new float[length];
+      }
     }
-  }
 
-  private static class UniformMatrix4f implements Uniform {
-    private final float[] values;
+    void use() {
+      if (upload == UPLOAD_TEXTURE) {
+        if (texture.getTextureId() == 0) {
+          throw new IllegalStateException("Tried to draw with freed texture");
+        }
+        GLES30.glActiveTexture(GLES30.GL_TEXTURE0 + intValues[0]);
+        GLError.maybeThrowGLException("Failed to set active texture", "glActiveTexture");
+        GLES30.glBindTexture(texture.getTarget().glesEnum, texture.getTextureId());
+        GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
+      }
+      if (!dirty) {
+        return;
+      }
+      switch (upload) {
+        case UPLOAD_TEXTURE:
+          GLES30.glUniform1i(location, intValues[0]);
+          GLError.maybeThrowGLException("Failed to set shader texture uniform", "glUniform1i");
+          break;
+        case UPLOAD_INT:
+          GLES30.glUniform1iv(location, count, intValues, 0);
+          GLError.maybeThrowGLException("Failed to set shader uniform 1i", "glUniform1iv");
+          break;
+        case UPLOAD_1F:
+          GLES30.glUniform1fv(location, count, floatValues, 0);
+          GLError.maybeThrowGLException("Failed to set shader uniform 1f", "glUniform1fv");
+          break;
+        case UPLOAD_2F:
+          GLES30.glUniform2fv(location, count, floatValues, 0);
+          GLError.maybeThrowGLException("Failed to set shader uniform 2f", "glUniform2fv");
+          break;
+        case UPLOAD_3F:
+          GLES30.glUniform3fv(location, count, floatValues, 0);
+          GLError.maybeThrowGLException("Failed to set shader uniform 3f", "glUniform3fv");
+          break;
+        case UPLOAD_4F:
+          GLES30.glUniform4fv(location, count, floatValues, 0);
+          GLError.maybeThrowGLException("Failed to set shader uniform 4f", "glUniform4fv");
+          break;
+        case UPLOAD_MATRIX_2F:
+          GLES30.glUniformMatrix2fv(location, count, /*transpose=*/ false, floatValues, 0);
+          GLError.maybeThrowGLException(
+              "Failed to set shader uniform matrix 2f", "glUniformMatrix2fv");
+          break;
+        case UPLOAD_MATRIX_3F:
+          GLES30.glUniformMatrix3fv(location, count, /*transpose=*/ false, floatValues, 0);
+          GLError.maybeThrowGLException(
+              "Failed to set shader uniform matrix 3f", "glUniformMatrix3fv");
+          break;
+        case UPLOAD_MATRIX_4F:
+          GLES30.glUniformMatrix4fv(location, count, /*transpose=*/ false, floatValues, 0);
+          GLError.maybeThrowGLException(
+              "Failed to set shader uniform matrix 4f", "glUniformMatrix4fv");
+          break;
+        default:
+          // Never set.
+          break;
+      }
+      dirty = false;
+    }
 
-    public UniformMatrix4f(float[] values) {
-      this.values = values;
+    // Compares the first values.length elements, without the allocation of Arrays.equals ranges.
+    private static boolean sameValues(float[] slotValues, float[] values) {
+      for (int i = 0; i < values.length; i++) {
+        if (Float.compare(slotValues[i], values[i]) != 0) {
+          return false;
+        }
+      }
+      return true;
     }
 
-    @Override
-    public void use(int location) {
-      GLES30.glUniformMatrix4fv(location, values.length / 16, /*transpose=*/ false, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform matrix 4f", "glUniformMatrix4fv");
+    private static boolean sameValues(int[] slotValues, int[] values) {
+      for (int i = 0; i < values.length; i++) {
+        if (slotValues[i] != values[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Creates a slot for every active uniform outside of uniform blocks, sized by its type. */
+  private void createUniformSlots() {
+    int[] uniformCount = new int[1];
+    GLES30.glGetProgramiv(programId, GLES30.GL_ACTIVE_UNIFORMS, uniformCount, 0);
+    GLError.maybeThrowGLException("Failed to query active uniforms", "glGetProgramiv");
+    ArrayList<UniformSlot> slots = new ArrayList<>(uniformCount[0]);
+    int[] size = new int[1];
+    int[] type = new int[1];
+    for (int i = 0; i < uniformCount[0]; i++) {
+      String name = GLES30.glGetActiveUniform(programId, i, size, 0, type, 0);
+      GLError.maybeThrowGLException("Failed to query active uniform", "glGetActiveUniform");
+      int location = GLES30.glGetUniformLocation(programId, name);
+      GLError.maybeThrowGLException("Failed to find uniform", "glGetUniformLocation");
+      if (location == -1) {
+        // Member of a uniform block.
+        continue;
+      }
+      UniformSlot slot = new UniformSlot(name, location, getComponentCount(type[0]) * size[0]);
+      slots.add(slot);
+      uniformsByName.put(name, slot);
+      // Arrays are reported as `name[0]' and set by either name.
+      if (name.endsWith("[0]")) {
+        uniformsByName.put(name.substring(0, name.length() - 3), slot);
+      }
     }
+    uniformSlots = slots.toArray(new UniformSlot[0]);
   }
 
-  private int getUniformLocation(String name) {
-    Integer locationObject = uniformLocations.get(name);
-    if (locationObject != null) {
-      return locationObject;
-    }
-    int location = GLES30.glGetUniformLocation(programId, name);
-    GLError.maybeThrowGLException("Failed to find uniform", "glGetUniformLocation");
-    if (location == -1) {
+  private UniformSlot getUniformSlot(String name) {
+    UniformSlot slot = uniformsByName.get(name);
+    if (slot == null) {
       throw new IllegalArgumentException("Shader uniform does not exist: " + name);
     }
-    uniformLocations.put(name, Integer.valueOf(location));
-    uniformNames.put(Integer.valueOf(location), name);
-    return location;
+    return slot;
+  }
+
+  private static int getComponentCount(int type) {
+    switch (type) {
+      case GLES30.GL_FLOAT_VEC2:
+      case GLES30.GL_INT_VEC2:
+      case GLES30.GL_UNSIGNED_INT_VEC2:
+      case GLES30.GL_BOOL_VEC2:
+        return 2;
+      case GLES30.GL_FLOAT_VEC3:
+      case GLES30.GL_INT_VEC3:
+      case GLES30.GL_UNSIGNED_INT_VEC3:
+      case GLES30.GL_BOOL_VEC3:
+        return 3;
+      case GLES30.GL_FLOAT_VEC4:
+      case GLES30.GL_INT_VEC4:
+      case GLES30.GL_UNSIGNED_INT_VEC4:
+      case GLES30.GL_BOOL_VEC4:
+      case GLES30.GL_FLOAT_MAT2:
+        return 4;
+      case GLES30.GL_FLOAT_MAT2x3:
+      case GLES30.GL_FLOAT_MAT3x2:
+        return 6;
+      case GLES30.GL_FLOAT_MAT2x4:
+      case GLES30.GL_FLOAT_MAT4x2:
+        return 8;
+      case GLES30.GL_FLOAT_MAT3:
+        return 9;
+      case GLES30.GL_FLOAT_MAT3x4:
+      case GLES30.GL_FLOAT_MAT4x3:
+        return 12;
+      case GLES30.GL_FLOAT_MAT4:
+        return 16;
+      default:
+        // Scalars and samplers.
+        return 1;
+    }
   }
 
   private static int createShader(int type, String code) {
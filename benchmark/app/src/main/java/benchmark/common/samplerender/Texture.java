@@ -134,10 +134,12 @@ public class Texture implements Closeable {
 
       // Load and convert the bitmap and copy its contents to a direct ByteBuffer. Despite its name,
       // the ARGB_8888 config is actually stored in RGBA order.
+      long decodeStartTime = System.nanoTime();
       bitmap =
           convertBitmapToConfig(
               BitmapFactory.decodeStream(render.getAssets().open(assetFileName)),
               Bitmap.Config.ARGB_8888);
+      render.addTextureDecodeTime(System.nanoTime() - decodeStartTime);
       ByteBuffer buffer = ByteBuffer.allocateDirect(bitmap.getByteCount());
       bitmap.copyPixelsToBuffer(buffer);
       buffer.rewind();
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import android.opengl.GLES30;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * A uniform block stored GPU-side, shared by every {@link Shader} whose block of the same name is
+ * attached to its binding point with {@link Shader#setUniformBlock}.
+ *
+ * <p>Values are written into a CPU-side copy at float offsets following the std140 layout of the
+ * block, and uploaded with a single {@code glBufferSubData} by {@link #update} if any changed.
+ *
+ * @see <a
+ *     href="https://www.khronos.org/registry/OpenGL-Refpages/es3.0/html/glBindBufferBase.xhtml">glBindBufferBase</a>
+ */
+public class UniformBuffer implements Closeable {
+  // std140 aligns the elements of arrays to vec4.
+  private static final int ARRAY_STRIDE = 4;
+
+  private final GpuBuffer buffer;
+  private final int binding;
+  private final FloatBuffer values;
+  private boolean dirty = true;
+
+  /**
+   * Constructs a zero-filled uniform buffer.
+   *
+   * @param binding Uniform buffer binding point the buffer is bound to by {@link #update}
+   * @param size Size of the block in floats, as laid out by std140
+   */
+  public UniformBuffer(SampleRender render, int binding, int size) {
+    this.binding = binding;
+    values =
+        ByteBuffer.allocateDirect(size * GpuBuffer.FLOAT_SIZE)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+    buffer =
+        new GpuBuffer(
+            render.getStateCache(), GLES30.GL_UNIFORM_BUFFER, GpuBuffer.FLOAT_SIZE, values);
+  }
+
+  /** Sets a {@code float} member at {@code offset} floats into the block. */
+  public UniformBuffer setFloat(int offset, float v0) {
+    if (values.get(offset) != v0) {
+      values.put(offset, v0);
+      dirty = true;
+    }
+    return this;
+  }
+
+  /** Sets a {@code bool} member at {@code offset} floats into the block. */
+  public UniformBuffer setBool(int offset, boolean v0) {
+    // A bool member is true if any bit of it is set.
+    return setFloat(offset, v0 ? 1.0f : 0.0f);
+  }
+
+  /** Sets a {@code vec2}, {@code vec3}, {@code vec4} or {@code mat4} member at {@code offset}. */
+  public UniformBuffer setFloats(int offset, float[] values) {
+    for (int i = 0; i < values.length; i++) {
+      setFloat(offset + i, values[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Sets an array member at {@code offset} from {@code values} holding {@code components} floats
+   * per element, padding every element to a vec4.
+   */
+  public UniformBuffer setArray(int offset, float[] values, int components) {
+    if (values.length % components != 0) {
+      throw new IllegalArgumentException("Value array length must be divisible by " + components);
+    }
+    for (int i = 0; i < values.length; i++) {
+      setFloat(offset + (i / components) * ARRAY_STRIDE + i % components, values[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Uploads the block if it changed since the last update and binds it to its binding point. Call
+   * once per frame before drawing with shaders that read the block.
+   */
+  public void update() {
+    if (dirty) {
+      buffer.set(values);
+      dirty = false;
+    }
+    GLES30.glBindBufferBase(GLES30.GL_UNIFORM_BUFFER, binding, buffer.getBufferId());
+    GLError.maybeThrowGLException("Failed to bind uniform buffer", "glBindBufferBase");
+  }
+
+  public int getBinding() {
+    return binding;
+  }
+
+  @Override
+  public void close() {
+    buffer.free();
+  }
+}
@@ -54,7 +54,9 @@ public class VertexBuffer implements Closeable {
     }
 
     this.numberOfEntriesPerVertex = numberOfEntriesPerVertex;
-    buffer = new GpuBuffer(GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, entries);
+    buffer =
+        new GpuBuffer(
+            render.getStateCache(), GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, entries);
   }
 
   /**
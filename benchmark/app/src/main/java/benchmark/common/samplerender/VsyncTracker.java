@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark.common.samplerender;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Display;
+
+/**
+ * Follows the vsync timeline of a display with {@link Choreographer} callbacks on the main thread,
+ * to estimate when a frame swapped on another thread reaches the screen.
+ *
+ * <p>A buffer queued with {@code eglSwapBuffers} is latched by the compositor at the first vsync
+ * after the swap returned at the earliest. {@link #getPresentTime} returns that vsync, so intervals
+ * between presented frames are whole vsync periods. Buffers queued behind others are presented
+ * later than estimated, and the estimate does not account for the fixed compositor latency.
+ */
+public class VsyncTracker implements Choreographer.FrameCallback {
+  private static final float DEFAULT_REFRESH_RATE = 60;
+
+  private final long vsyncPeriod;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private volatile long lastVsyncTime = -1;
+  private volatile boolean running;
+
+  /** @param display Display the frames are presented on, or null to assume 60 Hz */
+  public VsyncTracker(Display display) {
+    float refreshRate = display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+    vsyncPeriod = (long) (1e9 / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+  }
+
+  /** Starts following vsync. May be called from any thread. */
+  public void start() {
+    running = true;
+    mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(this));
+  }
+
+  /** Stops following vsync after the next callback. May be called from any thread. */
+  public void stop() {
+    running = false;
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    lastVsyncTime = frameTimeNanos;
+    if (running) {
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  }
+
+  /** Returns the vsync period of the display, in nanoseconds. */
+  public long getVsyncPeriod() {
+    return vsyncPeriod;
+  }
+
+  /**
+   * Returns the first vsync at or after {@code swapTime}, both in the {@link System#nanoTime}
+   * timebase, or {@code swapTime} if no vsync has been observed yet.
+   */
+  public long getPresentTime(long swapTime) {
+    long vsyncTime = lastVsyncTime;
+    if (vsyncTime < 0) {
+      return swapTime;
+    }
+    long periods = Math.floorDiv(swapTime - vsyncTime + vsyncPeriod - 1, vsyncPeriod);
+    return vsyncTime + periods * vsyncPeriod;
+  }
+}
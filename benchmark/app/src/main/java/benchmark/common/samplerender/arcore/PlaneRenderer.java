@@ -15,7 +15,6 @@
  */
 package benchmark.common.samplerender.arcore;
 
-import android.opengl.Matrix;
 import com.google.ar.core.Camera;
 import com.google.ar.core.Plane;
 import com.google.ar.core.Pose;
@@ -23,6 +22,7 @@ import com.google.ar.core.TrackingState;
 import benchmark.common.samplerender.IndexBuffer;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.SampleRender;
+import benchmark.common.samplerender.SceneUniforms;
 import benchmark.common.samplerender.Shader;
 import benchmark.common.samplerender.Shader.BlendFactor;
 import benchmark.common.samplerender.Texture;
@@ -92,10 +92,7 @@ public class PlaneRenderer {
           .asIntBuffer();
 
   // Temporary lists/matrices allocated here to reduce number of allocations for each frame.
-  private final float[] viewMatrix = new float[16];
   private final float[] modelMatrix = new float[16];
-  private final float[] modelViewMatrix = new float[16];
-  private final float[] modelViewProjectionMatrix = new float[16];
   private final float[] planeAngleUvMatrix =
       new float[4]; // 2x2 rotation matrix applied to uv coords.
   private final float[] normalVector = new float[3];
@@ -121,6 +118,7 @@ public class PlaneRenderer {
                 BlendFactor.ZERO, // ALPHA (src)
                 BlendFactor.ONE_MINUS_SRC_ALPHA) // ALPHA (dest)
             .setDepthWrite(false);
+    SceneUniforms.attachCameraBlock(shader);
 
     indexBufferObject = new IndexBuffer(render, /*entries=*/ null);
     vertexBufferObject = new VertexBuffer(render, COORDS_PER_VERTEX, /*entries=*/ null);
@@ -217,13 +215,13 @@ public class PlaneRenderer {
   /**
    * Draws the collection of tracked planes, with closer planes hiding more distant ones.
    *
+   * <p>The view and projection matrices are read from the camera block of {@link SceneUniforms},
+   * which must have been updated for this frame.
+   *
    * @param allPlanes The collection of planes to draw.
    * @param cameraPose The pose of the camera, as returned by {@link Camera#getPose()}
-   * @param cameraProjection The projection matrix, as returned by {@link
-   *     Camera#getProjectionMatrix(float[], int, float, float)}
    */
-  public void drawPlanes(
-      SampleRender render, Collection<Plane> allPlanes, Pose cameraPose, float[] cameraProjection) {
+  public void drawPlanes(SampleRender render, Collection<Plane> allPlanes, Pose cameraPose) {
     // Planes must be sorted by distance from camera so that we draw closer planes first, and
     // they occlude the farther planes.
     List<SortablePlane> sortedPlanes = new ArrayList<>();
@@ -248,8 +246,6 @@ public class PlaneRenderer {
           }
         });
 
-    cameraPose.inverse().toMatrix(viewMatrix, 0);
-
     for (SortablePlane sortedPlane : sortedPlanes) {
       Plane plane = sortedPlane.plane;
       float[] planeMatrix = new float[16];
@@ -278,14 +274,9 @@ public class PlaneRenderer {
       planeAngleUvMatrix[2] = +(float) Math.sin(angleRadians) * uScale;
       planeAngleUvMatrix[3] = +(float) Math.cos(angleRadians) * vScale;
 
-      // Build the ModelView and ModelViewProjection matrices
-      // for calculating cube position and light.
-      Matrix.multiplyMM(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
-      Matrix.multiplyMM(modelViewProjectionMatrix, 0, cameraProjection, 0, modelViewMatrix, 0);
-
-      // Populate the shader uniforms for this frame.
+      // Populate the shader uniforms for this frame. The view projection matrix is shared through
+      // the camera block.
       shader.setMat4("u_Model", modelMatrix);
-      shader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
       shader.setMat2("u_PlaneUvMatrix", planeAngleUvMatrix);
       shader.setVec3("u_Normal", normalVector);
 
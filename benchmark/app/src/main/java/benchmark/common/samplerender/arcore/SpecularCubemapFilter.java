@@ -145,6 +145,7 @@ public class SpecularCubemapFilter implements Closeable {
     public float level;
   }
 
+  private final SampleRender render;
   private final int resolution;
   private final int numberOfImportanceSamples;
   private final int numberOfMipmapLevels;
@@ -173,6 +174,7 @@ public class SpecularCubemapFilter implements Closeable {
    */
   public SpecularCubemapFilter(SampleRender render, int resolution, int numberOfImportanceSamples)
       throws IOException {
+    this.render = render;
     this.resolution = resolution;
     this.numberOfImportanceSamples = numberOfImportanceSamples;
     this.numberOfMipmapLevels = log2(resolution) + 1;
@@ -199,6 +201,9 @@ public class SpecularCubemapFilter implements Closeable {
     } catch (Throwable t) {
       close();
       throw t;
+    } finally {
+      // The framebuffers were bound without the render's state cache.
+      render.invalidateState();
     }
   }
 
@@ -210,6 +215,7 @@ public class SpecularCubemapFilter implements Closeable {
         GLError.maybeLogGLError(
             Log.WARN, TAG, "Failed to free framebuffers", "glDeleteFramebuffers");
       }
+      render.invalidateState();
     }
     if (radianceCubemap != null) {
       radianceCubemap.close();
@@ -296,6 +302,8 @@ public class SpecularCubemapFilter implements Closeable {
       for (ArImage image : images) {
         image.close();
       }
+      // The framebuffers and viewport were set without the render's state cache.
+      render.invalidateState();
     }
   }
 
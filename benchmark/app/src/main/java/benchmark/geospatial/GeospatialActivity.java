@@ -49,7 +49,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
@@ -99,15 +98,10 @@ import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
 import com.google.ar.core.exceptions.UnsupportedConfigurationException;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -120,7 +114,13 @@ import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import benchmark.augmented_faces.AugmentedFacesActivity;
+import benchmark.benchmark.AssetStager;
 import benchmark.benchmark.BenchmarkActivity;
+import benchmark.benchmark.FrameLogWriter;
+import benchmark.benchmark.FrameProfiler;
+import benchmark.benchmark.FrameRecorder;
+import benchmark.benchmark.GoldenImageValidator;
+import benchmark.benchmark.RenderParameters;
 import benchmark.benchmark.R;
 import benchmark.common.helpers.CameraPermissionHelper;
 import benchmark.common.helpers.DisplayRotationHelper;
@@ -130,6 +130,8 @@ import benchmark.common.helpers.SnackbarHelper;
 import benchmark.common.helpers.TrackingStateHelper;
 import benchmark.common.samplerender.Framebuffer;
 import benchmark.common.samplerender.GLError;
+import benchmark.common.samplerender.FrameCapture;
+import benchmark.common.samplerender.GpuTimerPool;
 import benchmark.common.samplerender.Mesh;
 import benchmark.common.samplerender.OffscreenRender;
 import benchmark.common.samplerender.SampleRender;
@@ -153,7 +155,7 @@ public class GeospatialActivity extends AppCompatActivity
     private static final String ALLOW_GEOSPATIAL_ACCESS_KEY = "ALLOW_GEOSPATIAL_ACCESS";
 
     private static final float Z_NEAR = 0.1f;
-    private static final float Z_FAR = 1000f;
+    private static final float DEFAULT_Z_FAR = 1000f;
 
     // The thresholds that are required for horizontal and heading accuracies before entering into the
     // LOCALIZED state. Once the accuracies are equal or less than these values, the app will
@@ -239,16 +241,16 @@ public class GeospatialActivity extends AppCompatActivity
     private final int REQUEST_WRITE_EXTERNAL_STORAGE = 1;
     private int REQUEST_MP4_SELECTOR = 1;
 
-    private BufferedWriter fpsLog;
+    private FrameRecorder frameRecorder;
+    private final FrameProfiler frameProfiler = new FrameProfiler();
     String fileName;
     private int currentPhase = 1;
 
-    private boolean hasTimerExtension;
-    private static final int TIME_ELAPSED_EXT = 0x88BF;
-    private static final int NUM_QUERIES = 10;
-    private int[] timeQueries;
-    private int[] queryBuffer;
-    private int queryIndex;
+    private GpuTimerPool gpuTimerPool;
+    private FrameCapture frameCapture;
+    private GoldenImageValidator goldenImageValidator;
+    // Virtual scene resolution and far plane, set by the benchmark.
+    private RenderParameters renderParameters;
     private OffscreenRender render;
 
     private final UUID TAP_TRACK_ID = UUID.fromString("7dee74ec-f283-11ec-b939-0242ac120002");
@@ -264,6 +266,7 @@ public class GeospatialActivity extends AppCompatActivity
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        renderParameters = new RenderParameters(getIntent(), DEFAULT_Z_FAR);
         sharedPreferences = getPreferences(Context.MODE_PRIVATE);
 
         setContentView(R.layout.geospatial);
@@ -277,7 +280,8 @@ public class GeospatialActivity extends AppCompatActivity
         surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
             @Override
             public void surfaceCreated(SurfaceHolder holder) {
-                render = new OffscreenRender(surfaceView, GeospatialActivity.this, getAssets());
+                render = new OffscreenRender(surfaceView, GeospatialActivity.this, getAssets(),
+                        BenchmarkActivity.getSchedulingPolicy(getIntent()), BenchmarkActivity.getTargetFps(getIntent()));
             }
 
             @Override
@@ -304,52 +308,25 @@ public class GeospatialActivity extends AppCompatActivity
         installRequested = false;
 
         Intent intent = getIntent();
-        int activityNumber = intent.getIntExtra(BenchmarkActivity.ACTIVITY_NUMBER, 0);
-        fileName = BenchmarkActivity.ACTIVITY_RECORDINGS[activityNumber].getRecordingFileName();
-        File f = new File(getExternalFilesDir(null) + "/" + fileName);
-        if (!f.exists()) try {
-
-            InputStream is = getAssets().open("recordings/" + fileName);
-            int len;
-            byte[] buffer = new byte[1024];
-            FileOutputStream fos = new FileOutputStream(f);
-            while ((len = is.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
-            }
-            is.close();
-            fos.close();
-        } catch (Exception e) {
+        fileName = intent.getStringExtra(BenchmarkActivity.RECORDING_FILE_NAME);
+        try {
+            AssetStager.getInstance(this).stageRecording(fileName);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
         try {
-            String logPath = getExternalFilesDir(null).getAbsolutePath() + "/frame-log";
-            Log.d(TAG, "Logging FPS to " + logPath);
-            fpsLog = new BufferedWriter(new FileWriter(logPath, true));
-            fpsLog.write("test " + fileName + "\n");
+            File logFile = new File(getExternalFilesDir(null), FrameLogWriter.FILE_NAME);
+            Log.d(TAG, "Logging FPS to " + logFile.getAbsolutePath());
+            frameRecorder = new FrameRecorder(logFile, fileName);
         } catch (IOException e) {
             messageSnackbarHelper.showError(this, "Could not open file to log FPS");
         }
-
-        // Queries are initialized in onDrawFrame
-        timeQueries = new int[NUM_QUERIES];
-        queryBuffer = new int[1];
-        queryBuffer[0] = 0;
-        queryIndex = 0;
-        for (int i=0; i < NUM_QUERIES; i++) {
-            timeQueries[i] = -1;
-        }
     }
 
     private void cleanupCollectionResources() {
         try {
-            if (fpsLog != null) {
-                fpsLog.flush();
-                fpsLog.close();
-            }
-            for (int i=0; i < NUM_QUERIES; i++) {
-                if (timeQueries[i] >= 0) {
-                    GLES30.glDeleteQueries(1, timeQueries, i);
-                }
+            if (frameRecorder != null) {
+                frameRecorder.close();
             }
         } catch (IOException e) {
             Log.e(TAG, "Exception closing frame log: ", e);
@@ -358,9 +335,13 @@ public class GeospatialActivity extends AppCompatActivity
 
     @Override
     protected void onDestroy() {
+        // Waits for the render thread to release its GL resources before the session is closed.
+        if (render != null) {
+            render.stop();
+        }
         try {
-            if (fpsLog != null) {
-                fpsLog.close();
+            if (frameRecorder != null) {
+                frameRecorder.close();
             }
         } catch (IOException e) {
 
@@ -539,6 +520,7 @@ public class GeospatialActivity extends AppCompatActivity
         // Prepare the rendering objects. This involves reading shaders and 3D model files, so may throw
         // an IOException.
         try {
+            render.setRenderQueueEnabled(renderParameters.isRenderQueueEnabled());
             backgroundRenderer = new BackgroundRenderer(render);
             virtualSceneFramebuffer = new Framebuffer(render, /*width=*/ 1, /*height=*/ 1);
 
@@ -566,32 +548,47 @@ public class GeospatialActivity extends AppCompatActivity
             messageSnackbarHelper.showError(this, "Failed to read a required asset file: " + e);
         }
 
-        String extensions = GLES30.glGetString(GLES30.GL_EXTENSIONS);
-        hasTimerExtension = extensions.contains(" GL_EXT_disjoint_timer_query ");
+        gpuTimerPool = new GpuTimerPool(render);
+        frameCapture = new FrameCapture(render);
+        frameCapture.setPeriodicCapture(BenchmarkActivity.getCaptureInterval(getIntent()),
+                BenchmarkActivity.getCaptureDirectory(this, BenchmarkActivity.getSectionKey(getIntent(), fileName)));
+        goldenImageValidator = new GoldenImageValidator(this, getIntent(), fileName, frameCapture);
     }
 
     @Override
     public void onSurfaceChanged(SampleRender render, int width, int height) {
         displayRotationHelper.onSurfaceChanged(width, height);
-        virtualSceneFramebuffer.resize(width, height);
+        virtualSceneFramebuffer.resize(renderParameters.scale(width), renderParameters.scale(height));
         GLES30.glViewport(0, 0, width, height);
     }
 
+    @Override
+    public void onSurfaceDestroyed(SampleRender render) {
+        if (gpuTimerPool != null) {
+            gpuTimerPool.close();
+        }
+        if (frameCapture != null) {
+            frameCapture.close();
+        }
+    }
+
     @Override
     public void onDrawFrame(SampleRender render) {
         long frameTime = System.currentTimeMillis();
+        long frameTimeNanos = System.nanoTime();
+        frameProfiler.beginFrame();
         if (session == null) {
             return;
         }
         if (session.getPlaybackStatus() == PlaybackStatus.FINISHED) {
             session.close();
             session = null;
-            saveLastFrame(this.render.getViewportWidth(), this.render.getViewportHeight());
+            goldenImageValidator.finish();
+            frameCapture.capture(BenchmarkActivity.getPreviewFile(this, BenchmarkActivity.getSectionKey(getIntent(), fileName)));
             try {
-                if (fpsLog != null) {
-                    fpsLog.flush();
-                    fpsLog.close();
-                    fpsLog = null;
+                if (frameRecorder != null) {
+                    frameRecorder.close();
+                    frameRecorder = null;
                 }
             } catch (IOException e) {
 
@@ -623,12 +620,19 @@ public class GeospatialActivity extends AppCompatActivity
         // ARCore Processing Time
         long processTime = System.currentTimeMillis();
         try {
+            frameProfiler.begin(FrameProfiler.STAGE_SESSION_UPDATE);
             frame = session.update();
+            frameProfiler.end(FrameProfiler.STAGE_SESSION_UPDATE);
         } catch (CameraNotAvailableException e) {
             Log.e(TAG, "Camera not available during onDrawFrame", e);
             messageSnackbarHelper.showError(this, "Camera not available. Try restarting the app.");
             return;
         }
+        // Frames without a new camera image are neither drawn nor recorded if the render loop asks so.
+        if (!render.beginCameraFrame(frame.getTimestamp())) {
+            return;
+        }
+        gpuTimerPool.beginFrame();
 
         Camera camera = frame.getCamera();
 
@@ -698,7 +702,11 @@ public class GeospatialActivity extends AppCompatActivity
         if (frame.getTimestamp() != 0) {
             // Suppress rendering if the camera did not produce the first frame yet. This is to avoid
             // drawing possible leftover data from previous sessions if the texture is reused.
+            frameProfiler.begin(FrameProfiler.STAGE_BACKGROUND);
+            gpuTimerPool.begin(GpuTimerPool.PASS_BACKGROUND);
             backgroundRenderer.drawBackground(render);
+            gpuTimerPool.end(GpuTimerPool.PASS_BACKGROUND);
+            frameProfiler.end(FrameProfiler.STAGE_BACKGROUND);
         }
 
         // If not tracking, don't draw 3D objects.
@@ -709,7 +717,7 @@ public class GeospatialActivity extends AppCompatActivity
         // -- Draw virtual objects
 
         // Get projection matrix.
-        camera.getProjectionMatrix(projectionMatrix, 0, Z_NEAR, Z_FAR);
+        camera.getProjectionMatrix(projectionMatrix, 0, Z_NEAR, renderParameters.getZFar());
 
         // Get camera matrix and draw.
         camera.getViewMatrix(viewMatrix, 0);
@@ -718,6 +726,7 @@ public class GeospatialActivity extends AppCompatActivity
         // Input Handling Time
         long handleInputTime = System.currentTimeMillis();
         processTime = handleInputTime - processTime;
+        frameProfiler.begin(FrameProfiler.STAGE_INPUT);
 
         if (setAnchorButton.isPressed() && earth != null && earth.getTrackingState() == TrackingState.TRACKING) {
             System.out.println("SET ANCHOR BUTTON PRESSED");
@@ -787,28 +796,11 @@ public class GeospatialActivity extends AppCompatActivity
         }
 
         handleInputTime = System.currentTimeMillis() - handleInputTime;
-
-        // Setup OpenGL time queries. Queries are organized in a queues that new queries can be made while the old result becomes
-        // available.
-        if (!hasTimerExtension) {
-            messageSnackbarHelper.showError(this, "OpenGL extension EXT_disjoint_timer_query is unavailable on this device");
-            return;
-        }
-        if (timeQueries[queryIndex] < 0) {
-            GLES30.glGenQueries(1, timeQueries, queryIndex);
-        }
-        // Pop query off queue and fetch its result.
-        if (timeQueries[(queryIndex + 1) % NUM_QUERIES] >= 0) {
-            IntBuffer queryResult = IntBuffer.allocate(1);
-            GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT_AVAILABLE, queryResult);
-            if (queryResult.get() == GLES30.GL_TRUE) {
-                GLES30.glGetQueryObjectuiv(timeQueries[(queryIndex + 1) % NUM_QUERIES], GLES30.GL_QUERY_RESULT, queryBuffer, 0);
-            }
-        }
-        // Begin query for current frame.
-        GLES30.glBeginQuery(TIME_ELAPSED_EXT, timeQueries[queryIndex]);
+        frameProfiler.end(FrameProfiler.STAGE_INPUT);
 
         // Visualize anchors created by touch.
+        frameProfiler.begin(FrameProfiler.STAGE_VIRTUAL_OBJECTS);
+        gpuTimerPool.begin(GpuTimerPool.PASS_VIRTUAL_SCENE);
         render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
 
         for (Anchor anchor : anchors) {
@@ -820,49 +812,33 @@ public class GeospatialActivity extends AppCompatActivity
             Matrix.multiplyMM(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
             Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, modelViewMatrix, 0);
 
-            // Update shader properties and draw
+            // Update shader properties and queue the draw, the queue draws the objects front to back.
             virtualObjectShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
 
-            render.draw(virtualObjectMesh, virtualObjectShader, virtualSceneFramebuffer);
-
-            GLES30.glEndQuery(TIME_ELAPSED_EXT);
-            queryIndex = (queryIndex + 1) % NUM_QUERIES;
-            try {
-                if (fpsLog != null) {
-                    fpsLog.write(currentPhase + "," + frameTime + "," + processTime + "," + handleInputTime + "," + queryBuffer[0] + "," + (System.currentTimeMillis() - frameTime) + "\n");
-                }
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to log frame data", e);
-            }
-
+            render.queue(virtualObjectMesh, virtualObjectShader, virtualSceneFramebuffer,
+                    SampleRender.getViewDepth(viewMatrix, modelMatrix[12], modelMatrix[13], modelMatrix[14]));
         }
+        render.flushQueue();
+        gpuTimerPool.end(GpuTimerPool.PASS_VIRTUAL_SCENE);
+        frameProfiler.end(FrameProfiler.STAGE_VIRTUAL_OBJECTS);
 
         // Compose the virtual scene with the background.
-        backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
-    }
-
-    private void saveLastFrame(int width, int height) {
-        int size = width * height;
-        int[] imageArray = new int[size];
-        IntBuffer intBuffer = IntBuffer.allocate(size);
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        GLES30.glReadPixels(0, 0, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, intBuffer);
-        int[] imageArray2 = intBuffer.array();
-        for (int i=0; i < height; i++) {
-            for (int j=0; j < width; j++) {
-                imageArray[(height - i - 1) * width + j] = imageArray2[i * width + j];
-            }
-        }
-        bitmap.copyPixelsFromBuffer(IntBuffer.wrap(imageArray));
-        File imageFile = new File(getExternalFilesDir(null) + "/" + this.fileName.replace(".mp4", ".jpg"));
-        try {
-            imageFile.delete();
-            FileOutputStream fileOutputStream = new FileOutputStream(imageFile);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 50, fileOutputStream);
-            fileOutputStream.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to save preview image: ", e);
-        }
+        frameProfiler.begin(FrameProfiler.STAGE_COMPOSITE);
+        gpuTimerPool.begin(GpuTimerPool.PASS_COMPOSITE);
+        backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, renderParameters.getZFar());
+        gpuTimerPool.end(GpuTimerPool.PASS_COMPOSITE);
+        frameProfiler.end(FrameProfiler.STAGE_COMPOSITE);
+
+        gpuTimerPool.endFrame();
+
+        frameProfiler.endFrame();
+        frameProfiler.begin(FrameProfiler.STAGE_LOG);
+        goldenImageValidator.onFrame(frame.getTimestamp());
+        frameCapture.endFrame();
+        if (frameRecorder != null) {
+            frameRecorder.record(currentPhase, frameTime, frameTimeNanos, (int) processTime, (int) handleInputTime, (int) (System.currentTimeMillis() - frameTime), frameProfiler, gpuTimerPool, render);
+        }
+        frameProfiler.end(FrameProfiler.STAGE_LOG);
     }
 
     @Override